@@ -0,0 +1,43 @@
+package se.kth.iv1350.analytics;
+
+/**
+ * A sealed block of sale lines in a {@link SalesColumnStore}, either kept as
+ * plain primitive columns or compressed.
+ */
+interface Chunk {
+  /**
+   * Returns the lines of the chunk as primitive columns, decompressing them if
+   * needed.
+   *
+   * @return The {@link ColumnChunk} with the lines of this chunk.
+   */
+  ColumnChunk columns();
+
+  /**
+   * Returns the number of lines in the chunk.
+   *
+   * @return The number of lines.
+   */
+  int size();
+
+  /**
+   * Returns the earliest timestamp in the chunk.
+   *
+   * @return The smallest timestamp.
+   */
+  long minTimestamp();
+
+  /**
+   * Returns the latest timestamp in the chunk.
+   *
+   * @return The largest timestamp.
+   */
+  long maxTimestamp();
+
+  /**
+   * Returns the approximate number of heap bytes used by the chunk's data.
+   *
+   * @return The size of the data in bytes.
+   */
+  long memoryBytes();
+}
@@ -0,0 +1,149 @@
+package se.kth.iv1350.analytics;
+
+/**
+ * A block of sale lines stored column by column in primitive arrays. Each
+ * column holds one field of every line: the time of the sale, the item ID,
+ * the quantity, and the net, VAT and discount amounts in minor units (öre).
+ * <p>
+ * A chunk is filled by a single writer and then sealed. Sealed chunks are
+ * never changed again and can be scanned by many threads at once, or turned
+ * into a {@link CompressedChunk} to save memory.
+ */
+class ColumnChunk implements Chunk {
+  /** The number of lines in a full chunk. */
+  static final int CAPACITY = 1 << 16;
+
+  final long[] timestamps;
+  final int[] itemIDs;
+  final int[] quantities;
+  final long[] netMinor;
+  final long[] vatMinor;
+  final long[] discountMinor;
+  private int size;
+  private long minTimestamp;
+  private long maxTimestamp;
+
+  /**
+   * Creates a new, empty {@code ColumnChunk} with room for {@link #CAPACITY}
+   * lines.
+   */
+  ColumnChunk() {
+    this(CAPACITY);
+  }
+
+  /**
+   * Creates a new, empty {@code ColumnChunk} with room for the given number of
+   * lines.
+   *
+   * @param capacity The number of lines the chunk can hold.
+   */
+  ColumnChunk(int capacity) {
+    this.timestamps = new long[capacity];
+    this.itemIDs = new int[capacity];
+    this.quantities = new int[capacity];
+    this.netMinor = new long[capacity];
+    this.vatMinor = new long[capacity];
+    this.discountMinor = new long[capacity];
+    this.size = 0;
+    this.minTimestamp = Long.MAX_VALUE;
+    this.maxTimestamp = Long.MIN_VALUE;
+  }
+
+  /**
+   * Creates a full, sealed {@code ColumnChunk} from existing columns, which
+   * must all have the same length.
+   *
+   * @param timestamps    The time of each line.
+   * @param itemIDs       The item ID of each line.
+   * @param quantities    The quantity of each line.
+   * @param netMinor      The net amount of each line.
+   * @param vatMinor      The VAT of each line.
+   * @param discountMinor The discount of each line.
+   * @param minTimestamp  The earliest timestamp.
+   * @param maxTimestamp  The latest timestamp.
+   */
+  ColumnChunk(long[] timestamps, int[] itemIDs, int[] quantities, long[] netMinor, long[] vatMinor,
+      long[] discountMinor, long minTimestamp, long maxTimestamp) {
+    this.timestamps = timestamps;
+    this.itemIDs = itemIDs;
+    this.quantities = quantities;
+    this.netMinor = netMinor;
+    this.vatMinor = vatMinor;
+    this.discountMinor = discountMinor;
+    this.size = timestamps.length;
+    this.minTimestamp = minTimestamp;
+    this.maxTimestamp = maxTimestamp;
+  }
+
+  /**
+   * Appends one sale line.
+   *
+   * @param timestamp The time of the sale in milliseconds since the epoch.
+   * @param itemID    The ID of the sold item.
+   * @param quantity  The number of units sold.
+   * @param net       The price excluding VAT, in minor units.
+   * @param vat       The VAT, in minor units.
+   * @param discount  The share of the sale discount for this line, in minor
+   *                  units.
+   */
+  void append(long timestamp, int itemID, int quantity, long net, long vat, long discount) {
+    timestamps[size] = timestamp;
+    itemIDs[size] = itemID;
+    quantities[size] = quantity;
+    netMinor[size] = net;
+    vatMinor[size] = vat;
+    discountMinor[size] = discount;
+    size++;
+    minTimestamp = Math.min(minTimestamp, timestamp);
+    maxTimestamp = Math.max(maxTimestamp, timestamp);
+  }
+
+  @Override
+  public ColumnChunk columns() {
+    return this;
+  }
+
+  /**
+   * Returns whether the chunk has no room left.
+   *
+   * @return {@code true} if the chunk is full.
+   */
+  boolean isFull() {
+    return size == timestamps.length;
+  }
+
+  /**
+   * Returns the number of lines in the chunk.
+   *
+   * @return The number of lines.
+   */
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the earliest timestamp in the chunk.
+   *
+   * @return The smallest timestamp, or {@link Long#MAX_VALUE} if empty.
+   */
+  @Override
+  public long minTimestamp() {
+    return minTimestamp;
+  }
+
+  /**
+   * Returns the latest timestamp in the chunk.
+   *
+   * @return The largest timestamp, or {@link Long#MIN_VALUE} if empty.
+   */
+  @Override
+  public long maxTimestamp() {
+    return maxTimestamp;
+  }
+
+  @Override
+  public long memoryBytes() {
+    return (long) timestamps.length * (Long.BYTES * 4 + Integer.BYTES * 2);
+  }
+}
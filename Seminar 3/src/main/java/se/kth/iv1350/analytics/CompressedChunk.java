@@ -0,0 +1,160 @@
+package se.kth.iv1350.analytics;
+
+import java.util.Arrays;
+
+/**
+ * A sealed {@link ColumnChunk} packed into a single byte array to save memory
+ * for older data.
+ * <p>
+ * Every column is written one after the other as variable-length integers.
+ * Timestamps are stored as the difference to the previous line, which is
+ * small because lines arrive in time order, and signed values are zig-zag
+ * encoded so small negative numbers stay short. Scanning a compressed chunk
+ * decodes it into a temporary {@link ColumnChunk}.
+ */
+class CompressedChunk implements Chunk {
+  private final byte[] data;
+  private final int size;
+  private final long minTimestamp;
+  private final long maxTimestamp;
+
+  /**
+   * Compresses the given chunk.
+   *
+   * @param chunk The sealed {@link ColumnChunk} to compress.
+   */
+  CompressedChunk(ColumnChunk chunk) {
+    this.size = chunk.size();
+    this.minTimestamp = chunk.minTimestamp();
+    this.maxTimestamp = chunk.maxTimestamp();
+    Encoder encoder = new Encoder(size * 8);
+    long previous = 0;
+    for (int i = 0; i < size; i++) {
+      encoder.writeSigned(chunk.timestamps[i] - previous);
+      previous = chunk.timestamps[i];
+    }
+    for (int i = 0; i < size; i++) {
+      encoder.writeSigned(chunk.itemIDs[i]);
+    }
+    for (int i = 0; i < size; i++) {
+      encoder.writeSigned(chunk.quantities[i]);
+    }
+    for (int i = 0; i < size; i++) {
+      encoder.writeSigned(chunk.netMinor[i]);
+    }
+    for (int i = 0; i < size; i++) {
+      encoder.writeSigned(chunk.vatMinor[i]);
+    }
+    for (int i = 0; i < size; i++) {
+      encoder.writeSigned(chunk.discountMinor[i]);
+    }
+    this.data = encoder.toByteArray();
+  }
+
+  @Override
+  public ColumnChunk columns() {
+    int[] position = { 0 };
+    long timestamp = 0;
+    long[] timestamps = new long[size];
+    for (int i = 0; i < size; i++) {
+      timestamp += readSigned(position);
+      timestamps[i] = timestamp;
+    }
+    int[] itemIDs = new int[size];
+    for (int i = 0; i < size; i++) {
+      itemIDs[i] = (int) readSigned(position);
+    }
+    int[] quantities = new int[size];
+    for (int i = 0; i < size; i++) {
+      quantities[i] = (int) readSigned(position);
+    }
+    long[] net = readLongColumn(position);
+    long[] vat = readLongColumn(position);
+    long[] discount = readLongColumn(position);
+    return new ColumnChunk(timestamps, itemIDs, quantities, net, vat, discount, minTimestamp, maxTimestamp);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public long minTimestamp() {
+    return minTimestamp;
+  }
+
+  @Override
+  public long maxTimestamp() {
+    return maxTimestamp;
+  }
+
+  @Override
+  public long memoryBytes() {
+    return data.length;
+  }
+
+  /**
+   * Reads one column of {@code long} values.
+   *
+   * @param position A one-element array holding the read position.
+   * @return The decoded column.
+   */
+  private long[] readLongColumn(int[] position) {
+    long[] column = new long[size];
+    for (int i = 0; i < size; i++) {
+      column[i] = readSigned(position);
+    }
+    return column;
+  }
+
+  /**
+   * Reads one zig-zag encoded variable-length integer.
+   *
+   * @param position A one-element array holding the read position, which is
+   *                 moved past the value.
+   * @return The decoded value.
+   */
+  private long readSigned(int[] position) {
+    long raw = 0;
+    int shift = 0;
+    int pos = position[0];
+    byte current;
+    do {
+      current = data[pos++];
+      raw |= (long) (current & 0x7F) << shift;
+      shift += 7;
+    } while (current < 0);
+    position[0] = pos;
+    return (raw >>> 1) ^ -(raw & 1);
+  }
+
+  /**
+   * Writes zig-zag encoded variable-length integers into a growing byte array.
+   */
+  private static class Encoder {
+    private byte[] buffer;
+    private int length;
+
+    Encoder(int initialCapacity) {
+      this.buffer = new byte[Math.max(16, initialCapacity)];
+      this.length = 0;
+    }
+
+    void writeSigned(long value) {
+      long raw = (value << 1) ^ (value >> 63);
+      if (length + 10 > buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      while ((raw & ~0x7FL) != 0) {
+        buffer[length++] = (byte) ((raw & 0x7F) | 0x80);
+        raw >>>= 7;
+      }
+      buffer[length++] = (byte) raw;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, length);
+    }
+  }
+}
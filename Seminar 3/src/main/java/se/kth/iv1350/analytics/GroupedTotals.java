@@ -0,0 +1,196 @@
+package se.kth.iv1350.analytics;
+
+import java.util.Arrays;
+
+/**
+ * The result of a group-by aggregation over a {@link SalesColumnStore}: the
+ * summed quantity, net, VAT and discount of every group.
+ * <p>
+ * Groups are identified by a {@code long} key produced by
+ * {@link SalesColumnStore.GroupBy#keyOf(int, long)} and are kept in an
+ * open-addressing hash table of primitive arrays, so adding a line never
+ * allocates. Partial results from parallel scans are combined with
+ * {@link #merge(GroupedTotals)}.
+ */
+public class GroupedTotals {
+  private static final long EMPTY = Long.MIN_VALUE;
+
+  private long[] keys;
+  private long[] quantities;
+  private long[] net;
+  private long[] vat;
+  private long[] discount;
+  private int size;
+
+  /**
+   * Creates a new, empty {@code GroupedTotals}.
+   */
+  GroupedTotals() {
+    allocate(64);
+  }
+
+  /**
+   * The totals of one group.
+   *
+   * @param quantity      The number of units sold.
+   * @param netMinor      The revenue excluding VAT, in minor units.
+   * @param vatMinor      The VAT, in minor units.
+   * @param discountMinor The discount given, in minor units.
+   */
+  public record Totals(long quantity, long netMinor, long vatMinor, long discountMinor) {
+    /**
+     * Returns the revenue including VAT, after discounts.
+     *
+     * @return The revenue in minor units.
+     */
+    public long revenueMinor() {
+      return netMinor + vatMinor - discountMinor;
+    }
+  }
+
+  /**
+   * Adds one line to its group.
+   *
+   * @param key           The group key.
+   * @param quantity      The quantity of the line.
+   * @param netMinor      The net amount of the line.
+   * @param vatMinor      The VAT of the line.
+   * @param discountMinor The discount of the line.
+   */
+  void add(long key, long quantity, long netMinor, long vatMinor, long discountMinor) {
+    int slot = slotOf(key);
+    if (keys[slot] == EMPTY) {
+      keys[slot] = key;
+      size++;
+      if (size * 2 > keys.length) {
+        grow();
+        slot = slotOf(key);
+      }
+    }
+    quantities[slot] += quantity;
+    net[slot] += netMinor;
+    vat[slot] += vatMinor;
+    discount[slot] += discountMinor;
+  }
+
+  /**
+   * Adds every group of another result to this one.
+   *
+   * @param other The partial result to merge.
+   * @return This object, holding the combined result.
+   */
+  GroupedTotals merge(GroupedTotals other) {
+    for (int i = 0; i < other.keys.length; i++) {
+      if (other.keys[i] != EMPTY) {
+        add(other.keys[i], other.quantities[i], other.net[i], other.vat[i], other.discount[i]);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Returns the totals of the group with the given key.
+   *
+   * @param key The group key.
+   * @return The {@link Totals} of the group, all zero if it has no lines.
+   */
+  public Totals get(long key) {
+    int slot = slotOf(key);
+    if (keys[slot] == EMPTY) {
+      return new Totals(0, 0, 0, 0);
+    }
+    return new Totals(quantities[slot], net[slot], vat[slot], discount[slot]);
+  }
+
+  /**
+   * Returns the keys of all groups, in ascending order.
+   *
+   * @return The group keys.
+   */
+  public long[] keys() {
+    long[] result = new long[size];
+    int index = 0;
+    for (long key : keys) {
+      if (key != EMPTY) {
+        result[index++] = key;
+      }
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Returns the number of groups.
+   *
+   * @return The number of groups.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the slot that holds the given key, or the empty slot where it
+   * would be inserted.
+   *
+   * @param key The group key.
+   * @return The slot index.
+   */
+  private int slotOf(long key) {
+    int mask = keys.length - 1;
+    int slot = (int) mix(key) & mask;
+    while (keys[slot] != EMPTY && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Spreads the bits of a key so that neighbouring keys end up in different
+   * slots.
+   *
+   * @param key The group key.
+   * @return The hash of the key.
+   */
+  private static long mix(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return h ^ (h >>> 32);
+  }
+
+  /**
+   * Replaces the table with an empty one of the given capacity.
+   *
+   * @param capacity The number of slots, a power of two.
+   */
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    Arrays.fill(keys, EMPTY);
+    quantities = new long[capacity];
+    net = new long[capacity];
+    vat = new long[capacity];
+    discount = new long[capacity];
+    size = 0;
+  }
+
+  /**
+   * Doubles the number of slots and reinserts every group.
+   */
+  private void grow() {
+    long[] oldKeys = keys;
+    long[] oldQuantities = quantities;
+    long[] oldNet = net;
+    long[] oldVat = vat;
+    long[] oldDiscount = discount;
+    allocate(oldKeys.length * 2);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != EMPTY) {
+        int slot = slotOf(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        quantities[slot] = oldQuantities[i];
+        net[slot] = oldNet[i];
+        vat[slot] = oldVat[i];
+        discount[slot] = oldDiscount[i];
+        size++;
+      }
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package se.kth.iv1350.analytics;
+
+/**
+ * Reports that an item is about to run out of stock, or already has.
+ *
+ * @param itemID               The ID of the item.
+ * @param stock                The current stock level. May be zero or
+ *                             negative if more units were sold than were
+ *                             registered in the inventory.
+ * @param unitsPerHour         The estimated current sell rate.
+ * @param millisUntilStockOut  The estimated time until the stock is gone,
+ *                             {@code 0} if it already is.
+ * @param timestampMillis      The time the event was raised, in milliseconds
+ *                             since the epoch.
+ */
+public record ReplenishmentEvent(int itemID, int stock, double unitsPerHour, long millisUntilStockOut,
+    long timestampMillis) {
+}
@@ -0,0 +1,14 @@
+package se.kth.iv1350.analytics;
+
+/**
+ * A listener that is notified when an item needs to be replenished.
+ */
+public interface ReplenishmentListener {
+  /**
+   * Invoked when the estimated time until an item runs out of stock falls
+   * below the configured threshold.
+   *
+   * @param event The {@link ReplenishmentEvent} describing the item.
+   */
+  void replenishmentNeeded(ReplenishmentEvent event);
+}
@@ -0,0 +1,40 @@
+package se.kth.iv1350.analytics;
+
+import java.io.PrintStream;
+
+/**
+ * A {@link ReplenishmentListener} that writes every replenishment alert as one
+ * line to a log stream. By default that is the standard error stream, so the
+ * alerts are kept apart from the output of the view.
+ */
+public class ReplenishmentLog implements ReplenishmentListener {
+  private final PrintStream log;
+
+  /**
+   * Creates a new {@code ReplenishmentLog} that writes to the standard error
+   * stream.
+   */
+  public ReplenishmentLog() {
+    this(System.err);
+  }
+
+  /**
+   * Creates a new {@code ReplenishmentLog} that writes to the given stream.
+   *
+   * @param log The stream to write the alerts to.
+   */
+  public ReplenishmentLog(PrintStream log) {
+    this.log = log;
+  }
+
+  /**
+   * Writes the alert for an item that needs to be replenished.
+   *
+   * @param event The {@link ReplenishmentEvent} describing the item.
+   */
+  @Override
+  public void replenishmentNeeded(ReplenishmentEvent event) {
+    log.printf("Replenishment needed for item %d: %d left, selling %.1f per hour.%n",
+        event.itemID(), event.stock(), event.unitsPerHour());
+  }
+}
@@ -0,0 +1,316 @@
+package se.kth.iv1350.analytics;
+
+import se.kth.iv1350.integration.SaleObserver;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * An in-process, column-oriented store of completed sale lines used for
+ * end-of-day reports such as revenue per item per hour.
+ * <p>
+ * Lines are appended to an active {@link ColumnChunk}. When it is full it is
+ * sealed and a new one is started. Reports scan all chunks in parallel on a
+ * {@link ForkJoinPool}, skip chunks outside the requested time range using
+ * each chunk's smallest and largest timestamp, and merge the partial group-by
+ * results. Chunks holding only old data can be compressed with
+ * {@link #compressOlderThan(long)}.
+ * <p>
+ * Amounts are stored in minor units. The discount of a sale is split over its
+ * lines by {@link SaleDTO#lineDiscountCents()}, so the line discounts of a
+ * sale always add up to the sale discount.
+ */
+public class SalesColumnStore implements SaleObserver {
+  private static final long MILLIS_PER_HOUR = 3_600_000L;
+
+  /**
+   * The ways lines can be grouped in a report.
+   */
+  public enum GroupBy {
+    /** One group per item ID. */
+    ITEM,
+    /** One group per hour, counted in UTC hours since the epoch. */
+    HOUR,
+    /** One group per item ID and hour. */
+    ITEM_AND_HOUR;
+
+    /**
+     * Returns the group key of a line.
+     *
+     * @param itemID    The item ID of the line.
+     * @param timestamp The time of the line in milliseconds since the epoch.
+     * @return The key of the group the line belongs to.
+     */
+    public long keyOf(int itemID, long timestamp) {
+      return switch (this) {
+        case ITEM -> itemID;
+        case HOUR -> Math.floorDiv(timestamp, MILLIS_PER_HOUR);
+        case ITEM_AND_HOUR -> ((long) itemID << 32) | Math.floorDiv(timestamp, MILLIS_PER_HOUR);
+      };
+    }
+  }
+
+  private final ForkJoinPool pool;
+  private final List<Chunk> sealed;
+  private ColumnChunk active;
+  private long lineCount;
+
+  /**
+   * Creates a new, empty {@code SalesColumnStore} that runs reports on the
+   * common fork-join pool.
+   */
+  public SalesColumnStore() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a new, empty {@code SalesColumnStore}.
+   *
+   * @param pool The {@link ForkJoinPool} reports are run on.
+   */
+  public SalesColumnStore(ForkJoinPool pool) {
+    this.pool = pool;
+    this.sealed = new ArrayList<>();
+    this.active = new ColumnChunk();
+    this.lineCount = 0;
+  }
+
+  /**
+   * Stores the lines of a completed sale.
+   *
+   * @param saleDTO The {@link SaleDTO} of the completed sale.
+   */
+  @Override
+  public void completedSale(SaleDTO saleDTO) {
+    append(saleDTO);
+  }
+
+  /**
+   * Stores the lines of a completed sale. A sale without a time of sale is
+   * stored with the current time.
+   *
+   * @param saleDTO The {@link SaleDTO} of the completed sale.
+   */
+  public void append(SaleDTO saleDTO) {
+    List<SaleItemDTO> lines = saleDTO.saleItems();
+    int count = lines.size();
+    if (count == 0) {
+      return;
+    }
+    long timestamp = saleDTO.datetime() != null ? saleDTO.datetime().getTime() : System.currentTimeMillis();
+    long[] net = new long[count];
+    long[] vat = new long[count];
+    for (int i = 0; i < count; i++) {
+      SaleItemDTO line = lines.get(i);
+      ItemDTO item = line.item();
+      net[i] = item.netCents() * line.quantity();
+      vat[i] = item.vatCents() * line.quantity();
+    }
+    long[] discounts = saleDTO.lineDiscountCents();
+    synchronized (this) {
+      for (int i = 0; i < count; i++) {
+        SaleItemDTO line = lines.get(i);
+        appendLine(timestamp, line.item().itemID(), line.quantity(), net[i], vat[i], discounts[i]);
+      }
+    }
+  }
+
+  /**
+   * Appends a single line, starting a new chunk if the active one is full.
+   * Must be called while holding the lock of this store.
+   *
+   * @param timestamp The time of the sale.
+   * @param itemID    The ID of the sold item.
+   * @param quantity  The number of units sold.
+   * @param net       The net amount in minor units.
+   * @param vat       The VAT in minor units.
+   * @param discount  The discount in minor units.
+   */
+  private void appendLine(long timestamp, int itemID, int quantity, long net, long vat, long discount) {
+    if (active.isFull()) {
+      sealed.add(active);
+      active = new ColumnChunk();
+    }
+    active.append(timestamp, itemID, quantity, net, vat, discount);
+    lineCount++;
+  }
+
+  /**
+   * Sums quantity, net, VAT and discount of all lines in the given time range,
+   * grouped as requested. The scan runs in parallel over all chunks.
+   *
+   * @param fromMillis The start of the range, inclusive, in milliseconds since
+   *                   the epoch.
+   * @param toMillis   The end of the range, exclusive.
+   * @param groupBy    How to group the lines.
+   * @return The {@link GroupedTotals} of every group.
+   */
+  public GroupedTotals aggregate(long fromMillis, long toMillis, GroupBy groupBy) {
+    return aggregate(fromMillis, toMillis, -1, groupBy);
+  }
+
+  /**
+   * Sums quantity, net, VAT and discount of the lines of one item in the given
+   * time range, grouped as requested.
+   *
+   * @param fromMillis The start of the range, inclusive.
+   * @param toMillis   The end of the range, exclusive.
+   * @param itemID     The item to include, or {@code -1} for all items.
+   * @param groupBy    How to group the lines.
+   * @return The {@link GroupedTotals} of every group.
+   */
+  public GroupedTotals aggregate(long fromMillis, long toMillis, int itemID, GroupBy groupBy) {
+    ChunkView[] views = snapshot();
+    return pool.invoke(new AggregationTask(views, 0, views.length, fromMillis, toMillis, itemID, groupBy));
+  }
+
+  /**
+   * Compresses every full chunk whose newest line is older than the given
+   * time. Compressed chunks use less memory but take longer to scan.
+   *
+   * @param cutoffMillis Chunks with all lines before this time are compressed.
+   * @return The number of chunks that were compressed.
+   */
+  public int compressOlderThan(long cutoffMillis) {
+    List<ColumnChunk> candidates = new ArrayList<>();
+    synchronized (this) {
+      for (Chunk chunk : sealed) {
+        if (chunk instanceof ColumnChunk columns && chunk.maxTimestamp() < cutoffMillis) {
+          candidates.add(columns);
+        }
+      }
+    }
+    int compressed = 0;
+    for (ColumnChunk candidate : candidates) {
+      CompressedChunk packed = new CompressedChunk(candidate);
+      synchronized (this) {
+        int index = sealed.indexOf(candidate);
+        if (index >= 0) {
+          sealed.set(index, packed);
+          compressed++;
+        }
+      }
+    }
+    return compressed;
+  }
+
+  /**
+   * Returns the number of stored lines.
+   *
+   * @return The number of lines.
+   */
+  public synchronized long lineCount() {
+    return lineCount;
+  }
+
+  /**
+   * Returns the approximate number of heap bytes used by the stored lines.
+   *
+   * @return The memory used by all chunks in bytes.
+   */
+  public synchronized long memoryBytes() {
+    long bytes = active.memoryBytes();
+    for (Chunk chunk : sealed) {
+      bytes += chunk.memoryBytes();
+    }
+    return bytes;
+  }
+
+  /**
+   * Captures the chunks to scan. Lines appended to the active chunk after the
+   * snapshot are beyond its captured size and are not seen by the scan.
+   *
+   * @return The chunks with the number of lines to scan in each.
+   */
+  private synchronized ChunkView[] snapshot() {
+    ChunkView[] views = new ChunkView[sealed.size() + 1];
+    for (int i = 0; i < sealed.size(); i++) {
+      views[i] = new ChunkView(sealed.get(i), sealed.get(i).size());
+    }
+    views[sealed.size()] = new ChunkView(active, active.size());
+    return views;
+  }
+
+  /**
+   * A chunk together with the number of its lines that a scan may read.
+   *
+   * @param chunk The chunk.
+   * @param limit The number of lines to scan.
+   */
+  private record ChunkView(Chunk chunk, int limit) {
+  }
+
+  /**
+   * Aggregates a range of chunks, splitting the range in half until a single
+   * chunk is left.
+   */
+  private static class AggregationTask extends RecursiveTask<GroupedTotals> {
+    private static final long serialVersionUID = 1L;
+
+    private final transient ChunkView[] views;
+    private final int from;
+    private final int to;
+    private final long fromMillis;
+    private final long toMillis;
+    private final int itemID;
+    private final GroupBy groupBy;
+
+    AggregationTask(ChunkView[] views, int from, int to, long fromMillis, long toMillis, int itemID,
+        GroupBy groupBy) {
+      this.views = views;
+      this.from = from;
+      this.to = to;
+      this.fromMillis = fromMillis;
+      this.toMillis = toMillis;
+      this.itemID = itemID;
+      this.groupBy = groupBy;
+    }
+
+    @Override
+    protected GroupedTotals compute() {
+      if (to - from <= 1) {
+        GroupedTotals totals = new GroupedTotals();
+        if (to > from) {
+          scan(views[from], totals);
+        }
+        return totals;
+      }
+      int middle = (from + to) >>> 1;
+      AggregationTask left = new AggregationTask(views, from, middle, fromMillis, toMillis, itemID, groupBy);
+      AggregationTask right = new AggregationTask(views, middle, to, fromMillis, toMillis, itemID, groupBy);
+      left.fork();
+      GroupedTotals rightTotals = right.compute();
+      return left.join().merge(rightTotals);
+    }
+
+    /**
+     * Adds every matching line of one chunk to the totals. Chunks entirely
+     * outside the time range are skipped without being read.
+     *
+     * @param view   The chunk to scan.
+     * @param totals The totals to add the lines to.
+     */
+    private void scan(ChunkView view, GroupedTotals totals) {
+      Chunk chunk = view.chunk();
+      if (view.limit() == 0 || chunk.maxTimestamp() < fromMillis || chunk.minTimestamp() >= toMillis) {
+        return;
+      }
+      ColumnChunk columns = chunk.columns();
+      long[] timestamps = columns.timestamps;
+      int[] itemIDs = columns.itemIDs;
+      for (int i = 0; i < view.limit(); i++) {
+        long timestamp = timestamps[i];
+        if (timestamp < fromMillis || timestamp >= toMillis || (itemID >= 0 && itemIDs[i] != itemID)) {
+          continue;
+        }
+        totals.add(groupBy.keyOf(itemIDs[i], timestamp), columns.quantities[i], columns.netMinor[i],
+            columns.vatMinor[i], columns.discountMinor[i]);
+      }
+    }
+  }
+}
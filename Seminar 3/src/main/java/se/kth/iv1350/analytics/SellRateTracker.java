@@ -0,0 +1,278 @@
+package se.kth.iv1350.analytics;
+
+import se.kth.iv1350.integration.InventorySys;
+import se.kth.iv1350.integration.SaleObserver;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks how fast items are selling right now and warns before they run out
+ * of stock. Fed with every completed sale.
+ * <p>
+ * Sell rates over a sliding window are estimated with a
+ * {@link WindowedCountMinSketch}, and the best selling items are kept in a
+ * min-heap of fixed size, so memory use does not grow with the size of the
+ * catalog. After each sale the estimated time until each sold item runs out
+ * is computed from its current stock and sell rate. When it falls below the
+ * alert threshold, every {@link ReplenishmentListener} is notified. An item is
+ * reported at most once per window.
+ */
+public class SellRateTracker implements SaleObserver {
+  private static final int SKETCH_DEPTH = 4;
+  private static final int SKETCH_WIDTH = 2048;
+  private static final int SLOT_COUNT = 12;
+  private static final int MAX_TRACKED_ALERTS = 1024;
+  private static final double MILLIS_PER_HOUR = 3_600_000.0;
+
+  private final IntUnaryOperator stockLevel;
+  private final long alertThresholdMillis;
+  private final int topK;
+  private final LongSupplier clock;
+  private final WindowedCountMinSketch sketch;
+  private final PriorityQueue<Candidate> topHeap;
+  private final Map<Integer, Candidate> topIndex;
+  private final Map<Integer, Long> lastAlerts;
+  private final List<ReplenishmentListener> listeners;
+
+  /**
+   * An item in the top-K heap together with its last estimated count.
+   */
+  private static class Candidate {
+    private final int itemID;
+    private long estimate;
+
+    Candidate(int itemID, long estimate) {
+      this.itemID = itemID;
+      this.estimate = estimate;
+    }
+  }
+
+  /**
+   * The sell rate of one item.
+   *
+   * @param itemID       The ID of the item.
+   * @param unitsPerHour The estimated number of units sold per hour.
+   */
+  public record ItemRate(int itemID, double unitsPerHour) {
+  }
+
+  /**
+   * Creates a new {@code SellRateTracker} that reads stock levels from the
+   * given inventory, with a one hour window, a four hour alert threshold and
+   * the ten best selling items.
+   *
+   * @param inventory The {@link InventorySys} holding the stock levels.
+   */
+  public SellRateTracker(InventorySys inventory) {
+    this(inventory::getQuantity, 3_600_000L, 4 * 3_600_000L, 10, System::currentTimeMillis);
+  }
+
+  /**
+   * Creates a new {@code SellRateTracker}.
+   *
+   * @param stockLevel           Returns the current stock level of an item ID.
+   * @param windowMillis         The length of the sliding window sell rates
+   *                             are measured over.
+   * @param alertThresholdMillis Items estimated to run out sooner than this
+   *                             are reported.
+   * @param topK                 The number of best selling items to track.
+   * @param clock                Returns the current time in milliseconds.
+   * @throws IllegalArgumentException if {@code topK} is not positive.
+   */
+  public SellRateTracker(IntUnaryOperator stockLevel, long windowMillis, long alertThresholdMillis, int topK,
+      LongSupplier clock) {
+    if (topK <= 0) {
+      throw new IllegalArgumentException("Top-K must be greater than zero.");
+    }
+    this.stockLevel = stockLevel;
+    this.alertThresholdMillis = alertThresholdMillis;
+    this.topK = topK;
+    this.clock = clock;
+    this.sketch = new WindowedCountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH, windowMillis, SLOT_COUNT);
+    this.topHeap = new PriorityQueue<>(topK, (a, b) -> Long.compare(a.estimate, b.estimate));
+    this.topIndex = new HashMap<>();
+    this.lastAlerts = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Long> eldest) {
+        return size() > MAX_TRACKED_ALERTS;
+      }
+    };
+    this.listeners = new ArrayList<>();
+  }
+
+  /**
+   * Registers a listener for replenishment events.
+   *
+   * @param listener The {@link ReplenishmentListener} to notify.
+   */
+  public synchronized void addReplenishmentListener(ReplenishmentListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Records the sold units of a completed sale and checks the stock of every
+   * sold item.
+   *
+   * @param saleDTO The {@link SaleDTO} of the completed sale.
+   */
+  @Override
+  public synchronized void completedSale(SaleDTO saleDTO) {
+    long now = clock.getAsLong();
+    for (SaleItemDTO line : saleDTO.saleItems()) {
+      int itemID = line.item().itemID();
+      sketch.add(itemID, line.quantity(), now);
+      long estimate = sketch.estimate(itemID, now);
+      offerTopK(itemID, estimate, now);
+      checkStock(itemID, estimate, now);
+    }
+  }
+
+  /**
+   * Returns the estimated current sell rate of an item.
+   *
+   * @param itemID The ID of the item.
+   * @return The estimated number of units sold per hour.
+   */
+  public synchronized double unitsPerHour(int itemID) {
+    return toUnitsPerHour(sketch.estimate(itemID, clock.getAsLong()));
+  }
+
+  /**
+   * Returns the estimated time until an item runs out of stock at its current
+   * sell rate.
+   *
+   * @param itemID The ID of the item.
+   * @return The time in milliseconds, {@code 0} if the item is already out of
+   *         stock, or {@link Long#MAX_VALUE} if it is not selling.
+   */
+  public synchronized long millisUntilStockOut(int itemID) {
+    return millisUntilStockOut(stockLevel.applyAsInt(itemID), sketch.estimate(itemID, clock.getAsLong()));
+  }
+
+  /**
+   * Returns the best selling items during the current window, best first.
+   *
+   * @return Up to {@code topK} {@link ItemRate}s.
+   */
+  public synchronized List<ItemRate> topSellers() {
+    rescoreTopK(clock.getAsLong());
+    List<ItemRate> rates = new ArrayList<>(topHeap.size());
+    for (Candidate candidate : topHeap) {
+      rates.add(new ItemRate(candidate.itemID, toUnitsPerHour(candidate.estimate)));
+    }
+    rates.sort((a, b) -> Double.compare(b.unitsPerHour(), a.unitsPerHour()));
+    return rates;
+  }
+
+  /**
+   * Offers an item to the top-K heap. The item replaces the weakest entry if
+   * its estimate is higher. The heap is re-scored first if the item would
+   * otherwise be turned away, since the estimates of the entries drop as
+   * their sales leave the window.
+   *
+   * @param itemID   The ID of the item.
+   * @param estimate The current estimated count of the item.
+   * @param now      The current time in milliseconds.
+   */
+  private void offerTopK(int itemID, long estimate, long now) {
+    Candidate existing = topIndex.get(itemID);
+    if (existing != null) {
+      topHeap.remove(existing);
+      existing.estimate = estimate;
+      topHeap.add(existing);
+      return;
+    }
+    if (topHeap.size() == topK && topHeap.peek().estimate >= estimate) {
+      rescoreTopK(now);
+    }
+    if (topHeap.size() == topK) {
+      if (topHeap.peek().estimate >= estimate) {
+        return;
+      }
+      topIndex.remove(topHeap.poll().itemID);
+    }
+    Candidate candidate = new Candidate(itemID, estimate);
+    topHeap.add(candidate);
+    topIndex.put(itemID, candidate);
+  }
+
+  /**
+   * Re-estimates every entry of the top-K heap and drops the entries that
+   * have no sales left in the window.
+   *
+   * @param now The current time in milliseconds.
+   */
+  private void rescoreTopK(long now) {
+    List<Candidate> candidates = new ArrayList<>(topHeap);
+    topHeap.clear();
+    for (Candidate candidate : candidates) {
+      candidate.estimate = sketch.estimate(candidate.itemID, now);
+      if (candidate.estimate > 0) {
+        topHeap.add(candidate);
+      } else {
+        topIndex.remove(candidate.itemID);
+      }
+    }
+  }
+
+  /**
+   * Notifies the listeners if the item will run out of stock within the alert
+   * threshold and has not been reported during the current window.
+   *
+   * @param itemID   The ID of the item.
+   * @param estimate The current estimated count of the item.
+   * @param now      The current time in milliseconds.
+   */
+  private void checkStock(int itemID, long estimate, long now) {
+    int stock = stockLevel.applyAsInt(itemID);
+    long remaining = millisUntilStockOut(stock, estimate);
+    if (remaining >= alertThresholdMillis) {
+      return;
+    }
+    Long lastAlert = lastAlerts.get(itemID);
+    if (lastAlert != null && now - lastAlert < sketch.windowMillis()) {
+      return;
+    }
+    lastAlerts.put(itemID, now);
+    ReplenishmentEvent event = new ReplenishmentEvent(itemID, stock, toUnitsPerHour(estimate), remaining, now);
+    for (ReplenishmentListener listener : listeners) {
+      listener.replenishmentNeeded(event);
+    }
+  }
+
+  /**
+   * Computes the time until the stock is gone at the given sell rate.
+   *
+   * @param stock    The current stock level.
+   * @param estimate The number of units sold during the window.
+   * @return The time in milliseconds.
+   */
+  private long millisUntilStockOut(int stock, long estimate) {
+    if (stock <= 0) {
+      return 0;
+    }
+    if (estimate == 0) {
+      return Long.MAX_VALUE;
+    }
+    return (long) ((double) stock * sketch.windowMillis() / estimate);
+  }
+
+  /**
+   * Converts a count over the window to a rate per hour.
+   *
+   * @param estimate The number of units sold during the window.
+   * @return The number of units per hour.
+   */
+  private double toUnitsPerHour(long estimate) {
+    return estimate * MILLIS_PER_HOUR / sketch.windowMillis();
+  }
+}
@@ -0,0 +1,141 @@
+package se.kth.iv1350.analytics;
+
+import java.util.Arrays;
+
+/**
+ * A Count-Min Sketch over a sliding time window. It estimates how many units
+ * of each item were sold during the last window using a fixed amount of
+ * memory, however many different items there are.
+ * <p>
+ * The window is split into a ring of equally long slots, each with its own
+ * sketch. Adding a count goes to the slot of the current time. When time moves
+ * past a slot, the oldest slot is cleared and reused. An estimate is the sum
+ * over all slots of the smallest counter the item hashes to, so it may be too
+ * high because of collisions but never too low.
+ */
+class WindowedCountMinSketch {
+  private static final long[] SEEDS = {
+      0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+      0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L };
+
+  private final int depth;
+  private final int width;
+  private final long slotMillis;
+  private final long[][] slots;
+  private final long[] slotStarts;
+
+  /**
+   * Creates a new, empty {@code WindowedCountMinSketch}.
+   *
+   * @param depth        The number of hash rows, at most 8. More rows lower
+   *                     the chance of a bad estimate.
+   * @param width        The number of counters per row, a power of two. More
+   *                     counters lower the size of the error.
+   * @param windowMillis The length of the window in milliseconds.
+   * @param slotCount    The number of slots the window is split into.
+   * @throws IllegalArgumentException if any argument is out of range.
+   */
+  WindowedCountMinSketch(int depth, int width, long windowMillis, int slotCount) {
+    if (depth <= 0 || depth > SEEDS.length) {
+      throw new IllegalArgumentException("Depth must be between 1 and " + SEEDS.length + ".");
+    }
+    if (width <= 0 || Integer.bitCount(width) != 1) {
+      throw new IllegalArgumentException("Width must be a power of two.");
+    }
+    if (slotCount <= 0 || windowMillis < slotCount) {
+      throw new IllegalArgumentException("The window must be at least one millisecond per slot.");
+    }
+    this.depth = depth;
+    this.width = width;
+    this.slotMillis = windowMillis / slotCount;
+    this.slots = new long[slotCount][depth * width];
+    this.slotStarts = new long[slotCount];
+    Arrays.fill(slotStarts, Long.MIN_VALUE);
+  }
+
+  /**
+   * Adds a count for an item at the given time.
+   *
+   * @param itemID    The item ID.
+   * @param count     The number of units.
+   * @param nowMillis The current time in milliseconds.
+   */
+  void add(int itemID, long count, long nowMillis) {
+    long[] counters = slotFor(nowMillis);
+    for (int row = 0; row < depth; row++) {
+      counters[row * width + column(itemID, row)] += count;
+    }
+  }
+
+  /**
+   * Estimates the number of units of an item added during the window that
+   * ends at the given time.
+   *
+   * @param itemID    The item ID.
+   * @param nowMillis The current time in milliseconds.
+   * @return The estimated count, never lower than the real count.
+   */
+  long estimate(int itemID, long nowMillis) {
+    long oldestSlotStart = slotStart(nowMillis) - slotMillis * (slots.length - 1);
+    long total = 0;
+    for (int slot = 0; slot < slots.length; slot++) {
+      if (slotStarts[slot] < oldestSlotStart || slotStarts[slot] > nowMillis) {
+        continue;
+      }
+      long smallest = Long.MAX_VALUE;
+      for (int row = 0; row < depth; row++) {
+        smallest = Math.min(smallest, slots[slot][row * width + column(itemID, row)]);
+      }
+      total += smallest;
+    }
+    return total;
+  }
+
+  /**
+   * Returns the length of the window.
+   *
+   * @return The window length in milliseconds.
+   */
+  long windowMillis() {
+    return slotMillis * slots.length;
+  }
+
+  /**
+   * Returns the counters of the slot for the given time, clearing the slot if
+   * it still holds counts from an earlier round of the ring.
+   *
+   * @param nowMillis The current time in milliseconds.
+   * @return The counters of the slot.
+   */
+  private long[] slotFor(long nowMillis) {
+    long start = slotStart(nowMillis);
+    int index = (int) Math.floorMod(Math.floorDiv(nowMillis, slotMillis), (long) slots.length);
+    if (slotStarts[index] != start) {
+      Arrays.fill(slots[index], 0);
+      slotStarts[index] = start;
+    }
+    return slots[index];
+  }
+
+  /**
+   * Returns the start time of the slot that contains the given time.
+   *
+   * @param nowMillis The time in milliseconds.
+   * @return The start of the slot.
+   */
+  private long slotStart(long nowMillis) {
+    return Math.floorDiv(nowMillis, slotMillis) * slotMillis;
+  }
+
+  /**
+   * Returns the counter column of an item in the given row.
+   *
+   * @param itemID The item ID.
+   * @param row    The hash row.
+   * @return The column index.
+   */
+  private int column(int itemID, int row) {
+    long hash = (itemID + 1L) * SEEDS[row];
+    return (int) (hash >>> 40) & (width - 1);
+  }
+}
@@ -1,8 +1,13 @@
 package se.kth.iv1350.controller;
 
 import se.kth.iv1350.integration.*;
+import se.kth.iv1350.metrics.MetricsRegistry;
+import se.kth.iv1350.metrics.OperationMetrics;
 import se.kth.iv1350.model.classes.*;
 import se.kth.iv1350.model.dto.*;
+import se.kth.iv1350.model.promotion.PromotionEngine;
+import se.kth.iv1350.model.promotion.PromotionEvaluator;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -18,6 +23,26 @@ public class Controller {
   private final InventorySys invSys;
   private final AccountingSys accSys;
   private final Printer printer;
+  private final MetricsRegistry metrics;
+  private final OperationMetrics scanItemMetrics;
+  private final OperationMetrics discountRequestMetrics;
+  private final OperationMetrics amountPaidMetrics;
+  private final OperationMetrics completeSaleMetrics;
+  private final OperationMetrics getItemMetrics;
+  private final OperationMetrics updateInventoryMetrics;
+  private final OperationMetrics getDiscountsMetrics;
+  private final OperationMetrics sendSaleInfoMetrics;
+  private final OperationMetrics printReceiptMetrics;
+  private final List<SaleObserver> saleObservers;
+  private final List<StockReservations.Reservation> saleReservations;
+  private final CompletionFilter completionFilter;
+  private StockReservations stockReservations;
+  private ItemInterner itemInterner;
+  private CustomerProfileCache customerProfiles;
+  private SaleReplicator saleReplicator;
+  private PromotionEngine promotionEngine;
+  private PromotionEvaluator promotionEvaluator;
+  private SalePool salePool;
   private Sale sale;
 
   /**
@@ -29,18 +54,194 @@ public class Controller {
    * @param printer    The {@link Printer} for printing receipts.
    */
   public Controller(DiscountDBHandler dDBHandler, InventorySys invSys, AccountingSys accSys, Printer printer) {
+    this(dDBHandler, invSys, accSys, printer, new MetricsRegistry());
+  }
+
+  /**
+   * Creates a new {@code Controller} with the specified system handlers that
+   * reports the latency and failures of its operations, and of every call to an
+   * external system, to the given registry.
+   *
+   * @param dDBHandler The {@link DiscountDBHandler} for managing discounts.
+   * @param invSys     The {@link InventorySys} for inventory management.
+   * @param accSys     The {@link AccountingSys} for accounting integration.
+   * @param printer    The {@link Printer} for printing receipts.
+   * @param metrics    The {@link MetricsRegistry} to report to.
+   */
+  public Controller(DiscountDBHandler dDBHandler, InventorySys invSys, AccountingSys accSys, Printer printer,
+      MetricsRegistry metrics) {
     this.dDBHandler = dDBHandler;
     this.invSys = invSys;
     this.accSys = accSys;
     this.printer = printer;
+    this.metrics = metrics;
+    this.scanItemMetrics = metrics.operation("controller_scan_item");
+    this.discountRequestMetrics = metrics.operation("controller_signal_discount_request");
+    this.amountPaidMetrics = metrics.operation("controller_set_amount_paid");
+    this.completeSaleMetrics = metrics.operation("controller_complete_sale");
+    this.getItemMetrics = metrics.operation("inventory_get_item");
+    this.updateInventoryMetrics = metrics.operation("inventory_update_inventory");
+    this.getDiscountsMetrics = metrics.operation("discount_db_get_discounts");
+    this.sendSaleInfoMetrics = metrics.operation("accounting_send_sale_info");
+    this.printReceiptMetrics = metrics.operation("printer_print_receipt");
+    this.saleObservers = new ArrayList<>();
+    this.saleReservations = new ArrayList<>();
+    this.completionFilter = new CompletionFilter();
+    metrics.gauge("controller_duplicate_completions_total", completionFilter::getDuplicateCount);
+    this.stockReservations = null;
+    this.itemInterner = null;
+    this.customerProfiles = null;
+    this.saleReplicator = null;
+    this.promotionEngine = null;
+    this.promotionEvaluator = null;
+    this.salePool = null;
     this.sale = null;
   }
 
   /**
-   * Starts a new sale.
+   * Returns the registry that the metrics of this controller are reported to.
+   *
+   * @return The {@link MetricsRegistry} of this controller.
+   */
+  public MetricsRegistry getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Registers an observer that is notified of every completed sale.
+   *
+   * @param observer The {@link SaleObserver} to notify.
+   */
+  public void addSaleObserver(SaleObserver observer) {
+    saleObservers.add(observer);
+  }
+
+  /**
+   * Makes every scan reserve stock, so that an item cannot be sold by two
+   * registers at once when only one unit is left. The reservations of a sale
+   * are committed when the sale completes and released when it is abandoned.
+   *
+   * @param stockReservations The {@link StockReservations} to reserve stock in.
+   */
+  public void setStockReservations(StockReservations stockReservations) {
+    this.stockReservations = stockReservations;
+  }
+
+  /**
+   * Makes every scanned item go through the given interner, so that all lines
+   * of the same item, in this and other sales, share one {@link ItemDTO}.
+   *
+   * @param itemInterner The {@link ItemInterner} to intern items in.
+   */
+  public void setItemInterner(ItemInterner itemInterner) {
+    this.itemInterner = itemInterner;
+  }
+
+  /**
+   * Makes discount requests look customer discounts up in the given cache
+   * instead of asking the discount database every time.
+   *
+   * @param customerProfiles The {@link CustomerProfileCache} to look customers
+   *                         up in.
+   */
+  public void setCustomerProfileCache(CustomerProfileCache customerProfiles) {
+    this.customerProfiles = customerProfiles;
+  }
+
+  /**
+   * Streams every change to the open sale to a standby process, so that the
+   * standby can take the sale over if this process dies.
+   *
+   * @param saleReplicator The {@link SaleReplicator} connected to the
+   *                       standby.
+   */
+  public void setSaleReplicator(SaleReplicator saleReplicator) {
+    this.saleReplicator = saleReplicator;
+  }
+
+  /**
+   * Makes every sale apply the promotions of the given engine. The promotion
+   * discount is updated at every scan, so the running total shown to the
+   * customer already includes it. Takes effect from the next sale.
+   *
+   * @param promotionEngine The {@link PromotionEngine} holding the promotions.
+   */
+  public void setPromotionEngine(PromotionEngine promotionEngine) {
+    this.promotionEngine = promotionEngine;
+  }
+
+  /**
+   * Makes this controller take its sales from the given pool, and give each
+   * sale back when the next one starts or when it is abandoned. The data
+   * handed to observers and external systems is copied from the sale, so it
+   * stays valid, but a {@link Sale} returned by
+   * {@link #signalDiscountRequest(int)} must not be used after that.
+   *
+   * @param salePool The {@link SalePool} of this lane.
+   */
+  public void setSalePool(SalePool salePool) {
+    this.salePool = salePool;
+  }
+
+  /**
+   * Starts a new sale. Stock reserved by a sale that was never completed is
+   * released.
    */
   public void startNewSale() {
-    this.sale = new Sale();
+    releaseReservations();
+    closeReplicatedSale();
+    recycleSale();
+    this.sale = salePool == null ? new Sale() : salePool.take();
+    replicate();
+    this.promotionEvaluator = promotionEngine == null ? null : promotionEngine.newEvaluator();
+  }
+
+  /**
+   * Abandons the current sale and releases any stock reserved for it.
+   */
+  public void abandonSale() {
+    releaseReservations();
+    closeReplicatedSale();
+    recycleSale();
+    this.sale = null;
+    this.promotionEvaluator = null;
+  }
+
+  /**
+   * Returns a checkpoint of the current sale, from which
+   * {@link #recoverSale(byte[])} can rebuild it on this or another register.
+   *
+   * @return The encoded event log of the sale.
+   * @throws IllegalStateException if no sale is in progress.
+   */
+  public byte[] checkpointSale() {
+    if (sale == null) {
+      throw new IllegalStateException("No sale in progress.");
+    }
+    return sale.getEventLog().toByteArray();
+  }
+
+  /**
+   * Continues a sale from a checkpoint made by {@link #checkpointSale()}, for
+   * example after the register restarted in the middle of the sale. Any sale
+   * in progress is abandoned. Stock reserved by the original register is not
+   * carried over.
+   *
+   * @param checkpoint The encoded event log of the sale.
+   * @throws IllegalArgumentException if the checkpoint is not a sale event
+   *                                  log.
+   */
+  public void recoverSale(byte[] checkpoint) {
+    Sale recovered = Sale.replay(SaleEventLog.fromBytes(checkpoint));
+    abandonSale();
+    this.sale = recovered;
+    if (promotionEngine != null) {
+      this.promotionEvaluator = promotionEngine.newEvaluator();
+      for (SaleItem saleItem : recovered.getSaleItems()) {
+        promotionEvaluator.setQuantity(saleItem.getItem(), saleItem.getQuantity());
+      }
+    }
+    replicate();
   }
 
   /**
@@ -64,17 +265,36 @@ public class Controller {
    * @return The {@link ItemDTO} representing the scanned item.
    * @throws IllegalArgumentException if the item is not found or quantity is not
    *                                  positive.
+   * @throws IllegalStateException    if stock reservations are enabled and not
+   *                                  enough units are in stock.
    */
   public ItemDTO scanItem(int itemID, int quantity) {
-    ItemDTO item = invSys.getItem(itemID);
-    if (item == null) {
-      throw new IllegalArgumentException("Item not found in inventory.");
-    }
-    if (quantity <= 0) {
-      throw new IllegalArgumentException("Quantity must be greater than zero.");
+    long start = System.nanoTime();
+    try {
+      ItemDTO item = fetchItem(itemID);
+      if (item == null) {
+        throw new IllegalArgumentException("Item not found in inventory.");
+      }
+      if (itemInterner != null) {
+        item = itemInterner.intern(item);
+      }
+      if (quantity <= 0) {
+        throw new IllegalArgumentException("Quantity must be greater than zero.");
+      }
+      if (stockReservations != null) {
+        saleReservations.add(stockReservations.reserve(itemID, quantity));
+      }
+      sale.addItem(item, quantity);
+      if (promotionEvaluator != null) {
+        sale.setPromotionDiscount(promotionEvaluator.add(item, quantity) / 100.0);
+      }
+      replicate();
+      scanItemMetrics.recordSuccess(System.nanoTime() - start);
+      return item;
+    } catch (RuntimeException e) {
+      scanItemMetrics.recordFailure(System.nanoTime() - start);
+      throw e;
     }
-    sale.addItem(item, quantity);
-    return item;
   }
 
   /**
@@ -85,18 +305,37 @@ public class Controller {
    * @throws IllegalStateException if no sale is in progress.
    */
   public Sale signalDiscountRequest(int customerID) {
-    if (sale == null) {
-      throw new IllegalStateException("No sale in progress.");
-    }
-    SaleDTO saleDTO = new SaleDTO(sale);
-    double customerDiscounts = dDBHandler.getDiscounts(customerID); // percentage discounts
-    double itemsDiscounts = dDBHandler.getDiscounts(saleDTO); // fixed discounts
-    double totalPriceDiscounts = dDBHandler.getDiscounts(sale.getTotalPrice()); // percentage discounts
+    long start = System.nanoTime();
+    try {
+      if (sale == null) {
+        throw new IllegalStateException("No sale in progress.");
+      }
+      SaleDTO saleDTO = new SaleDTO(sale);
+      double customerDiscounts;
+      double itemsDiscounts;
+      double totalPriceDiscounts;
+      long callStart = System.nanoTime();
+      try {
+        customerDiscounts = customerProfiles != null ? customerProfiles.getDiscounts(customerID)
+            : dDBHandler.getDiscounts(customerID); // percentage discounts
+        itemsDiscounts = dDBHandler.getDiscounts(saleDTO); // fixed discounts
+        totalPriceDiscounts = dDBHandler.getDiscounts(sale.getTotalPrice()); // percentage discounts
+      } catch (RuntimeException e) {
+        getDiscountsMetrics.recordFailure(System.nanoTime() - callStart);
+        throw e;
+      }
+      getDiscountsMetrics.recordSuccess(System.nanoTime() - callStart);
 
-    this.sale.addFixedDiscount(itemsDiscounts);
-    this.sale.addPercentageDiscount(customerDiscounts);
-    this.sale.addPercentageDiscount(totalPriceDiscounts);
-    return sale;
+      this.sale.addFixedDiscount(itemsDiscounts);
+      this.sale.addPercentageDiscount(customerDiscounts);
+      this.sale.addPercentageDiscount(totalPriceDiscounts);
+      replicate();
+      discountRequestMetrics.recordSuccess(System.nanoTime() - start);
+      return sale;
+    } catch (RuntimeException e) {
+      discountRequestMetrics.recordFailure(System.nanoTime() - start);
+      throw e;
+    }
   }
 
   /**
@@ -109,27 +348,191 @@ public class Controller {
    * @throws IllegalArgumentException if the amount paid is negative.
    */
   public double setAmountPaid(double amountPaid) {
+    long start = System.nanoTime();
+    try {
+      if (sale == null) {
+        throw new IllegalStateException("No sale in progress.");
+      }
+      if (amountPaid < 0) {
+        throw new IllegalArgumentException("Amount paid cannot be negative.");
+      }
+      double change = sale.getAmountChange(amountPaid);
+      replicate();
+      completeSale();
+      amountPaidMetrics.recordSuccess(System.nanoTime() - start);
+      return change;
+    } catch (RuntimeException e) {
+      amountPaidMetrics.recordFailure(System.nanoTime() - start);
+      throw e;
+    }
+  }
+
+  /**
+   * Completes the sale by printing the receipt, sending sale info to the
+   * accounting system,
+   * and updating the inventory. A sale that has already been completed is not
+   * completed again, so a retried payment neither prints a second receipt nor
+   * books or removes stock twice. If completing fails, the sale may be
+   * completed again.
+   *
+   * @return {@code true} if the sale was completed, {@code false} if it had
+   *         already been completed.
+   * @throws IllegalStateException if no sale is in progress.
+   */
+  public boolean completeSale() {
     if (sale == null) {
       throw new IllegalStateException("No sale in progress.");
     }
-    if (amountPaid < 0) {
-      throw new IllegalArgumentException("Amount paid cannot be negative.");
+    long start = System.nanoTime();
+    long callStart = start;
+    OperationMetrics currentCall = null;
+    long saleID = sale.getSaleID();
+    if (!completionFilter.tryComplete(saleID)) {
+      return false;
+    }
+    try {
+      renewReservations();
+      SaleDTO saleDTO = new SaleDTO(sale);
+      Receipt receipt = new Receipt(saleDTO);
+
+      currentCall = printReceiptMetrics;
+      callStart = System.nanoTime();
+      this.printer.printReceipt(receipt);
+      callStart = recordCall(currentCall, callStart);
+
+      currentCall = sendSaleInfoMetrics;
+      this.accSys.sendSaleInfo(saleDTO);
+      callStart = recordCall(currentCall, callStart);
+
+      currentCall = updateInventoryMetrics;
+      this.invSys.updateInventory(saleDTO);
+      recordCall(currentCall, callStart);
+      currentCall = null;
+      commitReservations();
+
+      notifyObservers(saleDTO);
+      if (saleReplicator != null) {
+        saleReplicator.saleClosed(saleID);
+      }
+      completeSaleMetrics.recordSuccess(System.nanoTime() - start);
+      return true;
+    } catch (RuntimeException e) {
+      completionFilter.completionFailed(saleID);
+      long now = System.nanoTime();
+      if (currentCall != null) {
+        currentCall.recordFailure(now - callStart);
+      }
+      completeSaleMetrics.recordFailure(now - start);
+      throw e;
+    }
+  }
+
+  /**
+   * Sends the changes to the open sale to the standby, if there is one.
+   */
+  private void replicate() {
+    if (saleReplicator != null) {
+      saleReplicator.replicate(sale.getSaleID(), sale.getEventLog());
     }
-    double change = sale.getAmountChange(amountPaid);
-    completeSale();
-    return change;
   }
 
   /**
-   * Completes the sale by printing the receipt, sending sale info to the
-   * accounting system,
-   * and updating the inventory.
-   */
-  public void completeSale() {
-    SaleDTO saleDTO = new SaleDTO(sale);
-    Receipt receipt = new Receipt(saleDTO);
-    this.printer.printReceipt(receipt);
-    this.accSys.sendSaleInfo(saleDTO);
-    this.invSys.updateInventory(saleDTO);
+   * Tells the standby that the open sale will not be continued, if there is a
+   * standby and an open sale.
+   */
+  private void closeReplicatedSale() {
+    if (saleReplicator != null && sale != null) {
+      saleReplicator.saleClosed(sale.getSaleID());
+    }
+  }
+
+  /**
+   * Gives the current sale back to the sale pool, if there is a pool and a
+   * sale.
+   */
+  private void recycleSale() {
+    if (salePool != null && sale != null) {
+      salePool.release(sale);
+    }
+  }
+
+  /**
+   * Reserves the stock of the current sale again where the hold has expired,
+   * so the sale never takes units another register holds.
+   *
+   * @throws IllegalStateException if the units of an expired hold have been
+   *                               taken meanwhile.
+   */
+  private void renewReservations() {
+    for (int i = 0; i < saleReservations.size(); i++) {
+      saleReservations.set(i, stockReservations.renew(saleReservations.get(i)));
+    }
+  }
+
+  /**
+   * Drops the holds of the current sale once it has been removed from the
+   * inventory.
+   */
+  private void commitReservations() {
+    for (StockReservations.Reservation reservation : saleReservations) {
+      stockReservations.commit(reservation);
+    }
+    saleReservations.clear();
+  }
+
+  /**
+   * Gives the stock reserved for the current sale back.
+   */
+  private void releaseReservations() {
+    for (StockReservations.Reservation reservation : saleReservations) {
+      stockReservations.release(reservation);
+    }
+    saleReservations.clear();
+  }
+
+  /**
+   * Notifies all registered observers that a sale has been completed.
+   *
+   * @param saleDTO The {@link SaleDTO} of the completed sale.
+   */
+  private void notifyObservers(SaleDTO saleDTO) {
+    for (SaleObserver observer : saleObservers) {
+      observer.completedSale(saleDTO);
+    }
+  }
+
+  /**
+   * Records a successful call to an external system that started at the given
+   * time.
+   *
+   * @param call      The {@link OperationMetrics} of the call.
+   * @param callStart The value of {@link System#nanoTime()} when the call
+   *                  started.
+   * @return The value of {@link System#nanoTime()} when the call was recorded,
+   *         which is the start time of the next call.
+   */
+  private long recordCall(OperationMetrics call, long callStart) {
+    long now = System.nanoTime();
+    call.recordSuccess(now - callStart);
+    return now;
+  }
+
+  /**
+   * Fetches item information from the inventory system and records the
+   * duration of the call.
+   *
+   * @param itemID The unique identifier of the item to fetch.
+   * @return The {@link ItemDTO} of the item, or {@code null} if not found.
+   */
+  private ItemDTO fetchItem(int itemID) {
+    long start = System.nanoTime();
+    try {
+      ItemDTO item = invSys.getItem(itemID);
+      getItemMetrics.recordSuccess(System.nanoTime() - start);
+      return item;
+    } catch (RuntimeException e) {
+      getItemMetrics.recordFailure(System.nanoTime() - start);
+      throw e;
+    }
   }
 }
@@ -0,0 +1,83 @@
+package se.kth.iv1350.controller;
+
+/**
+ * An input event from a checkout lane, such as a scanner or a self-checkout
+ * kiosk, submitted to a {@link SaleLane}. Events without parameters are shared
+ * constants, so only scans, discount requests and payments allocate.
+ *
+ * @param type       The kind of event.
+ * @param itemID     The scanned item, for {@link Type#SCAN}.
+ * @param quantity   The scanned quantity, for {@link Type#SCAN}.
+ * @param customerID The customer asking for discounts, for
+ *                   {@link Type#DISCOUNT}.
+ * @param amount     The amount paid, for {@link Type#PAYMENT}.
+ */
+public record LaneEvent(Type type, int itemID, int quantity, int customerID, double amount) {
+  private static final LaneEvent START_SALE = new LaneEvent(Type.START_SALE, 0, 0, 0, 0.0);
+  private static final LaneEvent ABANDON = new LaneEvent(Type.ABANDON, 0, 0, 0, 0.0);
+
+  /**
+   * The kinds of lane events.
+   */
+  public enum Type {
+    /** Starts a new sale. */
+    START_SALE,
+    /** Scans an item into the current sale. */
+    SCAN,
+    /** Applies the discounts of a customer to the current sale. */
+    DISCOUNT,
+    /** Pays for and completes the current sale. */
+    PAYMENT,
+    /** Abandons the current sale. */
+    ABANDON
+  }
+
+  /**
+   * Returns the event that starts a new sale.
+   *
+   * @return The {@code LaneEvent}.
+   */
+  public static LaneEvent startSale() {
+    return START_SALE;
+  }
+
+  /**
+   * Returns an event that scans an item.
+   *
+   * @param itemID   The unique identifier of the item.
+   * @param quantity The quantity scanned.
+   * @return The {@code LaneEvent}.
+   */
+  public static LaneEvent scan(int itemID, int quantity) {
+    return new LaneEvent(Type.SCAN, itemID, quantity, 0, 0.0);
+  }
+
+  /**
+   * Returns an event that applies the discounts of a customer.
+   *
+   * @param customerID The unique identifier of the customer.
+   * @return The {@code LaneEvent}.
+   */
+  public static LaneEvent discount(int customerID) {
+    return new LaneEvent(Type.DISCOUNT, 0, 0, customerID, 0.0);
+  }
+
+  /**
+   * Returns an event that pays for the current sale.
+   *
+   * @param amount The amount paid.
+   * @return The {@code LaneEvent}.
+   */
+  public static LaneEvent payment(double amount) {
+    return new LaneEvent(Type.PAYMENT, 0, 0, 0, amount);
+  }
+
+  /**
+   * Returns the event that abandons the current sale.
+   *
+   * @return The {@code LaneEvent}.
+   */
+  public static LaneEvent abandon() {
+    return ABANDON;
+  }
+}
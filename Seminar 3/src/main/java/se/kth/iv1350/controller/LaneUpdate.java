@@ -0,0 +1,34 @@
+package se.kth.iv1350.controller;
+
+import se.kth.iv1350.model.dto.ItemDTO;
+
+/**
+ * An update emitted by a {@link SaleLane} to the display of a checkout lane.
+ *
+ * @param type         The kind of update.
+ * @param item         The scanned item, for {@link Type#ITEM}.
+ * @param quantity     The scanned quantity, for {@link Type#ITEM}.
+ * @param runningTotal The total price of the sale when the update was made.
+ * @param change       The change to give back, for {@link Type#CHANGE}.
+ * @param message      What went wrong, for {@link Type#ERROR}.
+ */
+public record LaneUpdate(Type type, ItemDTO item, int quantity, double runningTotal, double change,
+    String message) {
+
+  /**
+   * The kinds of lane updates.
+   */
+  public enum Type {
+    /** An item was scanned. Never dropped. */
+    ITEM,
+    /**
+     * The running total changed. When the display is slower than the lane,
+     * only the latest total is emitted.
+     */
+    TOTAL,
+    /** The sale was paid for and completed. Never dropped. */
+    CHANGE,
+    /** An event could not be handled. Never dropped. */
+    ERROR
+  }
+}
@@ -0,0 +1,283 @@
+package se.kth.iv1350.controller;
+
+import se.kth.iv1350.integration.AccountingSys;
+import se.kth.iv1350.integration.InventorySys;
+import se.kth.iv1350.integration.SaleIndex;
+import se.kth.iv1350.model.classes.SalesRegister;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.RefundDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handles customers returning items from earlier sales.
+ * <p>
+ * The original sale is found in a {@link SaleIndex}, which also remembers
+ * what has been returned from it. A returned line is refunded at what the
+ * customer paid for it: its price less its share of the sale discount, split
+ * by {@link SaleDTO#lineDiscountCents()} the same way
+ * {@link se.kth.iv1350.analytics.SalesColumnStore} splits it. When the last
+ * unit of a sale is returned, the refund is whatever is left of the paid
+ * total, so rounding never pays back more or less than the customer paid.
+ * Returned units are put back in the inventory, where
+ * {@link se.kth.iv1350.integration.StockReservations} sees them too, and the
+ * refunds are sent to accounting in batches.
+ * <p>
+ * All methods are thread safe.
+ */
+public class ReturnsDesk {
+  private final SaleIndex saleIndex;
+  private final InventorySys inventory;
+  private final AccountingSys accounting;
+  private final SalesRegister register;
+  private final int batchSize;
+  private final List<RefundDTO> pendingRefunds;
+
+  /**
+   * Creates a new {@code ReturnsDesk} that sends refunds to accounting in
+   * batches of 50.
+   *
+   * @param saleIndex  The {@link SaleIndex} of completed sales.
+   * @param inventory  The {@link InventorySys} returned units go back to.
+   * @param accounting The {@link AccountingSys} refunds are booked in.
+   * @param register   The {@link SalesRegister} refunds are paid from.
+   */
+  public ReturnsDesk(SaleIndex saleIndex, InventorySys inventory, AccountingSys accounting,
+      SalesRegister register) {
+    this(saleIndex, inventory, accounting, register, 50);
+  }
+
+  /**
+   * Creates a new {@code ReturnsDesk}.
+   *
+   * @param saleIndex  The {@link SaleIndex} of completed sales.
+   * @param inventory  The {@link InventorySys} returned units go back to.
+   * @param accounting The {@link AccountingSys} refunds are booked in.
+   * @param register   The {@link SalesRegister} refunds are paid from.
+   * @param batchSize  The number of refunds sent to accounting at once.
+   * @throws IllegalArgumentException if the batch size is not positive.
+   */
+  public ReturnsDesk(SaleIndex saleIndex, InventorySys inventory, AccountingSys accounting,
+      SalesRegister register, int batchSize) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Batch size must be greater than zero.");
+    }
+    this.saleIndex = saleIndex;
+    this.inventory = inventory;
+    this.accounting = accounting;
+    this.register = register;
+    this.batchSize = batchSize;
+    this.pendingRefunds = new ArrayList<>();
+  }
+
+  /**
+   * Finds a completed sale by its identifier.
+   *
+   * @param saleID The identifier of the sale.
+   * @return The {@link SaleDTO} of the sale.
+   * @throws IllegalArgumentException if there is no such sale.
+   */
+  public SaleDTO findSale(long saleID) {
+    SaleDTO sale = saleIndex.findBySaleID(saleID);
+    if (sale == null) {
+      throw new IllegalArgumentException("No completed sale with ID " + saleID + ".");
+    }
+    return sale;
+  }
+
+  /**
+   * Finds a completed sale by its receipt number, which is the identifier of
+   * the sale.
+   *
+   * @param receiptNumber The receipt number.
+   * @return The {@link SaleDTO} of the sale.
+   * @throws IllegalArgumentException if there is no such receipt.
+   */
+  public SaleDTO findReceipt(long receiptNumber) {
+    SaleDTO sale = saleIndex.findBySaleID(receiptNumber);
+    if (sale == null) {
+      throw new IllegalArgumentException("No receipt with number " + receiptNumber + ".");
+    }
+    return sale;
+  }
+
+  /**
+   * Returns how many units of an item from a sale have not been returned
+   * yet.
+   *
+   * @param saleID The identifier of the sale.
+   * @param itemID The unique identifier of the item.
+   * @return The number of units that can still be returned.
+   * @throws IllegalArgumentException if there is no such sale.
+   */
+  public synchronized int getReturnableQuantity(long saleID, int itemID) {
+    SaleItemDTO line = lineOf(findSale(saleID), itemID);
+    return line == null ? 0 : line.quantity() - returned(saleID, itemID);
+  }
+
+  /**
+   * Returns units of an item from a completed sale. The refund is paid from
+   * the register, the return is recorded in the sale index, the units are put
+   * back in stock, and the refund is queued for accounting. Items that are no
+   * longer in the inventory are refunded but not restocked.
+   *
+   * @param saleID   The identifier of the original sale.
+   * @param itemID   The unique identifier of the returned item.
+   * @param quantity The number of returned units.
+   * @return The {@link RefundDTO} of the return.
+   * @throws IllegalArgumentException if there is no such sale, the item was
+   *                                  not part of it, or more units are
+   *                                  returned than are left.
+   * @throws IllegalStateException    if the register does not hold enough
+   *                                  cash or the sale index could not record
+   *                                  the return; nothing is returned then.
+   */
+  public synchronized RefundDTO returnItem(long saleID, int itemID, int quantity) {
+    if (quantity <= 0) {
+      throw new IllegalArgumentException("Quantity must be greater than zero.");
+    }
+    SaleDTO sale = findSale(saleID);
+    SaleItemDTO line = lineOf(sale, itemID);
+    if (line == null) {
+      throw new IllegalArgumentException("Item " + itemID + " was not part of sale " + saleID + ".");
+    }
+    int alreadyReturned = returned(saleID, itemID);
+    if (alreadyReturned + quantity > line.quantity()) {
+      throw new IllegalArgumentException("Only " + (line.quantity() - alreadyReturned) + " units of item " + itemID
+          + " are left to return.");
+    }
+
+    long cents = refundCents(sale, line, quantity, alreadyReturned);
+    double amount = cents / 100.0;
+    register.refund(amount);
+    try {
+      saleIndex.recordReturn(saleID, itemID, quantity, cents);
+    } catch (IllegalStateException e) {
+      register.updateRegister(amount);
+      throw e;
+    }
+    restock(itemID, quantity);
+
+    ItemDTO item = line.item();
+    long vatCents = Math.round(cents * item.VAT() / (100.0 + item.VAT()));
+    RefundDTO refund = new RefundDTO(saleID, itemID, quantity, amount, vatCents / 100.0);
+    pendingRefunds.add(refund);
+    if (pendingRefunds.size() >= batchSize) {
+      postRefunds();
+    }
+    return refund;
+  }
+
+  /**
+   * Sends the refunds that are waiting to accounting.
+   *
+   * @return The number of refunds sent.
+   */
+  public synchronized int postRefunds() {
+    int count = pendingRefunds.size();
+    if (count > 0) {
+      accounting.sendRefundInfo(List.copyOf(pendingRefunds));
+      pendingRefunds.clear();
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number of refunds waiting to be sent to accounting.
+   *
+   * @return The number of waiting refunds.
+   */
+  public synchronized int getPendingRefundCount() {
+    return pendingRefunds.size();
+  }
+
+  /**
+   * Computes the refund of returned units in minor units. A line is worth
+   * its price less its share of the sale discount, and its units are worth
+   * an equal part of that, rounded down.
+   *
+   * @param sale            The original sale.
+   * @param line            The returned line.
+   * @param quantity        The number of returned units.
+   * @param alreadyReturned The units of the line returned before.
+   * @return The refund in minor units.
+   */
+  private long refundCents(SaleDTO sale, SaleItemDTO line, int quantity, int alreadyReturned) {
+    List<SaleItemDTO> saleItems = sale.saleItems();
+    long[] lineDiscounts = sale.lineDiscountCents();
+    long grossSum = 0;
+    long lineCents = 0;
+    int unitsInSale = 0;
+    for (int i = 0; i < saleItems.size(); i++) {
+      SaleItemDTO saleLine = saleItems.get(i);
+      grossSum += grossCents(saleLine);
+      unitsInSale += saleLine.quantity();
+      if (saleLine == line) {
+        lineCents = grossCents(saleLine) - lineDiscounts[i];
+      }
+    }
+    long paidCents = sale.payment() != null ? Math.round(sale.payment().totalPrice() * 100.0)
+        : Math.max(0, grossSum - Math.round(sale.discount() * 100.0));
+    long leftCents = paidCents - saleIndex.getRefundedCents(sale.saleID());
+    if (saleIndex.getReturnedQuantity(sale.saleID()) + quantity == unitsInSale) {
+      return Math.max(0, leftCents);
+    }
+    long before = lineCents * alreadyReturned / line.quantity();
+    long after = lineCents * (alreadyReturned + quantity) / line.quantity();
+    return Math.max(0, Math.min(after - before, leftCents));
+  }
+
+  /**
+   * Returns the price of a line including VAT, in minor units.
+   *
+   * @param line The line.
+   * @return The price of the line.
+   */
+  private static long grossCents(SaleItemDTO line) {
+    return line.item().grossCents(line.quantity());
+  }
+
+  /**
+   * Puts returned units back in stock.
+   *
+   * @param itemID   The unique identifier of the item.
+   * @param quantity The number of units.
+   */
+  private void restock(int itemID, int quantity) {
+    try {
+      inventory.restock(itemID, quantity);
+    } catch (IllegalArgumentException e) {
+      // The item has left the inventory, so there is no stock to put it in
+    }
+  }
+
+  /**
+   * Returns the units of an item from a sale that have been returned.
+   *
+   * @param saleID The identifier of the sale.
+   * @param itemID The unique identifier of the item.
+   * @return The number of returned units.
+   */
+  private int returned(long saleID, int itemID) {
+    return saleIndex.getReturnedQuantity(saleID, itemID);
+  }
+
+  /**
+   * Returns the line of an item in a sale.
+   *
+   * @param sale   The sale.
+   * @param itemID The unique identifier of the item.
+   * @return The {@link SaleItemDTO}, or {@code null} if the item was not sold.
+   */
+  private static SaleItemDTO lineOf(SaleDTO sale, int itemID) {
+    for (SaleItemDTO line : sale.saleItems()) {
+      if (line.item().itemID() == itemID) {
+        return line;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,357 @@
+package se.kth.iv1350.controller;
+
+import se.kth.iv1350.model.dto.ItemDTO;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A streaming front end to a {@link Controller} for one checkout lane. The lane
+ * subscribes to a publisher of {@link LaneEvent}s, such as a scanner, and
+ * publishes {@link LaneUpdate}s to one subscriber, such as the lane's display.
+ * <p>
+ * Item, change and error updates are never dropped. They wait in a queue of
+ * fixed capacity, and the lane only requests as many events from its publisher
+ * as there is room for in that queue, so a slow display slows the scanner down
+ * instead of making the queue grow. Total updates are not queued: the lane
+ * keeps only the latest total and emits it when the display asks for more, so
+ * a display that falls behind skips straight to the current total.
+ * <p>
+ * Events are handled on the thread that delivers them and updates are emitted
+ * on whichever thread finds demand, without holding a monitor, so the lane
+ * works on virtual threads. Apart from the updates themselves, handling an
+ * event does not allocate.
+ */
+public class SaleLane implements Flow.Processor<LaneEvent, LaneUpdate> {
+  private final Controller controller;
+  private final int capacity;
+  private final ArrayBlockingQueue<LaneUpdate> pending;
+  private final AtomicLong totalBits;
+  private final AtomicBoolean totalChanged;
+  private final AtomicLong coalescedTotals;
+  private final AtomicLong demand;
+  private final AtomicInteger drainers;
+  private final AtomicReference<Flow.Subscriber<? super LaneUpdate>> downstream;
+  private volatile Flow.Subscription upstream;
+  private volatile boolean upstreamDone;
+  private volatile Throwable upstreamError;
+  private volatile Throwable downstreamError;
+  private volatile boolean cancelled;
+  private boolean terminated;
+  private boolean saleInProgress;
+
+  /**
+   * Creates a new {@code SaleLane} that keeps at most 256 updates waiting for
+   * the display.
+   *
+   * @param controller The {@link Controller} of the lane.
+   */
+  public SaleLane(Controller controller) {
+    this(controller, 256);
+  }
+
+  /**
+   * Creates a new {@code SaleLane}.
+   *
+   * @param controller The {@link Controller} of the lane. It must not be used
+   *                   by anything else while the lane is running.
+   * @param capacity   The number of updates that may wait for the display,
+   *                   which is also the number of events requested at once.
+   * @throws IllegalArgumentException if the capacity is not positive.
+   */
+  public SaleLane(Controller controller, int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive.");
+    }
+    this.controller = controller;
+    this.capacity = capacity;
+    this.pending = new ArrayBlockingQueue<>(capacity);
+    this.totalBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+    this.totalChanged = new AtomicBoolean();
+    this.coalescedTotals = new AtomicLong();
+    this.demand = new AtomicLong();
+    this.drainers = new AtomicInteger();
+    this.downstream = new AtomicReference<>();
+  }
+
+  /**
+   * Returns the number of total updates that were replaced by a newer total
+   * before the display asked for them.
+   *
+   * @return The number of coalesced total updates.
+   */
+  public long getCoalescedTotalCount() {
+    return coalescedTotals.get();
+  }
+
+  /**
+   * Starts receiving events from a publisher. A lane receives events from
+   * one publisher only; later subscriptions are cancelled.
+   *
+   * @param subscription The {@link Flow.Subscription} to the publisher.
+   */
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    if (upstream != null) {
+      subscription.cancel();
+      return;
+    }
+    upstream = subscription;
+    if (cancelled) {
+      subscription.cancel();
+    } else {
+      subscription.request(capacity);
+    }
+  }
+
+  /**
+   * Handles one event. An event that could not be handled results in an
+   * {@link LaneUpdate.Type#ERROR} update; the lane keeps running.
+   *
+   * @param event The {@link LaneEvent} to handle.
+   */
+  @Override
+  public void onNext(LaneEvent event) {
+    if (cancelled) {
+      return;
+    }
+    boolean queued;
+    try {
+      queued = handle(event);
+    } catch (RuntimeException e) {
+      enqueue(new LaneUpdate(LaneUpdate.Type.ERROR, null, 0, currentTotal(), 0.0,
+          e.getMessage() == null ? e.toString() : e.getMessage()));
+      queued = true;
+    }
+    if (!queued) {
+      upstream.request(1);
+    }
+    drain();
+  }
+
+  /**
+   * Passes a failure of the publisher on to the display, after the updates
+   * already waiting.
+   *
+   * @param throwable The failure.
+   */
+  @Override
+  public void onError(Throwable throwable) {
+    upstreamError = throwable;
+    upstreamDone = true;
+    drain();
+  }
+
+  /**
+   * Completes the display stream once all waiting updates are emitted.
+   */
+  @Override
+  public void onComplete() {
+    upstreamDone = true;
+    drain();
+  }
+
+  /**
+   * Subscribes the display of the lane. A lane has one display; a second
+   * subscriber is rejected with an {@link IllegalStateException}.
+   *
+   * @param subscriber The {@link Flow.Subscriber} to emit updates to.
+   */
+  @Override
+  public void subscribe(Flow.Subscriber<? super LaneUpdate> subscriber) {
+    if (!downstream.compareAndSet(null, subscriber)) {
+      subscriber.onSubscribe(new Flow.Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+      });
+      subscriber.onError(new IllegalStateException("The lane already has a subscriber."));
+      return;
+    }
+    subscriber.onSubscribe(new Flow.Subscription() {
+      @Override
+      public void request(long n) {
+        if (n <= 0) {
+          downstreamError = new IllegalArgumentException("Requested " + n + " updates, must be positive.");
+        } else {
+          demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+        }
+        drain();
+      }
+
+      @Override
+      public void cancel() {
+        cancelLane();
+      }
+    });
+    drain();
+  }
+
+  /**
+   * Handles one event by calling the controller.
+   *
+   * @param event The {@link LaneEvent} to handle.
+   * @return {@code true} if an update was queued for the event.
+   */
+  private boolean handle(LaneEvent event) {
+    switch (event.type()) {
+      case START_SALE:
+        controller.startNewSale();
+        saleInProgress = true;
+        publishTotal(0.0);
+        return false;
+      case SCAN:
+        if (!saleInProgress) {
+          controller.startNewSale();
+          saleInProgress = true;
+        }
+        ItemDTO item = controller.scanItem(event.itemID(), event.quantity());
+        double total = controller.endSale();
+        enqueue(new LaneUpdate(LaneUpdate.Type.ITEM, item, event.quantity(), total, 0.0, null));
+        publishTotal(total);
+        return true;
+      case DISCOUNT:
+        publishTotal(controller.signalDiscountRequest(event.customerID()).getTotalPrice());
+        return false;
+      case PAYMENT:
+        double paidTotal = controller.endSale();
+        double change = controller.setAmountPaid(event.amount());
+        saleInProgress = false;
+        enqueue(new LaneUpdate(LaneUpdate.Type.CHANGE, null, 0, paidTotal, change, null));
+        return true;
+      case ABANDON:
+        controller.abandonSale();
+        saleInProgress = false;
+        publishTotal(0.0);
+        return false;
+      default:
+        throw new IllegalArgumentException("Unknown event " + event.type() + ".");
+    }
+  }
+
+  /**
+   * Replaces the latest total. If the previous total was never emitted, it is
+   * counted as coalesced.
+   *
+   * @param total The new running total.
+   */
+  private void publishTotal(double total) {
+    totalBits.set(Double.doubleToRawLongBits(total));
+    if (totalChanged.getAndSet(true)) {
+      coalescedTotals.incrementAndGet();
+    }
+  }
+
+  /**
+   * Returns the latest total.
+   *
+   * @return The running total.
+   */
+  private double currentTotal() {
+    return Double.longBitsToDouble(totalBits.get());
+  }
+
+  /**
+   * Queues an update that must not be dropped. There is always room, since
+   * no more events are requested than the queue can hold.
+   *
+   * @param update The {@link LaneUpdate} to queue.
+   * @throws IllegalStateException if the publisher sent more events than were
+   *                               requested.
+   */
+  private void enqueue(LaneUpdate update) {
+    if (!pending.offer(update)) {
+      throw new IllegalStateException("The publisher sent more events than were requested.");
+    }
+  }
+
+  /**
+   * Stops the lane after the display cancelled its subscription.
+   */
+  private void cancelLane() {
+    cancelled = true;
+    Flow.Subscription subscription = upstream;
+    if (subscription != null) {
+      subscription.cancel();
+    }
+    drain();
+  }
+
+  /**
+   * Emits as many waiting updates as the display has asked for: queued
+   * updates first, then the latest total, and finally the end of the stream.
+   * Only one thread drains at a time; a thread that finds another draining
+   * leaves the work to it.
+   */
+  private void drain() {
+    if (drainers.getAndIncrement() != 0) {
+      return;
+    }
+    int missed = 1;
+    do {
+      Flow.Subscriber<? super LaneUpdate> subscriber = downstream.get();
+      if (cancelled) {
+        pending.clear();
+      } else if (subscriber != null && !terminated) {
+        emit(subscriber);
+      }
+      missed = drainers.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  /**
+   * Emits waiting updates to the display, within its demand. Must only be
+   * called from {@link #drain()}.
+   *
+   * @param subscriber The display.
+   */
+  private void emit(Flow.Subscriber<? super LaneUpdate> subscriber) {
+    Throwable requestError = downstreamError;
+    if (requestError != null) {
+      terminated = true;
+      cancelLane();
+      subscriber.onError(requestError);
+      return;
+    }
+    long requested = demand.get();
+    long emitted = 0;
+    int freed = 0;
+    while (emitted != requested) {
+      LaneUpdate update = pending.poll();
+      if (update == null) {
+        break;
+      }
+      subscriber.onNext(update);
+      emitted++;
+      freed++;
+    }
+    if (emitted != requested && pending.isEmpty() && totalChanged.getAndSet(false)) {
+      subscriber.onNext(new LaneUpdate(LaneUpdate.Type.TOTAL, null, 0, currentTotal(), 0.0, null));
+      emitted++;
+    }
+    if (emitted > 0 && requested != Long.MAX_VALUE) {
+      demand.addAndGet(-emitted);
+    }
+    Flow.Subscription subscription = upstream;
+    if (freed > 0 && subscription != null && !upstreamDone) {
+      subscription.request(freed);
+    }
+    if (upstreamDone && pending.isEmpty() && !totalChanged.get()) {
+      terminated = true;
+      Throwable error = upstreamError;
+      if (error != null) {
+        subscriber.onError(error);
+      } else {
+        subscriber.onComplete();
+      }
+    }
+  }
+}
@@ -1,10 +1,14 @@
 package se.kth.iv1350.integration;
 
+import se.kth.iv1350.model.dto.RefundDTO;
 import se.kth.iv1350.model.dto.SaleDTO;
 
+import java.util.List;
+
 /**
  * Represents the external accounting system integration.
- * Responsible for sending sale information to the accounting system.
+ * Responsible for sending sale and refund information to the accounting
+ * system.
  */
 public class AccountingSys {
 
@@ -17,4 +21,14 @@ public class AccountingSys {
   public void sendSaleInfo(SaleDTO saleDTO) {
     System.out.println("Sending sale information to accounting system...");
   }
+
+  /**
+   * Sends a batch of refunds to the accounting system, where each is booked
+   * as a negative entry against its original sale.
+   *
+   * @param refunds The {@link RefundDTO}s to book.
+   */
+  public void sendRefundInfo(List<RefundDTO> refunds) {
+    System.out.println("Sending " + refunds.size() + " refunds to accounting system...");
+  }
 }
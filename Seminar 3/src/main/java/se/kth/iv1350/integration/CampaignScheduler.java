@@ -0,0 +1,209 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.metrics.MetricsRegistry;
+import se.kth.iv1350.model.dto.DiscountDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Activates and expires the time-boxed discounts of a
+ * {@link DiscountDBHandler}.
+ * <p>
+ * The start and end of every activated discount are kept in a priority queue
+ * ordered by time. When the clock passes one or more of them, the scheduler
+ * updates its set of active discounts and publishes a new immutable index of
+ * them to the discount database, once for all boundaries that passed. The
+ * background thread started by {@link #start()} sleeps until the next
+ * boundary, so checkouts never check the time of a discount and never visit
+ * one that does not apply.
+ * <p>
+ * All methods are thread safe.
+ */
+public class CampaignScheduler implements AutoCloseable {
+  private static final long MAX_SLEEP_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private final DiscountDBHandler discountDB;
+  private final LongSupplier clock;
+  private final List<DiscountDTO> discounts;
+  private final PriorityQueue<Boundary> boundaries;
+  private final TreeMap<Integer, DiscountDTO> active;
+  private final List<Runnable> listeners;
+  private final ScheduledExecutorService scheduler;
+  private final AtomicLong publishedIndexes;
+  private volatile int activeCount;
+
+  /**
+   * A moment a discount starts or stops being valid.
+   *
+   * @param atMillis The moment, in milliseconds since the epoch.
+   * @param position The position of the discount in the discount list.
+   * @param start    {@code true} if the discount starts being valid.
+   */
+  private record Boundary(long atMillis, int position, boolean start) {
+  }
+
+  /**
+   * Creates a new {@code CampaignScheduler} for the discounts of the given
+   * database, using the system clock.
+   *
+   * @param discountDB The {@link DiscountDBHandler} to publish active
+   *                   discounts to.
+   */
+  public CampaignScheduler(DiscountDBHandler discountDB) {
+    this(discountDB, System::currentTimeMillis);
+  }
+
+  /**
+   * Creates a new {@code CampaignScheduler} for the discounts of the given
+   * database. Nothing is published until {@link #advance()} or
+   * {@link #start()} is called.
+   *
+   * @param discountDB The {@link DiscountDBHandler} to publish active
+   *                   discounts to.
+   * @param clock      Returns the current time in milliseconds.
+   */
+  public CampaignScheduler(DiscountDBHandler discountDB, LongSupplier clock) {
+    this.discountDB = discountDB;
+    this.clock = clock;
+    this.discounts = List.copyOf(discountDB.getAllDiscounts());
+    this.boundaries = new PriorityQueue<>((a, b) -> Long.compare(a.atMillis(), b.atMillis()));
+    for (int position = 0; position < discounts.size(); position++) {
+      DiscountDTO discount = discounts.get(position);
+      if (!discount.activated()) {
+        continue;
+      }
+      boundaries.add(new Boundary(discount.validFrom(), position, true));
+      if (discount.validUntil() != Long.MAX_VALUE) {
+        boundaries.add(new Boundary(discount.validUntil(), position, false));
+      }
+    }
+    this.active = new TreeMap<>();
+    this.listeners = new CopyOnWriteArrayList<>();
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "campaign-scheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.publishedIndexes = new AtomicLong();
+  }
+
+  /**
+   * Adds a listener that is called after each new set of active discounts is
+   * published, for example to clear a {@link CustomerProfileCache}.
+   *
+   * @param listener The listener to call.
+   */
+  public void addPublishListener(Runnable listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Registers gauges for the number of active discounts and the number of
+   * published indexes in the given registry.
+   *
+   * @param metrics The {@link MetricsRegistry} to register the gauges in.
+   */
+  public void registerMetrics(MetricsRegistry metrics) {
+    metrics.gauge("campaign_discounts_active", () -> activeCount);
+    metrics.gauge("campaign_indexes_published_total", publishedIndexes::get);
+  }
+
+  /**
+   * Publishes the discounts that are valid now, and then keeps them up to
+   * date in the background, waking up at each start or end of a discount.
+   */
+  public void start() {
+    scheduler.execute(this::advanceAndReschedule);
+  }
+
+  /**
+   * Handles every start and end of a discount that has passed, and publishes
+   * the new set of active discounts if it changed. The first call always
+   * publishes.
+   *
+   * @return {@code true} if a new set of active discounts was published.
+   */
+  public boolean advance() {
+    synchronized (this) {
+      long now = clock.getAsLong();
+      boolean changed = publishedIndexes.get() == 0;
+      while (!boundaries.isEmpty() && boundaries.peek().atMillis() <= now) {
+        Boundary boundary = boundaries.poll();
+        if (boundary.start()) {
+          active.put(boundary.position(), discounts.get(boundary.position()));
+        } else {
+          active.remove(boundary.position());
+        }
+        changed = true;
+      }
+      if (!changed) {
+        return false;
+      }
+      discountDB.publishActive(new ArrayList<>(active.values()));
+      activeCount = active.size();
+      publishedIndexes.incrementAndGet();
+    }
+    for (Runnable listener : listeners) {
+      listener.run();
+    }
+    return true;
+  }
+
+  /**
+   * Returns the time of the next start or end of a discount.
+   *
+   * @return The time in milliseconds, or {@link Long#MAX_VALUE} if nothing
+   *         is left to schedule.
+   */
+  public synchronized long getNextBoundary() {
+    return boundaries.isEmpty() ? Long.MAX_VALUE : boundaries.peek().atMillis();
+  }
+
+  /**
+   * Returns the number of times a set of active discounts has been
+   * published.
+   *
+   * @return The number of published indexes.
+   */
+  public long getPublishedCount() {
+    return publishedIndexes.get();
+  }
+
+  /**
+   * Stops the background thread started by {@link #start()}. The discounts
+   * that are active stay active.
+   */
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Advances the scheduler and sleeps until the next boundary. A long sleep
+   * is cut short now and then, so that a change of the system clock is
+   * noticed.
+   */
+  private void advanceAndReschedule() {
+    advance();
+    long next = getNextBoundary();
+    if (next == Long.MAX_VALUE) {
+      return;
+    }
+    long delay = Math.min(Math.max(0, next - clock.getAsLong()), MAX_SLEEP_MILLIS);
+    try {
+      scheduler.schedule(this::advanceAndReschedule, delay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // The scheduler was closed
+    }
+  }
+}
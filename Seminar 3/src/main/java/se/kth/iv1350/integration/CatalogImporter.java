@@ -0,0 +1,522 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.model.dto.DiscountDTO;
+import se.kth.iv1350.model.dto.ItemDTO;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Loads large catalog, stock and discount files into an {@link InventorySys}
+ * and a {@link DiscountDBHandler}.
+ * <p>
+ * A file is memory-mapped and split into chunks at line boundaries, and the
+ * chunks are parsed in parallel. Numbers are parsed straight from the mapped
+ * bytes, so the only {@code String}s created are the item descriptions. The
+ * files are comma-separated with one row per line and an optional header line.
+ * Fields cannot be quoted, so descriptions cannot contain commas. The formats
+ * are:
+ * <ul>
+ * <li>Catalog: {@code itemID,description,price,VAT}</li>
+ * <li>Stock: {@code itemID,quantity}</li>
+ * <li>Discounts: {@code discountID,itemID,customerID,totalPrice,fixedDiscount,
+ * percentageDiscount,activated}</li>
+ * </ul>
+ */
+public class CatalogImporter {
+  private static final int CHUNKS_PER_THREAD = 4;
+  private static final int MAX_DECIMAL_DIGITS = 15;
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15 };
+
+  private final int chunkCount;
+
+  /**
+   * Creates a new {@code CatalogImporter} that uses every available
+   * processor.
+   */
+  public CatalogImporter() {
+    this(Runtime.getRuntime().availableProcessors() * CHUNKS_PER_THREAD);
+  }
+
+  /**
+   * Creates a new {@code CatalogImporter} that splits each file into the given
+   * number of chunks.
+   *
+   * @param chunkCount The number of chunks per file.
+   * @throws IllegalArgumentException if {@code chunkCount} is not positive.
+   */
+  public CatalogImporter(int chunkCount) {
+    if (chunkCount <= 0) {
+      throw new IllegalArgumentException("Chunk count must be greater than zero.");
+    }
+    this.chunkCount = chunkCount;
+  }
+
+  /**
+   * Loads an inventory from a catalog file and a stock file. Items without a
+   * stock row have nothing in stock.
+   *
+   * @param catalogFile The catalog file.
+   * @param stockFile   The stock file.
+   * @return The new {@link InventorySys}.
+   * @throws IOException              if a file could not be read.
+   * @throws IllegalArgumentException if a file is malformed or the stock file
+   *                                  refers to an item not in the catalog.
+   */
+  public InventorySys importInventory(Path catalogFile, Path stockFile) throws IOException {
+    List<ItemDTO> items = readItems(catalogFile);
+    long[] stock = readStock(stockFile);
+
+    long[] positions = new long[items.size()];
+    for (int position = 0; position < positions.length; position++) {
+      positions[position] = ((long) items.get(position).itemID() << 32) | position;
+    }
+    Arrays.parallelSort(positions);
+    int[] sortedIDs = new int[positions.length];
+    for (int i = 0; i < positions.length; i++) {
+      sortedIDs[i] = (int) (positions[i] >>> 32);
+    }
+
+    int[] quantities = new int[items.size()];
+    for (long row : stock) {
+      int itemID = (int) (row >>> 32);
+      int found = Arrays.binarySearch(sortedIDs, itemID);
+      if (found < 0) {
+        throw new IllegalArgumentException("Stock row for item " + itemID + " which is not in the catalog.");
+      }
+      quantities[(int) positions[found]] = (int) row;
+    }
+    return new InventorySys(items, quantities);
+  }
+
+  /**
+   * Loads a discount database from a discount file.
+   *
+   * @param discountFile The discount file.
+   * @return The new {@link DiscountDBHandler}.
+   * @throws IOException              if the file could not be read.
+   * @throws IllegalArgumentException if the file is malformed.
+   */
+  public DiscountDBHandler importDiscounts(Path discountFile) throws IOException {
+    return new DiscountDBHandler(readDiscounts(discountFile));
+  }
+
+  /**
+   * Reads all items of a catalog file, in file order.
+   *
+   * @param catalogFile The catalog file.
+   * @return The items.
+   * @throws IOException              if the file could not be read.
+   * @throws IllegalArgumentException if the file is malformed.
+   */
+  public List<ItemDTO> readItems(Path catalogFile) throws IOException {
+    List<List<ItemDTO>> chunks = parseChunks(catalogFile, cursor -> {
+      List<ItemDTO> items = new ArrayList<>();
+      while (cursor.hasMore()) {
+        int itemID = cursor.nextInt();
+        String description = cursor.nextText();
+        double price = cursor.nextDecimal();
+        int vat = cursor.nextInt();
+        cursor.endRow();
+        items.add(new ItemDTO(itemID, description, price, vat));
+      }
+      return items;
+    });
+    return concat(chunks);
+  }
+
+  /**
+   * Reads all rows of a stock file, in file order.
+   *
+   * @param stockFile The stock file.
+   * @return One value per row, with the item ID in the high 32 bits and the
+   *         quantity in the low 32 bits.
+   * @throws IOException              if the file could not be read.
+   * @throws IllegalArgumentException if the file is malformed.
+   */
+  public long[] readStock(Path stockFile) throws IOException {
+    List<long[]> chunks = parseChunks(stockFile, cursor -> {
+      long[] rows = new long[64];
+      int count = 0;
+      while (cursor.hasMore()) {
+        int itemID = cursor.nextInt();
+        int quantity = cursor.nextInt();
+        cursor.endRow();
+        if (count == rows.length) {
+          rows = Arrays.copyOf(rows, count * 2);
+        }
+        rows[count++] = ((long) itemID << 32) | (quantity & 0xFFFFFFFFL);
+      }
+      return Arrays.copyOf(rows, count);
+    });
+    int total = 0;
+    for (long[] chunk : chunks) {
+      total += chunk.length;
+    }
+    long[] rows = new long[total];
+    int offset = 0;
+    for (long[] chunk : chunks) {
+      System.arraycopy(chunk, 0, rows, offset, chunk.length);
+      offset += chunk.length;
+    }
+    return rows;
+  }
+
+  /**
+   * Reads all discounts of a discount file, in file order.
+   *
+   * @param discountFile The discount file.
+   * @return The discounts.
+   * @throws IOException              if the file could not be read.
+   * @throws IllegalArgumentException if the file is malformed.
+   */
+  public List<DiscountDTO> readDiscounts(Path discountFile) throws IOException {
+    List<List<DiscountDTO>> chunks = parseChunks(discountFile, cursor -> {
+      List<DiscountDTO> discounts = new ArrayList<>();
+      while (cursor.hasMore()) {
+        int discountID = cursor.nextInt();
+        int itemID = cursor.nextInt();
+        int customerID = cursor.nextInt();
+        double totalPrice = cursor.nextDecimal();
+        double fixedDiscount = cursor.nextDecimal();
+        int percentageDiscount = cursor.nextInt();
+        boolean activated = cursor.nextBoolean();
+        cursor.endRow();
+        discounts.add(new DiscountDTO(discountID, itemID, customerID, totalPrice, fixedDiscount,
+            percentageDiscount, activated));
+      }
+      return discounts;
+    });
+    return concat(chunks);
+  }
+
+  /**
+   * Maps a file, splits it into chunks at line boundaries and parses the
+   * chunks in parallel.
+   *
+   * @param file   The file to parse.
+   * @param parser Parses all rows of one chunk.
+   * @param <R>    The result of one chunk.
+   * @return The results of the chunks, in file order.
+   * @throws IOException              if the file could not be read.
+   * @throws IllegalArgumentException if the file is larger than 2 GB or
+   *                                  malformed.
+   */
+  private <R> List<R> parseChunks(Path file, Function<Cursor, R> parser) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("File " + file + " is larger than 2 GB.");
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    int size = buffer.limit();
+    int start = skipHeader(buffer);
+    int chunks = Math.max(1, Math.min(chunkCount, (size - start) / 4096));
+    int[] bounds = new int[chunks + 1];
+    bounds[0] = start;
+    bounds[chunks] = size;
+    for (int chunk = 1; chunk < chunks; chunk++) {
+      int bound = Math.max(bounds[chunk - 1], start + (int) ((long) (size - start) * chunk / chunks));
+      bounds[chunk] = nextLineStart(buffer, bound);
+    }
+    ByteBuffer mapped = buffer;
+    return IntStream.range(0, chunks).parallel()
+        .mapToObj(chunk -> parser.apply(new Cursor(mapped, bounds[chunk], bounds[chunk + 1])))
+        .toList();
+  }
+
+  /**
+   * Returns the start of the first data row, skipping a header line if the
+   * file does not start with a number.
+   *
+   * @param buffer The mapped file.
+   * @return The offset of the first data row.
+   */
+  private static int skipHeader(ByteBuffer buffer) {
+    if (buffer.limit() == 0) {
+      return 0;
+    }
+    byte first = buffer.get(0);
+    if ((first >= '0' && first <= '9') || first == '-') {
+      return 0;
+    }
+    return nextLineStart(buffer, 1);
+  }
+
+  /**
+   * Returns the start of the line after the given offset, or the offset
+   * itself if it already is the start of a line.
+   *
+   * @param buffer The mapped file.
+   * @param offset The offset to start from.
+   * @return The offset of the start of a line, or the end of the file.
+   */
+  private static int nextLineStart(ByteBuffer buffer, int offset) {
+    if (offset == 0 || buffer.get(offset - 1) == '\n') {
+      return offset;
+    }
+    while (offset < buffer.limit() && buffer.get(offset) != '\n') {
+      offset++;
+    }
+    return Math.min(offset + 1, buffer.limit());
+  }
+
+  /**
+   * Joins the results of all chunks into one list.
+   *
+   * @param chunks The chunk results, in file order.
+   * @param <T>    The element type.
+   * @return All elements, in file order.
+   */
+  private static <T> List<T> concat(List<List<T>> chunks) {
+    int total = 0;
+    for (List<T> chunk : chunks) {
+      total += chunk.size();
+    }
+    List<T> result = new ArrayList<>(total);
+    for (List<T> chunk : chunks) {
+      result.addAll(chunk);
+    }
+    return result;
+  }
+
+  /**
+   * Reads the fields of the rows in one chunk of a mapped file. Each method
+   * reads one field and the separator after it.
+   */
+  private static final class Cursor {
+    private final ByteBuffer buffer;
+    private final int end;
+    private int position;
+    private boolean atEndOfRow;
+    private byte[] text;
+
+    /**
+     * Creates a new {@code Cursor} over the given range.
+     *
+     * @param buffer The mapped file.
+     * @param start  The offset of the first row.
+     * @param end    The offset just after the last row.
+     */
+    Cursor(ByteBuffer buffer, int start, int end) {
+      this.buffer = buffer;
+      this.position = start;
+      this.end = end;
+      this.text = new byte[64];
+    }
+
+    /**
+     * Skips empty lines and returns whether another row follows.
+     *
+     * @return {@code true} if there is another row.
+     */
+    boolean hasMore() {
+      while (position < end && (buffer.get(position) == '\n' || buffer.get(position) == '\r')) {
+        position++;
+      }
+      atEndOfRow = false;
+      return position < end;
+    }
+
+    /**
+     * Reads an integer field.
+     *
+     * @return The value.
+     * @throws IllegalArgumentException if the field is not an integer.
+     */
+    int nextInt() {
+      int fieldStart = position;
+      boolean negative = consumeSign();
+      long value = 0;
+      int digits = 0;
+      byte b;
+      while (position < end && (b = buffer.get(position)) >= '0' && b <= '9') {
+        value = value * 10 + (b - '0');
+        position++;
+        if (++digits > 10) {
+          throw malformed(fieldStart, "integer");
+        }
+      }
+      value = negative ? -value : value;
+      if (digits == 0 || value != (int) value) {
+        throw malformed(fieldStart, "integer");
+      }
+      endField(fieldStart, "integer");
+      return (int) value;
+    }
+
+    /**
+     * Reads a decimal field such as {@code 12.50}, with at most 15 digits.
+     * Both the digits and the power of ten are exact {@code double}s, so one
+     * division gives the same result as {@link Double#parseDouble(String)}.
+     *
+     * @return The value, rounded to the nearest {@code double}.
+     * @throws IllegalArgumentException if the field is not a decimal number.
+     */
+    double nextDecimal() {
+      int fieldStart = position;
+      boolean negative = consumeSign();
+      long mantissa = 0;
+      int digits = 0;
+      int scale = -1;
+      byte b;
+      while (position < end) {
+        b = buffer.get(position);
+        if (b == '.' && scale < 0) {
+          scale = 0;
+        } else if (b >= '0' && b <= '9') {
+          mantissa = mantissa * 10 + (b - '0');
+          digits++;
+          if (scale >= 0) {
+            scale++;
+          }
+        } else {
+          break;
+        }
+        position++;
+      }
+      if (digits == 0 || digits > MAX_DECIMAL_DIGITS) {
+        throw malformed(fieldStart, "decimal");
+      }
+      endField(fieldStart, "decimal");
+      double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+      return negative ? -value : value;
+    }
+
+    /**
+     * Reads a boolean field, {@code true}, {@code false}, {@code 1} or
+     * {@code 0}.
+     *
+     * @return The value.
+     * @throws IllegalArgumentException if the field is not a boolean.
+     */
+    boolean nextBoolean() {
+      int fieldStart = position;
+      boolean value;
+      if (matches("true") || matches("1")) {
+        value = true;
+      } else if (matches("false") || matches("0")) {
+        value = false;
+      } else {
+        throw malformed(fieldStart, "boolean");
+      }
+      endField(fieldStart, "boolean");
+      return value;
+    }
+
+    /**
+     * Reads a text field as UTF-8.
+     *
+     * @return The text.
+     * @throws IllegalArgumentException if the row ends before the field.
+     */
+    String nextText() {
+      int fieldStart = position;
+      int length = 0;
+      byte b;
+      while (position < end && (b = buffer.get(position)) != ',' && b != '\n' && b != '\r') {
+        if (length == text.length) {
+          text = Arrays.copyOf(text, length * 2);
+        }
+        text[length++] = b;
+        position++;
+      }
+      endField(fieldStart, "text");
+      return new String(text, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks that the last field read was the last one of its row.
+     *
+     * @throws IllegalArgumentException if the row has more fields.
+     */
+    void endRow() {
+      if (!atEndOfRow) {
+        throw malformed(position, "end of row");
+      }
+    }
+
+    /**
+     * Consumes a leading minus sign.
+     *
+     * @return {@code true} if there was one.
+     */
+    private boolean consumeSign() {
+      if (position < end && buffer.get(position) == '-') {
+        position++;
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Consumes the given word if the field continues with it.
+     *
+     * @param word The word, in ASCII.
+     * @return {@code true} if the word was consumed.
+     */
+    private boolean matches(String word) {
+      if (position + word.length() > end) {
+        return false;
+      }
+      for (int i = 0; i < word.length(); i++) {
+        if (buffer.get(position + i) != word.charAt(i)) {
+          return false;
+        }
+      }
+      position += word.length();
+      return true;
+    }
+
+    /**
+     * Consumes the separator after a field: a comma, or the end of the row.
+     *
+     * @param fieldStart The offset of the field, for the error message.
+     * @param expected   What the field should have been.
+     * @throws IllegalArgumentException if a field ended at the end of a row
+     *                                  that was already complete, or if
+     *                                  something other than a separator
+     *                                  follows.
+     */
+    private void endField(int fieldStart, String expected) {
+      if (atEndOfRow) {
+        throw malformed(fieldStart, expected);
+      }
+      if (position < end && buffer.get(position) == '\r') {
+        position++;
+      }
+      if (position >= end) {
+        atEndOfRow = true;
+        return;
+      }
+      byte b = buffer.get(position++);
+      if (b == '\n') {
+        atEndOfRow = true;
+      } else if (b != ',') {
+        throw malformed(fieldStart, expected);
+      }
+    }
+
+    /**
+     * Creates the exception for a malformed field.
+     *
+     * @param offset   The offset of the field in the file.
+     * @param expected What the field should have been.
+     * @return The exception to throw.
+     */
+    private static IllegalArgumentException malformed(int offset, String expected) {
+      return new IllegalArgumentException("Expected " + expected + " at byte offset " + offset + ".");
+    }
+  }
+}
@@ -0,0 +1,270 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.model.dto.DiscountDTO;
+import se.kth.iv1350.model.dto.ItemDTO;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A binary snapshot of an inventory and a discount database, so that a
+ * register can start without parsing its catalog again.
+ * <p>
+ * The snapshot stores every field as a column of fixed-size values, and all
+ * descriptions as one block of UTF-8 bytes with an offset per item. Loading
+ * maps the whole file once and copies each column out with a single bulk
+ * read. The format is:
+ * <pre>
+ * long magic, int version, int itemCount, int discountCount, int textBytes
+ * int[itemCount] itemID, long[itemCount] price, int[itemCount] VAT,
+ * int[itemCount] quantity, int[itemCount + 1] textOffset, byte[textBytes] text
+ * int[discountCount] discountID, itemID, customerID,
+ * long[discountCount] totalPrice, fixedDiscount,
+ * int[discountCount] percentageDiscount, byte[discountCount] activated,
+ * long[discountCount] validFrom, validUntil
+ * </pre>
+ */
+public class CatalogSnapshot {
+  private static final long MAGIC = 0x504F53534E415031L;
+  private static final int VERSION = 2;
+  private static final int HEADER_BYTES = Long.BYTES + 4 * Integer.BYTES;
+
+  private final InventorySys inventory;
+  private final DiscountDBHandler discounts;
+
+  /**
+   * Creates a new {@code CatalogSnapshot} holding the given systems.
+   *
+   * @param inventory The {@link InventorySys} of the snapshot.
+   * @param discounts The {@link DiscountDBHandler} of the snapshot.
+   */
+  private CatalogSnapshot(InventorySys inventory, DiscountDBHandler discounts) {
+    this.inventory = inventory;
+    this.discounts = discounts;
+  }
+
+  /**
+   * Returns a snapshot holding the given systems, without writing it.
+   *
+   * @param inventory The {@link InventorySys}.
+   * @param discounts The {@link DiscountDBHandler}.
+   * @return The new {@code CatalogSnapshot}.
+   */
+  public static CatalogSnapshot of(InventorySys inventory, DiscountDBHandler discounts) {
+    return new CatalogSnapshot(inventory, discounts);
+  }
+
+  /**
+   * Returns the inventory loaded from the snapshot.
+   *
+   * @return The {@link InventorySys}.
+   */
+  public InventorySys getInventory() {
+    return inventory;
+  }
+
+  /**
+   * Returns the discount database loaded from the snapshot.
+   *
+   * @return The {@link DiscountDBHandler}.
+   */
+  public DiscountDBHandler getDiscounts() {
+    return discounts;
+  }
+
+  /**
+   * Writes a snapshot of the given systems. The snapshot is first written to
+   * a temporary file and then moved into place, so a register starting at
+   * the same time never reads a half-written snapshot.
+   *
+   * @param file      The file to write.
+   * @param inventory The {@link InventorySys} to save.
+   * @param discounts The {@link DiscountDBHandler} to save.
+   * @throws IOException if the file could not be written.
+   */
+  public static void write(Path file, InventorySys inventory, DiscountDBHandler discounts) throws IOException {
+    List<InventorySys.InventoryItem> items = inventory.getItems();
+    List<DiscountDTO> discountList = discounts.getAllDiscounts();
+    int itemCount = items.size();
+    int discountCount = discountList.size();
+    byte[][] texts = new byte[itemCount][];
+    long textBytes = 0;
+    for (int i = 0; i < itemCount; i++) {
+      texts[i] = items.get(i).getItem().description().getBytes(StandardCharsets.UTF_8);
+      textBytes += texts[i].length;
+    }
+    long size = sizeOf(itemCount, discountCount, textBytes);
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Snapshot would be larger than 2 GB.");
+    }
+
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.putLong(MAGIC).putInt(VERSION).putInt(itemCount).putInt(discountCount).putInt((int) textBytes);
+      for (InventorySys.InventoryItem item : items) {
+        buffer.putInt(item.getItem().itemID());
+      }
+      for (InventorySys.InventoryItem item : items) {
+        buffer.putLong(Double.doubleToRawLongBits(item.getItem().price()));
+      }
+      for (InventorySys.InventoryItem item : items) {
+        buffer.putInt(item.getItem().VAT());
+      }
+      for (InventorySys.InventoryItem item : items) {
+        buffer.putInt(item.getQuantity());
+      }
+      int offset = 0;
+      for (byte[] text : texts) {
+        buffer.putInt(offset);
+        offset += text.length;
+      }
+      buffer.putInt(offset);
+      for (byte[] text : texts) {
+        buffer.put(text);
+      }
+      for (DiscountDTO discount : discountList) {
+        buffer.putInt(discount.discountID());
+      }
+      for (DiscountDTO discount : discountList) {
+        buffer.putInt(discount.itemID());
+      }
+      for (DiscountDTO discount : discountList) {
+        buffer.putInt(discount.customerID());
+      }
+      for (DiscountDTO discount : discountList) {
+        buffer.putLong(Double.doubleToRawLongBits(discount.totalPrice()));
+      }
+      for (DiscountDTO discount : discountList) {
+        buffer.putLong(Double.doubleToRawLongBits(discount.fixedDiscount()));
+      }
+      for (DiscountDTO discount : discountList) {
+        buffer.putInt(discount.percentageDiscount());
+      }
+      for (DiscountDTO discount : discountList) {
+        buffer.put((byte) (discount.activated() ? 1 : 0));
+      }
+      for (DiscountDTO discount : discountList) {
+        buffer.putLong(discount.validFrom());
+      }
+      for (DiscountDTO discount : discountList) {
+        buffer.putLong(discount.validUntil());
+      }
+      buffer.force();
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Loads a snapshot written by {@link #write(Path, InventorySys,
+   * DiscountDBHandler)}.
+   *
+   * @param file The snapshot file.
+   * @return The loaded {@code CatalogSnapshot}.
+   * @throws IOException              if the file could not be read.
+   * @throws IllegalArgumentException if the file is not a snapshot of this
+   *                                  version.
+   */
+  public static CatalogSnapshot read(Path file) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException(file + " is not a catalog snapshot.");
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (buffer.getLong() != MAGIC || buffer.getInt() != VERSION) {
+      throw new IllegalArgumentException(file + " is not a catalog snapshot of version " + VERSION + ".");
+    }
+    int itemCount = buffer.getInt();
+    int discountCount = buffer.getInt();
+    int textBytes = buffer.getInt();
+    if (itemCount < 0 || discountCount < 0 || textBytes < 0
+        || sizeOf(itemCount, discountCount, textBytes) != buffer.limit()) {
+      throw new IllegalArgumentException(file + " is truncated or corrupt.");
+    }
+
+    int[] itemIDs = readInts(buffer, itemCount);
+    long[] prices = readLongs(buffer, itemCount);
+    int[] vats = readInts(buffer, itemCount);
+    int[] quantities = readInts(buffer, itemCount);
+    int[] textOffsets = readInts(buffer, itemCount + 1);
+    byte[] text = new byte[textBytes];
+    buffer.get(text);
+    List<ItemDTO> items = new ArrayList<>(itemCount);
+    for (int i = 0; i < itemCount; i++) {
+      String description = new String(text, textOffsets[i], textOffsets[i + 1] - textOffsets[i],
+          StandardCharsets.UTF_8);
+      items.add(new ItemDTO(itemIDs[i], description, Double.longBitsToDouble(prices[i]), vats[i]));
+    }
+
+    int[] discountIDs = readInts(buffer, discountCount);
+    int[] discountItemIDs = readInts(buffer, discountCount);
+    int[] customerIDs = readInts(buffer, discountCount);
+    long[] totalPrices = readLongs(buffer, discountCount);
+    long[] fixedDiscounts = readLongs(buffer, discountCount);
+    int[] percentages = readInts(buffer, discountCount);
+    byte[] activated = new byte[discountCount];
+    buffer.get(activated);
+    long[] validFroms = readLongs(buffer, discountCount);
+    long[] validUntils = readLongs(buffer, discountCount);
+    List<DiscountDTO> discounts = new ArrayList<>(discountCount);
+    for (int i = 0; i < discountCount; i++) {
+      discounts.add(new DiscountDTO(discountIDs[i], discountItemIDs[i], customerIDs[i],
+          Double.longBitsToDouble(totalPrices[i]), Double.longBitsToDouble(fixedDiscounts[i]),
+          percentages[i], activated[i] != 0, validFroms[i], validUntils[i]));
+    }
+    return new CatalogSnapshot(new InventorySys(items, quantities), new DiscountDBHandler(discounts));
+  }
+
+  /**
+   * Returns the size of a snapshot with the given contents.
+   *
+   * @param itemCount     The number of items.
+   * @param discountCount The number of discounts.
+   * @param textBytes     The total length of all descriptions in UTF-8.
+   * @return The size in bytes.
+   */
+  private static long sizeOf(int itemCount, int discountCount, long textBytes) {
+    return HEADER_BYTES
+        + (long) itemCount * (Integer.BYTES * 4 + Long.BYTES) + Integer.BYTES + textBytes
+        + (long) discountCount * (Integer.BYTES * 4 + Long.BYTES * 4 + 1);
+  }
+
+  /**
+   * Copies a column of {@code int}s out of the snapshot with one bulk read.
+   *
+   * @param buffer The mapped snapshot, positioned at the column.
+   * @param count  The number of values.
+   * @return The values.
+   */
+  private static int[] readInts(MappedByteBuffer buffer, int count) {
+    int[] values = new int[count];
+    buffer.asIntBuffer().get(values);
+    buffer.position(buffer.position() + count * Integer.BYTES);
+    return values;
+  }
+
+  /**
+   * Copies a column of {@code long}s out of the snapshot with one bulk read.
+   *
+   * @param buffer The mapped snapshot, positioned at the column.
+   * @param count  The number of values.
+   * @return The values.
+   */
+  private static long[] readLongs(MappedByteBuffer buffer, int count) {
+    long[] values = new long[count];
+    buffer.asLongBuffer().get(values);
+    buffer.position(buffer.position() + count * Long.BYTES);
+    return values;
+  }
+}
@@ -0,0 +1,278 @@
+package se.kth.iv1350.integration;
+
+import java.util.Arrays;
+
+/**
+ * Remembers which sales have already been completed, so that a retried
+ * completion does not print, book and remove stock a second time.
+ * <p>
+ * The most recent sale identifiers are kept exactly in a small open-addressing
+ * set. When that set is full, the oldest identifier moves to a Bloom filter,
+ * which remembers older sales in a few bits each. The Bloom filter has two
+ * generations; when the newer one is full, the older one is dropped, so the
+ * memory used stays fixed and very old sales are eventually forgotten.
+ * <p>
+ * A Bloom filter can answer that it has seen an identifier it has not seen. To
+ * keep such a false answer from dropping a new sale, the Bloom filter is only
+ * asked about identifiers no larger than the largest one moved into it. Sale
+ * identifiers increase, so a new sale is always larger and is only checked
+ * against the exact set.
+ * <p>
+ * Every operation takes constant time, counting the clearing of a dropped
+ * generation as spread over the sales that filled it. All methods are thread
+ * safe.
+ */
+public class CompletionFilter {
+  private static final long EMPTY = 0L;
+  private static final int BITS_PER_ID = 16;
+  private static final int HASHES = 8;
+
+  private final long[] table;
+  private final long[] order;
+  private final int mask;
+  private final int bloomCapacity;
+  private int orderHead;
+  private int recentCount;
+  private long[] currentBloom;
+  private long[] previousBloom;
+  private int currentBloomCount;
+  private long largestForgotten;
+  private long duplicates;
+
+  /**
+   * Creates a new {@code CompletionFilter} that remembers the last 4 096 sales
+   * exactly and about half a million older sales in its Bloom filter, in
+   * about a megabyte.
+   */
+  public CompletionFilter() {
+    this(4096, 1 << 18);
+  }
+
+  /**
+   * Creates a new {@code CompletionFilter}.
+   *
+   * @param recentCapacity The number of sales remembered exactly.
+   * @param bloomCapacity  The number of sales in each generation of the Bloom
+   *                       filter.
+   * @throws IllegalArgumentException if a capacity is not positive.
+   */
+  public CompletionFilter(int recentCapacity, int bloomCapacity) {
+    if (recentCapacity <= 0 || bloomCapacity <= 0) {
+      throw new IllegalArgumentException("Capacities must be positive.");
+    }
+    int tableSize = Integer.highestOneBit(Math.max(2, recentCapacity) * 2 - 1) << 1;
+    this.table = new long[tableSize];
+    this.mask = tableSize - 1;
+    this.order = new long[recentCapacity];
+    this.bloomCapacity = bloomCapacity;
+    this.currentBloom = newBloom();
+    this.previousBloom = newBloom();
+    this.largestForgotten = Long.MIN_VALUE;
+  }
+
+  /**
+   * Marks a sale as being completed, unless it has been completed before.
+   *
+   * @param saleID The identifier of the sale. Sales without an identifier,
+   *               {@code 0}, are never treated as duplicates.
+   * @return {@code true} if the sale should be completed, {@code false} if it
+   *         is a duplicate and should be dropped.
+   */
+  public synchronized boolean tryComplete(long saleID) {
+    if (saleID == EMPTY) {
+      return true;
+    }
+    if (containsRecent(saleID) || (saleID <= largestForgotten && containsForgotten(saleID))) {
+      duplicates++;
+      return false;
+    }
+    addRecent(saleID);
+    return true;
+  }
+
+  /**
+   * Forgets a sale whose completion failed, so that it can be completed again.
+   * Only sales still in the exact set can be forgotten, which is always the
+   * case right after {@link #tryComplete(long)}.
+   *
+   * @param saleID The identifier of the sale.
+   */
+  public synchronized void completionFailed(long saleID) {
+    if (saleID != EMPTY) {
+      removeRecent(saleID);
+    }
+  }
+
+  /**
+   * Returns whether a sale has been completed.
+   *
+   * @param saleID The identifier of the sale.
+   * @return {@code true} if the sale has been, or probably has been, completed.
+   */
+  public synchronized boolean isCompleted(long saleID) {
+    return saleID != EMPTY
+        && (containsRecent(saleID) || (saleID <= largestForgotten && containsForgotten(saleID)));
+  }
+
+  /**
+   * Returns the number of completions that were dropped as duplicates.
+   *
+   * @return The number of dropped completions.
+   */
+  public synchronized long getDuplicateCount() {
+    return duplicates;
+  }
+
+  /**
+   * Returns whether the exact set holds the given identifier.
+   *
+   * @param saleID The identifier to look for.
+   * @return {@code true} if the identifier is in the set.
+   */
+  private boolean containsRecent(long saleID) {
+    for (int slot = slotOf(saleID); table[slot] != EMPTY; slot = (slot + 1) & mask) {
+      if (table[slot] == saleID) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Adds an identifier to the exact set, moving the oldest one to the Bloom
+   * filter if the set is full.
+   *
+   * @param saleID The identifier to add.
+   */
+  private void addRecent(long saleID) {
+    if (recentCount == order.length) {
+      long oldest = order[orderHead];
+      if (removeRecent(oldest)) {
+        forget(oldest);
+      }
+    } else {
+      recentCount++;
+    }
+    order[orderHead] = saleID;
+    orderHead = (orderHead + 1) % order.length;
+    int slot = slotOf(saleID);
+    while (table[slot] != EMPTY) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = saleID;
+  }
+
+  /**
+   * Removes an identifier from the exact set, shifting later entries of the
+   * same probe run back so that no tombstones are needed.
+   *
+   * @param saleID The identifier to remove.
+   * @return {@code true} if the identifier was in the set.
+   */
+  private boolean removeRecent(long saleID) {
+    int slot = slotOf(saleID);
+    while (table[slot] != saleID) {
+      if (table[slot] == EMPTY) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    int hole = slot;
+    for (int next = (hole + 1) & mask; table[next] != EMPTY; next = (next + 1) & mask) {
+      int home = slotOf(table[next]);
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        table[hole] = table[next];
+        hole = next;
+      }
+    }
+    table[hole] = EMPTY;
+    return true;
+  }
+
+  /**
+   * Moves an identifier into the current Bloom filter generation, starting a
+   * new generation if the current one is full.
+   *
+   * @param saleID The identifier to move.
+   */
+  private void forget(long saleID) {
+    if (currentBloomCount == bloomCapacity) {
+      long[] reused = previousBloom;
+      Arrays.fill(reused, 0L);
+      previousBloom = currentBloom;
+      currentBloom = reused;
+      currentBloomCount = 0;
+    }
+    long hash = mix(saleID);
+    long bits = (long) currentBloom.length << 6;
+    for (int i = 0; i < HASHES; i++) {
+      long bit = Long.remainderUnsigned(hash + i * (hash >>> 32 | 1), bits);
+      currentBloom[(int) (bit >>> 6)] |= 1L << bit;
+    }
+    currentBloomCount++;
+    largestForgotten = Math.max(largestForgotten, saleID);
+  }
+
+  /**
+   * Returns whether either Bloom filter generation probably holds the given
+   * identifier.
+   *
+   * @param saleID The identifier to look for.
+   * @return {@code true} if the identifier is probably in the Bloom filter.
+   */
+  private boolean containsForgotten(long saleID) {
+    return bloomContains(currentBloom, saleID) || bloomContains(previousBloom, saleID);
+  }
+
+  /**
+   * Returns whether a Bloom filter generation probably holds the given
+   * identifier.
+   *
+   * @param bloom  The bits of the generation.
+   * @param saleID The identifier to look for.
+   * @return {@code true} if all bits of the identifier are set.
+   */
+  private boolean bloomContains(long[] bloom, long saleID) {
+    long hash = mix(saleID);
+    long bits = (long) bloom.length << 6;
+    for (int i = 0; i < HASHES; i++) {
+      long bit = Long.remainderUnsigned(hash + i * (hash >>> 32 | 1), bits);
+      if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Creates the bits of an empty Bloom filter generation.
+   *
+   * @return The bits, {@value #BITS_PER_ID} per sale of capacity.
+   */
+  private long[] newBloom() {
+    return new long[(int) Math.max(1, ((long) bloomCapacity * BITS_PER_ID + 63) >>> 6)];
+  }
+
+  /**
+   * Returns the home slot of an identifier in the exact set.
+   *
+   * @param saleID The identifier.
+   * @return The slot.
+   */
+  private int slotOf(long saleID) {
+    return (int) mix(saleID) & mask;
+  }
+
+  /**
+   * Spreads the bits of an identifier, since consecutive identifiers would
+   * otherwise fill consecutive slots.
+   *
+   * @param value The identifier.
+   * @return The mixed value.
+   */
+  private static long mix(long value) {
+    value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+    value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return value ^ (value >>> 33);
+  }
+}
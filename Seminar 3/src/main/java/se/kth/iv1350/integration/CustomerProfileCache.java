@@ -0,0 +1,181 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.metrics.MetricsRegistry;
+import se.kth.iv1350.model.dto.CustomerProfileDTO;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded cache of customer discount profiles in front of the
+ * {@link DiscountDBHandler}.
+ * <p>
+ * A profile is loaded the first time its customer asks for discounts and kept
+ * until it becomes the least recently used one in a full cache, so regular
+ * loyalty customers are answered in constant time without the discount
+ * database. Profiles are loaded outside the cache's lock, so a slow load does
+ * not hold up other registers. Every {@link #clear()} and
+ * {@link #invalidate(int)} starts a new generation of the cache, and a profile
+ * whose load started in an earlier generation is loaded again instead of
+ * being cached, since it may predate the change. All methods are thread safe.
+ */
+public class CustomerProfileCache {
+  private static final int LOAD_ATTEMPTS = 3;
+
+  private final DiscountDBHandler discountDB;
+  private final Map<Integer, CustomerProfileDTO> profiles;
+  private final ReentrantLock lock;
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+  private final AtomicLong evictions;
+  private long generation;
+
+  /**
+   * Creates a new {@code CustomerProfileCache}.
+   *
+   * @param discountDB The {@link DiscountDBHandler} to load profiles from.
+   * @param capacity   The largest number of profiles kept.
+   * @throws IllegalArgumentException if {@code capacity} is not positive.
+   */
+  public CustomerProfileCache(DiscountDBHandler discountDB, int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive.");
+    }
+    this.discountDB = discountDB;
+    this.hits = new AtomicLong();
+    this.misses = new AtomicLong();
+    this.evictions = new AtomicLong();
+    this.lock = new ReentrantLock();
+    this.profiles = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, CustomerProfileDTO> eldest) {
+        if (size() > capacity) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns the discount profile of a customer, loading it from the discount
+   * database if it is not cached.
+   *
+   * @param customerID The unique identifier of the customer.
+   * @return The {@link CustomerProfileDTO} of the customer.
+   */
+  public CustomerProfileDTO get(int customerID) {
+    long loadGeneration;
+    lock.lock();
+    try {
+      CustomerProfileDTO profile = profiles.get(customerID);
+      if (profile != null) {
+        hits.incrementAndGet();
+        return profile;
+      }
+      loadGeneration = generation;
+    } finally {
+      lock.unlock();
+    }
+    misses.incrementAndGet();
+    CustomerProfileDTO loaded = null;
+    for (int attempt = 0; attempt < LOAD_ATTEMPTS; attempt++) {
+      loaded = discountDB.getCustomerProfile(customerID);
+      lock.lock();
+      try {
+        if (loadGeneration == generation) {
+          CustomerProfileDTO raced = profiles.putIfAbsent(customerID, loaded);
+          return raced != null ? raced : loaded;
+        }
+        loadGeneration = generation;
+      } finally {
+        lock.unlock();
+      }
+    }
+    // The cache keeps changing; answer without caching
+    return loaded;
+  }
+
+  /**
+   * Returns the compound percentage discount of a customer.
+   *
+   * @param customerID The unique identifier of the customer.
+   * @return The compound percentage, as returned by
+   *         {@link DiscountDBHandler#getDiscounts(int)}.
+   */
+  public double getDiscounts(int customerID) {
+    return get(customerID).percentageDiscount();
+  }
+
+  /**
+   * Drops the cached profile of a customer, for example after the customer's
+   * discounts changed.
+   *
+   * @param customerID The unique identifier of the customer.
+   */
+  public void invalidate(int customerID) {
+    lock.lock();
+    try {
+      generation++;
+      profiles.remove(customerID);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Drops every cached profile.
+   */
+  public void clear() {
+    lock.lock();
+    try {
+      generation++;
+      profiles.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of cached profiles.
+   *
+   * @return The number of profiles.
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return profiles.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the share of lookups that were answered from the cache.
+   *
+   * @return The hit ratio, between 0 and 1, or 0 if nothing was looked up.
+   */
+  public double getHitRatio() {
+    long hitCount = hits.get();
+    long total = hitCount + misses.get();
+    return total == 0 ? 0.0 : (double) hitCount / total;
+  }
+
+  /**
+   * Registers the hits, misses, evictions, size and hit ratio of the cache as
+   * gauges. The hit ratio is reported in per mille, since gauges are whole
+   * numbers.
+   *
+   * @param metrics The {@link MetricsRegistry} to register the gauges in.
+   */
+  public void registerMetrics(MetricsRegistry metrics) {
+    metrics.gauge("customer_profile_cache_hits_total", hits::get);
+    metrics.gauge("customer_profile_cache_misses_total", misses::get);
+    metrics.gauge("customer_profile_cache_evictions_total", evictions::get);
+    metrics.gauge("customer_profile_cache_size", this::size);
+    metrics.gauge("customer_profile_cache_hit_ratio_permille", () -> Math.round(getHitRatio() * 1000));
+  }
+}
@@ -1,19 +1,39 @@
 package se.kth.iv1350.integration;
 
+import se.kth.iv1350.model.dto.CustomerProfileDTO;
 import se.kth.iv1350.model.dto.DiscountDTO;
 import se.kth.iv1350.model.dto.SaleDTO;
 import se.kth.iv1350.model.dto.SaleItemDTO;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Handles access to the discount database.
  * Responsible for storing and retrieving applicable discounts for sales and
  * customers.
+ * <p>
+ * Lookups only see the active discounts, which are kept in an immutable index
+ * that is replaced as a whole. At first, the active discounts are the
+ * activated ones that are valid at all times. Time-boxed discounts only apply
+ * once a {@link CampaignScheduler} publishes them, so a lookup never checks
+ * the time or visits a discount that does not apply. A discount that is not
+ * activated never applies.
  */
 public class DiscountDBHandler {
+  private static final int DEFAULT_PARALLEL_THRESHOLD = 20_000;
+  private static final int LINES_PER_TASK = 4_096;
+  private static final double MICROS_PER_UNIT = 1_000_000.0;
+
+  private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
   private List<DiscountDTO> discountList;
+  private volatile ActiveDiscounts active;
 
   /**
    * Creates a new {@code DiscountDBHandler} and initializes the discount list
@@ -31,28 +51,164 @@ public class DiscountDBHandler {
 
     discountList.add(new DiscountDTO(7, -1, -1, 100, 0.0, 10, true)); // 10% total price discount
     discountList.add(new DiscountDTO(8, -1, -1, 50, 0.0, 10, true)); // 10% total price discount
+    this.active = new ActiveDiscounts(untimed(discountList));
+  }
+
+  /**
+   * Creates a new {@code DiscountDBHandler} holding the given discounts, for
+   * example ones loaded by a {@link CatalogImporter}.
+   *
+   * @param discounts The discounts of the database.
+   */
+  public DiscountDBHandler(List<DiscountDTO> discounts) {
+    this.discountList = new ArrayList<>(discounts);
+    this.active = new ActiveDiscounts(untimed(discountList));
+  }
+
+  /**
+   * Returns every discount in the database.
+   *
+   * @return An unmodifiable list of all {@link DiscountDTO}s, in the order
+   *         they were added.
+   */
+  public List<DiscountDTO> getAllDiscounts() {
+    return Collections.unmodifiableList(discountList);
+  }
+
+  /**
+   * Returns the discounts that currently apply.
+   *
+   * @return An unmodifiable list of the active {@link DiscountDTO}s.
+   */
+  public List<DiscountDTO> getActiveDiscounts() {
+    return active.discounts;
+  }
+
+  /**
+   * Replaces the discounts that apply. Lookups that are already running
+   * finish with the discounts they started with.
+   *
+   * @param discounts The discounts that apply from now on, in the order of
+   *                  the discount list.
+   */
+  void publishActive(List<DiscountDTO> discounts) {
+    this.active = new ActiveDiscounts(discounts);
+  }
+
+  /**
+   * Sets the number of lines from which {@link #getDiscounts(SaleDTO)} splits
+   * a sale across the common fork-join pool. Smaller sales are evaluated on
+   * the calling thread, where splitting would cost more than it saves.
+   *
+   * @param lines The smallest number of lines evaluated in parallel.
+   * @throws IllegalArgumentException if {@code lines} is negative.
+   */
+  public void setParallelThreshold(int lines) {
+    if (lines < 0) {
+      throw new IllegalArgumentException("Threshold cannot be negative.");
+    }
+    this.parallelThreshold = lines;
   }
 
   /**
    * Retrieves a list of applicable discounts for the given sale.
    * Discounts are applicable if they match the item ID in the sale.
+   * <p>
+   * The discount of each line is summed in whole millionths of a unit, so
+   * the sum does not depend on the order it is computed in. A large sale is
+   * split into parts that are summed in parallel, and gives exactly the same
+   * result as when it is summed on one thread.
    *
    * @param sale The {@link SaleDTO} representing the current sale.
    * @return The total discount amount to be reduced from the total cost of the
    *         entire sale.
    */
   public double getDiscounts(SaleDTO sale) {
-    double totalDiscount = 0.0;
-    for (SaleItemDTO saleItem : sale.saleItems()) {
+    List<SaleItemDTO> lines = sale.saleItems();
+    if (!(lines instanceof RandomAccess)) {
+      lines = new ArrayList<>(lines);
+    }
+    Map<Integer, List<DiscountDTO>> discountsByItem = active.byItem;
+    long totalMicros;
+    if (lines.size() >= parallelThreshold && lines.size() > LINES_PER_TASK) {
+      totalMicros = ForkJoinPool.commonPool().invoke(new DiscountTask(discountsByItem, lines, 0, lines.size()));
+    } else {
+      totalMicros = sumDiscountMicros(discountsByItem, lines, 0, lines.size());
+    }
+    return Math.round(totalMicros / (MICROS_PER_UNIT / 100.0)) / 100.0;
+  }
+
+  /**
+   * Sums the item discounts of a range of sale lines.
+   *
+   * @param discountsByItem The active item discounts.
+   * @param lines           The lines of the sale.
+   * @param from            The first line, inclusive.
+   * @param to              The last line, exclusive.
+   * @return The discount of the lines, in millionths of a unit.
+   */
+  private static long sumDiscountMicros(Map<Integer, List<DiscountDTO>> discountsByItem, List<SaleItemDTO> lines,
+      int from, int to) {
+    long totalMicros = 0;
+    for (int i = from; i < to; i++) {
+      SaleItemDTO saleItem = lines.get(i);
       // Simulate fetching discounts from the database based on items
-      for (DiscountDTO discount : discountList) {
-        if (discount.itemID() == saleItem.item().itemID()) {
-          double itemPrice = saleItem.item().price() * saleItem.quantity() * (1 + (saleItem.item().VAT() / 100.0));
-          totalDiscount += itemPrice * discount.percentageDiscount() / 100.0;
-        }
+      List<DiscountDTO> discounts = discountsByItem.get(saleItem.item().itemID());
+      if (discounts == null) {
+        continue;
+      }
+      long lineCents = saleItem.item().grossCents(saleItem.quantity());
+      for (DiscountDTO discount : discounts) {
+        // cents * percent / 100 is exact in millionths of a unit: cents * percent * 100
+        totalMicros += lineCents * discount.percentageDiscount() * 100L;
+      }
+    }
+    return totalMicros;
+  }
+
+  /**
+   * Sums the item discounts of a range of sale lines, splitting the range in
+   * halves until each part is small enough to sum on one thread.
+   */
+  private static class DiscountTask extends RecursiveTask<Long> {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Map<Integer, List<DiscountDTO>> discountsByItem;
+    private final transient List<SaleItemDTO> lines;
+    private final int from;
+    private final int to;
+
+    /**
+     * Creates a new {@code DiscountTask}.
+     *
+     * @param discountsByItem The active item discounts.
+     * @param lines           The lines of the sale.
+     * @param from            The first line, inclusive.
+     * @param to              The last line, exclusive.
+     */
+    DiscountTask(Map<Integer, List<DiscountDTO>> discountsByItem, List<SaleItemDTO> lines, int from, int to) {
+      this.discountsByItem = discountsByItem;
+      this.lines = lines;
+      this.from = from;
+      this.to = to;
+    }
+
+    /**
+     * Sums the range, or its two halves in parallel.
+     *
+     * @return The discount of the lines, in millionths of a unit.
+     */
+    @Override
+    protected Long compute() {
+      if (to - from <= LINES_PER_TASK) {
+        return sumDiscountMicros(discountsByItem, lines, from, to);
       }
+      int middle = (from + to) >>> 1;
+      DiscountTask left = new DiscountTask(discountsByItem, lines, from, middle);
+      left.fork();
+      long right = new DiscountTask(discountsByItem, lines, middle, to).compute();
+      return left.join() + right;
     }
-    return Math.round(totalDiscount * 100.0) / 100.0;
   }
 
   /**
@@ -65,8 +221,8 @@ public class DiscountDBHandler {
   public double getDiscounts(double totalCost) {
     double totalDiscount = 1.00;
     // Simulate fetching discounts from the database based on total cost
-    for (DiscountDTO discount : discountList) {
-      if (totalCost >= discount.totalPrice() && discount.totalPrice() > 0) {
+    for (DiscountDTO discount : active.totalPrice) {
+      if (totalCost >= discount.totalPrice()) {
         totalDiscount *= 1 - (discount.percentageDiscount() / 100.0);
       }
     }
@@ -81,13 +237,97 @@ public class DiscountDBHandler {
    *         the entire sale.
    */
   public double getDiscounts(int customerID) {
-    double totalDiscount = 1.0;
     // Simulate fetching discounts from the database based on customer ID
-    for (DiscountDTO discount : discountList) {
-      if (discount.customerID() == customerID) {
-        totalDiscount *= 1 - (discount.percentageDiscount() / 100.0);
-      }
+    return compoundPercentage(active.byCustomer.getOrDefault(customerID, List.of()));
+  }
+
+  /**
+   * Retrieves the discount profile of a customer, with all the customer's
+   * discounts compounded into one percentage.
+   *
+   * @param customerID The unique identifier of the customer.
+   * @return The {@link CustomerProfileDTO} of the customer, with no discounts
+   *         if none are registered.
+   */
+  public CustomerProfileDTO getCustomerProfile(int customerID) {
+    List<DiscountDTO> discounts = active.byCustomer.getOrDefault(customerID, List.of());
+    return new CustomerProfileDTO(customerID, discounts, compoundPercentage(discounts));
+  }
+
+  /**
+   * Compounds percentage discounts into one percentage.
+   *
+   * @param discounts The discounts to compound.
+   * @return The compound percentage, rounded to a whole percent.
+   */
+  private static double compoundPercentage(List<DiscountDTO> discounts) {
+    double totalDiscount = 1.0;
+    for (DiscountDTO discount : discounts) {
+      totalDiscount *= 1 - (discount.percentageDiscount() / 100.0);
     }
     return Math.round((1 - totalDiscount) * 100);
   }
+
+  /**
+   * Returns the activated discounts that are valid at all times.
+   *
+   * @param discounts The discounts to choose from.
+   * @return The discounts that always apply, in the same order.
+   */
+  private static List<DiscountDTO> untimed(List<DiscountDTO> discounts) {
+    List<DiscountDTO> always = new ArrayList<>();
+    for (DiscountDTO discount : discounts) {
+      if (discount.activated() && !discount.isTimeBoxed()) {
+        always.add(discount);
+      }
+    }
+    return always;
+  }
+
+  /**
+   * An immutable index of the active discounts by item, by customer and by
+   * total price, so that a lookup only visits the discounts that can match.
+   * Each index keeps the order of the discount list, so sums and products are
+   * computed in the same order as before.
+   */
+  private static final class ActiveDiscounts {
+    private final List<DiscountDTO> discounts;
+    private final Map<Integer, List<DiscountDTO>> byItem;
+    private final Map<Integer, List<DiscountDTO>> byCustomer;
+    private final List<DiscountDTO> totalPrice;
+
+    /**
+     * Builds the indexes of the given discounts.
+     *
+     * @param discounts The active discounts.
+     */
+    ActiveDiscounts(List<DiscountDTO> discounts) {
+      Map<Integer, List<DiscountDTO>> items = new HashMap<>();
+      Map<Integer, List<DiscountDTO>> customers = new HashMap<>();
+      List<DiscountDTO> totals = new ArrayList<>();
+      for (DiscountDTO discount : discounts) {
+        items.computeIfAbsent(discount.itemID(), itemID -> new ArrayList<>()).add(discount);
+        customers.computeIfAbsent(discount.customerID(), customerID -> new ArrayList<>()).add(discount);
+        if (discount.totalPrice() > 0) {
+          totals.add(discount);
+        }
+      }
+      this.discounts = List.copyOf(discounts);
+      this.byItem = immutable(items);
+      this.byCustomer = immutable(customers);
+      this.totalPrice = List.copyOf(totals);
+    }
+
+    /**
+     * Copies an index into an immutable map of immutable lists.
+     *
+     * @param index The index to copy.
+     * @return The immutable copy.
+     */
+    private static Map<Integer, List<DiscountDTO>> immutable(Map<Integer, List<DiscountDTO>> index) {
+      Map<Integer, List<DiscountDTO>> copy = new HashMap<>(index.size() * 2);
+      index.forEach((key, list) -> copy.put(key, List.copyOf(list)));
+      return Collections.unmodifiableMap(copy);
+    }
+  }
 }
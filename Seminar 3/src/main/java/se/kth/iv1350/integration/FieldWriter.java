@@ -0,0 +1,227 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.function.Function;
+import java.util.function.ToDoubleBiFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Writes one fixed-width field of a receipt. A compiled
+ * {@link ReceiptRenderer} is nothing more than a chain of field writers, so
+ * rendering never parses a format string.
+ * <p>
+ * Text and numbers are padded to the width of the field but never cut, the
+ * same way {@link String#format(String, Object...)} treats a width.
+ */
+interface FieldWriter {
+  /**
+   * Writes the field.
+   *
+   * @param out  The receipt being rendered.
+   * @param sale The sale the receipt is for.
+   * @param line The current sale line, or {@code null} outside the item
+   *             section.
+   */
+  void write(StringBuilder out, SaleDTO sale, SaleItemDTO line);
+
+  /**
+   * Returns the number of characters the field normally takes, used to size
+   * the output buffer before rendering.
+   *
+   * @return The expected width of the field.
+   */
+  int width();
+
+  /**
+   * Writes a fixed piece of text.
+   *
+   * @param text The text to write.
+   */
+  record Literal(String text) implements FieldWriter {
+    @Override
+    public void write(StringBuilder out, SaleDTO sale, SaleItemDTO line) {
+      out.append(text);
+    }
+
+    @Override
+    public int width() {
+      return text.length();
+    }
+  }
+
+  /**
+   * Writes the description of the current line, left aligned.
+   *
+   * @param width The width of the field.
+   * @param text  The function that extracts the text from the line.
+   */
+  record LeftText(int width, Function<SaleItemDTO, String> text) implements FieldWriter {
+    @Override
+    public void write(StringBuilder out, SaleDTO sale, SaleItemDTO line) {
+      String value = text.apply(line);
+      out.append(value);
+      pad(out, width - value.length());
+    }
+  }
+
+  /**
+   * Writes an integer from the current line, right aligned.
+   *
+   * @param width The width of the field.
+   * @param value The function that extracts the integer from the line.
+   */
+  record RightInt(int width, ToIntFunction<SaleItemDTO> value) implements FieldWriter {
+    @Override
+    public void write(StringBuilder out, SaleDTO sale, SaleItemDTO line) {
+      int number = value.applyAsInt(line);
+      pad(out, width - digitCount(number));
+      out.append(number);
+    }
+  }
+
+  /**
+   * Writes an amount with two decimals, right aligned.
+   *
+   * @param width The width of the field.
+   * @param value The function that extracts the amount from the sale and line.
+   */
+  record RightAmount(int width, ToDoubleBiFunction<SaleDTO, SaleItemDTO> value) implements FieldWriter {
+    @Override
+    public void write(StringBuilder out, SaleDTO sale, SaleItemDTO line) {
+      appendAmount(out, value.applyAsDouble(sale, line), width);
+    }
+  }
+
+  /**
+   * Writes the receipt number, which is the identifier of the sale, on a line
+   * of its own. Nothing is written for a sale without an identifier.
+   *
+   * @param label The label in front of the number.
+   */
+  record ReceiptNumber(String label) implements FieldWriter {
+    @Override
+    public void write(StringBuilder out, SaleDTO sale, SaleItemDTO line) {
+      if (sale.saleID() != 0) {
+        out.append(label).append(sale.saleID()).append('\n');
+      }
+    }
+
+    @Override
+    public int width() {
+      return label.length() + 17;
+    }
+  }
+
+  /**
+   * Writes the time of the sale as {@code yyyy-MM-dd HH:mm:ss} in the default
+   * time zone.
+   */
+  record DateTime() implements FieldWriter {
+    @Override
+    public void write(StringBuilder out, SaleDTO sale, SaleItemDTO line) {
+      Date datetime = sale.datetime();
+      LocalDateTime time = LocalDateTime.ofInstant(datetime.toInstant(), ZoneId.systemDefault());
+      appendPadded(out, time.getYear(), 4);
+      out.append('-');
+      appendPadded(out, time.getMonthValue(), 2);
+      out.append('-');
+      appendPadded(out, time.getDayOfMonth(), 2);
+      out.append(' ');
+      appendPadded(out, time.getHour(), 2);
+      out.append(':');
+      appendPadded(out, time.getMinute(), 2);
+      out.append(':');
+      appendPadded(out, time.getSecond(), 2);
+    }
+
+    @Override
+    public int width() {
+      return 19;
+    }
+  }
+
+  /**
+   * Appends the given number of spaces.
+   *
+   * @param out   The receipt being rendered.
+   * @param count The number of spaces, nothing is written if not positive.
+   */
+  static void pad(StringBuilder out, int count) {
+    for (int i = 0; i < count; i++) {
+      out.append(' ');
+    }
+  }
+
+  /**
+   * Appends a non-negative number with leading zeros.
+   *
+   * @param out    The receipt being rendered.
+   * @param number The number to write.
+   * @param digits The minimum number of digits.
+   */
+  static void appendPadded(StringBuilder out, int number, int digits) {
+    for (int i = digitCount(number); i < digits; i++) {
+      out.append('0');
+    }
+    out.append(number);
+  }
+
+  /**
+   * Appends an amount with two decimals, right aligned in the given width.
+   * Rounds half up like {@code %.2f}; values that sit on a half cent after
+   * binary rounding are resolved through their decimal representation so the
+   * result matches {@link String#format(String, Object...)}.
+   *
+   * @param out    The receipt being rendered.
+   * @param amount The amount to write.
+   * @param width  The width of the field.
+   */
+  static void appendAmount(StringBuilder out, double amount, int width) {
+    double scaled = Math.abs(amount) * 100.0;
+    double fraction = scaled - Math.floor(scaled);
+    long cents;
+    if (Math.abs(fraction - 0.5) < 1e-6) {
+      cents = BigDecimal.valueOf(Math.abs(amount)).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    } else {
+      cents = Math.round(scaled);
+    }
+    boolean negative = amount < 0 && cents != 0;
+    long units = cents / 100;
+    int length = digitCount(units) + 3 + (negative ? 1 : 0);
+    pad(out, width - length);
+    if (negative) {
+      out.append('-');
+    }
+    out.append(units).append('.');
+    long decimals = cents % 100;
+    if (decimals < 10) {
+      out.append('0');
+    }
+    out.append(decimals);
+  }
+
+  /**
+   * Returns the number of characters needed to write the given number.
+   *
+   * @param number The number.
+   * @return The number of characters, including a minus sign.
+   */
+  static int digitCount(long number) {
+    if (number < 0) {
+      return number == Long.MIN_VALUE ? 20 : 1 + digitCount(-number);
+    }
+    int digits = 1;
+    while (number >= 10) {
+      number /= 10;
+      digits++;
+    }
+    return digits;
+  }
+}
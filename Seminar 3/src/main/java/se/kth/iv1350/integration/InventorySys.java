@@ -1,24 +1,36 @@
 package se.kth.iv1350.integration;
 
 import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.PriceChangeDTO;
 import se.kth.iv1350.model.dto.SaleDTO;
 import se.kth.iv1350.model.dto.SaleItemDTO;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents the external inventory system integration.
  * Responsible for managing inventory items, fetching item information, and
  * updating inventory after a sale.
+ * <p>
+ * Prices can change while registers are scanning. A new price is published as
+ * a new {@link ItemDTO} for that item alone, with one volatile write, so
+ * readers never wait and always see a whole version of an item. Sales that
+ * already hold the old version keep the price they scanned at.
  */
 public class InventorySys {
   private List<InventoryItem> items;
+  private int[] indexIDs;
+  private InventoryItem[] indexItems;
+  private final AtomicLong catalogVersion = new AtomicLong();
 
   /**
    * Represents an item in the inventory with its quantity.
    */
   public class InventoryItem {
-    private ItemDTO item;
+    private volatile ItemDTO item;
     private int quantity;
 
     /**
@@ -41,12 +53,30 @@ public class InventorySys {
       return item;
     }
 
+    /**
+     * Publishes a new version of the item with the given price. Readers see
+     * either the old or the new version, never a mix of both.
+     *
+     * @param price The new price, excluding VAT.
+     * @return The new {@link ItemDTO}, or the current one if the price did
+     *         not change.
+     */
+    synchronized ItemDTO setPrice(double price) {
+      ItemDTO current = item;
+      if (current.price() == price) {
+        return current;
+      }
+      ItemDTO next = new ItemDTO(current.itemID(), current.description(), price, current.VAT());
+      this.item = next;
+      return next;
+    }
+
     /**
      * Returns the quantity of this item in stock.
      *
      * @return The quantity of the item.
      */
-    public int getQuantity() {
+    public synchronized int getQuantity() {
       return quantity;
     }
 
@@ -55,9 +85,21 @@ public class InventorySys {
      *
      * @param quantity The new quantity to set.
      */
-    public void setQuantity(int quantity) {
+    public synchronized void setQuantity(int quantity) {
       this.quantity = quantity;
     }
+
+    /**
+     * Changes the quantity of this item in stock in one atomic step, so that
+     * a sale and a return of the same item cannot overwrite each other.
+     *
+     * @param delta The change of the quantity.
+     * @return The new quantity.
+     */
+    public synchronized int addQuantity(int delta) {
+      this.quantity += delta;
+      return quantity;
+    }
   }
 
   /**
@@ -71,15 +113,102 @@ public class InventorySys {
     items.add(new InventoryItem(new ItemDTO(3, "Orange", 8.0, 25), 21));
     items.add(new InventoryItem(new ItemDTO(4, "Milk", 20.0, 6), 88));
     items.add(new InventoryItem(new ItemDTO(5, "Bread", 15.0, 12), 49));
+    buildIndex();
+  }
+
+  /**
+   * Creates a new {@code InventorySys} holding the given items, for example
+   * ones loaded by a {@link CatalogImporter}.
+   *
+   * @param items      The items of the inventory.
+   * @param quantities The quantity in stock of each item, in the same order as
+   *                   {@code items}.
+   * @throws IllegalArgumentException if the lists differ in length.
+   */
+  public InventorySys(List<ItemDTO> items, int[] quantities) {
+    if (items.size() != quantities.length) {
+      throw new IllegalArgumentException("There must be one quantity per item.");
+    }
+    this.items = new ArrayList<>(items.size());
+    for (int i = 0; i < quantities.length; i++) {
+      this.items.add(new InventoryItem(items.get(i), quantities[i]));
+    }
+    buildIndex();
   }
 
   /**
    * Returns the list of inventory items.
    *
-   * @return The list of {@link InventoryItem} in the inventory.
+   * @return An unmodifiable list of the {@link InventoryItem} in the
+   *         inventory.
    */
   public List<InventoryItem> getItems() {
-    return items;
+    return Collections.unmodifiableList(items);
+  }
+
+  /**
+   * Returns the number of new item versions published since the inventory
+   * was created. It grows by one for every price that changes.
+   *
+   * @return The version of the catalog.
+   */
+  public long getCatalogVersion() {
+    return catalogVersion.get();
+  }
+
+  /**
+   * Changes the price of an item by publishing a new version of it.
+   *
+   * @param itemId The unique identifier of the item.
+   * @param price  The new price, excluding VAT.
+   * @return The new {@link ItemDTO}, or the current one if the price did not
+   *         change.
+   * @throws IllegalArgumentException if the price is negative or the item is
+   *                                  not found.
+   */
+  public ItemDTO updatePrice(int itemId, double price) {
+    if (price < 0) {
+      throw new IllegalArgumentException("Price cannot be negative.");
+    }
+    InventoryItem inventoryItem = findItem(itemId);
+    if (inventoryItem == null) {
+      throw new IllegalArgumentException("Item " + itemId + " is not in the inventory.");
+    }
+    ItemDTO before = inventoryItem.getItem();
+    ItemDTO after = inventoryItem.setPrice(price);
+    if (after != before) {
+      catalogVersion.incrementAndGet();
+    }
+    return after;
+  }
+
+  /**
+   * Changes the prices of many items. Every item is checked before any price
+   * changes; then the new versions are published one item at a time, so
+   * nothing is rebuilt and readers are never locked out. While the update
+   * runs, a reader may see some items at their new price and others at their
+   * old one.
+   *
+   * @param changes The new prices.
+   * @return The number of items whose price changed.
+   * @throws IllegalArgumentException if any item is not found; no price is
+   *                                  changed then.
+   */
+  public int updatePrices(List<PriceChangeDTO> changes) {
+    for (PriceChangeDTO change : changes) {
+      if (currentItem(change.itemID()) == null) {
+        throw new IllegalArgumentException("Item " + change.itemID() + " is not in the inventory.");
+      }
+    }
+    int changed = 0;
+    for (PriceChangeDTO change : changes) {
+      ItemDTO before = currentItem(change.itemID());
+      updatePrice(change.itemID(), change.price());
+      if (before.price() != change.price()) {
+        changed++;
+      }
+    }
+    return changed;
   }
 
   /**
@@ -103,12 +232,19 @@ public class InventorySys {
    */
   public ItemDTO getItem(int itemId) {
     System.out.println("Fetching item information from inventory system...");
-    for (InventoryItem inventoryItem : items) {
-      if (inventoryItem.getItem().itemID() == itemId) {
-        return inventoryItem.getItem();
-      }
-    }
-    return null;
+    InventoryItem inventoryItem = findItem(itemId);
+    return inventoryItem == null ? null : inventoryItem.getItem();
+  }
+
+  /**
+   * Returns the quantity in stock of the item with the given ID.
+   *
+   * @param itemId The unique identifier of the item.
+   * @return The quantity in stock, or {@code 0} if the item is not found.
+   */
+  public int getQuantity(int itemId) {
+    InventoryItem inventoryItem = findItem(itemId);
+    return inventoryItem == null ? 0 : inventoryItem.getQuantity();
   }
 
   /**
@@ -121,13 +257,78 @@ public class InventorySys {
   public void updateInventory(SaleDTO saleDTO) {
     System.out.println("Updating inventory with sale information...");
     for (SaleItemDTO soldItem : saleDTO.saleItems()) {
-      for (InventoryItem inventoryItem : items) {
-        if (inventoryItem.getItem().itemID() == soldItem.item().itemID()) {
-          int newQuantity = inventoryItem.getQuantity() - soldItem.quantity();
-          inventoryItem.setQuantity(newQuantity);
-          break;
-        }
+      InventoryItem inventoryItem = findItem(soldItem.item().itemID());
+      if (inventoryItem != null) {
+        inventoryItem.addQuantity(-soldItem.quantity());
+      }
+    }
+  }
+
+  /**
+   * Puts returned units of an item back in stock.
+   *
+   * @param itemId   The unique identifier of the item.
+   * @param quantity The number of returned units.
+   * @return The new quantity in stock.
+   * @throws IllegalArgumentException if the quantity is not positive or the
+   *                                  item is not found.
+   */
+  public int restock(int itemId, int quantity) {
+    if (quantity <= 0) {
+      throw new IllegalArgumentException("Quantity must be greater than zero.");
+    }
+    InventoryItem inventoryItem = findItem(itemId);
+    if (inventoryItem == null) {
+      throw new IllegalArgumentException("Item " + itemId + " is not in the inventory.");
+    }
+    return inventoryItem.addQuantity(quantity);
+  }
+
+  /**
+   * Returns the current version of an item without reporting the lookup.
+   *
+   * @param itemId The unique identifier of the item.
+   * @return The {@link ItemDTO}, or {@code null} if not found.
+   */
+  ItemDTO currentItem(int itemId) {
+    InventoryItem inventoryItem = findItem(itemId);
+    return inventoryItem == null ? null : inventoryItem.getItem();
+  }
+
+  /**
+   * Finds the inventory item with the given ID using the index.
+   *
+   * @param itemId The unique identifier of the item.
+   * @return The {@link InventoryItem}, or {@code null} if not found.
+   */
+  private InventoryItem findItem(int itemId) {
+    int position = Arrays.binarySearch(indexIDs, itemId);
+    return position < 0 ? null : indexItems[position];
+  }
+
+  /**
+   * Builds the index of items sorted by item ID, so that lookups take
+   * logarithmic time even for very large inventories. If two items share an
+   * ID, the first one wins, as it did with the linear search.
+   */
+  private void buildIndex() {
+    long[] keys = new long[items.size()];
+    for (int position = 0; position < keys.length; position++) {
+      keys[position] = ((long) items.get(position).getItem().itemID() << 32) | position;
+    }
+    Arrays.parallelSort(keys);
+    int[] ids = new int[keys.length];
+    InventoryItem[] sorted = new InventoryItem[keys.length];
+    int count = 0;
+    for (long key : keys) {
+      int itemID = (int) (key >>> 32);
+      if (count == 0 || ids[count - 1] != itemID) {
+        ids[count] = itemID;
+        sorted[count] = items.get((int) key);
+        count++;
       }
     }
+    this.indexIDs = Arrays.copyOf(ids, count);
+    this.indexItems = Arrays.copyOf(sorted, count);
   }
 }
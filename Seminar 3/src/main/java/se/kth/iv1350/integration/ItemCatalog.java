@@ -0,0 +1,140 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.model.dto.ItemDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The item information shared by all stores of the chain. The set of items
+ * never changes once the catalog is created, so it can be read by any number
+ * of threads without locking. A price change publishes a new version of one
+ * item in a single atomic write, which readers see on their next lookup.
+ * <p>
+ * Items are kept sorted by item ID. The position of an item in that order is
+ * its index, which stock shards use to address their counters.
+ */
+public class ItemCatalog {
+  private final int[] itemIDs;
+  private final AtomicReferenceArray<ItemDTO> items;
+  private final AtomicLong version;
+
+  /**
+   * Creates a new {@code ItemCatalog} holding the given items.
+   *
+   * @param items The items of the catalog.
+   * @throws IllegalArgumentException if two items have the same ID.
+   */
+  public ItemCatalog(Collection<ItemDTO> items) {
+    ItemDTO[] sorted = items.toArray(new ItemDTO[0]);
+    Arrays.sort(sorted, Comparator.comparingInt(ItemDTO::itemID));
+    this.itemIDs = new int[sorted.length];
+    for (int i = 0; i < sorted.length; i++) {
+      itemIDs[i] = sorted[i].itemID();
+      if (i > 0 && itemIDs[i] == itemIDs[i - 1]) {
+        throw new IllegalArgumentException("Duplicate item ID " + itemIDs[i] + " in catalog.");
+      }
+    }
+    this.items = new AtomicReferenceArray<>(sorted);
+    this.version = new AtomicLong();
+  }
+
+  /**
+   * Returns the item with the given ID.
+   *
+   * @param itemID The ID of the item.
+   * @return The {@link ItemDTO}, or {@code null} if it is not in the catalog.
+   */
+  public ItemDTO get(int itemID) {
+    int index = indexOf(itemID);
+    return index < 0 ? null : items.get(index);
+  }
+
+  /**
+   * Returns the index of the item with the given ID.
+   *
+   * @param itemID The ID of the item.
+   * @return The index, or a negative number if it is not in the catalog.
+   */
+  public int indexOf(int itemID) {
+    return Arrays.binarySearch(itemIDs, itemID);
+  }
+
+  /**
+   * Returns the item at the given index.
+   *
+   * @param index The index of the item.
+   * @return The {@link ItemDTO}.
+   */
+  public ItemDTO itemAt(int index) {
+    return items.get(index);
+  }
+
+  /**
+   * Returns the current version of all items, sorted by item ID.
+   *
+   * @return An unmodifiable list of the items.
+   */
+  public List<ItemDTO> items() {
+    List<ItemDTO> current = new ArrayList<>(items.length());
+    for (int i = 0; i < items.length(); i++) {
+      current.add(items.get(i));
+    }
+    return List.copyOf(current);
+  }
+
+  /**
+   * Returns the number of items in the catalog.
+   *
+   * @return The number of items.
+   */
+  public int size() {
+    return itemIDs.length;
+  }
+
+  /**
+   * Changes the price of an item by publishing a new version of it.
+   *
+   * @param itemID The ID of the item.
+   * @param price  The new price, excluding VAT.
+   * @return The new {@link ItemDTO}, or the current one if the price did not
+   *         change.
+   * @throws IllegalArgumentException if the price is negative or the item is
+   *                                  not in the catalog.
+   */
+  public ItemDTO updatePrice(int itemID, double price) {
+    if (price < 0) {
+      throw new IllegalArgumentException("Price cannot be negative.");
+    }
+    int index = indexOf(itemID);
+    if (index < 0) {
+      throw new IllegalArgumentException("Item " + itemID + " is not in the catalog.");
+    }
+    while (true) {
+      ItemDTO current = items.get(index);
+      if (current.price() == price) {
+        return current;
+      }
+      ItemDTO next = new ItemDTO(itemID, current.description(), price, current.VAT());
+      if (items.compareAndSet(index, current, next)) {
+        version.incrementAndGet();
+        return next;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of new item versions published since the catalog was
+   * created.
+   *
+   * @return The version of the catalog.
+   */
+  public long getVersion() {
+    return version.get();
+  }
+}
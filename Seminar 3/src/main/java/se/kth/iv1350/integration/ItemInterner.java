@@ -0,0 +1,98 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.model.dto.ItemDTO;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Makes sure equal items share one {@link ItemDTO} instance, and equal
+ * descriptions one {@code String}, so that sale lines and receipts only pay
+ * for a reference to an item, however many of them there are.
+ * <p>
+ * Items are interned by item ID. If an item arrives with the same ID but
+ * different information, for example a new price, it replaces the old one
+ * for all later lookups; lines that already hold the old instance keep it.
+ * Descriptions are kept in a pool of their own. With compact strings, which
+ * the JVM uses by default, a description that fits in Latin-1 is stored as a
+ * single byte array with one byte per character.
+ */
+public class ItemInterner {
+  private final Map<Integer, ItemDTO> items;
+  private final Map<String, String> descriptions;
+
+  /**
+   * Creates a new, empty {@code ItemInterner}.
+   */
+  public ItemInterner() {
+    this.items = new ConcurrentHashMap<>();
+    this.descriptions = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Returns the canonical instance of an item. The first time an item is seen
+   * it becomes the canonical instance, with its description replaced by the
+   * pooled one.
+   *
+   * @param item The {@link ItemDTO} to intern.
+   * @return The canonical {@link ItemDTO}, equal to {@code item}.
+   */
+  public ItemDTO intern(ItemDTO item) {
+    ItemDTO existing = items.get(item.itemID());
+    if (existing != null && existing.equals(item)) {
+      return existing;
+    }
+    return items.compute(item.itemID(), (itemID, current) -> {
+      if (current != null && current.equals(item)) {
+        return current;
+      }
+      String description = internDescription(item.description());
+      if (description == item.description()) {
+        return item;
+      }
+      return new ItemDTO(itemID, description, item.price(), item.VAT(), item.netCents(), item.vatCents(),
+          item.grossCents());
+    });
+  }
+
+  /**
+   * Returns the pooled instance of a description.
+   *
+   * @param description The description to intern.
+   * @return The pooled {@code String}, equal to {@code description}.
+   */
+  public String internDescription(String description) {
+    String pooled = descriptions.putIfAbsent(description, description);
+    return pooled == null ? description : pooled;
+  }
+
+  /**
+   * Returns the canonical instance of the item with the given ID, for lines
+   * that only store the item ID.
+   *
+   * @param itemID The ID of the item.
+   * @return The canonical {@link ItemDTO}, or {@code null} if no item with
+   *         that ID has been interned.
+   */
+  public ItemDTO get(int itemID) {
+    return items.get(itemID);
+  }
+
+  /**
+   * Returns the number of interned items.
+   *
+   * @return The number of items.
+   */
+  public int size() {
+    return items.size();
+  }
+
+  /**
+   * Returns the number of pooled descriptions.
+   *
+   * @return The number of descriptions.
+   */
+  public int descriptionCount() {
+    return descriptions.size();
+  }
+}
@@ -0,0 +1,371 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An inventory that keeps its whole table outside the Java heap, so that a
+ * catalog of many millions of items adds nothing for the garbage collector
+ * to scan or copy.
+ * <p>
+ * Every item is one row of a {@link MemorySegment}, sorted by item ID so an
+ * item is found by binary search over the ID column. A row holds the item
+ * ID, the VAT, the quantity in stock, the net price in minor units, and where
+ * the description is found in a second segment of UTF-8 text. Stock and
+ * prices are read and changed through {@link VarHandle}s with volatile and
+ * atomic access, so any number of registers can use the inventory without
+ * locking. An {@link ItemDTO} is built when an item is fetched; use an
+ * {@link ItemInterner} to share the instances between sales. Units are
+ * reserved for sales in progress by a {@link StockReservations} on top of
+ * the inventory, like for any {@link InventorySys}.
+ * <p>
+ * Prices are kept in whole minor units. The memory is freed by
+ * {@link #close()}; any use after that throws an
+ * {@link IllegalStateException}.
+ */
+public class OffHeapInventory extends InventorySys implements AutoCloseable {
+  private static final StructLayout ROW = MemoryLayout.structLayout(
+      ValueLayout.JAVA_INT.withName("itemID"),
+      ValueLayout.JAVA_INT.withName("vat"),
+      ValueLayout.JAVA_INT.withName("quantity"),
+      MemoryLayout.paddingLayout(Integer.BYTES),
+      ValueLayout.JAVA_LONG.withName("priceCents"),
+      ValueLayout.JAVA_INT.withName("textOffset"),
+      ValueLayout.JAVA_INT.withName("textLength"));
+  private static final long ITEM_ID = offsetOf("itemID");
+  private static final long VAT = offsetOf("vat");
+  private static final long QUANTITY = offsetOf("quantity");
+  private static final long PRICE_CENTS = offsetOf("priceCents");
+  private static final long TEXT_OFFSET = offsetOf("textOffset");
+  private static final long TEXT_LENGTH = offsetOf("textLength");
+  private static final VarHandle INT = ValueLayout.JAVA_INT.varHandle();
+  private static final VarHandle LONG = ValueLayout.JAVA_LONG.varHandle();
+
+  private final Arena arena;
+  private final MemorySegment table;
+  private final MemorySegment texts;
+  private final int rows;
+  private final AtomicLong catalogVersion;
+
+  /**
+   * Creates a new {@code OffHeapInventory} holding the given items.
+   *
+   * @param items      The items of the inventory.
+   * @param quantities The quantity in stock of each item, in the same order as
+   *                   {@code items}.
+   * @throws IllegalArgumentException if the lists differ in length or two
+   *                                  items have the same ID.
+   */
+  public OffHeapInventory(List<ItemDTO> items, int[] quantities) {
+    // The items live in the table below, so the base class is given none
+    super(List.of(), new int[0]);
+    if (items.size() != quantities.length) {
+      throw new IllegalArgumentException("There must be one quantity per item.");
+    }
+    long[] keys = new long[items.size()];
+    for (int position = 0; position < keys.length; position++) {
+      keys[position] = ((long) items.get(position).itemID() << 32) | position;
+    }
+    Arrays.parallelSort(keys);
+    byte[][] descriptions = new byte[keys.length][];
+    long textBytes = 0;
+    for (int row = 0; row < keys.length; row++) {
+      int position = (int) keys[row];
+      if (row > 0 && (keys[row] >>> 32) == (keys[row - 1] >>> 32)) {
+        throw new IllegalArgumentException("Duplicate item ID " + (keys[row] >>> 32) + " in inventory.");
+      }
+      descriptions[row] = items.get(position).description().getBytes(StandardCharsets.UTF_8);
+      textBytes += descriptions[row].length;
+    }
+    if (textBytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Descriptions take more than 2 GB.");
+    }
+
+    this.arena = Arena.ofShared();
+    this.rows = keys.length;
+    this.table = arena.allocate(ROW.byteSize() * Math.max(1, rows), ROW.byteAlignment());
+    this.texts = arena.allocate(Math.max(1, textBytes), 1);
+    this.catalogVersion = new AtomicLong();
+    int textOffset = 0;
+    for (int row = 0; row < rows; row++) {
+      int position = (int) keys[row];
+      ItemDTO item = items.get(position);
+      long base = ROW.byteSize() * row;
+      table.set(ValueLayout.JAVA_INT, base + ITEM_ID, item.itemID());
+      table.set(ValueLayout.JAVA_INT, base + VAT, item.VAT());
+      table.set(ValueLayout.JAVA_INT, base + QUANTITY, quantities[position]);
+      table.set(ValueLayout.JAVA_LONG, base + PRICE_CENTS, item.netCents());
+      table.set(ValueLayout.JAVA_INT, base + TEXT_OFFSET, textOffset);
+      table.set(ValueLayout.JAVA_INT, base + TEXT_LENGTH, descriptions[row].length);
+      MemorySegment.copy(descriptions[row], 0, texts, ValueLayout.JAVA_BYTE, textOffset, descriptions[row].length);
+      textOffset += descriptions[row].length;
+    }
+  }
+
+  /**
+   * Returns a snapshot of every item and its quantity in stock, sorted by
+   * item ID. The snapshot is built on the heap, so it is costly for a large
+   * inventory.
+   *
+   * @return An unmodifiable list of the {@link InventoryItem}s.
+   */
+  @Override
+  public List<InventoryItem> getItems() {
+    List<InventoryItem> items = new ArrayList<>(rows);
+    for (int row = 0; row < rows; row++) {
+      items.add(new InventoryItem(itemAt(row), intAt(row, QUANTITY)));
+    }
+    return Collections.unmodifiableList(items);
+  }
+
+  /**
+   * Prints the current inventory to the console.
+   */
+  @Override
+  public void printInventory() {
+    System.out.println("Current inventory:");
+    for (int row = 0; row < rows; row++) {
+      ItemDTO item = itemAt(row);
+      System.out.println(item.itemID() + ": " + item.description() + " - " + intAt(row, QUANTITY)
+          + " units available.");
+    }
+  }
+
+  /**
+   * Fetches item information from the inventory table.
+   *
+   * @param itemId The unique identifier of the item to fetch.
+   * @return The {@link ItemDTO}, or {@code null} if not found.
+   */
+  @Override
+  public ItemDTO getItem(int itemId) {
+    System.out.println("Fetching item information from inventory system...");
+    return currentItem(itemId);
+  }
+
+  /**
+   * Returns the quantity in stock of the item with the given ID.
+   *
+   * @param itemId The unique identifier of the item.
+   * @return The quantity in stock, or {@code 0} if the item is not found.
+   */
+  @Override
+  public int getQuantity(int itemId) {
+    int row = rowOf(itemId);
+    return row < 0 ? 0 : intAt(row, QUANTITY);
+  }
+
+  /**
+   * Takes the items of a completed sale out of stock, one atomic update per
+   * line. Items that are not in the inventory are skipped.
+   *
+   * @param saleDTO The {@link SaleDTO} of the completed sale.
+   */
+  @Override
+  public void updateInventory(SaleDTO saleDTO) {
+    System.out.println("Updating inventory with sale information...");
+    for (SaleItemDTO soldItem : saleDTO.saleItems()) {
+      int row = rowOf(soldItem.item().itemID());
+      if (row >= 0) {
+        INT.getAndAdd(table, offsetOf(row, QUANTITY), -soldItem.quantity());
+      }
+    }
+  }
+
+  /**
+   * Puts returned units of an item back in stock.
+   *
+   * @param itemId   The unique identifier of the item.
+   * @param quantity The number of returned units.
+   * @return The new quantity in stock.
+   * @throws IllegalArgumentException if the quantity is not positive or the
+   *                                  item is not found.
+   */
+  @Override
+  public int restock(int itemId, int quantity) {
+    int row = existingRow(itemId, quantity);
+    return (int) INT.getAndAdd(table, offsetOf(row, QUANTITY), quantity) + quantity;
+  }
+
+  /**
+   * Changes the price of an item. The new price is published with one atomic
+   * write; lookups after it build the new version of the item.
+   *
+   * @param itemId The unique identifier of the item.
+   * @param price  The new price, excluding VAT.
+   * @return The new {@link ItemDTO}.
+   * @throws IllegalArgumentException if the price is negative or the item is
+   *                                  not found.
+   */
+  @Override
+  public ItemDTO updatePrice(int itemId, double price) {
+    if (price < 0) {
+      throw new IllegalArgumentException("Price cannot be negative.");
+    }
+    int row = rowOf(itemId);
+    if (row < 0) {
+      throw new IllegalArgumentException("Item " + itemId + " is not in the inventory.");
+    }
+    long cents = Math.round(price * 100.0);
+    long previous = (long) LONG.getAndSet(table, offsetOf(row, PRICE_CENTS), cents);
+    if (previous != cents) {
+      catalogVersion.incrementAndGet();
+    }
+    return itemAt(row);
+  }
+
+  /**
+   * Returns the number of price changes published since the inventory was
+   * created.
+   *
+   * @return The version of the catalog.
+   */
+  @Override
+  public long getCatalogVersion() {
+    return catalogVersion.get();
+  }
+
+  /**
+   * Returns the number of items in the inventory.
+   *
+   * @return The number of items.
+   */
+  public int size() {
+    return rows;
+  }
+
+  /**
+   * Returns the off-heap memory used by the inventory.
+   *
+   * @return The size of the table and the descriptions, in bytes.
+   */
+  public long getByteSize() {
+    return table.byteSize() + texts.byteSize();
+  }
+
+  /**
+   * Frees the off-heap memory. Waits for nothing; a register still using
+   * the inventory gets an {@link IllegalStateException}.
+   */
+  @Override
+  public void close() {
+    arena.close();
+  }
+
+  /**
+   * Returns the current version of an item without reporting the lookup.
+   *
+   * @param itemId The unique identifier of the item.
+   * @return The {@link ItemDTO}, or {@code null} if not found.
+   */
+  @Override
+  ItemDTO currentItem(int itemId) {
+    int row = rowOf(itemId);
+    return row < 0 ? null : itemAt(row);
+  }
+
+  /**
+   * Builds the {@link ItemDTO} of a row with its current price.
+   *
+   * @param row The row.
+   * @return The {@link ItemDTO}.
+   */
+  private ItemDTO itemAt(int row) {
+    long base = ROW.byteSize() * row;
+    long cents = (long) LONG.getVolatile(table, base + PRICE_CENTS);
+    byte[] description = texts.asSlice(table.get(ValueLayout.JAVA_INT, base + TEXT_OFFSET),
+        table.get(ValueLayout.JAVA_INT, base + TEXT_LENGTH)).toArray(ValueLayout.JAVA_BYTE);
+    return new ItemDTO(table.get(ValueLayout.JAVA_INT, base + ITEM_ID),
+        new String(description, StandardCharsets.UTF_8), cents / 100.0, table.get(ValueLayout.JAVA_INT, base + VAT));
+  }
+
+  /**
+   * Finds the row of an item by binary search over the ID column.
+   *
+   * @param itemId The unique identifier of the item.
+   * @return The row, or {@code -1} if the item is not found.
+   */
+  private int rowOf(int itemId) {
+    int low = 0;
+    int high = rows - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int middleID = table.get(ValueLayout.JAVA_INT, ROW.byteSize() * middle + ITEM_ID);
+      if (middleID < itemId) {
+        low = middle + 1;
+      } else if (middleID > itemId) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the row of an item that a number of units is about to be moved
+   * for.
+   *
+   * @param itemId   The unique identifier of the item.
+   * @param quantity The number of units.
+   * @return The row.
+   * @throws IllegalArgumentException if the quantity is not positive or the
+   *                                  item is not found.
+   */
+  private int existingRow(int itemId, int quantity) {
+    if (quantity <= 0) {
+      throw new IllegalArgumentException("Quantity must be greater than zero.");
+    }
+    int row = rowOf(itemId);
+    if (row < 0) {
+      throw new IllegalArgumentException("Item " + itemId + " is not in the inventory.");
+    }
+    return row;
+  }
+
+  /**
+   * Reads an {@code int} field of a row with volatile access.
+   *
+   * @param row   The row.
+   * @param field The offset of the field in the row.
+   * @return The value.
+   */
+  private int intAt(int row, long field) {
+    return (int) INT.getVolatile(table, offsetOf(row, field));
+  }
+
+  /**
+   * Returns the offset of a field of a row in the table.
+   *
+   * @param row   The row.
+   * @param field The offset of the field in the row.
+   * @return The offset in the table.
+   */
+  private static long offsetOf(int row, long field) {
+    return ROW.byteSize() * row + field;
+  }
+
+  /**
+   * Returns the offset of a field in a row.
+   *
+   * @param field The name of the field.
+   * @return The offset in bytes.
+   */
+  private static long offsetOf(String field) {
+    return ROW.byteOffset(MemoryLayout.PathElement.groupElement(field));
+  }
+}
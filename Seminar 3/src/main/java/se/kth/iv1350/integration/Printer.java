@@ -1,25 +1,58 @@
 package se.kth.iv1350.integration;
 
-import java.text.SimpleDateFormat;
-
 import se.kth.iv1350.model.classes.Receipt;
-import se.kth.iv1350.model.dto.ItemDTO;
 import se.kth.iv1350.model.dto.SaleDTO;
-import se.kth.iv1350.model.dto.SaleItemDTO;
 
 /**
  * Represents the external printer integration.
  * Responsible for printing receipts for completed sales.
  */
 public class Printer {
+  private static final ReceiptRenderer DEFAULT_RENDERER = ReceiptTemplate.defaultTemplate().compile();
+
+  private final ReceiptSpooler spooler;
+  private final ReceiptRenderer renderer;
+
+  /**
+   * Creates a new {@code Printer} that prints receipts directly to
+   * {@code System.out}.
+   */
+  public Printer() {
+    this(null);
+  }
+
+  /**
+   * Creates a new {@code Printer} that hands rendered receipts to the given
+   * spool instead of printing them on the calling thread.
+   *
+   * @param spooler The {@link ReceiptSpooler} that writes the receipts, or
+   *                {@code null} to print to {@code System.out}.
+   */
+  public Printer(ReceiptSpooler spooler) {
+    this(spooler, DEFAULT_RENDERER);
+  }
+
+  /**
+   * Creates a new {@code Printer} that renders receipts with a store specific
+   * template.
+   *
+   * @param spooler  The {@link ReceiptSpooler} that writes the receipts, or
+   *                 {@code null} to print to {@code System.out}.
+   * @param renderer The {@link ReceiptRenderer} compiled from the store's
+   *                 {@link ReceiptTemplate}.
+   */
+  public Printer(ReceiptSpooler spooler, ReceiptRenderer renderer) {
+    this.spooler = spooler;
+    this.renderer = renderer;
+  }
 
   /**
    * Constructs a formatted receipt string based on the provided {@link Receipt}
-   * object.
+   * object, using the compiled receipt template of this printer.
    * The receipt includes item details (description, quantity, unit price
    * including VAT, total price per item),
-   * the time of sale, applied discount, total VAT, payment information, and
-   * receipt delimiters.
+   * the receipt number, the time of sale, applied discount, total VAT,
+   * payment information, and receipt delimiters.
    *
    * @param receipt The {@link Receipt} object containing sale and payment
    *                information.
@@ -31,31 +64,7 @@ public class Printer {
     if (sale == null) {
       return "No sale information available.";
     }
-    StringBuilder itemsInfo = new StringBuilder();
-    for (SaleItemDTO saleItem : sale.saleItems()) {
-      ItemDTO item = saleItem.item();
-      double price = item.price() * saleItem.quantity() * (1 + (item.VAT() / 100.0));
-      itemsInfo.append(String.format("%-9s", item.description()))
-          .append(String.format("%5d", saleItem.quantity()))
-          .append(" x ")
-          .append(String.format("%5.2f    ", item.price() * (1 + (item.VAT() / 100.0))))
-          .append(String.format("%8.2f", price))
-          .append(" SEK (incl. VAT)")
-          .append("\n");
-    }
-    String paymentInfo = String.format("%-26s", "Total(incl. VAT):")
-        + String.format("%8.2f", sale.payment().totalPrice()) + " SEK\n" +
-        String.format("%-26s", "Cash:") + String.format("%8.2f", sale.payment().amountPaid()) + " SEK\n" +
-        String.format("%-26s", "Change:") + String.format("%8.2f", sale.payment().change()) + " SEK";
-
-    SimpleDateFormat datetimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-    return "\n------------------" + String.format("%-14s", " Begin receipt") + " ------------------\n" +
-        "Time of Sale: " + datetimeFormat.format(sale.datetime()) + "\n\n" +
-        itemsInfo.toString() + "\n" +
-        String.format("%-28s", "Discount: ") + String.format("-%5.2f", sale.discount()) + " SEK\n" +
-        String.format("%-29s", "Total VAT: ") + String.format("%5.2f", sale.totalVAT()) + " SEK\n\n" +
-        paymentInfo + "\n" +
-        "------------------" + String.format("%-14s", " End receipt") + "------------------\n";
+    return renderer.render(sale);
   }
 
   /**
@@ -64,6 +73,10 @@ public class Printer {
    * @param receipt The {@link Receipt} to be printed.
    */
   public void printReceipt(Receipt receipt) {
+    if (spooler != null) {
+      spooler.submit(constructReceiptInfo(receipt));
+      return;
+    }
     // Simulate printing the receipt
     System.out.println("Printing receipt...");
     System.out.println(constructReceiptInfo(receipt));
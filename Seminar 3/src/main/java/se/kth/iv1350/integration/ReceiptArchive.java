@@ -0,0 +1,695 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.metrics.MetricsRegistry;
+import se.kth.iv1350.model.dto.SaleDTO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the rendered receipts of completed sales for as long as they may be
+ * needed, for example when a customer returns an item years later.
+ * <p>
+ * Receipts are appended to segment files of a fixed size in a directory.
+ * Each record is a header, {@code int length, long saleID, long archivedAt},
+ * followed by the UTF-8 receipt. The newest segment is memory-mapped and
+ * written through the mapping. When it is full, it is truncated to its
+ * contents and a new segment is started. Only the newest few sealed segments
+ * stay uncompressed; older ones are compressed with gzip on a background
+ * thread.
+ * <p>
+ * For every segment the archive keeps a sparse index in memory, with one
+ * entry every {@value #INDEX_INTERVAL} bytes. A lookup finds the segment by
+ * its range of sale identifiers, jumps to the nearest index entry and reads
+ * on from there. Receipts in uncompressed segments are returned as read-only
+ * views of the mapping, without being copied onto the heap. Receipts in
+ * compressed segments are decompressed first, so they are slower to fetch.
+ * <p>
+ * Sale identifiers are expected to mostly increase. The few receipts archived
+ * out of order are listed for each segment when they are written, so they
+ * are still found and a lookup of a missing sale never reads a whole segment.
+ * Archive times are expected to increase, so a period query may miss
+ * receipts archived while the clock was set back. All methods are thread
+ * safe.
+ */
+public class ReceiptArchive implements SaleObserver, AutoCloseable {
+  private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES * 2;
+  private static final int INDEX_INTERVAL = 4096;
+  private static final String PREFIX = "receipts-";
+  private static final String SUFFIX = ".seg";
+  private static final String COMPRESSED_SUFFIX = ".seg.gz";
+
+  private final Path directory;
+  private final int segmentBytes;
+  private final int uncompressedSegments;
+  private final ReceiptRenderer renderer;
+  private final List<Segment> segments;
+  private final ExecutorService compressor;
+  private final AtomicLong receiptsArchived;
+  private final AtomicLong bytesArchived;
+  private final AtomicLong segmentsCompressed;
+  private final AtomicLong archiveErrors;
+  private Segment cachedSegment;
+  private ByteBuffer cachedData;
+  private boolean closed;
+
+  /**
+   * Creates a new {@code ReceiptArchive}. Use {@link #open(Path)} to get one.
+   *
+   * @param directory            The directory holding the segments.
+   * @param segmentBytes         The size of each segment.
+   * @param uncompressedSegments The number of sealed segments kept
+   *                             uncompressed.
+   * @param renderer             Renders the receipts of completed sales.
+   */
+  private ReceiptArchive(Path directory, int segmentBytes, int uncompressedSegments, ReceiptRenderer renderer) {
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+    this.uncompressedSegments = uncompressedSegments;
+    this.renderer = renderer;
+    this.segments = new ArrayList<>();
+    this.compressor = Executors.newSingleThreadExecutor(
+        task -> Thread.ofPlatform().name("receipt-archive-compressor").daemon().unstarted(task));
+    this.receiptsArchived = new AtomicLong();
+    this.bytesArchived = new AtomicLong();
+    this.segmentsCompressed = new AtomicLong();
+    this.archiveErrors = new AtomicLong();
+  }
+
+  /**
+   * Opens the archive in the given directory, with 64 MB segments of which
+   * the newest two sealed ones are kept uncompressed.
+   *
+   * @param directory The directory holding the segments. It is created if it
+   *                  does not exist.
+   * @return The opened {@code ReceiptArchive}.
+   * @throws IOException if the directory or its segments could not be read.
+   */
+  public static ReceiptArchive open(Path directory) throws IOException {
+    return open(directory, 64 << 20, 2, ReceiptTemplate.defaultTemplate().compile());
+  }
+
+  /**
+   * Opens the archive in the given directory. Receipts already in the
+   * directory are indexed, and the newest segment is continued if it is not
+   * compressed.
+   *
+   * @param directory            The directory holding the segments. It is
+   *                             created if it does not exist.
+   * @param segmentBytes         The size of each segment.
+   * @param uncompressedSegments The number of sealed segments kept
+   *                             uncompressed.
+   * @param renderer             Renders the receipts of completed sales.
+   * @return The opened {@code ReceiptArchive}.
+   * @throws IllegalArgumentException if the segment size is smaller than a
+   *                                  record header or the number of
+   *                                  uncompressed segments is negative.
+   * @throws IOException              if the directory or its segments could
+   *                                  not be read.
+   */
+  public static ReceiptArchive open(Path directory, int segmentBytes, int uncompressedSegments,
+      ReceiptRenderer renderer) throws IOException {
+    if (segmentBytes <= HEADER_BYTES) {
+      throw new IllegalArgumentException("Segments must be larger than " + HEADER_BYTES + " bytes.");
+    }
+    if (uncompressedSegments < 0) {
+      throw new IllegalArgumentException("Number of uncompressed segments cannot be negative.");
+    }
+    Files.createDirectories(directory);
+    ReceiptArchive archive = new ReceiptArchive(directory, segmentBytes, uncompressedSegments, renderer);
+    archive.load();
+    return archive;
+  }
+
+  /**
+   * Archives the receipt of a completed sale. A receipt that cannot be
+   * archived is reported and counted, without failing the sale.
+   *
+   * @param saleDTO The {@link SaleDTO} of the completed sale.
+   */
+  @Override
+  public void completedSale(SaleDTO saleDTO) {
+    try {
+      append(saleDTO.saleID(), System.currentTimeMillis(), renderer.render(saleDTO).getBytes(StandardCharsets.UTF_8));
+    } catch (IOException | RuntimeException e) {
+      archiveErrors.incrementAndGet();
+      System.err.println("Error: Could not archive receipt of sale " + saleDTO.saleID() + ". " + e.getMessage());
+    }
+  }
+
+  /**
+   * Appends a receipt to the archive.
+   *
+   * @param saleID     The identifier of the sale.
+   * @param archivedAt The time of archiving, in milliseconds since the epoch.
+   * @param receipt    The encoded receipt.
+   * @throws IllegalArgumentException if the receipt does not fit in a
+   *                                  segment.
+   * @throws IllegalStateException    if the archive is closed.
+   * @throws IOException              if a new segment could not be started.
+   */
+  public synchronized void append(long saleID, long archivedAt, byte[] receipt) throws IOException {
+    if (closed) {
+      throw new IllegalStateException("Receipt archive is closed.");
+    }
+    int recordBytes = HEADER_BYTES + receipt.length;
+    if (recordBytes > segmentBytes) {
+      throw new IllegalArgumentException("Receipt of " + receipt.length + " bytes does not fit in a segment.");
+    }
+    Segment active = segments.get(segments.size() - 1);
+    if (active.size + recordBytes > active.map.capacity()) {
+      active = roll(active);
+    }
+    int offset = active.size;
+    MappedByteBuffer map = active.map;
+    map.putLong(offset + Integer.BYTES, saleID);
+    map.putLong(offset + Integer.BYTES + Long.BYTES, archivedAt);
+    map.put(offset + HEADER_BYTES, receipt);
+    // The length goes last, since a zero length marks the end of the segment
+    map.putInt(offset, receipt.length == 0 ? -1 : receipt.length);
+    active.record(offset, saleID, archivedAt);
+    active.size += recordBytes;
+    receiptsArchived.incrementAndGet();
+    bytesArchived.addAndGet(recordBytes);
+  }
+
+  /**
+   * Returns the receipt of a sale. For an uncompressed segment, the returned
+   * buffer is a read-only view of the mapped segment.
+   *
+   * @param saleID The identifier of the sale.
+   * @return The encoded receipt, or {@code null} if it is not archived.
+   * @throws IOException if a compressed segment could not be read.
+   */
+  public synchronized ByteBuffer get(long saleID) throws IOException {
+    for (int i = segments.size() - 1; i >= 0; i--) {
+      Segment segment = segments.get(i);
+      if (segment.recordCount == 0 || saleID < segment.minSaleID || saleID > segment.maxSaleID) {
+        continue;
+      }
+      ByteBuffer data = data(segment);
+      int offset = segment.find(data, saleID);
+      if (offset >= 0) {
+        return data.slice(offset + HEADER_BYTES, recordLength(data, offset)).asReadOnlyBuffer();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the receipt of a sale as text.
+   *
+   * @param saleID The identifier of the sale.
+   * @return The receipt, or {@code null} if it is not archived.
+   * @throws IOException if a compressed segment could not be read.
+   */
+  public String getText(long saleID) throws IOException {
+    ByteBuffer receipt = get(saleID);
+    return receipt == null ? null : StandardCharsets.UTF_8.decode(receipt).toString();
+  }
+
+  /**
+   * Returns the sales whose receipts were archived in the given period, in the
+   * order they were archived.
+   *
+   * @param fromMillis The start of the period, inclusive.
+   * @param toMillis   The end of the period, inclusive.
+   * @return The identifiers of the sales.
+   * @throws IOException if a compressed segment could not be read.
+   */
+  public synchronized long[] saleIDsBetween(long fromMillis, long toMillis) throws IOException {
+    long[] found = new long[16];
+    int count = 0;
+    for (Segment segment : segments) {
+      if (segment.recordCount == 0 || toMillis < segment.minMillis || fromMillis > segment.maxMillis) {
+        continue;
+      }
+      ByteBuffer data = data(segment);
+      for (int offset = segment.startOfPeriod(fromMillis); offset < segment.size; offset += recordBytes(data,
+          offset)) {
+        long archivedAt = data.getLong(offset + Integer.BYTES + Long.BYTES);
+        if (archivedAt >= fromMillis && archivedAt <= toMillis) {
+          if (count == found.length) {
+            found = Arrays.copyOf(found, count * 2);
+          }
+          found[count++] = data.getLong(offset + Integer.BYTES);
+        }
+      }
+    }
+    return Arrays.copyOf(found, count);
+  }
+
+  /**
+   * Returns the number of segments, compressed or not.
+   *
+   * @return The number of segments.
+   */
+  public synchronized int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Returns the number of segments compressed since the archive was opened.
+   *
+   * @return The number of compressed segments.
+   */
+  public long getSegmentsCompressed() {
+    return segmentsCompressed.get();
+  }
+
+  /**
+   * Returns the number of receipts or segments that could not be archived
+   * or compressed.
+   *
+   * @return The number of errors.
+   */
+  public long getArchiveErrors() {
+    return archiveErrors.get();
+  }
+
+  /**
+   * Registers the size and throughput of this archive as gauges in the given
+   * registry.
+   *
+   * @param metrics The {@link MetricsRegistry} to register the gauges in.
+   */
+  public void registerMetrics(MetricsRegistry metrics) {
+    metrics.gauge("receipt_archive_receipts_total", receiptsArchived::get);
+    metrics.gauge("receipt_archive_bytes_total", bytesArchived::get);
+    metrics.gauge("receipt_archive_segments", this::getSegmentCount);
+    metrics.gauge("receipt_archive_segments_compressed_total", segmentsCompressed::get);
+    metrics.gauge("receipt_archive_errors_total", archiveErrors::get);
+  }
+
+  /**
+   * Writes the newest segment to disk, truncates it to its contents and waits
+   * for running compressions to finish.
+   *
+   * @throws IOException if the newest segment could not be written.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      Segment active = segments.get(segments.size() - 1);
+      active.map.force();
+      try (FileChannel channel = FileChannel.open(active.path, StandardOpenOption.WRITE)) {
+        channel.truncate(active.size);
+      }
+    }
+    compressor.shutdown();
+    try {
+      compressor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Indexes the segments already in the directory and opens the newest one,
+   * or a new one, for appending.
+   *
+   * @throws IOException if a segment could not be read.
+   */
+  private void load() throws IOException {
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(directory)) {
+      files = listing.filter(file -> segmentNumber(file) >= 0).sorted().toList();
+    }
+    for (Path file : files) {
+      if (file.getFileName().toString().endsWith(SUFFIX)
+          && Files.exists(file.resolveSibling(file.getFileName() + ".gz"))) {
+        // Compressed, but not yet removed when the archive last stopped
+        Files.delete(file);
+        continue;
+      }
+      Segment segment = new Segment(segmentNumber(file), file);
+      segment.compressed = file.getFileName().toString().endsWith(COMPRESSED_SUFFIX);
+      if (!segment.compressed) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+          segment.map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+      }
+      segment.scan(data(segment));
+      segments.add(segment);
+    }
+    Segment newest = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    if (newest != null && !newest.compressed) {
+      newest.map = mapForAppending(newest.path, Math.max(segmentBytes, newest.size));
+    } else {
+      startSegment(newest == null ? 0 : newest.number + 1);
+    }
+    scheduleCompression();
+  }
+
+  /**
+   * Seals the newest segment and starts a new one.
+   *
+   * @param active The newest segment.
+   * @return The new segment.
+   * @throws IOException if the new segment could not be created.
+   */
+  private Segment roll(Segment active) throws IOException {
+    active.map.force();
+    try (FileChannel channel = FileChannel.open(active.path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      channel.truncate(active.size);
+      active.map = channel.map(FileChannel.MapMode.READ_ONLY, 0, active.size);
+    }
+    Segment next = startSegment(active.number + 1);
+    scheduleCompression();
+    return next;
+  }
+
+  /**
+   * Creates a new, empty segment and makes it the newest.
+   *
+   * @param number The number of the segment.
+   * @return The new segment.
+   * @throws IOException if the segment could not be created.
+   */
+  private Segment startSegment(long number) throws IOException {
+    Path file = directory.resolve(String.format("%s%016d%s", PREFIX, number, SUFFIX));
+    Segment segment = new Segment(number, file);
+    segment.map = mapForAppending(file, segmentBytes);
+    segments.add(segment);
+    return segment;
+  }
+
+  /**
+   * Maps a segment file for reading and writing, growing it to the given
+   * size.
+   *
+   * @param file The segment file.
+   * @param size The size to map.
+   * @return The mapping.
+   * @throws IOException if the file could not be mapped.
+   */
+  private static MappedByteBuffer mapForAppending(Path file, int size) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  /**
+   * Compresses the oldest sealed segments until only the allowed number of
+   * sealed segments is left uncompressed.
+   */
+  private void scheduleCompression() {
+    int uncompressed = 0;
+    for (int i = segments.size() - 2; i >= 0; i--) {
+      Segment segment = segments.get(i);
+      if (segment.compressed || segment.compressing) {
+        continue;
+      }
+      if (++uncompressed > uncompressedSegments) {
+        segment.compressing = true;
+        compressor.execute(() -> compress(segment));
+      }
+    }
+  }
+
+  /**
+   * Compresses a sealed segment and removes the uncompressed file. Runs on
+   * the compressor thread.
+   *
+   * @param segment The segment to compress.
+   */
+  private void compress(Segment segment) {
+    Path uncompressedFile = segment.path;
+    Path compressedFile = directory.resolve(String.format("%s%016d%s", PREFIX, segment.number, COMPRESSED_SUFFIX));
+    Path temporary = compressedFile.resolveSibling(compressedFile.getFileName() + ".tmp");
+    ByteBuffer contents;
+    synchronized (this) {
+      contents = segment.map.duplicate().position(0).limit(segment.size);
+    }
+    try {
+      try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary), 64 * 1024)) {
+        Channels.newChannel(out).write(contents);
+      }
+      Files.move(temporary, compressedFile, StandardCopyOption.ATOMIC_MOVE);
+      synchronized (this) {
+        segment.path = compressedFile;
+        segment.compressed = true;
+        segment.compressing = false;
+        segment.map = null;
+      }
+      Files.delete(uncompressedFile);
+      segmentsCompressed.incrementAndGet();
+    } catch (IOException e) {
+      synchronized (this) {
+        segment.compressing = false;
+      }
+      archiveErrors.incrementAndGet();
+      System.err.println("Error: Could not compress receipt segment " + uncompressedFile + ". " + e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the records of a segment: a view of the mapping of an
+   * uncompressed segment, or the decompressed contents of a compressed one.
+   * The last decompressed segment is kept, since lookups tend to come in
+   * runs over the same period.
+   *
+   * @param segment The segment.
+   * @return The records, from position 0.
+   * @throws IOException if a compressed segment could not be read.
+   */
+  private ByteBuffer data(Segment segment) throws IOException {
+    if (!segment.compressed) {
+      return segment.map.duplicate().clear();
+    }
+    if (cachedSegment != segment) {
+      try (InputStream in = new GZIPInputStream(Files.newInputStream(segment.path), 64 * 1024)) {
+        cachedData = ByteBuffer.wrap(in.readAllBytes());
+      }
+      cachedSegment = segment;
+    }
+    return cachedData.duplicate().clear();
+  }
+
+  /**
+   * Returns the length of the receipt of a record.
+   *
+   * @param data   The records of a segment.
+   * @param offset The offset of the record.
+   * @return The receipt length in bytes.
+   */
+  private static int recordLength(ByteBuffer data, int offset) {
+    return Math.max(0, data.getInt(offset));
+  }
+
+  /**
+   * Returns the size of a record, header included.
+   *
+   * @param data   The records of a segment.
+   * @param offset The offset of the record.
+   * @return The record size in bytes.
+   */
+  private static int recordBytes(ByteBuffer data, int offset) {
+    return HEADER_BYTES + recordLength(data, offset);
+  }
+
+  /**
+   * Returns the number of a segment file.
+   *
+   * @param file The file.
+   * @return The segment number, or {@code -1} if the file is not a segment.
+   */
+  private static long segmentNumber(Path file) {
+    String name = file.getFileName().toString();
+    String suffix = name.endsWith(COMPRESSED_SUFFIX) ? COMPRESSED_SUFFIX : name.endsWith(SUFFIX) ? SUFFIX : null;
+    if (suffix == null || !name.startsWith(PREFIX)) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(name.substring(PREFIX.length(), name.length() - suffix.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * One segment file and its sparse index.
+   */
+  private static final class Segment {
+    private final long number;
+    private Path path;
+    private MappedByteBuffer map;
+    private boolean compressed;
+    private boolean compressing;
+    private int size;
+    private int recordCount;
+    private long minSaleID = Long.MAX_VALUE;
+    private long maxSaleID = Long.MIN_VALUE;
+    private long minMillis = Long.MAX_VALUE;
+    private long maxMillis = Long.MIN_VALUE;
+    private long[] indexSaleIDs = new long[16];
+    private long[] indexMillis = new long[16];
+    private int[] indexOffsets = new int[16];
+    private int indexCount;
+    private long[] lateSaleIDs = new long[0];
+    private int[] lateOffsets = new int[0];
+    private int lateCount;
+
+    /**
+     * Creates a new, empty {@code Segment}.
+     *
+     * @param number The number of the segment.
+     * @param path   The segment file.
+     */
+    Segment(long number, Path path) {
+      this.number = number;
+      this.path = path;
+    }
+
+    /**
+     * Indexes the records of a segment read from disk. A record cut short by
+     * a crash ends the segment.
+     *
+     * @param data The contents of the segment.
+     */
+    void scan(ByteBuffer data) {
+      int offset = 0;
+      while (offset + HEADER_BYTES <= data.limit()) {
+        int length = data.getInt(offset);
+        if (length == 0 || offset + HEADER_BYTES + Math.max(0, length) > data.limit()) {
+          break;
+        }
+        record(offset, data.getLong(offset + Integer.BYTES), data.getLong(offset + Integer.BYTES + Long.BYTES));
+        offset += HEADER_BYTES + Math.max(0, length);
+      }
+      size = offset;
+    }
+
+    /**
+     * Adds a record to the ranges of the segment, and to the sparse index if
+     * it is far enough from the last indexed record. A record whose sale
+     * identifier is lower than one before it in the segment goes to a
+     * separate list of late records instead, so that the sparse index stays
+     * sorted.
+     *
+     * @param offset     The offset of the record.
+     * @param saleID     The identifier of the sale.
+     * @param archivedAt The time the receipt was archived.
+     */
+    void record(int offset, long saleID, long archivedAt) {
+      boolean late = recordCount > 0 && saleID < maxSaleID;
+      recordCount++;
+      minSaleID = Math.min(minSaleID, saleID);
+      maxSaleID = Math.max(maxSaleID, saleID);
+      minMillis = Math.min(minMillis, archivedAt);
+      maxMillis = Math.max(maxMillis, archivedAt);
+      if (late) {
+        if (lateCount == lateOffsets.length) {
+          lateSaleIDs = Arrays.copyOf(lateSaleIDs, Math.max(4, lateCount * 2));
+          lateOffsets = Arrays.copyOf(lateOffsets, Math.max(4, lateCount * 2));
+        }
+        lateSaleIDs[lateCount] = saleID;
+        lateOffsets[lateCount] = offset;
+        lateCount++;
+        return;
+      }
+      if (indexCount > 0 && offset - indexOffsets[indexCount - 1] < INDEX_INTERVAL) {
+        return;
+      }
+      if (indexCount == indexOffsets.length) {
+        indexSaleIDs = Arrays.copyOf(indexSaleIDs, indexCount * 2);
+        indexMillis = Arrays.copyOf(indexMillis, indexCount * 2);
+        indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+      }
+      indexSaleIDs[indexCount] = saleID;
+      indexMillis[indexCount] = archivedAt;
+      indexOffsets[indexCount] = offset;
+      indexCount++;
+    }
+
+    /**
+     * Finds the record of a sale, starting at the nearest index entry and
+     * reading on until the sale identifiers pass the one looked for. A sale
+     * archived out of order is found in the list of late records, so a miss
+     * never reads the whole segment.
+     *
+     * @param data   The contents of the segment.
+     * @param saleID The identifier of the sale.
+     * @return The offset of the record, or {@code -1} if it is not here.
+     */
+    int find(ByteBuffer data, long saleID) {
+      int entry = lastEntryAtMost(indexSaleIDs, saleID);
+      int start = entry < 0 ? 0 : indexOffsets[entry];
+      for (int offset = start; offset < size; offset += recordBytes(data, offset)) {
+        long current = data.getLong(offset + Integer.BYTES);
+        if (current == saleID) {
+          return offset;
+        }
+        if (current > saleID) {
+          break;
+        }
+      }
+      for (int i = 0; i < lateCount; i++) {
+        if (lateSaleIDs[i] == saleID) {
+          return lateOffsets[i];
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Returns where to start reading for receipts archived from the given
+     * time on.
+     *
+     * @param fromMillis The start of the period.
+     * @return The offset of the last indexed record archived before the
+     *         period, or {@code 0}.
+     */
+    int startOfPeriod(long fromMillis) {
+      int entry = lastEntryAtMost(indexMillis, fromMillis - 1);
+      return entry < 0 ? 0 : indexOffsets[entry];
+    }
+
+    /**
+     * Binary searches the index for the last entry whose key is at most the
+     * given value.
+     *
+     * @param keys  The keys of the index.
+     * @param value The value to look for.
+     * @return The entry, or {@code -1} if every key is larger.
+     */
+    private int lastEntryAtMost(long[] keys, long value) {
+      int low = 0;
+      int high = indexCount - 1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        if (keys[middle] <= value) {
+          low = middle + 1;
+        } else {
+          high = middle - 1;
+        }
+      }
+      return high;
+    }
+  }
+}
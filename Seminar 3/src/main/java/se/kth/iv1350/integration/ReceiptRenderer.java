@@ -0,0 +1,71 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+/**
+ * Renders receipts with a compiled {@link ReceiptTemplate}. The renderer runs
+ * three chains of fixed-width field writers: one for the header, one for each
+ * sale line and one for the summary and footer.
+ * <p>
+ * Instances are immutable and can be shared between lanes.
+ */
+public class ReceiptRenderer {
+  private final FieldWriter[] head;
+  private final FieldWriter[] line;
+  private final FieldWriter[] tail;
+  private final int fixedWidth;
+  private final int lineWidth;
+
+  /**
+   * Creates a new {@code ReceiptRenderer}. Use
+   * {@link ReceiptTemplate#compile()} to get one.
+   *
+   * @param head The writers for the header section.
+   * @param line The writers for one sale line.
+   * @param tail The writers for the summary and footer section.
+   */
+  ReceiptRenderer(FieldWriter[] head, FieldWriter[] line, FieldWriter[] tail) {
+    this.head = head;
+    this.line = line;
+    this.tail = tail;
+    this.fixedWidth = totalWidth(head) + totalWidth(tail);
+    this.lineWidth = totalWidth(line);
+  }
+
+  /**
+   * Renders the receipt for the given sale.
+   *
+   * @param sale The completed sale.
+   * @return The rendered receipt.
+   */
+  public String render(SaleDTO sale) {
+    StringBuilder out = new StringBuilder(fixedWidth + lineWidth * sale.saleItems().size());
+    for (FieldWriter writer : head) {
+      writer.write(out, sale, null);
+    }
+    for (SaleItemDTO saleItem : sale.saleItems()) {
+      for (FieldWriter writer : line) {
+        writer.write(out, sale, saleItem);
+      }
+    }
+    for (FieldWriter writer : tail) {
+      writer.write(out, sale, null);
+    }
+    return out.toString();
+  }
+
+  /**
+   * Returns the sum of the expected widths of the given writers.
+   *
+   * @param writers The field writers.
+   * @return The total width.
+   */
+  private static int totalWidth(FieldWriter[] writers) {
+    int width = 0;
+    for (FieldWriter writer : writers) {
+      width += writer.width();
+    }
+    return width;
+  }
+}
@@ -0,0 +1,409 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Spools rendered receipts to an output channel on a dedicated writer thread,
+ * so a slow printer never holds up the cashier.
+ * <p>
+ * Receipts are put in a bounded queue. The writer thread takes as many
+ * receipts as are waiting, up to a batch limit, encodes them into a fixed set
+ * of preallocated direct {@link ByteBuffer}s and writes the whole batch with a
+ * single gathering write when the channel supports it. Any
+ * {@link WritableByteChannel} can be used as target, for example a file or
+ * the sink of a {@link java.nio.channels.Pipe} standing in for a local
+ * printer.
+ * <p>
+ * A write that fails is retried a few times. If it still fails, the receipts
+ * of the batch that were not written are kept, and can be taken with
+ * {@link #drainFailedReceipts()} to be printed another way.
+ */
+public class ReceiptSpooler implements AutoCloseable {
+  private static final int DEFAULT_CAPACITY = 256;
+  private static final int BUFFER_SIZE = 8 * 1024;
+  private static final int BUFFER_COUNT = 16;
+  private static final int WRITE_ATTEMPTS = 3;
+  private static final long RETRY_PAUSE_MILLIS = 20;
+  // Compared by identity, so it can never be mistaken for a real receipt
+  private static final String END_OF_SPOOL = new String("end of spool");
+
+  private final WritableByteChannel channel;
+  private final BlockingQueue<String> queue;
+  private final ByteBuffer[] buffers;
+  private final CharsetEncoder encoder;
+  private final Thread writer;
+  private final AtomicLong peakQueueDepth;
+  private final AtomicLong receiptsWritten;
+  private final AtomicLong bytesWritten;
+  private final AtomicLong batchesWritten;
+  private final AtomicLong writeErrors;
+  private final AtomicLong receiptsFailed;
+  private final ConcurrentLinkedQueue<String> failedReceipts;
+  private final ReadWriteLock closeLock;
+  private boolean closed;
+
+  /**
+   * Creates a new {@code ReceiptSpooler} with the default queue capacity and
+   * starts its writer thread.
+   *
+   * @param channel The {@link WritableByteChannel} receipts are written to.
+   */
+  public ReceiptSpooler(WritableByteChannel channel) {
+    this(channel, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a new {@code ReceiptSpooler} and starts its writer thread.
+   *
+   * @param channel  The {@link WritableByteChannel} receipts are written to.
+   * @param capacity The maximum number of receipts waiting to be written.
+   * @throws IllegalArgumentException if {@code capacity} is not positive.
+   */
+  public ReceiptSpooler(WritableByteChannel channel, int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be greater than zero.");
+    }
+    this.channel = channel;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.buffers = new ByteBuffer[BUFFER_COUNT];
+    for (int i = 0; i < BUFFER_COUNT; i++) {
+      buffers[i] = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+    this.encoder = StandardCharsets.UTF_8.newEncoder();
+    this.peakQueueDepth = new AtomicLong();
+    this.receiptsWritten = new AtomicLong();
+    this.bytesWritten = new AtomicLong();
+    this.batchesWritten = new AtomicLong();
+    this.writeErrors = new AtomicLong();
+    this.receiptsFailed = new AtomicLong();
+    this.failedReceipts = new ConcurrentLinkedQueue<>();
+    this.closeLock = new ReentrantReadWriteLock();
+    this.closed = false;
+    this.writer = new Thread(this::drainLoop, "receipt-spooler");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  /**
+   * Creates a new {@code ReceiptSpooler} that appends receipts to the given
+   * file, creating it if it does not exist.
+   *
+   * @param file The file receipts are written to.
+   * @return The new {@code ReceiptSpooler}.
+   * @throws IOException if the file could not be opened.
+   */
+  public static ReceiptSpooler toFile(Path file) throws IOException {
+    return new ReceiptSpooler(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND));
+  }
+
+  /**
+   * Puts a rendered receipt in the spool. If the spool is full, the call waits
+   * until the writer has made room.
+   *
+   * @param receiptText The rendered receipt.
+   * @throws IllegalStateException if the spool has been closed or the calling
+   *                               thread is interrupted while waiting.
+   */
+  public void submit(String receiptText) {
+    // Held while waiting, so close() cannot end the writer under a receipt
+    closeLock.readLock().lock();
+    try {
+      if (closed) {
+        throw new IllegalStateException("Receipt spool is closed.");
+      }
+      queue.put(receiptText);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the receipt spool.", e);
+    } finally {
+      closeLock.readLock().unlock();
+    }
+    peakQueueDepth.accumulateAndGet(queue.size(), Math::max);
+  }
+
+  /**
+   * Registers the queue depth and throughput of this spool as gauges in the
+   * given registry.
+   *
+   * @param metrics The {@link MetricsRegistry} to register the gauges in.
+   */
+  public void registerMetrics(MetricsRegistry metrics) {
+    metrics.gauge("receipt_spool_queue_depth", this::getQueueDepth);
+    metrics.gauge("receipt_spool_queue_depth_peak", peakQueueDepth::get);
+    metrics.gauge("receipt_spool_receipts_written_total", receiptsWritten::get);
+    metrics.gauge("receipt_spool_bytes_written_total", bytesWritten::get);
+    metrics.gauge("receipt_spool_batches_written_total", batchesWritten::get);
+    metrics.gauge("receipt_spool_write_errors_total", writeErrors::get);
+    metrics.gauge("receipt_spool_receipts_failed_total", receiptsFailed::get);
+  }
+
+  /**
+   * Returns the number of receipts waiting to be written.
+   *
+   * @return The current queue depth.
+   */
+  public long getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * Returns the highest queue depth seen since the spool was created.
+   *
+   * @return The peak queue depth.
+   */
+  public long getPeakQueueDepth() {
+    return peakQueueDepth.get();
+  }
+
+  /**
+   * Returns the number of receipts that have been written to the channel.
+   *
+   * @return The number of written receipts.
+   */
+  public long getReceiptsWritten() {
+    return receiptsWritten.get();
+  }
+
+  /**
+   * Returns the number of writes to the channel that failed, including ones
+   * that succeeded when retried.
+   *
+   * @return The number of write errors.
+   */
+  public long getWriteErrors() {
+    return writeErrors.get();
+  }
+
+  /**
+   * Returns the number of receipts that could not be written, even when
+   * retried.
+   *
+   * @return The number of failed receipts.
+   */
+  public long getReceiptsFailed() {
+    return receiptsFailed.get();
+  }
+
+  /**
+   * Takes the receipts that could not be written, in the order they were
+   * submitted. A receipt may have been written in part before the write
+   * failed.
+   *
+   * @return The failed receipts, which are removed from the spool.
+   */
+  public List<String> drainFailedReceipts() {
+    List<String> drained = new ArrayList<>();
+    for (String receiptText = failedReceipts.poll(); receiptText != null; receiptText = failedReceipts.poll()) {
+      drained.add(receiptText);
+    }
+    return drained;
+  }
+
+  /**
+   * Stops accepting new receipts, waits until every queued receipt has been
+   * written and closes the channel. Receipts that are being submitted while
+   * the spool closes are written before it closes.
+   */
+  @Override
+  public void close() {
+    closeLock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    } finally {
+      closeLock.writeLock().unlock();
+    }
+    try {
+      queue.put(END_OF_SPOOL);
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      writeErrors.incrementAndGet();
+    }
+  }
+
+  /**
+   * The body of the writer thread. Waits for a receipt, collects every other
+   * receipt that is already waiting and writes them as one batch.
+   */
+  private void drainLoop() {
+    List<String> batch = new ArrayList<>(BUFFER_COUNT);
+    boolean running = true;
+    while (running) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      queue.drainTo(batch, BUFFER_COUNT - 1);
+      int lastIndex = batch.size() - 1;
+      if (batch.get(lastIndex) == END_OF_SPOOL) {
+        batch.remove(lastIndex);
+        running = false;
+      }
+      writeBatch(batch);
+      batch.clear();
+    }
+  }
+
+  /**
+   * Encodes a batch of receipts into the direct buffers and writes them to the
+   * channel. A batch that does not fit in the buffers is written in several
+   * rounds. A receipt is counted as written once the round that ends it has
+   * been written; if a round fails, the receipts from there on are kept as
+   * failed.
+   *
+   * @param batch The receipts to write.
+   */
+  private void writeBatch(List<String> batch) {
+    int bufferIndex = 0;
+    int written = 0;
+    try {
+      for (int i = 0; i < batch.size(); i++) {
+        CharBuffer chars = CharBuffer.wrap(batch.get(i));
+        encoder.reset();
+        while (encoder.encode(chars, buffers[bufferIndex], true).isOverflow()) {
+          bufferIndex = nextBuffer(bufferIndex);
+          if (bufferIndex == 0) {
+            receiptsWritten.addAndGet(i - written);
+            written = i;
+          }
+        }
+        while (encoder.flush(buffers[bufferIndex]).isOverflow()) {
+          bufferIndex = nextBuffer(bufferIndex);
+          if (bufferIndex == 0) {
+            receiptsWritten.addAndGet(i - written);
+            written = i;
+          }
+        }
+      }
+      flushBuffers(bufferIndex + 1);
+      receiptsWritten.addAndGet(batch.size() - written);
+      if (!batch.isEmpty()) {
+        batchesWritten.incrementAndGet();
+      }
+    } catch (IOException e) {
+      for (int i = written; i < batch.size(); i++) {
+        failedReceipts.add(batch.get(i));
+      }
+      receiptsFailed.addAndGet(batch.size() - written);
+    }
+  }
+
+  /**
+   * Moves on to the next direct buffer, writing all buffers to the channel
+   * first if every one of them is full.
+   *
+   * @param bufferIndex The index of the buffer that is full.
+   * @return The index of the buffer to continue encoding into, which is 0
+   *         only if the buffers were written.
+   * @throws IOException if the buffers could not be written.
+   */
+  private int nextBuffer(int bufferIndex) throws IOException {
+    if (bufferIndex + 1 < BUFFER_COUNT) {
+      return bufferIndex + 1;
+    }
+    flushBuffers(BUFFER_COUNT);
+    return 0;
+  }
+
+  /**
+   * Writes the content of the first {@code count} buffers to the channel and
+   * clears them. A failed write is retried, continuing where it stopped.
+   *
+   * @param count The number of buffers that hold data.
+   * @throws IOException if the last attempt failed too.
+   */
+  private void flushBuffers(int count) throws IOException {
+    for (int i = 0; i < count; i++) {
+      buffers[i].flip();
+    }
+    try {
+      for (int attempt = 1; ; attempt++) {
+        try {
+          writeBuffers(count);
+          return;
+        } catch (IOException e) {
+          writeErrors.incrementAndGet();
+          if (attempt == WRITE_ATTEMPTS || !pause(attempt)) {
+            throw e;
+          }
+        }
+      }
+    } finally {
+      for (int i = 0; i < count; i++) {
+        buffers[i].clear();
+      }
+    }
+  }
+
+  /**
+   * Writes what is left in the first {@code count} buffers to the channel,
+   * using a gathering write when the channel supports it.
+   *
+   * @param count The number of buffers that hold data.
+   * @throws IOException if a write fails.
+   */
+  private void writeBuffers(int count) throws IOException {
+    long remaining = 0;
+    for (int i = 0; i < count; i++) {
+      remaining += buffers[i].remaining();
+    }
+    if (channel instanceof GatheringByteChannel gathering) {
+      while (remaining > 0) {
+        long written = gathering.write(buffers, 0, count);
+        remaining -= written;
+        bytesWritten.addAndGet(written);
+      }
+    } else {
+      for (int i = 0; i < count; i++) {
+        while (buffers[i].hasRemaining()) {
+          bytesWritten.addAndGet(channel.write(buffers[i]));
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits a little longer after each failed write before it is retried.
+   *
+   * @param attempt The number of the attempt that failed.
+   * @return {@code false} if the writer thread was interrupted.
+   */
+  private boolean pause(int attempt) {
+    try {
+      Thread.sleep(RETRY_PAUSE_MILLIS * attempt);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
@@ -0,0 +1,278 @@
+package se.kth.iv1350.integration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes the layout of a receipt for one store: header and footer lines,
+ * the widths of the item columns and the language of all labels.
+ * <p>
+ * A template is only a description. Call {@link #compile()} once, for example
+ * when the store configuration is loaded, and keep the returned
+ * {@link ReceiptRenderer} for printing.
+ */
+public class ReceiptTemplate {
+  /**
+   * The languages a receipt can be printed in, with the labels used for each.
+   */
+  public enum Language {
+    /** English labels, used by the default template. */
+    ENGLISH("Begin receipt", "End receipt", "Receipt number: ", "Time of Sale: ", "Discount: ", "Total VAT: ",
+        "Total(incl. VAT):", "Cash:", "Change:", "SEK", "(incl. VAT)"),
+    /** Swedish labels. */
+    SWEDISH("Kvitto start", "Kvitto slut", "Kvittonummer: ", "Köptid: ", "Rabatt: ", "Total moms: ",
+        "Totalt(inkl. moms):", "Kontant:", "Växel:", "kr", "(inkl. moms)");
+
+    private final String begin;
+    private final String end;
+    private final String receiptNumber;
+    private final String timeOfSale;
+    private final String discount;
+    private final String totalVAT;
+    private final String total;
+    private final String cash;
+    private final String change;
+    private final String currency;
+    private final String inclVAT;
+
+    Language(String begin, String end, String receiptNumber, String timeOfSale, String discount, String totalVAT,
+        String total, String cash, String change, String currency, String inclVAT) {
+      this.begin = begin;
+      this.end = end;
+      this.receiptNumber = receiptNumber;
+      this.timeOfSale = timeOfSale;
+      this.discount = discount;
+      this.totalVAT = totalVAT;
+      this.total = total;
+      this.cash = cash;
+      this.change = change;
+      this.currency = currency;
+      this.inclVAT = inclVAT;
+    }
+  }
+
+  private static final String DELIMITER = "------------------";
+  private static final int DELIMITER_LABEL_WIDTH = 14;
+
+  private final List<String> header;
+  private final List<String> footer;
+  private final Language language;
+  private final int descriptionWidth;
+  private final int quantityWidth;
+  private final int unitPriceWidth;
+  private final int lineTotalWidth;
+  private final int summaryWidth;
+
+  private ReceiptTemplate(Builder builder) {
+    this.header = List.copyOf(builder.header);
+    this.footer = List.copyOf(builder.footer);
+    this.language = builder.language;
+    this.descriptionWidth = builder.descriptionWidth;
+    this.quantityWidth = builder.quantityWidth;
+    this.unitPriceWidth = builder.unitPriceWidth;
+    this.lineTotalWidth = builder.lineTotalWidth;
+    this.summaryWidth = builder.summaryWidth;
+  }
+
+  /**
+   * Returns the template that produces the standard receipt layout.
+   *
+   * @return The default {@code ReceiptTemplate}.
+   */
+  public static ReceiptTemplate defaultTemplate() {
+    return builder().build();
+  }
+
+  /**
+   * Returns a builder for a new template, preset to the default layout.
+   *
+   * @return A new {@link Builder}.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Compiles the template into a chain of fixed-width field writers.
+   *
+   * @return The {@link ReceiptRenderer} for this template.
+   */
+  public ReceiptRenderer compile() {
+    List<FieldWriter> head = new ArrayList<>();
+    head.add(new FieldWriter.Literal("\n" + DELIMITER + padRight(" " + language.begin, DELIMITER_LABEL_WIDTH)
+        + " " + DELIMITER + "\n"));
+    for (String line : header) {
+      head.add(new FieldWriter.Literal(line + "\n"));
+    }
+    head.add(new FieldWriter.ReceiptNumber(language.receiptNumber));
+    head.add(new FieldWriter.Literal(language.timeOfSale));
+    head.add(new FieldWriter.DateTime());
+    head.add(new FieldWriter.Literal("\n\n"));
+
+    List<FieldWriter> lines = new ArrayList<>();
+    lines.add(new FieldWriter.LeftText(descriptionWidth, line -> line.item().description()));
+    lines.add(new FieldWriter.RightInt(quantityWidth, line -> line.quantity()));
+    lines.add(new FieldWriter.Literal(" x "));
+    lines.add(new FieldWriter.RightAmount(unitPriceWidth,
+        (sale, line) -> line.item().grossPrice()));
+    lines.add(new FieldWriter.Literal("    "));
+    lines.add(new FieldWriter.RightAmount(lineTotalWidth,
+        (sale, line) -> line.item().grossCents(line.quantity()) / 100.0));
+    lines.add(new FieldWriter.Literal(" " + language.currency + " " + language.inclVAT + "\n"));
+
+    String currency = " " + language.currency + "\n";
+    List<FieldWriter> tail = new ArrayList<>();
+    tail.add(new FieldWriter.Literal("\n"));
+    tail.add(new FieldWriter.Literal(padRight(language.discount, summaryWidth - 6) + "-"));
+    tail.add(new FieldWriter.RightAmount(5, (sale, line) -> sale.discount()));
+    tail.add(new FieldWriter.Literal(currency));
+    tail.add(new FieldWriter.Literal(padRight(language.totalVAT, summaryWidth - 5)));
+    tail.add(new FieldWriter.RightAmount(5, (sale, line) -> sale.totalVAT()));
+    tail.add(new FieldWriter.Literal(currency + "\n"));
+    tail.add(new FieldWriter.Literal(padRight(language.total, summaryWidth - 8)));
+    tail.add(new FieldWriter.RightAmount(8, (sale, line) -> sale.payment().totalPrice()));
+    tail.add(new FieldWriter.Literal(currency));
+    tail.add(new FieldWriter.Literal(padRight(language.cash, summaryWidth - 8)));
+    tail.add(new FieldWriter.RightAmount(8, (sale, line) -> sale.payment().amountPaid()));
+    tail.add(new FieldWriter.Literal(currency));
+    tail.add(new FieldWriter.Literal(padRight(language.change, summaryWidth - 8)));
+    tail.add(new FieldWriter.RightAmount(8, (sale, line) -> sale.payment().change()));
+    tail.add(new FieldWriter.Literal(currency));
+    for (String line : footer) {
+      tail.add(new FieldWriter.Literal(line + "\n"));
+    }
+    tail.add(new FieldWriter.Literal(DELIMITER + padRight(" " + language.end, DELIMITER_LABEL_WIDTH)
+        + DELIMITER + "\n"));
+
+    return new ReceiptRenderer(merge(head), merge(lines), merge(tail));
+  }
+
+  /**
+   * Joins neighbouring literals into one, so the compiled chain is as short as
+   * possible.
+   *
+   * @param writers The field writers in order.
+   * @return The field writers with adjacent literals merged.
+   */
+  private static FieldWriter[] merge(List<FieldWriter> writers) {
+    List<FieldWriter> merged = new ArrayList<>();
+    for (FieldWriter writer : writers) {
+      int last = merged.size() - 1;
+      if (writer instanceof FieldWriter.Literal literal && last >= 0
+          && merged.get(last) instanceof FieldWriter.Literal previous) {
+        merged.set(last, new FieldWriter.Literal(previous.text() + literal.text()));
+      } else {
+        merged.add(writer);
+      }
+    }
+    return merged.toArray(new FieldWriter[0]);
+  }
+
+  /**
+   * Pads the given text with spaces to the given width, done once at compile
+   * time.
+   *
+   * @param text  The text to pad.
+   * @param width The minimum width.
+   * @return The padded text.
+   */
+  private static String padRight(String text, int width) {
+    return text.length() >= width ? text : text + " ".repeat(width - text.length());
+  }
+
+  /**
+   * Builds a {@link ReceiptTemplate}. All settings start at the values of the
+   * default layout.
+   */
+  public static class Builder {
+    private final List<String> header = new ArrayList<>();
+    private final List<String> footer = new ArrayList<>();
+    private Language language = Language.ENGLISH;
+    private int descriptionWidth = 9;
+    private int quantityWidth = 5;
+    private int unitPriceWidth = 5;
+    private int lineTotalWidth = 8;
+    private int summaryWidth = 34;
+
+    private Builder() {
+    }
+
+    /**
+     * Adds a line below the opening delimiter, e.g. the store name.
+     *
+     * @param line The header line.
+     * @return This builder.
+     */
+    public Builder header(String line) {
+      header.add(line);
+      return this;
+    }
+
+    /**
+     * Adds a line above the closing delimiter, e.g. a greeting.
+     *
+     * @param line The footer line.
+     * @return This builder.
+     */
+    public Builder footer(String line) {
+      footer.add(line);
+      return this;
+    }
+
+    /**
+     * Sets the language of all labels.
+     *
+     * @param language The {@link Language} of the receipt.
+     * @return This builder.
+     */
+    public Builder language(Language language) {
+      this.language = language;
+      return this;
+    }
+
+    /**
+     * Sets the widths of the item columns.
+     *
+     * @param description The width of the description column.
+     * @param quantity    The width of the quantity column.
+     * @param unitPrice   The width of the unit price column.
+     * @param lineTotal   The width of the line total column.
+     * @return This builder.
+     * @throws IllegalArgumentException if any width is not positive.
+     */
+    public Builder columns(int description, int quantity, int unitPrice, int lineTotal) {
+      if (description <= 0 || quantity <= 0 || unitPrice <= 0 || lineTotal <= 0) {
+        throw new IllegalArgumentException("Column widths must be greater than zero.");
+      }
+      this.descriptionWidth = description;
+      this.quantityWidth = quantity;
+      this.unitPriceWidth = unitPrice;
+      this.lineTotalWidth = lineTotal;
+      return this;
+    }
+
+    /**
+     * Sets the column that the amounts of the summary section end at.
+     *
+     * @param width The width of the summary lines, excluding the currency.
+     * @return This builder.
+     * @throws IllegalArgumentException if the width cannot hold an amount.
+     */
+    public Builder summaryWidth(int width) {
+      if (width < 8) {
+        throw new IllegalArgumentException("Summary width must be at least 8.");
+      }
+      this.summaryWidth = width;
+      return this;
+    }
+
+    /**
+     * Creates the template.
+     *
+     * @return The new {@link ReceiptTemplate}.
+     */
+    public ReceiptTemplate build() {
+      return new ReceiptTemplate(this);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package se.kth.iv1350.integration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timer wheel that finds stock reservations whose hold time has run
+ * out.
+ * <p>
+ * Time is divided into ticks, and each tick maps to one bucket of a ring. A
+ * reservation is put in the bucket of the tick its deadline falls in, which
+ * costs one lock-free queue insert. Advancing the wheel only visits the
+ * buckets of the ticks that have passed. Deadlines further away than one turn
+ * of the wheel stay in their bucket until the turn they are due. A reservation
+ * scheduled while its bucket is being visited may expire one turn late.
+ */
+class ReservationTimerWheel {
+  private final long tickMillis;
+  private final List<Queue<StockReservations.Reservation>> buckets;
+  private final AtomicBoolean advancing;
+  private volatile long currentTick;
+
+  /**
+   * Creates a new, empty {@code ReservationTimerWheel}.
+   *
+   * @param tickMillis  The length of one tick in milliseconds.
+   * @param bucketCount The number of buckets, a power of two.
+   * @param nowMillis   The current time in milliseconds.
+   * @throws IllegalArgumentException if any argument is out of range.
+   */
+  ReservationTimerWheel(long tickMillis, int bucketCount, long nowMillis) {
+    if (tickMillis <= 0) {
+      throw new IllegalArgumentException("Tick length must be greater than zero.");
+    }
+    if (bucketCount <= 0 || Integer.bitCount(bucketCount) != 1) {
+      throw new IllegalArgumentException("Bucket count must be a power of two.");
+    }
+    this.tickMillis = tickMillis;
+    this.buckets = new ArrayList<>(bucketCount);
+    for (int i = 0; i < bucketCount; i++) {
+      buckets.add(new ConcurrentLinkedQueue<>());
+    }
+    this.advancing = new AtomicBoolean();
+    this.currentTick = nowMillis / tickMillis;
+  }
+
+  /**
+   * Adds a reservation to the bucket of its deadline.
+   *
+   * @param reservation The {@link StockReservations.Reservation} to schedule.
+   */
+  void schedule(StockReservations.Reservation reservation) {
+    long tick = Math.max(ceilDiv(reservation.getDeadlineMillis(), tickMillis), currentTick + 1);
+    bucketOf(tick).add(reservation);
+  }
+
+  /**
+   * Visits every bucket whose tick has passed and hands each reservation that
+   * is due to the given action. Returns right away if another thread is
+   * already advancing the wheel.
+   *
+   * @param nowMillis The current time in milliseconds.
+   * @param onExpiry  Called for every reservation whose deadline has passed.
+   */
+  void advance(long nowMillis, Consumer<StockReservations.Reservation> onExpiry) {
+    if (!advancing.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      long target = nowMillis / tickMillis;
+      long from = currentTick + 1;
+      long to = Math.min(target, currentTick + buckets.size());
+      List<StockReservations.Reservation> notDue = new ArrayList<>();
+      for (long tick = from; tick <= to; tick++) {
+        Queue<StockReservations.Reservation> bucket = bucketOf(tick);
+        StockReservations.Reservation reservation;
+        while ((reservation = bucket.poll()) != null) {
+          if (!reservation.isPending()) {
+            continue;
+          }
+          if (reservation.getDeadlineMillis() <= nowMillis) {
+            onExpiry.accept(reservation);
+          } else {
+            notDue.add(reservation);
+          }
+        }
+        bucket.addAll(notDue);
+        notDue.clear();
+      }
+      if (target > currentTick) {
+        currentTick = target;
+      }
+    } finally {
+      advancing.set(false);
+    }
+  }
+
+  /**
+   * Returns the bucket of the given tick.
+   *
+   * @param tick The tick.
+   * @return The bucket holding the reservations due in that tick.
+   */
+  private Queue<StockReservations.Reservation> bucketOf(long tick) {
+    return buckets.get((int) (tick & (buckets.size() - 1)));
+  }
+
+  /**
+   * Divides and rounds up.
+   *
+   * @param value   The dividend, not negative.
+   * @param divisor The divisor, greater than zero.
+   * @return The rounded-up quotient.
+   */
+  private static long ceilDiv(long value, long divisor) {
+    return (value + divisor - 1) / divisor;
+  }
+}
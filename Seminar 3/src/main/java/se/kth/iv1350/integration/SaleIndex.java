@@ -0,0 +1,570 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.PaymentDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index over completed sales and the items returned from them, so that a
+ * sale can be found again when a customer returns items. A sale is found by
+ * its sale identifier, which is also the receipt number printed on its
+ * receipt.
+ * <p>
+ * A year of sales must fit in memory, so sales are not kept as objects.
+ * Every sale is one row in a set of parallel arrays, and its lines are
+ * pairs of an item reference and a quantity in one shared {@code int} array.
+ * Each distinct item is stored once, since most sales repeat the same few
+ * thousand items. Sale identifiers are mapped to rows by an open-addressing
+ * hash table of primitive {@code long}s, so a lookup takes constant time.
+ * The {@link SaleDTO} is rebuilt on lookup.
+ * <p>
+ * An index opened on a journal file appends every sale and return to the
+ * file, and reads them back when it is opened again, so neither sales nor
+ * returns are forgotten when the register restarts. A record cut short by a
+ * crash is dropped. All methods are thread safe.
+ */
+public class SaleIndex implements SaleObserver, AutoCloseable {
+  private static final long EMPTY = 0L;
+  private static final byte SALE_RECORD = 1;
+  private static final byte RETURN_RECORD = 2;
+
+  private final List<ItemDTO> items;
+  private final Map<ItemDTO, Integer> itemRefs;
+  private long[] saleIDs;
+  private long[] times;
+  private double[] discounts;
+  private double[] totalVATs;
+  private double[] totalPrices;
+  private double[] amountsPaid;
+  private double[] changes;
+  private int[] lineStarts;
+  private int[] lines;
+  private int lineSize;
+  private int size;
+  private long[] tableIDs;
+  private int[] tableRows;
+  private int tableCount;
+  private final Map<Long, Map<Integer, Integer>> returnedUnits;
+  private final Map<Long, Long> refundedCents;
+  private final FileChannel journal;
+  private long journalErrors;
+
+  /**
+   * Creates a new, empty {@code SaleIndex} that is kept in memory only.
+   */
+  public SaleIndex() {
+    this(null);
+  }
+
+  /**
+   * Creates a new, empty {@code SaleIndex}.
+   *
+   * @param journal The journal new sales and returns are appended to, or
+   *                {@code null} to keep them in memory only.
+   */
+  private SaleIndex(FileChannel journal) {
+    this.journal = journal;
+    this.returnedUnits = new HashMap<>();
+    this.refundedCents = new HashMap<>();
+    this.items = new ArrayList<>();
+    this.itemRefs = new HashMap<>();
+    this.saleIDs = new long[16];
+    this.times = new long[16];
+    this.discounts = new double[16];
+    this.totalVATs = new double[16];
+    this.totalPrices = new double[16];
+    this.amountsPaid = new double[16];
+    this.changes = new double[16];
+    this.lineStarts = new int[17];
+    this.lines = new int[64];
+    this.tableIDs = new long[32];
+    this.tableRows = new int[32];
+  }
+
+  /**
+   * Opens the index kept in a journal file, creating the file if it does not
+   * exist, and reads back every sale and return recorded in it.
+   *
+   * @param file The journal file.
+   * @return The {@code SaleIndex}.
+   * @throws IOException if the file could not be opened or read.
+   */
+  public static SaleIndex open(Path file) throws IOException {
+    FileChannel journal = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      SaleIndex index = new SaleIndex(journal);
+      long end = index.replay(Channels.newInputStream(journal.position(0)));
+      journal.truncate(end);
+      journal.position(end);
+      return index;
+    } catch (IOException | RuntimeException e) {
+      journal.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Indexes a completed sale. A sale the journal could not take is still
+   * indexed, and counted as a journal error.
+   *
+   * @param saleDTO The {@link SaleDTO} of the completed sale.
+   */
+  @Override
+  public void completedSale(SaleDTO saleDTO) {
+    add(saleDTO);
+  }
+
+  /**
+   * Indexes a completed sale. A sale without an identifier, {@code 0}, is
+   * counted but cannot be found. A sale the journal could not take is still
+   * indexed, and counted as a journal error.
+   *
+   * @param saleDTO The {@link SaleDTO} of the sale.
+   */
+  public synchronized void add(SaleDTO saleDTO) {
+    store(saleDTO);
+    if (journal != null) {
+      try {
+        append(saleRecord(saleDTO));
+      } catch (IOException e) {
+        journalErrors++;
+      }
+    }
+  }
+
+  /**
+   * Records that units of an item were returned from a sale.
+   *
+   * @param saleID      The identifier of the sale.
+   * @param itemID      The unique identifier of the returned item.
+   * @param quantity    The number of returned units.
+   * @param refundCents The refund paid for them, in minor units.
+   * @throws IllegalStateException if the journal could not take the return;
+   *                               nothing is recorded then.
+   */
+  public synchronized void recordReturn(long saleID, int itemID, int quantity, long refundCents) {
+    if (journal != null) {
+      try {
+        append(returnRecord(saleID, itemID, quantity, refundCents));
+      } catch (IOException e) {
+        journalErrors++;
+        throw new IllegalStateException("Could not record the return.", e);
+      }
+    }
+    storeReturn(saleID, itemID, quantity, refundCents);
+  }
+
+  /**
+   * Returns how many units of an item have been returned from a sale.
+   *
+   * @param saleID The identifier of the sale.
+   * @param itemID The unique identifier of the item.
+   * @return The number of returned units.
+   */
+  public synchronized int getReturnedQuantity(long saleID, int itemID) {
+    return returnedUnits.getOrDefault(saleID, Map.of()).getOrDefault(itemID, 0);
+  }
+
+  /**
+   * Returns how many units of all items have been returned from a sale.
+   *
+   * @param saleID The identifier of the sale.
+   * @return The number of returned units.
+   */
+  public synchronized int getReturnedQuantity(long saleID) {
+    int units = 0;
+    for (int quantity : returnedUnits.getOrDefault(saleID, Map.of()).values()) {
+      units += quantity;
+    }
+    return units;
+  }
+
+  /**
+   * Returns the refunds paid for returns from a sale.
+   *
+   * @param saleID The identifier of the sale.
+   * @return The sum of the refunds, in minor units.
+   */
+  public synchronized long getRefundedCents(long saleID) {
+    return refundedCents.getOrDefault(saleID, 0L);
+  }
+
+  /**
+   * Returns the number of sales and returns the journal could not take.
+   *
+   * @return The number of journal errors.
+   */
+  public synchronized long getJournalErrors() {
+    return journalErrors;
+  }
+
+  /**
+   * Closes the journal, if the index has one.
+   *
+   * @throws IOException if the journal could not be closed.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (journal != null) {
+      journal.close();
+    }
+  }
+
+  /**
+   * Stores a sale in the next row.
+   *
+   * @param saleDTO The {@link SaleDTO} of the sale.
+   */
+  private void store(SaleDTO saleDTO) {
+    if (size == saleIDs.length) {
+      growRows();
+    }
+    int row = size;
+    List<SaleItemDTO> saleItems = saleDTO.saleItems();
+    ensureLines(saleItems.size() * 2);
+    for (SaleItemDTO line : saleItems) {
+      lines[lineSize++] = itemRef(line.item());
+      lines[lineSize++] = line.quantity();
+    }
+    lineStarts[row + 1] = lineSize;
+    saleIDs[row] = saleDTO.saleID();
+    times[row] = saleDTO.datetime() != null ? saleDTO.datetime().getTime() : Long.MIN_VALUE;
+    discounts[row] = saleDTO.discount();
+    totalVATs[row] = saleDTO.totalVAT();
+    PaymentDTO payment = saleDTO.payment();
+    totalPrices[row] = payment != null ? payment.totalPrice() : Double.NaN;
+    amountsPaid[row] = payment != null ? payment.amountPaid() : Double.NaN;
+    changes[row] = payment != null ? payment.change() : Double.NaN;
+    size++;
+    if (saleDTO.saleID() != EMPTY) {
+      putRow(saleDTO.saleID(), row);
+    }
+  }
+
+  /**
+   * Stores the return of units from a sale.
+   *
+   * @param saleID      The identifier of the sale.
+   * @param itemID      The unique identifier of the returned item.
+   * @param quantity    The number of returned units.
+   * @param refundCents The refund paid for them, in minor units.
+   */
+  private void storeReturn(long saleID, int itemID, int quantity, long refundCents) {
+    returnedUnits.computeIfAbsent(saleID, id -> new HashMap<>()).merge(itemID, quantity, Integer::sum);
+    refundedCents.merge(saleID, refundCents, Long::sum);
+  }
+
+  /**
+   * Finds a sale by its identifier. If a sale was indexed twice, the later
+   * one is found.
+   *
+   * @param saleID The identifier of the sale.
+   * @return The {@link SaleDTO}, or {@code null} if the sale is not indexed.
+   */
+  public synchronized SaleDTO findBySaleID(long saleID) {
+    int row = rowOf(saleID);
+    return row < 0 ? null : rebuild(row);
+  }
+
+  /**
+   * Returns the number of indexed sales.
+   *
+   * @return The number of sales.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of distinct items in the indexed sales.
+   *
+   * @return The number of distinct items.
+   */
+  public synchronized int getDistinctItemCount() {
+    return items.size();
+  }
+
+  /**
+   * Reads back the records of a journal. Each record is its length followed
+   * by the record, so a record cut short at the end is recognised and
+   * dropped.
+   *
+   * @param in The contents of the journal.
+   * @return The length of the complete records, where new records go.
+   * @throws IOException              if the journal could not be read.
+   * @throws IllegalArgumentException if a record is not valid.
+   */
+  private long replay(InputStream in) throws IOException {
+    DataInputStream records = new DataInputStream(new BufferedInputStream(in));
+    long end = 0;
+    while (true) {
+      byte[] record;
+      try {
+        record = new byte[records.readInt()];
+        records.readFully(record);
+      } catch (EOFException e) {
+        return end;
+      }
+      DataInputStream fields = new DataInputStream(new ByteArrayInputStream(record));
+      byte type = fields.readByte();
+      if (type == SALE_RECORD) {
+        store(readSale(fields));
+      } else if (type == RETURN_RECORD) {
+        storeReturn(fields.readLong(), fields.readInt(), fields.readInt(), fields.readLong());
+      } else {
+        throw new IllegalArgumentException("Unknown journal record " + type + ".");
+      }
+      end += Integer.BYTES + record.length;
+    }
+  }
+
+  /**
+   * Appends a record to the journal. If the record could not be written
+   * whole, the journal is cut back to where it was.
+   *
+   * @param record The record.
+   * @throws IOException if the record could not be written.
+   */
+  private void append(ByteArrayOutputStream record) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + record.size());
+    buffer.putInt(record.size()).put(record.toByteArray()).flip();
+    long end = journal.position();
+    try {
+      while (buffer.hasRemaining()) {
+        journal.write(buffer);
+      }
+    } catch (IOException e) {
+      try {
+        journal.truncate(end);
+        journal.position(end);
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Writes the journal record of a sale.
+   *
+   * @param saleDTO The {@link SaleDTO} of the sale.
+   * @return The record.
+   * @throws IOException never, the record is written to memory.
+   */
+  private static ByteArrayOutputStream saleRecord(SaleDTO saleDTO) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(SALE_RECORD);
+    out.writeLong(saleDTO.saleID());
+    out.writeLong(saleDTO.datetime() != null ? saleDTO.datetime().getTime() : Long.MIN_VALUE);
+    out.writeDouble(saleDTO.discount());
+    out.writeDouble(saleDTO.totalVAT());
+    PaymentDTO payment = saleDTO.payment();
+    out.writeDouble(payment != null ? payment.totalPrice() : Double.NaN);
+    out.writeDouble(payment != null ? payment.amountPaid() : Double.NaN);
+    out.writeDouble(payment != null ? payment.change() : Double.NaN);
+    out.writeInt(saleDTO.saleItems().size());
+    for (SaleItemDTO line : saleDTO.saleItems()) {
+      ItemDTO item = line.item();
+      out.writeInt(item.itemID());
+      out.writeUTF(item.description());
+      out.writeDouble(item.price());
+      out.writeInt(item.VAT());
+      out.writeInt(line.quantity());
+    }
+    return bytes;
+  }
+
+  /**
+   * Reads a sale from its journal record, after the record type.
+   *
+   * @param in The record.
+   * @return The {@link SaleDTO} of the sale.
+   * @throws IOException if the record is cut short.
+   */
+  private static SaleDTO readSale(DataInputStream in) throws IOException {
+    long saleID = in.readLong();
+    long time = in.readLong();
+    double discount = in.readDouble();
+    double totalVAT = in.readDouble();
+    double totalPrice = in.readDouble();
+    double amountPaid = in.readDouble();
+    double change = in.readDouble();
+    int lineCount = in.readInt();
+    List<SaleItemDTO> saleItems = new ArrayList<>(lineCount);
+    for (int i = 0; i < lineCount; i++) {
+      ItemDTO item = new ItemDTO(in.readInt(), in.readUTF(), in.readDouble(), in.readInt());
+      saleItems.add(new SaleItemDTO(item, in.readInt()));
+    }
+    PaymentDTO payment = Double.isNaN(totalPrice) ? null : new PaymentDTO(totalPrice, amountPaid, change);
+    return new SaleDTO(List.copyOf(saleItems), time == Long.MIN_VALUE ? null : new Date(time), discount, totalVAT,
+        payment, saleID);
+  }
+
+  /**
+   * Writes the journal record of a return.
+   *
+   * @param saleID      The identifier of the sale.
+   * @param itemID      The unique identifier of the returned item.
+   * @param quantity    The number of returned units.
+   * @param refundCents The refund paid for them, in minor units.
+   * @return The record.
+   * @throws IOException never, the record is written to memory.
+   */
+  private static ByteArrayOutputStream returnRecord(long saleID, int itemID, int quantity, long refundCents)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(RETURN_RECORD);
+    out.writeLong(saleID);
+    out.writeInt(itemID);
+    out.writeInt(quantity);
+    out.writeLong(refundCents);
+    return bytes;
+  }
+
+  /**
+   * Rebuilds the {@link SaleDTO} of a row.
+   *
+   * @param row The row of the sale.
+   * @return The {@link SaleDTO}.
+   */
+  private SaleDTO rebuild(int row) {
+    List<SaleItemDTO> saleItems = new ArrayList<>((lineStarts[row + 1] - lineStarts[row]) / 2);
+    for (int i = lineStarts[row]; i < lineStarts[row + 1]; i += 2) {
+      saleItems.add(new SaleItemDTO(items.get(lines[i]), lines[i + 1]));
+    }
+    Date datetime = times[row] == Long.MIN_VALUE ? null : new Date(times[row]);
+    PaymentDTO payment = Double.isNaN(totalPrices[row]) ? null
+        : new PaymentDTO(totalPrices[row], amountsPaid[row], changes[row]);
+    return new SaleDTO(List.copyOf(saleItems), datetime, discounts[row], totalVATs[row], payment, saleIDs[row]);
+  }
+
+  /**
+   * Returns the reference of an item, storing the item if it is new.
+   *
+   * @param item The {@link ItemDTO}.
+   * @return The position of the item in the item list.
+   */
+  private int itemRef(ItemDTO item) {
+    Integer ref = itemRefs.get(item);
+    if (ref == null) {
+      ref = items.size();
+      items.add(item);
+      itemRefs.put(item, ref);
+    }
+    return ref;
+  }
+
+  /**
+   * Returns the row of a sale identifier.
+   *
+   * @param saleID The identifier.
+   * @return The row, or {@code -1} if the identifier is not indexed.
+   */
+  private int rowOf(long saleID) {
+    if (saleID == EMPTY) {
+      return -1;
+    }
+    int mask = tableIDs.length - 1;
+    for (int slot = slotOf(saleID, mask); tableIDs[slot] != EMPTY; slot = (slot + 1) & mask) {
+      if (tableIDs[slot] == saleID) {
+        return tableRows[slot];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Maps a sale identifier to a row, replacing an earlier row of the same
+   * identifier. The table is doubled when it is half full.
+   *
+   * @param saleID The identifier.
+   * @param row    The row.
+   */
+  private void putRow(long saleID, int row) {
+    if ((tableCount + 1) * 2 > tableIDs.length) {
+      long[] oldIDs = tableIDs;
+      int[] oldRows = tableRows;
+      tableIDs = new long[oldIDs.length * 2];
+      tableRows = new int[oldIDs.length * 2];
+      tableCount = 0;
+      for (int i = 0; i < oldIDs.length; i++) {
+        if (oldIDs[i] != EMPTY) {
+          putRow(oldIDs[i], oldRows[i]);
+        }
+      }
+    }
+    int mask = tableIDs.length - 1;
+    int slot = slotOf(saleID, mask);
+    while (tableIDs[slot] != EMPTY && tableIDs[slot] != saleID) {
+      slot = (slot + 1) & mask;
+    }
+    if (tableIDs[slot] == EMPTY) {
+      tableCount++;
+    }
+    tableIDs[slot] = saleID;
+    tableRows[slot] = row;
+  }
+
+  /**
+   * Returns the home slot of an identifier in the hash table.
+   *
+   * @param saleID The identifier.
+   * @param mask   The size of the table minus one.
+   * @return The slot.
+   */
+  private static int slotOf(long saleID, int mask) {
+    long value = (saleID ^ (saleID >>> 33)) * 0xff51afd7ed558ccdL;
+    value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return (int) (value ^ (value >>> 33)) & mask;
+  }
+
+  /**
+   * Doubles the capacity of every per-sale array.
+   */
+  private void growRows() {
+    int capacity = saleIDs.length * 2;
+    saleIDs = Arrays.copyOf(saleIDs, capacity);
+    times = Arrays.copyOf(times, capacity);
+    discounts = Arrays.copyOf(discounts, capacity);
+    totalVATs = Arrays.copyOf(totalVATs, capacity);
+    totalPrices = Arrays.copyOf(totalPrices, capacity);
+    amountsPaid = Arrays.copyOf(amountsPaid, capacity);
+    changes = Arrays.copyOf(changes, capacity);
+    lineStarts = Arrays.copyOf(lineStarts, capacity + 1);
+  }
+
+  /**
+   * Makes room for more line values.
+   *
+   * @param extra The number of values about to be added.
+   */
+  private void ensureLines(int extra) {
+    if (lineSize + extra > lines.length) {
+      lines = Arrays.copyOf(lines, Math.max(lines.length * 2, lineSize + extra));
+    }
+  }
+}
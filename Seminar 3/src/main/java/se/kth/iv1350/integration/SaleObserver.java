@@ -0,0 +1,16 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.model.dto.SaleDTO;
+
+/**
+ * A listener that is notified each time a sale has been completed, after the
+ * receipt has been printed and the external systems have been updated.
+ */
+public interface SaleObserver {
+  /**
+   * Invoked when a sale has been completed.
+   *
+   * @param saleDTO The {@link SaleDTO} of the completed sale.
+   */
+  void completedSale(SaleDTO saleDTO);
+}
@@ -0,0 +1,187 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.metrics.MetricsRegistry;
+import se.kth.iv1350.model.classes.SaleEventLog;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams the open sale of a lane to a {@link SaleStandby}, so that another
+ * process can take the sale over if this one dies.
+ * <p>
+ * After every change to the sale, only the events added since the last frame
+ * are sent, as one small binary frame:
+ * <pre>
+ * int length, byte type, long saleID, byte[length - 9] events
+ * </pre>
+ * where the type is {@link #DELTA} for new events and {@link #CLOSED} when the
+ * sale is completed or abandoned. Frames are written directly from the
+ * lane's thread into a reused direct buffer, with Nagle's algorithm turned off
+ * so that a frame leaves at once. If the standby cannot be reached, or a
+ * frame would be longer than {@link #MAX_FRAME_BYTES}, the lane keeps
+ * working without replication and the failure is counted.
+ */
+public class SaleReplicator implements AutoCloseable {
+  /** The frame type of new events of an open sale. */
+  static final byte DELTA = 1;
+  /** The frame type of a sale that was completed or abandoned. */
+  static final byte CLOSED = 2;
+  /** The bytes of a frame header after the length. */
+  static final int HEADER_BYTES = 1 + Long.BYTES;
+  /** The largest frame length a standby accepts. */
+  static final int MAX_FRAME_BYTES = 1 << 20;
+
+  private final SocketChannel channel;
+  private final AtomicLong framesSent;
+  private final AtomicLong bytesSent;
+  private final AtomicLong sendFailures;
+  private ByteBuffer frame;
+  private long saleID;
+  private int shipped;
+  private volatile boolean connected;
+
+  /**
+   * Creates a new {@code SaleReplicator} sending over the given channel.
+   *
+   * @param channel A connected {@link SocketChannel} to the standby.
+   * @throws IOException if the channel options could not be set.
+   */
+  public SaleReplicator(SocketChannel channel) throws IOException {
+    this.channel = channel;
+    channel.configureBlocking(true);
+    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    this.frame = ByteBuffer.allocateDirect(4096);
+    this.framesSent = new AtomicLong();
+    this.bytesSent = new AtomicLong();
+    this.sendFailures = new AtomicLong();
+    this.saleID = 0;
+    this.connected = true;
+  }
+
+  /**
+   * Connects to a standby.
+   *
+   * @param standby The address of the {@link SaleStandby}.
+   * @return The new {@code SaleReplicator}.
+   * @throws IOException if the standby could not be reached.
+   */
+  public static SaleReplicator connect(InetSocketAddress standby) throws IOException {
+    return new SaleReplicator(SocketChannel.open(standby));
+  }
+
+  /**
+   * Sends the events of a sale that the standby has not received yet.
+   *
+   * @param saleID The identifier of the sale.
+   * @param log    The {@link SaleEventLog} of the sale.
+   */
+  public synchronized void replicate(long saleID, SaleEventLog log) {
+    if (saleID != this.saleID) {
+      this.saleID = saleID;
+      this.shipped = 0;
+    }
+    int size = log.size();
+    if (size == shipped || !connected) {
+      return;
+    }
+    byte[] events = log.copyFrom(shipped);
+    if (send(DELTA, saleID, events)) {
+      shipped = size;
+    }
+  }
+
+  /**
+   * Tells the standby that a sale was completed or abandoned, so it can drop
+   * its copy. Nothing is sent for a sale that is not being replicated, such
+   * as one that was already closed.
+   *
+   * @param saleID The identifier of the sale.
+   */
+  public synchronized void saleClosed(long saleID) {
+    if (saleID != this.saleID) {
+      return;
+    }
+    if (connected) {
+      send(CLOSED, saleID, new byte[0]);
+    }
+    this.saleID = 0;
+    this.shipped = 0;
+  }
+
+  /**
+   * Returns whether the standby is still reachable.
+   *
+   * @return {@code false} once sending has failed.
+   */
+  public boolean isConnected() {
+    return connected;
+  }
+
+  /**
+   * Registers the number of frames and bytes sent, and of failed sends, as
+   * gauges.
+   *
+   * @param metrics The {@link MetricsRegistry} to register the gauges in.
+   */
+  public void registerMetrics(MetricsRegistry metrics) {
+    metrics.gauge("sale_replication_frames_total", framesSent::get);
+    metrics.gauge("sale_replication_bytes_total", bytesSent::get);
+    metrics.gauge("sale_replication_failures_total", sendFailures::get);
+    metrics.gauge("sale_replication_connected", () -> connected ? 1 : 0);
+  }
+
+  /**
+   * Closes the connection to the standby. Sales still open on the standby
+   * stay there, so it can take them over.
+   *
+   * @throws IOException if the channel could not be closed.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    connected = false;
+    channel.close();
+  }
+
+  /**
+   * Writes one frame.
+   *
+   * @param type   The frame type.
+   * @param saleID The identifier of the sale.
+   * @param events The encoded events of the frame.
+   * @return {@code true} if the frame was written.
+   */
+  private boolean send(byte type, long saleID, byte[] events) {
+    int length = HEADER_BYTES + events.length;
+    if (length > MAX_FRAME_BYTES) {
+      sendFailures.incrementAndGet();
+      connected = false;
+      System.err.println("Error: Sale " + saleID + " changed too much for one frame, continuing without "
+          + "replication.");
+      return false;
+    }
+    if (frame.capacity() < Integer.BYTES + length) {
+      frame = ByteBuffer.allocateDirect(Integer.highestOneBit(Integer.BYTES + length) << 1);
+    }
+    frame.clear();
+    frame.putInt(length).put(type).putLong(saleID).put(events).flip();
+    try {
+      while (frame.hasRemaining()) {
+        channel.write(frame);
+      }
+    } catch (IOException e) {
+      sendFailures.incrementAndGet();
+      connected = false;
+      System.err.println("Error: Lost the connection to the standby, continuing without replication. "
+          + e.getMessage());
+      return false;
+    }
+    framesSent.incrementAndGet();
+    bytesSent.addAndGet(Integer.BYTES + length);
+    return true;
+  }
+}
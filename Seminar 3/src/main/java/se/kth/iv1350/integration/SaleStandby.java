@@ -0,0 +1,254 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.model.classes.SaleEventLog;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps copies of the open sales of one or more lanes, as streamed by their
+ * {@link SaleReplicator}s, so that this process can take the sales over if a
+ * lane's process dies.
+ * <p>
+ * One thread accepts connections and reads frames from all of them with a
+ * {@link Selector}. The events of each frame are appended to the copy of its
+ * sale; a closed sale is dropped. Taking over stops receiving and returns a
+ * checkpoint of every open sale, which
+ * {@code Controller.recoverSale(byte[])} continues from.
+ */
+public class SaleStandby implements AutoCloseable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final ServerSocketChannel server;
+  private final Selector selector;
+  private final Thread receiver;
+  private final Map<Long, SaleEventLog> openSales;
+  private final AtomicLong framesReceived;
+  private volatile boolean running;
+
+  /**
+   * Creates a new {@code SaleStandby} listening on the given address and
+   * starts receiving.
+   *
+   * @param address The address to listen on, for example the loopback
+   *                address with port {@code 0} for any free port.
+   * @throws IOException if the address could not be bound.
+   */
+  public SaleStandby(InetSocketAddress address) throws IOException {
+    this.server = ServerSocketChannel.open().bind(address);
+    this.selector = Selector.open();
+    server.configureBlocking(false);
+    server.register(selector, SelectionKey.OP_ACCEPT);
+    this.openSales = new ConcurrentHashMap<>();
+    this.framesReceived = new AtomicLong();
+    this.running = true;
+    this.receiver = new Thread(this::receive, "sale-standby");
+    receiver.setDaemon(true);
+    receiver.start();
+  }
+
+  /**
+   * Returns the port the standby listens on.
+   *
+   * @return The port.
+   * @throws IOException if the port could not be read.
+   */
+  public int getPort() throws IOException {
+    return ((InetSocketAddress) server.getLocalAddress()).getPort();
+  }
+
+  /**
+   * Returns the number of frames received so far.
+   *
+   * @return The number of frames.
+   */
+  public long getFramesReceived() {
+    return framesReceived.get();
+  }
+
+  /**
+   * Returns the identifiers of the sales currently open on the lanes.
+   *
+   * @return The sale identifiers, sorted.
+   */
+  public Set<Long> getOpenSaleIDs() {
+    return new TreeSet<>(openSales.keySet());
+  }
+
+  /**
+   * Returns a checkpoint of an open sale.
+   *
+   * @param saleID The identifier of the sale.
+   * @return The encoded event log of the sale, or {@code null} if the sale is
+   *         not open.
+   */
+  public byte[] getCheckpoint(long saleID) {
+    SaleEventLog log = openSales.get(saleID);
+    if (log == null) {
+      return null;
+    }
+    synchronized (log) {
+      return log.toByteArray();
+    }
+  }
+
+  /**
+   * Stops receiving and returns a checkpoint of every sale that was open on
+   * the lanes.
+   *
+   * @return The encoded event log of every open sale, by sale identifier.
+   * @throws IOException if the connections could not be closed.
+   */
+  public Map<Long, byte[]> takeOver() throws IOException {
+    close();
+    Map<Long, byte[]> checkpoints = new HashMap<>();
+    for (Long saleID : openSales.keySet()) {
+      checkpoints.put(saleID, getCheckpoint(saleID));
+    }
+    return checkpoints;
+  }
+
+  /**
+   * Stops receiving and closes all connections.
+   *
+   * @throws IOException if a connection could not be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    if (!running) {
+      return;
+    }
+    running = false;
+    selector.wakeup();
+    try {
+      receiver.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (SelectionKey key : selector.keys()) {
+      key.channel().close();
+    }
+    selector.close();
+  }
+
+  /**
+   * Accepts connections and reads frames until the standby is closed.
+   */
+  private void receive() {
+    try {
+      while (running) {
+        selector.select();
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (key.isAcceptable()) {
+            accept();
+          } else if (key.isReadable()) {
+            read(key);
+          }
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("Error: The standby stopped receiving. " + e.getMessage());
+    }
+  }
+
+  /**
+   * Accepts a new lane.
+   *
+   * @throws IOException if the connection could not be set up.
+   */
+  private void accept() throws IOException {
+    SocketChannel lane = server.accept();
+    if (lane != null) {
+      lane.configureBlocking(false);
+      lane.register(selector, SelectionKey.OP_READ, ByteBuffer.allocate(BUFFER_SIZE));
+    }
+  }
+
+  /**
+   * Reads what a lane has sent and applies every complete frame. A lane that
+   * disconnects is forgotten, but its open sales are kept. A lane that sends
+   * a frame length outside the frame limits is dropped before its buffer
+   * grows, so the buffer never holds more than one largest frame.
+   *
+   * @param key The {@link SelectionKey} of the lane.
+   */
+  private void read(SelectionKey key) {
+    SocketChannel lane = (SocketChannel) key.channel();
+    ByteBuffer buffer = (ByteBuffer) key.attachment();
+    try {
+      if (lane.read(buffer) < 0) {
+        key.cancel();
+        lane.close();
+        return;
+      }
+      buffer.flip();
+      while (buffer.remaining() >= Integer.BYTES) {
+        int length = buffer.getInt(buffer.position());
+        if (length < SaleReplicator.HEADER_BYTES || length > SaleReplicator.MAX_FRAME_BYTES) {
+          throw new IllegalArgumentException("Frame length " + length + " is out of range.");
+        }
+        if (buffer.remaining() < Integer.BYTES + length) {
+          break;
+        }
+        buffer.getInt();
+        apply(buffer, length);
+      }
+      buffer.compact();
+      if (!buffer.hasRemaining()) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.min(buffer.capacity() * 2,
+            Integer.BYTES + SaleReplicator.MAX_FRAME_BYTES));
+        buffer.flip();
+        larger.put(buffer);
+        key.attach(larger);
+      }
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Error: Dropped a lane after a bad frame. " + e.getMessage());
+      key.cancel();
+      try {
+        lane.close();
+      } catch (IOException ignored) {
+        // The lane is dropped either way
+      }
+    }
+  }
+
+  /**
+   * Applies one frame.
+   *
+   * @param buffer The received bytes, positioned after the frame length.
+   * @param length The length of the frame.
+   * @throws IllegalArgumentException if the frame is not a valid frame.
+   */
+  private void apply(ByteBuffer buffer, int length) {
+    byte type = buffer.get();
+    long saleID = buffer.getLong();
+    byte[] events = new byte[length - SaleReplicator.HEADER_BYTES];
+    buffer.get(events);
+    if (type == SaleReplicator.DELTA) {
+      SaleEventLog log = openSales.computeIfAbsent(saleID, id -> new SaleEventLog());
+      synchronized (log) {
+        log.append(events);
+      }
+    } else if (type == SaleReplicator.CLOSED) {
+      openSales.remove(saleID);
+    } else {
+      throw new IllegalArgumentException("Unknown frame type " + type + ".");
+    }
+    framesReceived.incrementAndGet();
+  }
+}
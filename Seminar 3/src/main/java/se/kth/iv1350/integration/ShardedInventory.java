@@ -0,0 +1,234 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * The stock levels of every store in the chain, sharing one
+ * {@link ItemCatalog}.
+ * <p>
+ * Stock is split into {@link StockShard}s by store ID and by range of catalog
+ * indexes. A register only touches the shards of its own store, and every
+ * stock level is an atomic counter, so stores never contend with each other.
+ * Queries over all stores, such as the total stock of an item, run in
+ * parallel. Use {@link #forStore(int)} to give a {@code Controller} the
+ * inventory of a single store.
+ */
+public class ShardedInventory {
+  private final ItemCatalog catalog;
+  private final int itemsPerShard;
+  private final int shardsPerStore;
+  private final Map<Integer, StockShard[]> stores;
+
+  /**
+   * Creates a new {@code ShardedInventory} without any stores.
+   *
+   * @param catalog       The {@link ItemCatalog} shared by all stores.
+   * @param itemsPerShard The number of catalog items in each shard.
+   * @throws IllegalArgumentException if {@code itemsPerShard} is not positive.
+   */
+  public ShardedInventory(ItemCatalog catalog, int itemsPerShard) {
+    if (itemsPerShard <= 0) {
+      throw new IllegalArgumentException("Items per shard must be greater than zero.");
+    }
+    this.catalog = catalog;
+    this.itemsPerShard = itemsPerShard;
+    this.shardsPerStore = (catalog.size() + itemsPerShard - 1) / itemsPerShard;
+    this.stores = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Returns the catalog shared by all stores.
+   *
+   * @return The {@link ItemCatalog}.
+   */
+  public ItemCatalog getCatalog() {
+    return catalog;
+  }
+
+  /**
+   * Adds a store with nothing in stock. Does nothing if the store already
+   * exists.
+   *
+   * @param storeID The ID of the store.
+   */
+  public void addStore(int storeID) {
+    stores.computeIfAbsent(storeID, id -> {
+      StockShard[] shards = new StockShard[shardsPerStore];
+      for (int shard = 0; shard < shardsPerStore; shard++) {
+        int firstIndex = shard * itemsPerShard;
+        shards[shard] = new StockShard(id, firstIndex, Math.min(itemsPerShard, catalog.size() - firstIndex));
+      }
+      return shards;
+    });
+  }
+
+  /**
+   * Returns the IDs of all stores.
+   *
+   * @return The store IDs.
+   */
+  public Set<Integer> getStoreIDs() {
+    return Set.copyOf(stores.keySet());
+  }
+
+  /**
+   * Returns the stock level of an item in a store.
+   *
+   * @param storeID The ID of the store.
+   * @param itemID  The ID of the item.
+   * @return The quantity in stock.
+   * @throws IllegalArgumentException if the store or item does not exist.
+   */
+  public int getQuantity(int storeID, int itemID) {
+    int index = requireIndex(itemID);
+    return shardOf(storeID, index).get(index);
+  }
+
+  /**
+   * Sets the stock level of an item in a store.
+   *
+   * @param storeID  The ID of the store.
+   * @param itemID   The ID of the item.
+   * @param quantity The new quantity in stock.
+   * @throws IllegalArgumentException if the store or item does not exist.
+   */
+  public void setQuantity(int storeID, int itemID, int quantity) {
+    int index = requireIndex(itemID);
+    shardOf(storeID, index).set(index, quantity);
+  }
+
+  /**
+   * Changes the stock level of an item in a store.
+   *
+   * @param storeID The ID of the store.
+   * @param itemID  The ID of the item.
+   * @param delta   The change of the quantity.
+   * @return The new quantity in stock.
+   * @throws IllegalArgumentException if the store or item does not exist.
+   */
+  public int addQuantity(int storeID, int itemID, int delta) {
+    int index = requireIndex(itemID);
+    return shardOf(storeID, index).add(index, delta);
+  }
+
+  /**
+   * Reduces the stock of a store by the items of a completed sale. Items that
+   * are not in the catalog are skipped.
+   *
+   * @param storeID The ID of the store.
+   * @param saleDTO The {@link SaleDTO} of the completed sale.
+   * @throws IllegalArgumentException if the store does not exist.
+   */
+  public void updateInventory(int storeID, SaleDTO saleDTO) {
+    StockShard[] shards = requireStore(storeID);
+    for (SaleItemDTO soldItem : saleDTO.saleItems()) {
+      int index = catalog.indexOf(soldItem.item().itemID());
+      if (index >= 0) {
+        shards[index / itemsPerShard].add(index, -soldItem.quantity());
+      }
+    }
+  }
+
+  /**
+   * Returns the stock of an item summed over all stores. The stores are
+   * visited in parallel.
+   *
+   * @param itemID The ID of the item.
+   * @return The total quantity in stock.
+   * @throws IllegalArgumentException if the item does not exist.
+   */
+  public long totalQuantity(int itemID) {
+    int index = requireIndex(itemID);
+    int shard = index / itemsPerShard;
+    return stores.values().parallelStream()
+        .mapToLong(shards -> shards[shard].get(index))
+        .sum();
+  }
+
+  /**
+   * Returns the stock of every item summed over all stores. Each SKU range is
+   * summed by its own task, and the ranges write to separate parts of the
+   * result, so the tasks share nothing.
+   *
+   * @return The total quantity in stock by item ID, sorted by item ID.
+   */
+  public Map<Integer, Long> totalQuantities() {
+    long[] totals = new long[catalog.size()];
+    StockShard[][] snapshot = stores.values().toArray(new StockShard[0][]);
+    IntStream.range(0, shardsPerStore).parallel().forEach(shard -> {
+      for (StockShard[] shards : snapshot) {
+        StockShard stock = shards[shard];
+        for (int index = stock.firstIndex(); index < stock.firstIndex() + stock.length(); index++) {
+          totals[index] += stock.get(index);
+        }
+      }
+    });
+    Map<Integer, Long> result = new TreeMap<>();
+    for (int index = 0; index < totals.length; index++) {
+      result.put(catalog.itemAt(index).itemID(), totals[index]);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the inventory of one store, for use by a {@code Controller}.
+   * Reads and updates go straight to the shards of the store.
+   *
+   * @param storeID The ID of the store.
+   * @return An {@link InventorySys} backed by the shards of the store.
+   * @throws IllegalArgumentException if the store does not exist.
+   */
+  public InventorySys forStore(int storeID) {
+    requireStore(storeID);
+    return new StoreInventory(this, storeID);
+  }
+
+  /**
+   * Returns the shard holding the given catalog index in a store.
+   *
+   * @param storeID The ID of the store.
+   * @param index   The catalog index of the item.
+   * @return The {@link StockShard}.
+   * @throws IllegalArgumentException if the store does not exist.
+   */
+  private StockShard shardOf(int storeID, int index) {
+    return requireStore(storeID)[index / itemsPerShard];
+  }
+
+  /**
+   * Returns the shards of a store.
+   *
+   * @param storeID The ID of the store.
+   * @return The shards of the store.
+   * @throws IllegalArgumentException if the store does not exist.
+   */
+  private StockShard[] requireStore(int storeID) {
+    StockShard[] shards = stores.get(storeID);
+    if (shards == null) {
+      throw new IllegalArgumentException("Store " + storeID + " not found.");
+    }
+    return shards;
+  }
+
+  /**
+   * Returns the catalog index of an item.
+   *
+   * @param itemID The ID of the item.
+   * @return The catalog index.
+   * @throws IllegalArgumentException if the item is not in the catalog.
+   */
+  private int requireIndex(int itemID) {
+    int index = catalog.indexOf(itemID);
+    if (index < 0) {
+      throw new IllegalArgumentException("Item " + itemID + " not found in catalog.");
+    }
+    return index;
+  }
+}
@@ -0,0 +1,364 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.metrics.MetricsRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds stock for items that have been scanned but not yet paid for, so that
+ * two registers cannot sell the last unit of an item.
+ * <p>
+ * The {@link InventorySys} is the only record of the units in stock; this
+ * class only counts the units reserved of each item, so stock added or
+ * removed in any other way, such as a return or a reload, is seen at once.
+ * Reserving and releasing are compare-and-set loops on an atomic counter per
+ * item, so registers selling different items never wait for each other and
+ * no lock is taken. A sale is committed after it has been removed from the
+ * inventory, which drops its hold. A reservation that is neither committed
+ * nor released before its hold time runs out, for example because the sale
+ * was abandoned, is released by a {@link ReservationTimerWheel}.
+ */
+public class StockReservations implements AutoCloseable {
+  private static final long TICK_MILLIS = 1_000L;
+  private static final int WHEEL_BUCKETS = 512;
+  private static final int PENDING = 0;
+  private static final int COMMITTED = 1;
+  private static final int RELEASED = 2;
+  private static final int EXPIRED = 3;
+
+  private final InventorySys inventory;
+  private final Map<Integer, AtomicInteger> reservedUnits;
+  private final long holdMillis;
+  private final LongSupplier clock;
+  private final ReservationTimerWheel wheel;
+  private final ScheduledExecutorService scheduler;
+  private final AtomicLong activeReservations;
+  private final LongAdder expiredReservations;
+  private final LongAdder rejectedReservations;
+  private final LongAdder lateCommits;
+
+  /**
+   * A number of units of one item held for a sale in progress.
+   */
+  public static final class Reservation {
+    private final int itemID;
+    private final int quantity;
+    private final long deadlineMillis;
+    private final AtomicInteger state;
+
+    /**
+     * Creates a new pending {@code Reservation}.
+     *
+     * @param itemID         The ID of the reserved item.
+     * @param quantity       The number of reserved units.
+     * @param deadlineMillis The time the reservation expires.
+     */
+    private Reservation(int itemID, int quantity, long deadlineMillis) {
+      this.itemID = itemID;
+      this.quantity = quantity;
+      this.deadlineMillis = deadlineMillis;
+      this.state = new AtomicInteger(PENDING);
+    }
+
+    /**
+     * Returns the ID of the reserved item.
+     *
+     * @return The item ID.
+     */
+    public int getItemID() {
+      return itemID;
+    }
+
+    /**
+     * Returns the number of reserved units.
+     *
+     * @return The quantity.
+     */
+    public int getQuantity() {
+      return quantity;
+    }
+
+    /**
+     * Returns the time the reservation expires if it is still pending.
+     *
+     * @return The deadline in milliseconds since the epoch.
+     */
+    public long getDeadlineMillis() {
+      return deadlineMillis;
+    }
+
+    /**
+     * Returns whether the reservation is still holding stock.
+     *
+     * @return {@code true} if it is neither committed, released nor expired.
+     */
+    public boolean isPending() {
+      return state.get() == PENDING;
+    }
+
+    /**
+     * Moves the reservation out of the pending state. Only one caller can
+     * succeed, which decides whether a commit, a release or the expiry wins.
+     *
+     * @param newState The state to move to.
+     * @return {@code true} if the reservation was pending.
+     */
+    private boolean finish(int newState) {
+      return state.compareAndSet(PENDING, newState);
+    }
+  }
+
+  /**
+   * Creates a new {@code StockReservations} for the stock of the given
+   * inventory.
+   *
+   * @param inventory  The {@link InventorySys} that holds the stock.
+   * @param holdMillis How long a reservation holds stock before it expires.
+   */
+  public StockReservations(InventorySys inventory, long holdMillis) {
+    this(inventory, holdMillis, System::currentTimeMillis);
+  }
+
+  /**
+   * Creates a new {@code StockReservations} for the stock of the given
+   * inventory, with the given clock.
+   *
+   * @param inventory  The {@link InventorySys} that holds the stock.
+   * @param holdMillis How long a reservation holds stock before it expires.
+   * @param clock      Returns the current time in milliseconds.
+   * @throws IllegalArgumentException if {@code holdMillis} is not positive.
+   */
+  public StockReservations(InventorySys inventory, long holdMillis, LongSupplier clock) {
+    if (holdMillis <= 0) {
+      throw new IllegalArgumentException("Hold time must be greater than zero.");
+    }
+    this.inventory = inventory;
+    this.reservedUnits = new ConcurrentHashMap<>();
+    this.holdMillis = holdMillis;
+    this.clock = clock;
+    this.wheel = new ReservationTimerWheel(TICK_MILLIS, WHEEL_BUCKETS, clock.getAsLong());
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "stock-reservation-expiry");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.activeReservations = new AtomicLong();
+    this.expiredReservations = new LongAdder();
+    this.rejectedReservations = new LongAdder();
+    this.lateCommits = new LongAdder();
+  }
+
+  /**
+   * Starts releasing expired reservations in the background. Without this,
+   * they are only released when {@link #reserve(int, int)} or
+   * {@link #expireOverdue()} is called.
+   *
+   * @param period The time between two checks.
+   * @param unit   The {@link TimeUnit} of {@code period}.
+   */
+  public void start(long period, TimeUnit unit) {
+    scheduler.scheduleAtFixedRate(this::expireOverdue, period, period, unit);
+  }
+
+  /**
+   * Registers gauges for the number of active, expired and rejected
+   * reservations, and of commits that came after the hold expired, in the
+   * given registry.
+   *
+   * @param metrics The {@link MetricsRegistry} to register the gauges in.
+   */
+  public void registerMetrics(MetricsRegistry metrics) {
+    metrics.gauge("stock_reservations_active", activeReservations::get);
+    metrics.gauge("stock_reservations_expired_total", expiredReservations::sum);
+    metrics.gauge("stock_reservations_rejected_total", rejectedReservations::sum);
+    metrics.gauge("stock_reservations_late_commits_total", lateCommits::sum);
+  }
+
+  /**
+   * Reserves units of an item for a sale in progress.
+   *
+   * @param itemID   The ID of the item.
+   * @param quantity The number of units to reserve.
+   * @return The new {@link Reservation}.
+   * @throws IllegalArgumentException if the quantity is not positive.
+   * @throws IllegalStateException    if not enough units are in stock.
+   */
+  public Reservation reserve(int itemID, int quantity) {
+    if (quantity <= 0) {
+      throw new IllegalArgumentException("Quantity must be greater than zero.");
+    }
+    long now = clock.getAsLong();
+    wheel.advance(now, this::expire);
+    if (!tryReserve(itemID, quantity)) {
+      rejectedReservations.increment();
+      throw new IllegalStateException("Not enough units of item " + itemID + " in stock.");
+    }
+    Reservation reservation = new Reservation(itemID, quantity, now + holdMillis);
+    activeReservations.incrementAndGet();
+    wheel.schedule(reservation);
+    return reservation;
+  }
+
+  /**
+   * Makes sure a reservation still holds its units, for example right before
+   * the sale is paid for. A pending reservation is returned as it is. One
+   * that has expired no longer holds anything, since another register may
+   * have reserved its units since, so the units are reserved again.
+   *
+   * @param reservation The {@link Reservation} to renew.
+   * @return The pending reservation that holds the units.
+   * @throws IllegalStateException if the reservation expired and not enough
+   *                               units are left to reserve them again.
+   */
+  public Reservation renew(Reservation reservation) {
+    if (reservation.isPending()) {
+      return reservation;
+    }
+    return reserve(reservation.itemID, reservation.quantity);
+  }
+
+  /**
+   * Drops the hold of a reservation whose sale has been removed from the
+   * inventory. A reservation that has expired is refused: it no longer holds
+   * any units, so nothing is changed, and the late commit is counted.
+   *
+   * @param reservation The {@link Reservation} to commit.
+   * @return {@code true} if the reservation was pending and is now committed.
+   */
+  public boolean commit(Reservation reservation) {
+    if (reservation.finish(COMMITTED)) {
+      activeReservations.decrementAndGet();
+      unreserve(reservation);
+      return true;
+    }
+    if (reservation.state.get() == EXPIRED) {
+      lateCommits.increment();
+    }
+    return false;
+  }
+
+  /**
+   * Gives the units of a pending reservation back to the stock. Does nothing
+   * if the reservation is no longer pending.
+   *
+   * @param reservation The {@link Reservation} to release.
+   */
+  public void release(Reservation reservation) {
+    if (reservation.finish(RELEASED)) {
+      activeReservations.decrementAndGet();
+      unreserve(reservation);
+    }
+  }
+
+  /**
+   * Releases every reservation whose hold time has run out.
+   */
+  public void expireOverdue() {
+    wheel.advance(clock.getAsLong(), this::expire);
+  }
+
+  /**
+   * Returns the units of an item that can still be reserved.
+   *
+   * @param itemID The ID of the item.
+   * @return The units in stock that are not reserved, or {@code 0} if the item
+   *         is unknown.
+   */
+  public int getUnreserved(int itemID) {
+    return inventory.getQuantity(itemID) - getReserved(itemID);
+  }
+
+  /**
+   * Returns the units of an item held by pending reservations.
+   *
+   * @param itemID The ID of the item.
+   * @return The reserved units, or {@code 0} if the item is unknown.
+   */
+  public int getReserved(int itemID) {
+    AtomicInteger reserved = reservedUnits.get(itemID);
+    return reserved == null ? 0 : reserved.get();
+  }
+
+  /**
+   * Returns the number of reservations released because they expired.
+   *
+   * @return The number of expired reservations.
+   */
+  public long getExpiredCount() {
+    return expiredReservations.sum();
+  }
+
+  /**
+   * Returns the number of commits refused because the reservation had
+   * expired.
+   *
+   * @return The number of late commits.
+   */
+  public long getLateCommitCount() {
+    return lateCommits.sum();
+  }
+
+  /**
+   * Stops the background expiry started by {@link #start(long, TimeUnit)}.
+   */
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Releases a reservation found by the timer wheel, unless it has been
+   * committed or released in the meantime.
+   *
+   * @param reservation The overdue {@link Reservation}.
+   */
+  private void expire(Reservation reservation) {
+    if (reservation.finish(EXPIRED)) {
+      activeReservations.decrementAndGet();
+      expiredReservations.increment();
+      unreserve(reservation);
+    }
+  }
+
+  /**
+   * Reserves units of an item if enough of them are in the inventory and not
+   * already reserved. The stock is read again on every attempt, so a change
+   * to the reserved units made meanwhile is never missed.
+   *
+   * @param itemID   The ID of the item.
+   * @param quantity The units to reserve.
+   * @return {@code true} if the units were reserved.
+   */
+  private boolean tryReserve(int itemID, int quantity) {
+    if (inventory.getQuantity(itemID) < quantity) {
+      return false;
+    }
+    AtomicInteger reserved = reservedUnits.computeIfAbsent(itemID, id -> new AtomicInteger());
+    while (true) {
+      int current = reserved.get();
+      if (inventory.getQuantity(itemID) - current < quantity) {
+        return false;
+      }
+      if (reserved.compareAndSet(current, current + quantity)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Gives the units of a finished reservation back.
+   *
+   * @param reservation The {@link Reservation} that no longer holds stock.
+   */
+  private void unreserve(Reservation reservation) {
+    reservedUnits.get(reservation.itemID).addAndGet(-reservation.quantity);
+  }
+}
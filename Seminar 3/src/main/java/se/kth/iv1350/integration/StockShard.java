@@ -0,0 +1,85 @@
+package se.kth.iv1350.integration;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The stock levels of one store for one range of catalog indexes. Each level
+ * is updated atomically on its own, so updates to one shard never wait for
+ * another shard, and rarely for each other.
+ */
+class StockShard {
+  private final int storeID;
+  private final int firstIndex;
+  private final AtomicIntegerArray quantities;
+
+  /**
+   * Creates a new {@code StockShard} with nothing in stock.
+   *
+   * @param storeID    The ID of the store the shard belongs to.
+   * @param firstIndex The catalog index of the first item in the shard.
+   * @param length     The number of items in the shard.
+   */
+  StockShard(int storeID, int firstIndex, int length) {
+    this.storeID = storeID;
+    this.firstIndex = firstIndex;
+    this.quantities = new AtomicIntegerArray(length);
+  }
+
+  /**
+   * Returns the ID of the store the shard belongs to.
+   *
+   * @return The store ID.
+   */
+  int storeID() {
+    return storeID;
+  }
+
+  /**
+   * Returns the catalog index of the first item in the shard.
+   *
+   * @return The first catalog index.
+   */
+  int firstIndex() {
+    return firstIndex;
+  }
+
+  /**
+   * Returns the number of items in the shard.
+   *
+   * @return The number of items.
+   */
+  int length() {
+    return quantities.length();
+  }
+
+  /**
+   * Returns the stock level of an item.
+   *
+   * @param catalogIndex The catalog index of the item.
+   * @return The quantity in stock.
+   */
+  int get(int catalogIndex) {
+    return quantities.get(catalogIndex - firstIndex);
+  }
+
+  /**
+   * Sets the stock level of an item.
+   *
+   * @param catalogIndex The catalog index of the item.
+   * @param quantity     The new quantity in stock.
+   */
+  void set(int catalogIndex, int quantity) {
+    quantities.set(catalogIndex - firstIndex, quantity);
+  }
+
+  /**
+   * Changes the stock level of an item.
+   *
+   * @param catalogIndex The catalog index of the item.
+   * @param delta        The change of the quantity.
+   * @return The new quantity in stock.
+   */
+  int add(int catalogIndex, int delta) {
+    return quantities.addAndGet(catalogIndex - firstIndex, delta);
+  }
+}
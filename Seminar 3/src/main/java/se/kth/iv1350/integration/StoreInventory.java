@@ -0,0 +1,150 @@
+package se.kth.iv1350.integration;
+
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The inventory of one store in a {@link ShardedInventory}. Item information
+ * comes from the shared catalog and stock levels from the shards of the
+ * store.
+ */
+class StoreInventory extends InventorySys {
+  private final ShardedInventory inventory;
+  private final int storeID;
+
+  /**
+   * Creates a new {@code StoreInventory}.
+   *
+   * @param inventory The {@link ShardedInventory} holding the stock.
+   * @param storeID   The ID of the store.
+   */
+  StoreInventory(ShardedInventory inventory, int storeID) {
+    // The stock lives in the shards, so the base class is given no items
+    super(List.of(), new int[0]);
+    this.inventory = inventory;
+    this.storeID = storeID;
+  }
+
+  /**
+   * Returns a snapshot of the stock of every catalog item in this store.
+   * Changing the quantity of a returned item does not change the stock.
+   *
+   * @return The list of {@link InventoryItem} in the store.
+   */
+  @Override
+  public List<InventoryItem> getItems() {
+    ItemCatalog catalog = inventory.getCatalog();
+    List<InventoryItem> items = new ArrayList<>(catalog.size());
+    for (ItemDTO item : catalog.items()) {
+      items.add(new InventoryItem(item, inventory.getQuantity(storeID, item.itemID())));
+    }
+    return items;
+  }
+
+  /**
+   * Prints the current inventory of this store to the console.
+   */
+  @Override
+  public void printInventory() {
+    System.out.println("Current inventory of store " + storeID + ":");
+    for (InventoryItem inventoryItem : getItems()) {
+      System.out.println(inventoryItem.getItem().itemID() + ": " +
+          inventoryItem.getItem().description() + " - " +
+          inventoryItem.getQuantity() + " units available.");
+    }
+  }
+
+  /**
+   * Fetches item information from the shared catalog.
+   *
+   * @param itemId The unique identifier of the item to fetch.
+   * @return The {@link ItemDTO}, or {@code null} if not found.
+   */
+  @Override
+  public ItemDTO getItem(int itemId) {
+    System.out.println("Fetching item information from inventory system...");
+    return inventory.getCatalog().get(itemId);
+  }
+
+  /**
+   * Returns the number of new item versions published in the shared
+   * catalog.
+   *
+   * @return The version of the catalog.
+   */
+  @Override
+  public long getCatalogVersion() {
+    return inventory.getCatalog().getVersion();
+  }
+
+  /**
+   * Changes the price of an item in the shared catalog, for every store.
+   *
+   * @param itemId The unique identifier of the item.
+   * @param price  The new price, excluding VAT.
+   * @return The new {@link ItemDTO}, or the current one if the price did not
+   *         change.
+   * @throws IllegalArgumentException if the price is negative or the item is
+   *                                  not in the catalog.
+   */
+  @Override
+  public ItemDTO updatePrice(int itemId, double price) {
+    return inventory.getCatalog().updatePrice(itemId, price);
+  }
+
+  /**
+   * Returns the current version of an item in the shared catalog.
+   *
+   * @param itemId The unique identifier of the item.
+   * @return The {@link ItemDTO}, or {@code null} if not found.
+   */
+  @Override
+  ItemDTO currentItem(int itemId) {
+    return inventory.getCatalog().get(itemId);
+  }
+
+  /**
+   * Returns the quantity in stock of an item in this store.
+   *
+   * @param itemId The unique identifier of the item.
+   * @return The quantity in stock, or {@code 0} if the item is not found.
+   */
+  @Override
+  public int getQuantity(int itemId) {
+    if (inventory.getCatalog().indexOf(itemId) < 0) {
+      return 0;
+    }
+    return inventory.getQuantity(storeID, itemId);
+  }
+
+  /**
+   * Reduces the stock of this store by the items of a completed sale.
+   *
+   * @param saleDTO The {@link SaleDTO} of the completed sale.
+   */
+  @Override
+  public void updateInventory(SaleDTO saleDTO) {
+    System.out.println("Updating inventory with sale information...");
+    inventory.updateInventory(storeID, saleDTO);
+  }
+
+  /**
+   * Puts returned units of an item back in the stock of this store.
+   *
+   * @param itemId   The unique identifier of the item.
+   * @param quantity The number of returned units.
+   * @return The new quantity in stock.
+   * @throws IllegalArgumentException if the quantity is not positive or the
+   *                                  item is not in the catalog.
+   */
+  @Override
+  public int restock(int itemId, int quantity) {
+    if (quantity <= 0) {
+      throw new IllegalArgumentException("Quantity must be greater than zero.");
+    }
+    return inventory.addQuantity(storeID, itemId, quantity);
+  }
+}
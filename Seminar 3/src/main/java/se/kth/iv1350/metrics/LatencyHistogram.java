@@ -0,0 +1,147 @@
+package se.kth.iv1350.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, log-linear latency histogram in the style of HdrHistogram.
+ * Every power of two is split into {@value #SUB_BUCKET_COUNT} linear
+ * sub-buckets, which keeps the relative error of any recorded value below
+ * about 3% while using a single preallocated array.
+ * <p>
+ * Recording a value never allocates and is safe to call from several threads
+ * at the same time.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 40; // about 18 minutes in nanoseconds
+  private static final long MAX_TRACKABLE_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+  private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+  private final AtomicLongArray counts;
+  private final AtomicLong totalCount;
+  private final AtomicLong totalSum;
+  private final AtomicLong maxValue;
+
+  /**
+   * Creates a new, empty {@code LatencyHistogram}.
+   */
+  public LatencyHistogram() {
+    this.counts = new AtomicLongArray(BUCKET_COUNT);
+    this.totalCount = new AtomicLong();
+    this.totalSum = new AtomicLong();
+    this.maxValue = new AtomicLong();
+  }
+
+  /**
+   * Records a single value. Negative values are recorded as zero and values
+   * above the trackable range are clamped to the highest bucket.
+   *
+   * @param value The value to record, normally a duration in nanoseconds.
+   */
+  public void record(long value) {
+    long clamped = Math.max(0, Math.min(value, MAX_TRACKABLE_VALUE));
+    counts.incrementAndGet(bucketIndex(clamped));
+    totalCount.incrementAndGet();
+    totalSum.addAndGet(clamped);
+    long currentMax = maxValue.get();
+    while (clamped > currentMax && !maxValue.compareAndSet(currentMax, clamped)) {
+      currentMax = maxValue.get();
+    }
+  }
+
+  /**
+   * Takes a point-in-time copy of the histogram. Values recorded while the copy
+   * is taken may or may not be included.
+   *
+   * @return A {@link HistogramSnapshot} of the recorded values.
+   */
+  public HistogramSnapshot snapshot() {
+    long[] copy = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      copy[i] = counts.get(i);
+    }
+    return new HistogramSnapshot(copy, totalCount.get(), totalSum.get(), maxValue.get());
+  }
+
+  /**
+   * Returns the index of the bucket that holds the given value.
+   *
+   * @param value A value between zero and the maximum trackable value.
+   * @return The bucket index.
+   */
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int mantissa = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    return (shift + 1) * SUB_BUCKET_COUNT + mantissa;
+  }
+
+  /**
+   * Returns the highest value that is stored in the given bucket.
+   *
+   * @param index The bucket index.
+   * @return The highest value of the bucket.
+   */
+  static long bucketUpperBound(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_COUNT - 1;
+    long mantissa = index % SUB_BUCKET_COUNT;
+    return ((SUB_BUCKET_COUNT + mantissa + 1) << shift) - 1;
+  }
+
+  /**
+   * A point-in-time copy of a {@link LatencyHistogram}.
+   *
+   * @param counts The number of values recorded in each bucket.
+   * @param count  The total number of recorded values.
+   * @param sum    The sum of all recorded values.
+   * @param max    The largest recorded value.
+   */
+  public record HistogramSnapshot(long[] counts, long count, long sum, long max) {
+    /**
+     * Returns the value at the given percentile, accurate to the bucket
+     * resolution of the histogram.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The highest value of the bucket that contains the percentile, or
+     *         {@code 0} if nothing has been recorded.
+     */
+    public long valueAtPercentile(double percentile) {
+      if (percentile < 0 || percentile > 100) {
+        throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+      }
+      long recorded = 0;
+      for (long bucketCount : counts) {
+        recorded += bucketCount;
+      }
+      if (recorded == 0) {
+        return 0;
+      }
+      long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * recorded));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= target) {
+          return Math.min(bucketUpperBound(i), max);
+        }
+      }
+      return max;
+    }
+
+    /**
+     * Returns the mean of all recorded values.
+     *
+     * @return The mean value, or {@code 0} if nothing has been recorded.
+     */
+    public double mean() {
+      return count == 0 ? 0.0 : (double) sum / count;
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package se.kth.iv1350.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes a snapshot of a {@link MetricsRegistry} to a local file.
+ * Each dump is first written to a temporary file next to the target and then
+ * moved into place, so a reader never sees a half-written file.
+ */
+public class MetricsFileReporter implements AutoCloseable {
+  /**
+   * The output formats supported by the reporter.
+   */
+  public enum Format {
+    /** A plain text table, see {@link MetricsSnapshot#toText()}. */
+    TEXT,
+    /** The Prometheus text format, see {@link MetricsSnapshot#toPrometheus()}. */
+    PROMETHEUS
+  }
+
+  private final MetricsRegistry registry;
+  private final Path target;
+  private final Format format;
+  private final ScheduledExecutorService scheduler;
+
+  /**
+   * Creates a new {@code MetricsFileReporter}. Nothing is written until
+   * {@link #start(long, TimeUnit)} or {@link #report()} is called.
+   *
+   * @param registry The {@link MetricsRegistry} to report.
+   * @param target   The file to write the snapshots to.
+   * @param format   The {@link Format} of the written snapshots.
+   */
+  public MetricsFileReporter(MetricsRegistry registry, Path target, Format format) {
+    this.registry = registry;
+    this.target = target;
+    this.format = format;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "metrics-file-reporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Starts writing a snapshot at a fixed rate.
+   *
+   * @param period The time between two snapshots.
+   * @param unit   The {@link TimeUnit} of {@code period}.
+   */
+  public void start(long period, TimeUnit unit) {
+    scheduler.scheduleAtFixedRate(this::reportQuietly, period, period, unit);
+  }
+
+  /**
+   * Writes a single snapshot to the target file right away.
+   *
+   * @throws UncheckedIOException if the file could not be written.
+   */
+  public void report() {
+    MetricsSnapshot snapshot = registry.snapshot();
+    String text = format == Format.PROMETHEUS ? snapshot.toPrometheus() : snapshot.toText();
+    try {
+      Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+      Files.writeString(temporary, text, StandardCharsets.UTF_8);
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not write metrics to " + target, e);
+    }
+  }
+
+  /**
+   * Writes a snapshot from the scheduler thread, where an exception would
+   * otherwise cancel all following dumps.
+   */
+  private void reportQuietly() {
+    try {
+      report();
+    } catch (UncheckedIOException e) {
+      System.err.println("Error: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Stops the periodic dumps and writes one final snapshot.
+   */
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    reportQuietly();
+  }
+}
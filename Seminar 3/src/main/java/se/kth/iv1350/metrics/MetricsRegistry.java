@@ -0,0 +1,71 @@
+package se.kth.iv1350.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds the {@link OperationMetrics} of all instrumented operations in the
+ * application and produces snapshots of them.
+ * <p>
+ * Operations are looked up once, normally when the instrumented object is
+ * created, and the returned {@link OperationMetrics} is kept in a field so the
+ * hot path never touches the registry itself.
+ */
+public class MetricsRegistry {
+  private final Map<String, OperationMetrics> operations;
+  private final Map<String, LongSupplier> gauges;
+
+  /**
+   * Creates a new, empty {@code MetricsRegistry}.
+   */
+  public MetricsRegistry() {
+    this.operations = new ConcurrentHashMap<>();
+    this.gauges = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Returns the metrics for the operation with the given name, creating them
+   * if they do not exist yet.
+   *
+   * @param name The name of the operation.
+   * @return The {@link OperationMetrics} for the operation.
+   */
+  public OperationMetrics operation(String name) {
+    return operations.computeIfAbsent(name, OperationMetrics::new);
+  }
+
+  /**
+   * Registers a gauge, a value that is read each time a snapshot is taken, for
+   * example the current depth of a queue. A gauge with the same name replaces
+   * the previous one.
+   *
+   * @param name  The name of the gauge, e.g. {@code receipt_spool_queue_depth}.
+   * @param value The function that returns the current value.
+   */
+  public void gauge(String name, LongSupplier value) {
+    gauges.put(name, value);
+  }
+
+  /**
+   * Takes a point-in-time copy of all registered operations, sorted by name,
+   * and of the current value of every gauge.
+   *
+   * @return A {@link MetricsSnapshot} of the registry.
+   */
+  public MetricsSnapshot snapshot() {
+    List<OperationMetrics.OperationSnapshot> snapshots = new ArrayList<>();
+    for (OperationMetrics operation : operations.values()) {
+      snapshots.add(operation.snapshot());
+    }
+    snapshots.sort((a, b) -> a.name().compareTo(b.name()));
+    Map<String, Long> gaugeValues = new TreeMap<>();
+    for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+      gaugeValues.put(gauge.getKey(), gauge.getValue().getAsLong());
+    }
+    return new MetricsSnapshot(System.currentTimeMillis(), snapshots, gaugeValues);
+  }
+}
@@ -0,0 +1,101 @@
+package se.kth.iv1350.metrics;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A point-in-time copy of every operation in a {@link MetricsRegistry}, with
+ * methods for rendering it as plain text or in the Prometheus text exposition
+ * format.
+ *
+ * @param timestampMillis The time the snapshot was taken, in milliseconds since
+ *                        the epoch.
+ * @param operations      The snapshots of the individual operations.
+ * @param gauges          The value of every gauge, by name.
+ */
+public record MetricsSnapshot(long timestampMillis, List<OperationMetrics.OperationSnapshot> operations,
+    Map<String, Long> gauges) {
+  private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+  private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+  private static final double NANOS_PER_MICRO = 1_000.0;
+
+  /**
+   * Returns the snapshot of the operation with the given name.
+   *
+   * @param name The name of the operation.
+   * @return The {@link OperationMetrics.OperationSnapshot}, or {@code null} if
+   *         the operation is not in this snapshot.
+   */
+  public OperationMetrics.OperationSnapshot operation(String name) {
+    for (OperationMetrics.OperationSnapshot operation : operations) {
+      if (operation.name().equals(name)) {
+        return operation;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Renders the snapshot as a human readable table with one line per
+   * operation. Latencies are shown in microseconds.
+   *
+   * @return The snapshot as plain text.
+   */
+  public String toText() {
+    StringBuilder text = new StringBuilder();
+    text.append(String.format(Locale.ROOT, "%-36s%10s%10s%10s%10s%10s%10s%n",
+        "operation", "calls", "failures", "mean(us)", "p50(us)", "p99(us)", "max(us)"));
+    for (OperationMetrics.OperationSnapshot operation : operations) {
+      LatencyHistogram.HistogramSnapshot latency = operation.latency();
+      text.append(String.format(Locale.ROOT, "%-36s%10d%10d%10.1f%10.1f%10.1f%10.1f%n",
+          operation.name(),
+          operation.calls(),
+          operation.failures(),
+          latency.mean() / NANOS_PER_MICRO,
+          latency.valueAtPercentile(50) / NANOS_PER_MICRO,
+          latency.valueAtPercentile(99) / NANOS_PER_MICRO,
+          latency.max() / NANOS_PER_MICRO));
+    }
+    for (Map.Entry<String, Long> gauge : gauges.entrySet()) {
+      text.append(String.format(Locale.ROOT, "%-36s%10d%n", gauge.getKey(), gauge.getValue()));
+    }
+    return text.toString();
+  }
+
+  /**
+   * Renders the snapshot in the Prometheus text exposition format. Every
+   * operation is exported as a summary of its latency in seconds together with
+   * a counter of failed calls.
+   *
+   * @return The snapshot in Prometheus text format.
+   */
+  public String toPrometheus() {
+    StringBuilder text = new StringBuilder();
+    text.append("# HELP pos_operation_latency_seconds Latency of instrumented operations.\n");
+    text.append("# TYPE pos_operation_latency_seconds summary\n");
+    for (OperationMetrics.OperationSnapshot operation : operations) {
+      LatencyHistogram.HistogramSnapshot latency = operation.latency();
+      for (double quantile : QUANTILES) {
+        text.append("pos_operation_latency_seconds{operation=\"").append(operation.name())
+            .append("\",quantile=\"").append(quantile).append("\"} ")
+            .append(latency.valueAtPercentile(quantile * 100) / NANOS_PER_SECOND).append('\n');
+      }
+      text.append("pos_operation_latency_seconds_sum{operation=\"").append(operation.name()).append("\"} ")
+          .append(latency.sum() / NANOS_PER_SECOND).append('\n');
+      text.append("pos_operation_latency_seconds_count{operation=\"").append(operation.name()).append("\"} ")
+          .append(operation.calls()).append('\n');
+    }
+    text.append("# HELP pos_operation_failures_total Calls that ended with an exception.\n");
+    text.append("# TYPE pos_operation_failures_total counter\n");
+    for (OperationMetrics.OperationSnapshot operation : operations) {
+      text.append("pos_operation_failures_total{operation=\"").append(operation.name()).append("\"} ")
+          .append(operation.failures()).append('\n');
+    }
+    for (Map.Entry<String, Long> gauge : gauges.entrySet()) {
+      text.append("# TYPE pos_").append(gauge.getKey()).append(" gauge\n");
+      text.append("pos_").append(gauge.getKey()).append(' ').append(gauge.getValue()).append('\n');
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,90 @@
+package se.kth.iv1350.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects call counts, failure counts and a latency histogram for one
+ * operation, for example a single {@code Controller} method or a call to an
+ * external system.
+ * <p>
+ * Callers measure the duration themselves with {@link System#nanoTime()} and
+ * report it through {@link #recordSuccess(long)} or
+ * {@link #recordFailure(long)}, so no objects are created per call.
+ */
+public class OperationMetrics {
+  private final String name;
+  private final LongAdder successes;
+  private final LongAdder failures;
+  private final LatencyHistogram latency;
+
+  /**
+   * Creates a new {@code OperationMetrics} for the operation with the given
+   * name.
+   *
+   * @param name The name of the operation, e.g. {@code scan_item}.
+   */
+  public OperationMetrics(String name) {
+    this.name = name;
+    this.successes = new LongAdder();
+    this.failures = new LongAdder();
+    this.latency = new LatencyHistogram();
+  }
+
+  /**
+   * Returns the name of the operation.
+   *
+   * @return The operation name.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Records a call that completed normally.
+   *
+   * @param durationNanos The duration of the call in nanoseconds.
+   */
+  public void recordSuccess(long durationNanos) {
+    successes.increment();
+    latency.record(durationNanos);
+  }
+
+  /**
+   * Records a call that ended with an exception.
+   *
+   * @param durationNanos The duration of the call in nanoseconds.
+   */
+  public void recordFailure(long durationNanos) {
+    failures.increment();
+    latency.record(durationNanos);
+  }
+
+  /**
+   * Takes a point-in-time copy of the collected values.
+   *
+   * @return An {@link OperationSnapshot} for this operation.
+   */
+  public OperationSnapshot snapshot() {
+    return new OperationSnapshot(name, successes.sum(), failures.sum(), latency.snapshot());
+  }
+
+  /**
+   * A point-in-time copy of the metrics of one operation.
+   *
+   * @param name      The name of the operation.
+   * @param successes The number of calls that completed normally.
+   * @param failures  The number of calls that ended with an exception.
+   * @param latency   The latency distribution of all calls, in nanoseconds.
+   */
+  public record OperationSnapshot(String name, long successes, long failures,
+      LatencyHistogram.HistogramSnapshot latency) {
+    /**
+     * Returns the total number of calls.
+     *
+     * @return The number of successful and failed calls.
+     */
+    public long calls() {
+      return successes + failures;
+    }
+  }
+}
@@ -5,29 +5,85 @@ import se.kth.iv1350.model.dto.PaymentDTO;
 import java.util.Date;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a sale, containing information about the items sold, applied
  * discounts, payment, total VAT, and the date and time of the sale.
+ * <p>
+ * Every change to a sale is also recorded in its {@link SaleEventLog}, and
+ * {@link #replay(SaleEventLog)} rebuilds the same sale from that log.
+ * <p>
+ * A {@link SalePool} can reuse a finished sale for the next one, keeping its
+ * line storage and event log buffer instead of allocating new ones.
  */
 public class Sale {
+  private static final AtomicLong NEXT_SALE_ID = new AtomicLong(System.currentTimeMillis() << 10);
+
+  private long saleID;
   private List<SaleItem> saleItems;
+  private final List<SaleItem> spareItems;
   private Date datetime;
   private double discount;
+  private double promotionDiscount;
   private PaymentDTO payment;
   private double totalVAT;
+  private final SaleEventLog eventLog;
 
   /**
    * Creates a new {@code Sale}.
    */
   public Sale() {
+    this(NEXT_SALE_ID.incrementAndGet());
+  }
+
+  /**
+   * Creates a new {@code Sale} with the given identifier.
+   *
+   * @param saleID The identifier of the sale.
+   */
+  private Sale(long saleID) {
+    this.saleID = saleID;
+    this.eventLog = new SaleEventLog();
+    eventLog.saleStarted(saleID);
     this.saleItems = new ArrayList<>();
+    this.spareItems = new ArrayList<>();
     this.datetime = null;
     this.discount = 0.0;
+    this.promotionDiscount = 0.0;
     this.payment = null;
     this.totalVAT = 0.0;
   }
 
+  /**
+   * Empties the sale so that it can be reused. The lines are kept for the
+   * next sale, without their items, and the event log keeps its buffer. The
+   * sale has no identifier until {@link #restart()} is called.
+   */
+  void clear() {
+    for (int i = saleItems.size() - 1; i >= 0; i--) {
+      SaleItem saleItem = saleItems.get(i);
+      saleItem.reset(null, 0);
+      spareItems.add(saleItem);
+    }
+    saleItems.clear();
+    eventLog.clear();
+    this.saleID = 0;
+    this.datetime = null;
+    this.discount = 0.0;
+    this.promotionDiscount = 0.0;
+    this.payment = null;
+    this.totalVAT = 0.0;
+  }
+
+  /**
+   * Starts a cleared sale again as a new sale, with a new identifier.
+   */
+  void restart() {
+    this.saleID = NEXT_SALE_ID.incrementAndGet();
+    eventLog.saleStarted(saleID);
+  }
+
   /**
    * Adds an item to the sale. If the item already exists in the sale, its
    * quantity is increased.
@@ -41,20 +97,42 @@ public class Sale {
       throw new IllegalArgumentException("Quantity must be greater than zero.");
     }
     SaleItem matchedSaleItem = isItemInSale(itemView);
+    if (matchedSaleItem == null) {
+      eventLog.itemDefined(itemView);
+    }
+    eventLog.itemAdded(itemView.itemID(), quantity);
     if (matchedSaleItem != null) {
       matchedSaleItem.increaseQuantity(quantity);
     } else {
-      saleItems.add(new SaleItem(itemView, quantity));
+      saleItems.add(newSaleItem(itemView, quantity));
     }
     updateTotalVAT();
   }
 
+  /**
+   * Returns a line for an item, reusing one left from an earlier sale if
+   * there is one.
+   *
+   * @param item     The {@link ItemDTO} of the line.
+   * @param quantity The quantity of the line.
+   * @return The {@link SaleItem}.
+   */
+  private SaleItem newSaleItem(ItemDTO item, int quantity) {
+    if (spareItems.isEmpty()) {
+      return new SaleItem(item, quantity);
+    }
+    SaleItem saleItem = spareItems.remove(spareItems.size() - 1);
+    saleItem.reset(item, quantity);
+    return saleItem;
+  }
+
   /**
    * Applies a fixed discount to the total price.
    *
    * @param discount The fixed discount amount to apply.
    */
   public void addFixedDiscount(double discount) {
+    eventLog.fixedDiscount(discount);
     if (discount >= getTotalPrice()) {
       this.discount = getTotalPrice();
       return;
@@ -68,9 +146,24 @@ public class Sale {
    * @param discount The percentage discount to apply (e.g., 10 for 10%).
    */
   public void addPercentageDiscount(double discount) {
+    eventLog.percentageDiscount(discount);
     this.discount += this.getTotalPrice() * discount / 100;
   }
 
+  /**
+   * Sets the discount given by promotions, such as multi-buys and bundles.
+   * Unlike other discounts, it replaces the previous promotion discount, since
+   * promotions are re-evaluated as items are added.
+   *
+   * @param promotionDiscount The promotion discount of the whole sale.
+   */
+  public void setPromotionDiscount(double promotionDiscount) {
+    if (promotionDiscount != this.promotionDiscount) {
+      eventLog.promotionDiscount(promotionDiscount);
+    }
+    this.promotionDiscount = promotionDiscount;
+  }
+
   /**
    * Calculates and returns the change to be given to the customer based on the
    * amount paid. Also sets the payment information and the date/time of the sale
@@ -81,13 +174,96 @@ public class Sale {
    */
   public double getAmountChange(double amountPaid) {
     if (payment == null) {
-      double totalPrice = getTotalPrice();
-      this.payment = new PaymentDTO(totalPrice, amountPaid, amountPaid - totalPrice);
-      this.datetime = new Date();
+      pay(amountPaid, System.currentTimeMillis());
     }
     return this.payment.change();
   }
 
+  /**
+   * Sets the payment information and the date and time of the sale.
+   *
+   * @param amountPaid  The amount paid by the customer.
+   * @param epochMillis The time of the payment.
+   */
+  private void pay(double amountPaid, long epochMillis) {
+    double totalPrice = getTotalPrice();
+    this.payment = new PaymentDTO(totalPrice, amountPaid, amountPaid - totalPrice);
+    this.datetime = new Date(epochMillis);
+    eventLog.paid(amountPaid, epochMillis);
+  }
+
+  /**
+   * Rebuilds a sale from its event log, for example to recover a lane in the
+   * middle of a sale or to audit a completed one. The rebuilt sale has the
+   * same identifier, items, discounts and payment as the original, and an
+   * identical event log, so recording can continue where it left off.
+   *
+   * @param log The {@link SaleEventLog} of the sale.
+   * @return The rebuilt {@code Sale}.
+   * @throws IllegalArgumentException if the log does not start a sale.
+   */
+  public static Sale replay(SaleEventLog log) {
+    Sale[] rebuilt = new Sale[1];
+    log.replay(new SaleEventLog.Listener() {
+      @Override
+      public void saleStarted(long saleID) {
+        NEXT_SALE_ID.accumulateAndGet(saleID, Math::max);
+        rebuilt[0] = new Sale(saleID);
+      }
+
+      @Override
+      public void itemAdded(ItemDTO item, int quantity) {
+        started().addItem(item, quantity);
+      }
+
+      @Override
+      public void fixedDiscount(double discount) {
+        started().addFixedDiscount(discount);
+      }
+
+      @Override
+      public void percentageDiscount(double percentage) {
+        started().addPercentageDiscount(percentage);
+      }
+
+      @Override
+      public void promotionDiscount(double discount) {
+        started().setPromotionDiscount(discount);
+      }
+
+      @Override
+      public void paid(double amountPaid, long epochMillis) {
+        started().pay(amountPaid, epochMillis);
+      }
+
+      /**
+       * Returns the sale being rebuilt.
+       *
+       * @return The sale.
+       * @throws IllegalArgumentException if no sale has been started.
+       */
+      private Sale started() {
+        if (rebuilt[0] == null) {
+          throw new IllegalArgumentException("The log does not start with a sale.");
+        }
+        return rebuilt[0];
+      }
+    });
+    if (rebuilt[0] == null) {
+      throw new IllegalArgumentException("The log does not start with a sale.");
+    }
+    return rebuilt[0];
+  }
+
+  /**
+   * Returns the log of every change made to the sale.
+   *
+   * @return The {@link SaleEventLog} of the sale.
+   */
+  public SaleEventLog getEventLog() {
+    return eventLog;
+  }
+
   /**
    * Calculates and returns the total price of the sale, including VAT and after
    * applying discounts.
@@ -95,23 +271,23 @@ public class Sale {
    * @return The total price of the sale.
    */
   public double getTotalPrice() {
-    double totalPrice = 0;
+    long totalCents = 0;
 
     for (SaleItem saleItem : saleItems) {
-      totalPrice += saleItem.getItem().price() * saleItem.getQuantity() * (1 + (saleItem.getItem().VAT() / 100.0));
+      totalCents += saleItem.getItem().grossCents(saleItem.getQuantity());
     }
-    return Math.round((totalPrice - discount) * 100.0) / 100.0;
+    return Math.round(totalCents - (discount + promotionDiscount) * 100.0) / 100.0;
   }
 
   /**
    * Updates the total VAT for the sale based on the items and their quantities.
    */
   private void updateTotalVAT() {
-    double totalVAT = 0;
+    long vatCents = 0;
     for (SaleItem saleItem : saleItems) {
-      totalVAT += saleItem.getItem().price() * saleItem.getItem().VAT() * saleItem.getQuantity() / 100.0;
+      vatCents += saleItem.getItem().vatCents() * saleItem.getQuantity();
     }
-    this.totalVAT = totalVAT;
+    this.totalVAT = vatCents / 100.0;
   }
 
   /**
@@ -143,12 +319,25 @@ public class Sale {
   }
 
   /**
-   * Returns the discounts applied to the sale.
+   * Returns the discounts applied to the sale, including the promotion
+   * discount.
    *
    * @return The total discounts applied to the sale.
    */
   public double getDiscounts() {
-    return this.discount;
+    return this.discount + this.promotionDiscount;
+  }
+
+  /**
+   * Returns the unique identifier of the sale. Identifiers increase with every
+   * sale and start from the start-up time, so a restarted register does not
+   * reuse the identifiers of its earlier sales unless it averaged more than a
+   * thousand sales per millisecond.
+   *
+   * @return The identifier of the sale.
+   */
+  public long getSaleID() {
+    return this.saleID;
   }
 
   /**
@@ -0,0 +1,441 @@
+package se.kth.iv1350.model.classes;
+
+import se.kth.iv1350.model.dto.ItemDTO;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The history of a {@link Sale}, as a compact log of events encoded in
+ * bytes. Replaying the log into a new sale gives exactly the same sale, so a
+ * lane can be recovered mid-sale from the log, an audit can replay any sale,
+ * and a standby register can follow a sale by receiving only the bytes added
+ * since the last time.
+ * <p>
+ * Every event starts with a one-byte type, followed by its fields in big
+ * endian order:
+ * <pre>
+ * SALE_STARTED        long saleID
+ * ITEM_DEFINED        int itemID, long price, int VAT, short length, byte[length] description
+ * ITEM_ADDED          int itemID, int quantity
+ * FIXED_DISCOUNT      long discount
+ * PERCENTAGE_DISCOUNT long percentage
+ * PROMOTION_DISCOUNT  long discount
+ * PAID                long amountPaid, long epochMillis
+ * </pre>
+ * Doubles are stored as their raw bits. An item is defined once, the first
+ * time it is added to the sale; later additions only refer to its identifier.
+ */
+public class SaleEventLog {
+  private static final byte SALE_STARTED = 1;
+  private static final byte ITEM_DEFINED = 2;
+  private static final byte ITEM_ADDED = 3;
+  private static final byte FIXED_DISCOUNT = 4;
+  private static final byte PERCENTAGE_DISCOUNT = 5;
+  private static final byte PROMOTION_DISCOUNT = 6;
+  private static final byte PAID = 7;
+
+  private byte[] bytes;
+  private int size;
+  private int eventCount;
+  private final Set<Integer> definedItems;
+
+  /**
+   * Receives the events of a log, in order, when it is replayed.
+   */
+  public interface Listener {
+    /**
+     * Invoked for the event that starts the sale.
+     *
+     * @param saleID The identifier of the sale.
+     */
+    void saleStarted(long saleID);
+
+    /**
+     * Invoked when units of an item are added.
+     *
+     * @param item     The {@link ItemDTO} of the item.
+     * @param quantity The number of units added.
+     */
+    void itemAdded(ItemDTO item, int quantity);
+
+    /**
+     * Invoked when a fixed discount is applied.
+     *
+     * @param discount The discount amount.
+     */
+    void fixedDiscount(double discount);
+
+    /**
+     * Invoked when a percentage discount is applied.
+     *
+     * @param percentage The percentage.
+     */
+    void percentageDiscount(double percentage);
+
+    /**
+     * Invoked when the promotion discount changes.
+     *
+     * @param discount The new promotion discount.
+     */
+    void promotionDiscount(double discount);
+
+    /**
+     * Invoked when the sale is paid for.
+     *
+     * @param amountPaid  The amount paid.
+     * @param epochMillis The time of the payment, in milliseconds since the
+     *                    epoch.
+     */
+    void paid(double amountPaid, long epochMillis);
+  }
+
+  /**
+   * Creates a new, empty {@code SaleEventLog}.
+   */
+  public SaleEventLog() {
+    this.bytes = new byte[64];
+    this.definedItems = new HashSet<>();
+  }
+
+  /**
+   * Creates a log holding the given encoded events, for example a checkpoint
+   * made with {@link #toByteArray()}.
+   *
+   * @param encoded The encoded events.
+   * @return The new {@code SaleEventLog}.
+   * @throws IllegalArgumentException if the bytes are not a sequence of
+   *                                  complete events.
+   */
+  public static SaleEventLog fromBytes(byte[] encoded) {
+    SaleEventLog log = new SaleEventLog();
+    log.append(encoded);
+    return log;
+  }
+
+  /**
+   * Appends encoded events, for example ones received from the active
+   * register with {@link #copyFrom(int)}.
+   *
+   * @param encoded The encoded events.
+   * @throws IllegalArgumentException if the bytes are not a sequence of
+   *                                  complete events, or add units of an item
+   *                                  that is not defined before; nothing is
+   *                                  appended then.
+   */
+  public void append(byte[] encoded) {
+    Set<Integer> newlyDefined = new HashSet<>();
+    int events = countEvents(ByteBuffer.wrap(encoded), definedItems, newlyDefined);
+    definedItems.addAll(newlyDefined);
+    ensureCapacity(encoded.length);
+    System.arraycopy(encoded, 0, bytes, size, encoded.length);
+    size += encoded.length;
+    eventCount += events;
+  }
+
+  /**
+   * Returns the number of bytes in the log. A standby register can pass this
+   * to {@link #copyFrom(int)} later to get only the events added since.
+   *
+   * @return The size of the log in bytes.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of events in the log.
+   *
+   * @return The number of events.
+   */
+  public int getEventCount() {
+    return eventCount;
+  }
+
+  /**
+   * Returns a copy of the whole log.
+   *
+   * @return The encoded events.
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(bytes, size);
+  }
+
+  /**
+   * Returns a copy of the events added after the given position.
+   *
+   * @param offset A size previously returned by {@link #size()}.
+   * @return The encoded events from {@code offset} on.
+   * @throws IllegalArgumentException if {@code offset} is outside the log.
+   */
+  public byte[] copyFrom(int offset) {
+    if (offset < 0 || offset > size) {
+      throw new IllegalArgumentException("Offset " + offset + " is outside the log.");
+    }
+    return Arrays.copyOfRange(bytes, offset, size);
+  }
+
+  /**
+   * Passes every event of the log, in order, to a listener.
+   *
+   * @param listener The {@link Listener} to pass the events to.
+   */
+  public void replay(Listener listener) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, size);
+    Map<Integer, ItemDTO> items = new HashMap<>();
+    while (buffer.hasRemaining()) {
+      byte type = buffer.get();
+      switch (type) {
+        case SALE_STARTED -> listener.saleStarted(buffer.getLong());
+        case ITEM_DEFINED -> {
+          ItemDTO item = readItem(buffer);
+          items.put(item.itemID(), item);
+        }
+        case ITEM_ADDED -> {
+          int itemID = buffer.getInt();
+          ItemDTO item = items.get(itemID);
+          if (item == null) {
+            throw new IllegalArgumentException("Item " + itemID + " is added before it is defined.");
+          }
+          listener.itemAdded(item, buffer.getInt());
+        }
+        case FIXED_DISCOUNT -> listener.fixedDiscount(Double.longBitsToDouble(buffer.getLong()));
+        case PERCENTAGE_DISCOUNT -> listener.percentageDiscount(Double.longBitsToDouble(buffer.getLong()));
+        case PROMOTION_DISCOUNT -> listener.promotionDiscount(Double.longBitsToDouble(buffer.getLong()));
+        case PAID -> listener.paid(Double.longBitsToDouble(buffer.getLong()), buffer.getLong());
+        default -> throw new IllegalStateException("Unknown event type " + type + ".");
+      }
+    }
+  }
+
+  /**
+   * Removes every event, keeping the buffer for the next sale.
+   */
+  void clear() {
+    size = 0;
+    eventCount = 0;
+    definedItems.clear();
+  }
+
+  /**
+   * Records the start of a sale.
+   *
+   * @param saleID The identifier of the sale.
+   */
+  void saleStarted(long saleID) {
+    ensureCapacity(1 + Long.BYTES);
+    putByte(SALE_STARTED);
+    putLong(saleID);
+    eventCount++;
+  }
+
+  /**
+   * Records the first addition of an item to the sale, with the item itself.
+   *
+   * @param item The {@link ItemDTO} of the item.
+   */
+  void itemDefined(ItemDTO item) {
+    byte[] description = item.description().getBytes(StandardCharsets.UTF_8);
+    if (description.length > Short.MAX_VALUE) {
+      throw new IllegalArgumentException("Description of item " + item.itemID() + " is too long.");
+    }
+    ensureCapacity(1 + Integer.BYTES * 2 + Long.BYTES + Short.BYTES + description.length);
+    putByte(ITEM_DEFINED);
+    putInt(item.itemID());
+    putLong(Double.doubleToRawLongBits(item.price()));
+    putInt(item.VAT());
+    putShort((short) description.length);
+    System.arraycopy(description, 0, bytes, size, description.length);
+    size += description.length;
+    eventCount++;
+    definedItems.add(item.itemID());
+  }
+
+  /**
+   * Records units of an already defined item being added to the sale.
+   *
+   * @param itemID   The unique identifier of the item.
+   * @param quantity The number of units added.
+   */
+  void itemAdded(int itemID, int quantity) {
+    ensureCapacity(1 + Integer.BYTES * 2);
+    putByte(ITEM_ADDED);
+    putInt(itemID);
+    putInt(quantity);
+    eventCount++;
+  }
+
+  /**
+   * Records a fixed discount.
+   *
+   * @param discount The discount amount.
+   */
+  void fixedDiscount(double discount) {
+    putDoubleEvent(FIXED_DISCOUNT, discount);
+  }
+
+  /**
+   * Records a percentage discount.
+   *
+   * @param percentage The percentage.
+   */
+  void percentageDiscount(double percentage) {
+    putDoubleEvent(PERCENTAGE_DISCOUNT, percentage);
+  }
+
+  /**
+   * Records a new promotion discount.
+   *
+   * @param discount The promotion discount.
+   */
+  void promotionDiscount(double discount) {
+    putDoubleEvent(PROMOTION_DISCOUNT, discount);
+  }
+
+  /**
+   * Records the payment of the sale.
+   *
+   * @param amountPaid  The amount paid.
+   * @param epochMillis The time of the payment.
+   */
+  void paid(double amountPaid, long epochMillis) {
+    ensureCapacity(1 + Long.BYTES * 2);
+    putByte(PAID);
+    putLong(Double.doubleToRawLongBits(amountPaid));
+    putLong(epochMillis);
+    eventCount++;
+  }
+
+  /**
+   * Records an event with a single {@code double} field.
+   *
+   * @param type  The type of the event.
+   * @param value The field.
+   */
+  private void putDoubleEvent(byte type, double value) {
+    ensureCapacity(1 + Long.BYTES);
+    putByte(type);
+    putLong(Double.doubleToRawLongBits(value));
+    eventCount++;
+  }
+
+  /**
+   * Reads the fields of an {@code ITEM_DEFINED} event.
+   *
+   * @param buffer The encoded log, positioned after the event type.
+   * @return The defined {@link ItemDTO}.
+   */
+  private static ItemDTO readItem(ByteBuffer buffer) {
+    int itemID = buffer.getInt();
+    double price = Double.longBitsToDouble(buffer.getLong());
+    int vat = buffer.getInt();
+    byte[] description = new byte[buffer.getShort()];
+    buffer.get(description);
+    return new ItemDTO(itemID, new String(description, StandardCharsets.UTF_8), price, vat);
+  }
+
+  /**
+   * Checks that bytes are a sequence of complete events, that only defined
+   * items are added, and counts the events.
+   *
+   * @param buffer       The encoded events.
+   * @param defined      The identifiers of the items defined before
+   *                     {@code buffer}.
+   * @param newlyDefined Receives the identifiers of the items defined in
+   *                     {@code buffer}.
+   * @return The number of events.
+   * @throws IllegalArgumentException if an event is unknown or incomplete, or
+   *                                  adds an item that is not defined.
+   */
+  private static int countEvents(ByteBuffer buffer, Set<Integer> defined, Set<Integer> newlyDefined) {
+    int events = 0;
+    try {
+      while (buffer.hasRemaining()) {
+        byte type = buffer.get();
+        int length = switch (type) {
+          case SALE_STARTED, FIXED_DISCOUNT, PERCENTAGE_DISCOUNT, PROMOTION_DISCOUNT -> Long.BYTES;
+          case ITEM_ADDED -> {
+            int itemID = buffer.getInt();
+            if (!defined.contains(itemID) && !newlyDefined.contains(itemID)) {
+              throw new IllegalArgumentException("Item " + itemID + " is added before it is defined.");
+            }
+            yield Integer.BYTES;
+          }
+          case PAID -> Long.BYTES * 2;
+          case ITEM_DEFINED -> {
+            newlyDefined.add(buffer.getInt());
+            buffer.position(buffer.position() + Integer.BYTES + Long.BYTES);
+            yield buffer.getShort();
+          }
+          default -> throw new IllegalArgumentException("Unknown event type " + type + ".");
+        };
+        if (length < 0 || length > buffer.remaining()) {
+          throw new IllegalArgumentException("The last event is incomplete.");
+        }
+        buffer.position(buffer.position() + length);
+        events++;
+      }
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IllegalArgumentException("Not a valid sequence of sale events. " + e.getMessage(), e);
+    }
+    return events;
+  }
+
+  /**
+   * Makes room for more bytes, doubling the log if it is full.
+   *
+   * @param extra The number of bytes about to be written.
+   */
+  private void ensureCapacity(int extra) {
+    if (size + extra > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+    }
+  }
+
+  /**
+   * Writes one byte.
+   *
+   * @param value The byte.
+   */
+  private void putByte(byte value) {
+    bytes[size++] = value;
+  }
+
+  /**
+   * Writes a {@code short} in big endian order.
+   *
+   * @param value The value.
+   */
+  private void putShort(short value) {
+    bytes[size++] = (byte) (value >>> 8);
+    bytes[size++] = (byte) value;
+  }
+
+  /**
+   * Writes an {@code int} in big endian order.
+   *
+   * @param value The value.
+   */
+  private void putInt(int value) {
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      bytes[size++] = (byte) (value >>> shift);
+    }
+  }
+
+  /**
+   * Writes a {@code long} in big endian order.
+   *
+   * @param value The value.
+   */
+  private void putLong(long value) {
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      bytes[size++] = (byte) (value >>> shift);
+    }
+  }
+}
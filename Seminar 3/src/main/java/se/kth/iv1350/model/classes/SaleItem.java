@@ -54,4 +54,15 @@ public class SaleItem {
   public void increaseQuantity(int quantity) {
     this.quantity += quantity;
   }
+
+  /**
+   * Makes this sale item hold another item, so that it can be reused.
+   *
+   * @param item     The new <code>ItemDTO</code>.
+   * @param quantity The new quantity.
+   */
+  void reset(ItemDTO item, int quantity) {
+    this.item = item;
+    this.quantity = quantity;
+  }
 }
@@ -0,0 +1,82 @@
+package se.kth.iv1350.model.classes;
+
+import java.util.ArrayDeque;
+
+/**
+ * A pool of finished sales for one checkout lane, so that the lane does not
+ * allocate a new {@link Sale}, list of lines, {@link SaleItem} per line and
+ * event log buffer for every checkout. A released sale is cleared at once
+ * and gets a new identifier when it is taken again.
+ * <p>
+ * Only the sale itself is reused. The {@code SaleDTO}, payment and receipt
+ * of a completed sale are still new objects, so whatever they were handed to
+ * keeps them unchanged.
+ * <p>
+ * A pool belongs to one lane and is not thread safe.
+ */
+public class SalePool {
+  private final ArrayDeque<Sale> sales;
+  private final int maxPooled;
+  private long created;
+  private long reused;
+
+  /**
+   * Creates a new, empty {@code SalePool}.
+   *
+   * @param maxPooled The largest number of idle sales kept.
+   * @throws IllegalArgumentException if {@code maxPooled} is negative.
+   */
+  public SalePool(int maxPooled) {
+    if (maxPooled < 0) {
+      throw new IllegalArgumentException("Pool size cannot be negative.");
+    }
+    this.sales = new ArrayDeque<>();
+    this.maxPooled = maxPooled;
+  }
+
+  /**
+   * Takes a new sale from the pool, creating one if the pool is empty.
+   *
+   * @return The {@link Sale}, with a new identifier and no items.
+   */
+  public Sale take() {
+    Sale sale = sales.poll();
+    if (sale == null) {
+      created++;
+      return new Sale();
+    }
+    reused++;
+    sale.restart();
+    return sale;
+  }
+
+  /**
+   * Gives a sale back to the pool.
+   *
+   * @param sale The {@link Sale}, which must not be used afterwards.
+   */
+  public void release(Sale sale) {
+    if (sales.size() < maxPooled) {
+      sale.clear();
+      sales.push(sale);
+    }
+  }
+
+  /**
+   * Returns the number of sales the pool has created.
+   *
+   * @return The number of created sales.
+   */
+  public long getCreatedCount() {
+    return created;
+  }
+
+  /**
+   * Returns the number of times a released sale has been taken again.
+   *
+   * @return The number of reused sales.
+   */
+  public long getReusedCount() {
+    return reused;
+  }
+}
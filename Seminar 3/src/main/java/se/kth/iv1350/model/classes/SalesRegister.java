@@ -28,6 +28,24 @@ public class SalesRegister {
     this.presentAmount += amount;
   }
 
+  /**
+   * Takes a refunded amount out of the register.
+   *
+   * @param amount The amount to pay back. Must be non-negative.
+   * @throws IllegalArgumentException if {@code amount} is negative.
+   * @throws IllegalStateException    if the register holds less than
+   *                                  {@code amount}.
+   */
+  public void refund(double amount) {
+    if (amount < 0) {
+      throw new IllegalArgumentException("Amount cannot be negative.");
+    }
+    if (amount > presentAmount) {
+      throw new IllegalStateException("Not enough cash in the register for the refund.");
+    }
+    this.presentAmount -= amount;
+  }
+
   /**
    * Returns the current amount present in the register.
    *
@@ -0,0 +1,28 @@
+package se.kth.iv1350.model.dto;
+
+import java.util.List;
+
+/**
+ * Represents a data transfer object (DTO) for the discount profile of a
+ * customer, with the customer's discounts already compounded into one
+ * percentage.
+ *
+ * @param customerID         The unique identifier of the customer.
+ * @param discounts          The discounts registered for the customer.
+ * @param percentageDiscount The compound percentage of all the customer's
+ *                           discounts, as returned by
+ *                           {@code DiscountDBHandler.getDiscounts(int)}.
+ */
+public record CustomerProfileDTO(int customerID, List<DiscountDTO> discounts, double percentageDiscount) {
+  /**
+   * Constructs a new {@code CustomerProfileDTO}, keeping an unmodifiable copy
+   * of the discounts.
+   *
+   * @param customerID         The unique identifier of the customer.
+   * @param discounts          The discounts registered for the customer.
+   * @param percentageDiscount The compound percentage of the discounts.
+   */
+  public CustomerProfileDTO {
+    discounts = List.copyOf(discounts);
+  }
+}
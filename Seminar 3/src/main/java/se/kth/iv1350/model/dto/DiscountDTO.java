@@ -4,7 +4,12 @@ package se.kth.iv1350.model.dto;
  * Represents a data transfer object (DTO) for a discount.
  * Contains information about the discount ID, item ID, customer ID, fixed
  * discount amount,
- * percentage discount, and whether the discount is activated.
+ * percentage discount, whether the discount is activated, and the time the
+ * discount is valid.
+ * <p>
+ * A discount applies from {@code validFrom}, inclusive, until
+ * {@code validUntil}, exclusive. {@link Long#MIN_VALUE} and
+ * {@link Long#MAX_VALUE} mean the window is open at that end.
  *
  * @param discountID         The unique identifier for the discount. Must be
  *                           non-negative.
@@ -17,9 +22,14 @@ package se.kth.iv1350.model.dto;
  *                           between 0 and 100.
  * @param activated          Indicates whether the discount is currently
  *                           activated.
+ * @param validFrom          The first moment the discount is valid, in
+ *                           milliseconds since the epoch.
+ * @param validUntil         The moment the discount stops being valid, in
+ *                           milliseconds since the epoch.
  * @throws IllegalArgumentException if any ID or fixedDiscount is negative, or
  *                                  if percentageDiscount is not between 0 and
- *                                  100.
+ *                                  100, or if the window ends before it
+ *                                  starts.
  */
 public record DiscountDTO(
     int discountID,
@@ -28,7 +38,9 @@ public record DiscountDTO(
     double totalPrice,
     double fixedDiscount,
     int percentageDiscount,
-    boolean activated) {
+    boolean activated,
+    long validFrom,
+    long validUntil) {
   /**
    * Constructs a new {@code DiscountDTO} with the specified parameters.
    *
@@ -45,9 +57,12 @@ public record DiscountDTO(
    *                           between 0 and 100.
    * @param activated          Indicates whether the discount is currently
    *                           activated.
+   * @param validFrom          The first moment the discount is valid.
+   * @param validUntil         The moment the discount stops being valid.
    * @throws IllegalArgumentException if any ID or fixedDiscount is negative, or
    *                                  if percentageDiscount is not between 0 and
-   *                                  100.
+   *                                  100, or if the window ends before it
+   *                                  starts.
    */
   public DiscountDTO {
     if (discountID < 0) {
@@ -60,7 +75,39 @@ public record DiscountDTO(
     if (percentageDiscount < 0 || percentageDiscount > 100) {
       throw new IllegalArgumentException("Percentage discount must be between 0 and 100.");
     }
+    if (validUntil <= validFrom) {
+      throw new IllegalArgumentException("Validity window must end after it starts.");
+    }
+  }
+
+  /**
+   * Constructs a new {@code DiscountDTO} that is valid at all times.
+   *
+   * @param discountID         The unique identifier for the discount.
+   * @param itemID             The unique identifier for the item to which the
+   *                           discount applies.
+   * @param customerID         The unique identifier for the customer eligible for
+   *                           the discount.
+   * @param totalPrice         Discount for sales with total price more than a
+   *                           specific price.
+   * @param fixedDiscount      The fixed discount amount.
+   * @param percentageDiscount The percentage discount to be applied.
+   * @param activated          Indicates whether the discount is currently
+   *                           activated.
+   */
+  public DiscountDTO(int discountID, int itemID, int customerID, double totalPrice, double fixedDiscount,
+      int percentageDiscount, boolean activated) {
+    this(discountID, itemID, customerID, totalPrice, fixedDiscount, percentageDiscount, activated,
+        Long.MIN_VALUE, Long.MAX_VALUE);
+  }
 
+  /**
+   * Returns whether the discount is only valid for a limited time.
+   *
+   * @return {@code true} if either end of the validity window is set.
+   */
+  public boolean isTimeBoxed() {
+    return validFrom != Long.MIN_VALUE || validUntil != Long.MAX_VALUE;
   }
 
   public boolean isFixedDiscount() {
@@ -2,32 +2,49 @@ package se.kth.iv1350.model.dto;
 
 /**
  * Represents a data transfer object (DTO) for an item.
- * Contains the item ID, description, price, and VAT percentage.
+ * Contains the item ID, description, price, and VAT percentage, and the unit
+ * price in minor units (öre) without VAT, of VAT alone, and including VAT.
+ * <p>
+ * The minor units are computed once, when the item is created, which is when
+ * the catalog is loaded. Totals, receipts, discounts and reports all read
+ * them, so they never redo the floating-point VAT calculation and always
+ * agree on the price of a line.
  *
  * @param itemID      The unique identifier for the item. Must be non-negative.
  * @param description The description of the item. Cannot be null or empty.
  * @param price       The price of the item. Must be non-negative.
  * @param VAT         The value-added tax (VAT) percentage for the item. Must be
  *                    between 0 and 100.
+ * @param netCents    The unit price without VAT, in minor units.
+ * @param vatCents    The VAT of one unit, in minor units.
+ * @param grossCents  The unit price including VAT, in minor units.
  * @throws IllegalArgumentException if {@code itemID} or {@code price} is
  *                                  negative,
  *                                  if {@code description} is null or empty,
- *                                  or if {@code VAT} is not between 0 and 100.
+ *                                  if {@code VAT} is not between 0 and 100,
+ *                                  or if the minor units do not match the
+ *                                  price and VAT.
  */
-public record ItemDTO(int itemID, String description, double price, int VAT) {
+public record ItemDTO(int itemID, String description, double price, int VAT, long netCents, long vatCents,
+    long grossCents) {
   /**
-   * Constructs a new {@code ItemDTO} with the specified item ID, description,
-   * price, and VAT.
+   * Constructs a new {@code ItemDTO}, checking that the minor units are those
+   * of the price and VAT.
    *
    * @param itemID      The unique identifier for the item. Must be non-negative.
    * @param description The description of the item. Cannot be null or empty.
    * @param price       The price of the item. Must be non-negative.
    * @param VAT         The value-added tax (VAT) percentage for the item. Must be
    *                    between 0 and 100.
+   * @param netCents    The unit price without VAT, in minor units.
+   * @param vatCents    The VAT of one unit, in minor units.
+   * @param grossCents  The unit price including VAT, in minor units.
    * @throws IllegalArgumentException if {@code itemID} or {@code price} is
    *                                  negative,
    *                                  if {@code description} is null or empty,
-   *                                  or if {@code VAT} is not between 0 and 100.
+   *                                  if {@code VAT} is not between 0 and 100,
+   *                                  or if the minor units do not match the
+   *                                  price and VAT.
    */
   public ItemDTO {
     if (itemID < 0 || price < 0) {
@@ -39,5 +56,67 @@ public record ItemDTO(int itemID, String description, double price, int VAT) {
     if (VAT < 0 || VAT > 100) {
       throw new IllegalArgumentException("VAT must be between 0 and 100.");
     }
+    if (netCents != netCents(price) || vatCents != vatCents(netCents, VAT) || grossCents != netCents + vatCents) {
+      throw new IllegalArgumentException("Minor units do not match the price and VAT of item " + itemID + ".");
+    }
+  }
+
+  /**
+   * Constructs a new {@code ItemDTO} with the specified item ID, description,
+   * price, and VAT, computing the minor units.
+   *
+   * @param itemID      The unique identifier for the item. Must be non-negative.
+   * @param description The description of the item. Cannot be null or empty.
+   * @param price       The price of the item. Must be non-negative.
+   * @param VAT         The value-added tax (VAT) percentage for the item. Must be
+   *                    between 0 and 100.
+   * @throws IllegalArgumentException if {@code itemID} or {@code price} is
+   *                                  negative,
+   *                                  if {@code description} is null or empty,
+   *                                  or if {@code VAT} is not between 0 and 100.
+   */
+  public ItemDTO(int itemID, String description, double price, int VAT) {
+    this(itemID, description, price, VAT, netCents(price), vatCents(netCents(price), VAT),
+        netCents(price) + vatCents(netCents(price), VAT));
+  }
+
+  /**
+   * Returns the unit price including VAT.
+   *
+   * @return The gross unit price.
+   */
+  public double grossPrice() {
+    return grossCents / 100.0;
+  }
+
+  /**
+   * Returns the price of a number of units including VAT, in minor units.
+   *
+   * @param quantity The number of units.
+   * @return The gross price of the units.
+   */
+  public long grossCents(int quantity) {
+    return grossCents * quantity;
+  }
+
+  /**
+   * Rounds a price to minor units.
+   *
+   * @param price The price.
+   * @return The price in minor units.
+   */
+  private static long netCents(double price) {
+    return Math.round(price * 100.0);
+  }
+
+  /**
+   * Computes the VAT of a net price, rounded to minor units.
+   *
+   * @param netCents The net price in minor units.
+   * @param vat      The VAT percentage.
+   * @return The VAT in minor units.
+   */
+  private static long vatCents(long netCents, int vat) {
+    return Math.round(netCents * vat / 100.0);
   }
 }
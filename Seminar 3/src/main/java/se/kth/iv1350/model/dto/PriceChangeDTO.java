@@ -0,0 +1,17 @@
+package se.kth.iv1350.model.dto;
+
+/**
+ * Represents a data transfer object (DTO) for a new price of an item.
+ *
+ * @param itemID The unique identifier of the item.
+ * @param price  The new price of the item, excluding VAT. Must be
+ *               non-negative.
+ * @throws IllegalArgumentException if the price is negative.
+ */
+public record PriceChangeDTO(int itemID, double price) {
+  public PriceChangeDTO {
+    if (price < 0) {
+      throw new IllegalArgumentException("Price cannot be negative.");
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package se.kth.iv1350.model.dto;
+
+/**
+ * Represents a data transfer object (DTO) for a refund of returned items.
+ *
+ * @param saleID   The identifier of the original sale.
+ * @param itemID   The unique identifier of the returned item.
+ * @param quantity The number of returned units. Must be positive.
+ * @param amount   The amount refunded to the customer, including VAT and after
+ *                 the discounts of the original sale. Must be non-negative.
+ * @param vat      The VAT part of the refunded amount.
+ * @throws IllegalArgumentException if the quantity is not positive or the
+ *                                  amount is negative.
+ */
+public record RefundDTO(long saleID, int itemID, int quantity, double amount, double vat) {
+  public RefundDTO {
+    if (quantity <= 0) {
+      throw new IllegalArgumentException("Quantity must be greater than zero.");
+    }
+    if (amount < 0) {
+      throw new IllegalArgumentException("Refunded amount cannot be negative.");
+    }
+  }
+}
@@ -18,18 +18,72 @@ import java.util.Date;
  * @param totalVAT  The total value-added tax (VAT) for the sale.
  * @param payment   The {@link PaymentDTO} containing payment information for
  *                  the sale.
+ * @param saleID    The unique identifier of the sale, or {@code 0} if the
+ *                  sale has none.
  */
 public record SaleDTO(
                 List<SaleItemDTO> saleItems,
                 Date datetime,
                 double discount,
                 double totalVAT,
-                PaymentDTO payment) {
+                PaymentDTO payment,
+                long saleID) {
+        /**
+         * Creates a new {@code SaleDTO} without a sale identifier.
+         *
+         * @param saleItems The items included in the sale.
+         * @param datetime  The date and time when the sale was completed.
+         * @param discount  The discount applied to the sale.
+         * @param totalVAT  The total VAT for the sale.
+         * @param payment   The payment information for the sale.
+         */
+        public SaleDTO(List<SaleItemDTO> saleItems, Date datetime, double discount, double totalVAT,
+                        PaymentDTO payment) {
+                this(saleItems, datetime, discount, totalVAT, payment, 0L);
+        }
+
+        /**
+         * Creates a new {@code SaleDTO} from a sale.
+         *
+         * @param sale The {@link Sale} to copy.
+         */
         public SaleDTO(Sale sale) {
                 this(sale.getSaleItems().stream().map(SaleItemDTO::new).toList(),
                                 sale.getDateTime(),
                                 sale.getDiscounts(),
                                 sale.getTotalVAT(),
-                                sale.getPayment());
+                                sale.getPayment(),
+                                sale.getSaleID());
+        }
+
+        /**
+         * Splits the discount of the sale over its lines in proportion to
+         * their price including VAT. Every line but the last gets its share
+         * rounded down and the last line gets what is left, so the line
+         * discounts always add up to the sale discount.
+         *
+         * @return The discount of each line in minor units, in the order of
+         *         the lines.
+         */
+        public long[] lineDiscountCents() {
+                int count = saleItems.size();
+                long[] lineDiscounts = new long[count];
+                if (count == 0) {
+                        return lineDiscounts;
+                }
+                long grossSum = 0;
+                for (SaleItemDTO line : saleItems) {
+                        grossSum += line.item().grossCents(line.quantity());
+                }
+                long discountTotal = Math.round(discount * 100.0);
+                long discountLeft = discountTotal;
+                for (int i = 0; i < count - 1 && grossSum != 0; i++) {
+                        SaleItemDTO line = saleItems.get(i);
+                        lineDiscounts[i] = (long) ((double) discountTotal * line.item().grossCents(line.quantity())
+                                        / grossSum);
+                        discountLeft -= lineDiscounts[i];
+                }
+                lineDiscounts[count - 1] = discountLeft;
+                return lineDiscounts;
         }
 }
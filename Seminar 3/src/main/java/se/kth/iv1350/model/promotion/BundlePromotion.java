@@ -0,0 +1,57 @@
+package se.kth.iv1350.model.promotion;
+
+import java.util.Map;
+
+/**
+ * A promotion that sells a bundle of different items at a fixed price, such
+ * as a sandwich, a drink and a fruit for 59.
+ */
+public class BundlePromotion extends Promotion {
+  private final int[] bundleItemIDs;
+  private final int[] bundleQuantities;
+  private final long bundlePriceCents;
+
+  /**
+   * Creates a new {@code BundlePromotion}.
+   *
+   * @param promotionID The unique identifier of the promotion.
+   * @param bundle      The number of units of each item in one bundle, by item
+   *                    identifier.
+   * @param bundlePrice The price of one bundle, including VAT.
+   * @throws IllegalArgumentException if a quantity is not positive or the
+   *                                  price is negative.
+   */
+  public BundlePromotion(int promotionID, Map<Integer, Integer> bundle, double bundlePrice) {
+    super(promotionID, bundle.keySet().stream().mapToInt(Integer::intValue).toArray(), false);
+    if (bundlePrice < 0) {
+      throw new IllegalArgumentException("Bundle price cannot be negative.");
+    }
+    this.bundleItemIDs = bundle.keySet().stream().mapToInt(Integer::intValue).toArray();
+    this.bundleQuantities = new int[bundleItemIDs.length];
+    for (int i = 0; i < bundleItemIDs.length; i++) {
+      bundleQuantities[i] = bundle.get(bundleItemIDs[i]);
+      if (bundleQuantities[i] <= 0) {
+        throw new IllegalArgumentException("Bundle quantities must be positive.");
+      }
+    }
+    this.bundlePriceCents = Math.round(bundlePrice * 100);
+  }
+
+  /**
+   * Sells as many complete bundles as the sale holds at the bundle price,
+   * unless buying the items one by one is cheaper.
+   *
+   * @param basket The contents of the sale.
+   * @return The discount in cents.
+   */
+  @Override
+  public long discountCents(PromotionBasket basket) {
+    long bundles = Long.MAX_VALUE;
+    long separatePriceCents = 0;
+    for (int i = 0; i < bundleItemIDs.length; i++) {
+      bundles = Math.min(bundles, basket.quantity(bundleItemIDs[i]) / bundleQuantities[i]);
+      separatePriceCents += bundleQuantities[i] * basket.unitPriceCents(bundleItemIDs[i]);
+    }
+    return bundles * Math.max(0, separatePriceCents - bundlePriceCents);
+  }
+}
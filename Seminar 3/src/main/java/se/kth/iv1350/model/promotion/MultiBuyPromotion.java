@@ -0,0 +1,43 @@
+package se.kth.iv1350.model.promotion;
+
+/**
+ * A "buy N, pay for M" promotion on one item, such as three for the price of
+ * two.
+ */
+public class MultiBuyPromotion extends Promotion {
+  private final int itemID;
+  private final int buyQuantity;
+  private final int payQuantity;
+
+  /**
+   * Creates a new {@code MultiBuyPromotion}.
+   *
+   * @param promotionID The unique identifier of the promotion.
+   * @param itemID      The item on promotion.
+   * @param buyQuantity The number of units that must be bought.
+   * @param payQuantity The number of those units that are paid for.
+   * @throws IllegalArgumentException if {@code payQuantity} is negative or not
+   *                                  less than {@code buyQuantity}.
+   */
+  public MultiBuyPromotion(int promotionID, int itemID, int buyQuantity, int payQuantity) {
+    super(promotionID, new int[] { itemID }, false);
+    if (payQuantity < 0 || payQuantity >= buyQuantity) {
+      throw new IllegalArgumentException("Must pay for fewer units than are bought.");
+    }
+    this.itemID = itemID;
+    this.buyQuantity = buyQuantity;
+    this.payQuantity = payQuantity;
+  }
+
+  /**
+   * Gives the units that are not paid for in every complete group for free.
+   *
+   * @param basket The contents of the sale.
+   * @return The discount in cents.
+   */
+  @Override
+  public long discountCents(PromotionBasket basket) {
+    long groups = basket.quantity(itemID) / buyQuantity;
+    return groups * (buyQuantity - payQuantity) * basket.unitPriceCents(itemID);
+  }
+}
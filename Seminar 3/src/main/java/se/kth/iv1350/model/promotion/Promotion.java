@@ -0,0 +1,107 @@
+package se.kth.iv1350.model.promotion;
+
+import java.util.Arrays;
+
+/**
+ * A promotion that gives a discount on some items of a sale.
+ * <p>
+ * Promotions that share an item compete for the same units, so at most one
+ * of every group of overlapping promotions is applied, the combination
+ * giving the lowest price. A stackable promotion is instead always applied,
+ * to the price of its items left after the other promotions.
+ */
+public abstract class Promotion {
+  private final int promotionID;
+  private final int[] itemIDs;
+  private final boolean stackable;
+
+  /**
+   * Creates a new {@code Promotion}.
+   *
+   * @param promotionID The unique identifier of the promotion.
+   * @param itemIDs     The items the promotion depends on.
+   * @param stackable   Whether the promotion applies on top of other
+   *                    promotions.
+   * @throws IllegalArgumentException if no items are given.
+   */
+  protected Promotion(int promotionID, int[] itemIDs, boolean stackable) {
+    if (itemIDs.length == 0) {
+      throw new IllegalArgumentException("A promotion must depend on at least one item.");
+    }
+    this.promotionID = promotionID;
+    this.itemIDs = distinctItemIDs(itemIDs);
+    this.stackable = stackable;
+  }
+
+  /**
+   * Sorts item identifiers and removes duplicates. Subclasses use it to keep
+   * their own copy of the items without calling an overridable method while
+   * they are constructed.
+   *
+   * @param itemIDs The item identifiers.
+   * @return The distinct item identifiers, sorted.
+   */
+  protected static int[] distinctItemIDs(int[] itemIDs) {
+    return Arrays.stream(itemIDs).sorted().distinct().toArray();
+  }
+
+  /**
+   * Returns the unique identifier of the promotion.
+   *
+   * @return The identifier.
+   */
+  public int getPromotionID() {
+    return promotionID;
+  }
+
+  /**
+   * Returns the items the promotion depends on. The discount of the promotion
+   * only changes when the quantity of one of these items changes.
+   *
+   * @return The item identifiers, sorted.
+   */
+  public int[] getItemIDs() {
+    return itemIDs.clone();
+  }
+
+  /**
+   * Returns whether the promotion applies on top of other promotions.
+   *
+   * @return {@code true} if the promotion is stackable.
+   */
+  public boolean isStackable() {
+    return stackable;
+  }
+
+  /**
+   * Returns whether this promotion depends on an item that another promotion
+   * also depends on.
+   *
+   * @param other The other {@code Promotion}.
+   * @return {@code true} if the two promotions share an item.
+   */
+  public boolean overlaps(Promotion other) {
+    int i = 0;
+    int j = 0;
+    while (i < itemIDs.length && j < other.itemIDs.length) {
+      if (itemIDs[i] == other.itemIDs[j]) {
+        return true;
+      }
+      if (itemIDs[i] < other.itemIDs[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Calculates the discount this promotion gives on a sale.
+   *
+   * @param basket The contents of the sale.
+   * @return The discount in cents, or {@code 0} if the promotion does not
+   *         apply.
+   */
+  public abstract long discountCents(PromotionBasket basket);
+}
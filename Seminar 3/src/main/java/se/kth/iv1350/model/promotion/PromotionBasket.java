@@ -0,0 +1,35 @@
+package se.kth.iv1350.model.promotion;
+
+/**
+ * The contents of a sale as seen by a {@link Promotion}.
+ */
+public interface PromotionBasket {
+  /**
+   * Returns how many units of an item are in the sale.
+   *
+   * @param itemID The unique identifier of the item.
+   * @return The quantity, or {@code 0} if the item is not in the sale.
+   */
+  int quantity(int itemID);
+
+  /**
+   * Returns the price of one unit of an item, including VAT.
+   *
+   * @param itemID The unique identifier of the item.
+   * @return The unit price in cents, or {@code 0} if the item is not in the
+   *         sale.
+   */
+  long unitPriceCents(int itemID);
+
+  /**
+   * Returns the value of the units of an item that a promotion may still
+   * discount. For a stackable promotion this is what is left after the
+   * promotions it stacks on.
+   *
+   * @param itemID The unique identifier of the item.
+   * @return The value in cents, or {@code 0} if the item is not in the sale.
+   */
+  default long lineCents(int itemID) {
+    return quantity(itemID) * unitPriceCents(itemID);
+  }
+}
@@ -0,0 +1,185 @@
+package se.kth.iv1350.model.promotion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A fixed set of promotions, indexed so that a change to one item of a sale
+ * only re-evaluates the promotions that depend on that item.
+ * <p>
+ * Promotions that are not stackable are divided into groups, where two
+ * promotions are in the same group if they are linked by shared items. Only
+ * promotions within a group compete, so a change to one item re-solves the
+ * best combination of one group only. The engine is immutable and can be
+ * shared by all registers; each sale gets its own
+ * {@link PromotionEvaluator}.
+ */
+public class PromotionEngine {
+  private static final int[] NONE = new int[0];
+
+  private final Promotion[] promotions;
+  private final Map<Integer, int[]> promotionsByItem;
+  private final int[] groupOf;
+  private final int[][] groups;
+
+  /**
+   * Creates a new {@code PromotionEngine}.
+   *
+   * @param promotions The promotions of the engine.
+   * @throws IllegalArgumentException if two promotions have the same
+   *                                  identifier.
+   */
+  public PromotionEngine(List<Promotion> promotions) {
+    this.promotions = promotions.toArray(new Promotion[0]);
+    Map<Integer, List<Integer>> byItem = new HashMap<>();
+    Map<Integer, Integer> byID = new HashMap<>();
+    int[] parent = new int[this.promotions.length];
+    for (int i = 0; i < this.promotions.length; i++) {
+      if (byID.put(this.promotions[i].getPromotionID(), i) != null) {
+        throw new IllegalArgumentException("Duplicate promotion " + this.promotions[i].getPromotionID() + ".");
+      }
+      parent[i] = i;
+      for (int itemID : this.promotions[i].getItemIDs()) {
+        byItem.computeIfAbsent(itemID, id -> new ArrayList<>()).add(i);
+      }
+    }
+    this.promotionsByItem = new HashMap<>();
+    for (Map.Entry<Integer, List<Integer>> entry : byItem.entrySet()) {
+      int[] indexes = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+      promotionsByItem.put(entry.getKey(), indexes);
+      int first = -1;
+      for (int index : indexes) {
+        if (!this.promotions[index].isStackable()) {
+          if (first < 0) {
+            first = index;
+          } else {
+            union(parent, first, index);
+          }
+        }
+      }
+    }
+
+    this.groupOf = new int[this.promotions.length];
+    Map<Integer, List<Integer>> members = new HashMap<>();
+    List<int[]> groupList = new ArrayList<>();
+    for (int i = 0; i < this.promotions.length; i++) {
+      groupOf[i] = -1;
+      if (!this.promotions[i].isStackable()) {
+        members.computeIfAbsent(find(parent, i), root -> new ArrayList<>()).add(i);
+      }
+    }
+    for (List<Integer> group : members.values()) {
+      int[] indexes = group.stream().mapToInt(Integer::intValue).toArray();
+      for (int index : indexes) {
+        groupOf[index] = groupList.size();
+      }
+      groupList.add(indexes);
+    }
+    this.groups = groupList.toArray(new int[0][]);
+  }
+
+  /**
+   * Creates an evaluator for a new, empty sale.
+   *
+   * @return The new {@link PromotionEvaluator}.
+   */
+  public PromotionEvaluator newEvaluator() {
+    return new PromotionEvaluator(this);
+  }
+
+  /**
+   * Returns the promotions of the engine.
+   *
+   * @return The promotions, in the order they were given.
+   */
+  public List<Promotion> getPromotions() {
+    return List.of(promotions);
+  }
+
+  /**
+   * Returns the promotion at an index.
+   *
+   * @param index The index of the promotion.
+   * @return The {@link Promotion}.
+   */
+  Promotion promotion(int index) {
+    return promotions[index];
+  }
+
+  /**
+   * Returns the number of promotions.
+   *
+   * @return The number of promotions.
+   */
+  int promotionCount() {
+    return promotions.length;
+  }
+
+  /**
+   * Returns the indexes of the promotions that depend on an item.
+   *
+   * @param itemID The unique identifier of the item.
+   * @return The indexes, empty if no promotion depends on the item.
+   */
+  int[] promotionsFor(int itemID) {
+    return promotionsByItem.getOrDefault(itemID, NONE);
+  }
+
+  /**
+   * Returns the group of a promotion.
+   *
+   * @param index The index of the promotion.
+   * @return The group, or {@code -1} if the promotion is stackable.
+   */
+  int groupOf(int index) {
+    return groupOf[index];
+  }
+
+  /**
+   * Returns the indexes of the promotions in a group.
+   *
+   * @param group The group.
+   * @return The indexes of its promotions.
+   */
+  int[] group(int group) {
+    return groups[group];
+  }
+
+  /**
+   * Returns the number of groups.
+   *
+   * @return The number of groups.
+   */
+  int groupCount() {
+    return groups.length;
+  }
+
+  /**
+   * Finds the root of a promotion in a union-find forest, halving the path on
+   * the way.
+   *
+   * @param parent The parent of every promotion.
+   * @param index  The promotion.
+   * @return The root.
+   */
+  private static int find(int[] parent, int index) {
+    while (parent[index] != index) {
+      parent[index] = parent[parent[index]];
+      index = parent[index];
+    }
+    return index;
+  }
+
+  /**
+   * Joins the trees of two promotions in a union-find forest.
+   *
+   * @param parent The parent of every promotion.
+   * @param a      The first promotion.
+   * @param b      The second promotion.
+   */
+  private static void union(int[] parent, int a, int b) {
+    parent[find(parent, a)] = find(parent, b);
+  }
+}
@@ -0,0 +1,371 @@
+package se.kth.iv1350.model.promotion;
+
+import se.kth.iv1350.model.dto.ItemDTO;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the promotion discount of one sale up to date as items are added.
+ * <p>
+ * When the quantity of an item changes, only the promotions depending on that
+ * item are re-evaluated, and only their group's best combination is solved
+ * again. A group of at most {@value #EXACT_LIMIT} applicable promotions is
+ * solved exactly; a larger group takes the biggest discounts first.
+ * <p>
+ * The discount of every applied group promotion is split over its items by
+ * their value. Stackable promotions then apply to what is left of those
+ * items, and are evaluated again whenever it changes. All discounts together
+ * never exceed the value of the items in the sale. The evaluator is not
+ * thread safe; it belongs to one sale.
+ */
+public class PromotionEvaluator implements PromotionBasket {
+  private static final int EXACT_LIMIT = 20;
+
+  private final PromotionEngine engine;
+  private final Map<Integer, long[]> lines;
+  private final long[] promotionDiscounts;
+  private final long[] groupDiscounts;
+  private final boolean[] applied;
+  private final boolean[] stale;
+  private final int[] staleIndexes;
+  private int staleCount;
+  private final PromotionBasket remaining;
+  private long grossCents;
+  private long groupedCents;
+  private long stackedCents;
+  private long discountCents;
+  private long evaluations;
+
+  /**
+   * Creates a new {@code PromotionEvaluator} for an empty sale.
+   *
+   * @param engine The {@link PromotionEngine} holding the promotions.
+   */
+  PromotionEvaluator(PromotionEngine engine) {
+    this.engine = engine;
+    this.lines = new HashMap<>();
+    this.promotionDiscounts = new long[engine.promotionCount()];
+    this.groupDiscounts = new long[engine.groupCount()];
+    this.applied = new boolean[engine.promotionCount()];
+    this.stale = new boolean[engine.promotionCount()];
+    this.staleIndexes = new int[engine.promotionCount()];
+    this.remaining = new PromotionBasket() {
+      @Override
+      public int quantity(int itemID) {
+        return PromotionEvaluator.this.quantity(itemID);
+      }
+
+      @Override
+      public long unitPriceCents(int itemID) {
+        return PromotionEvaluator.this.unitPriceCents(itemID);
+      }
+
+      @Override
+      public long lineCents(int itemID) {
+        long[] line = lines.get(itemID);
+        return line == null ? 0 : Math.max(0, line[0] * line[1] - line[2]);
+      }
+    };
+  }
+
+  /**
+   * Adds units of an item to the sale.
+   *
+   * @param item     The {@link ItemDTO} of the item.
+   * @param quantity The number of units added.
+   * @return The promotion discount of the sale, in cents.
+   */
+  public long add(ItemDTO item, int quantity) {
+    return setQuantity(item, quantity(item.itemID()) + quantity);
+  }
+
+  /**
+   * Sets the number of units of an item in the sale and re-evaluates the
+   * promotions depending on it.
+   *
+   * @param item     The {@link ItemDTO} of the item.
+   * @param quantity The number of units now in the sale.
+   * @return The promotion discount of the sale, in cents.
+   * @throws IllegalArgumentException if {@code quantity} is negative.
+   */
+  public long setQuantity(ItemDTO item, int quantity) {
+    if (quantity < 0) {
+      throw new IllegalArgumentException("Quantity cannot be negative.");
+    }
+    long[] line = lines.get(item.itemID());
+    if (line == null) {
+      line = new long[] { 0, item.grossCents(), 0 };
+      lines.put(item.itemID(), line);
+    }
+    grossCents += (quantity - line[0]) * line[1];
+    line[0] = quantity;
+
+    int group = -1;
+    boolean groupChanged = false;
+    for (int index : engine.promotionsFor(item.itemID())) {
+      if (engine.groupOf(index) < 0) {
+        markStale(index);
+        continue;
+      }
+      group = engine.groupOf(index);
+      long discount = engine.promotion(index).discountCents(this);
+      evaluations++;
+      if (discount != promotionDiscounts[index]) {
+        promotionDiscounts[index] = discount;
+        groupChanged = true;
+      }
+    }
+    if (groupChanged) {
+      long best = solve(engine.group(group));
+      groupedCents += best - groupDiscounts[group];
+      groupDiscounts[group] = best;
+    }
+    if (group >= 0) {
+      splitGroupDiscount(engine.group(group));
+    }
+    for (int i = 0; i < staleCount; i++) {
+      int index = staleIndexes[i];
+      stale[index] = false;
+      long discount = engine.promotion(index).discountCents(remaining);
+      evaluations++;
+      stackedCents += discount - promotionDiscounts[index];
+      promotionDiscounts[index] = discount;
+      applied[index] = discount > 0;
+    }
+    staleCount = 0;
+    discountCents = Math.min(groupedCents + stackedCents, grossCents);
+    return discountCents;
+  }
+
+  /**
+   * Returns the promotion discount of the sale.
+   *
+   * @return The discount in cents.
+   */
+  public long getDiscountCents() {
+    return discountCents;
+  }
+
+  /**
+   * Returns the promotion discount of the sale.
+   *
+   * @return The discount, in the same unit as item prices.
+   */
+  public double getDiscount() {
+    return discountCents / 100.0;
+  }
+
+  /**
+   * Returns the promotions that currently give the sale a discount.
+   *
+   * @return The applied promotions, in the order of the engine.
+   */
+  public List<Promotion> getAppliedPromotions() {
+    List<Promotion> result = new ArrayList<>();
+    for (int i = 0; i < applied.length; i++) {
+      if (applied[i]) {
+        result.add(engine.promotion(i));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns how many times a promotion has been evaluated for this sale.
+   *
+   * @return The number of evaluations.
+   */
+  public long getEvaluationCount() {
+    return evaluations;
+  }
+
+  /**
+   * Returns how many units of an item are in the sale.
+   *
+   * @param itemID The unique identifier of the item.
+   * @return The quantity, or {@code 0} if the item is not in the sale.
+   */
+  @Override
+  public int quantity(int itemID) {
+    long[] line = lines.get(itemID);
+    return line == null ? 0 : (int) line[0];
+  }
+
+  /**
+   * Returns the price of one unit of an item, including VAT.
+   *
+   * @param itemID The unique identifier of the item.
+   * @return The unit price in cents, or {@code 0} if the item is not in the
+   *         sale.
+   */
+  @Override
+  public long unitPriceCents(int itemID) {
+    long[] line = lines.get(itemID);
+    return line == null ? 0 : line[1];
+  }
+
+  /**
+   * Splits the discounts of the applied promotions of a group over their
+   * items, by the value of each item, the last item getting what is left
+   * after rounding down. The stackable promotions of every item of the group
+   * are marked to be evaluated again.
+   *
+   * @param group The indexes of the promotions in the group.
+   */
+  private void splitGroupDiscount(int[] group) {
+    for (int index : group) {
+      for (int itemID : engine.promotion(index).getItemIDs()) {
+        long[] line = lines.get(itemID);
+        if (line != null) {
+          line[2] = 0;
+        }
+        for (int other : engine.promotionsFor(itemID)) {
+          if (engine.groupOf(other) < 0) {
+            markStale(other);
+          }
+        }
+      }
+    }
+    for (int index : group) {
+      if (!applied[index]) {
+        continue;
+      }
+      int[] itemIDs = engine.promotion(index).getItemIDs();
+      long valueCents = 0;
+      for (int itemID : itemIDs) {
+        valueCents += lineCents(itemID);
+      }
+      long discount = promotionDiscounts[index];
+      long left = discount;
+      long[] last = null;
+      for (int itemID : itemIDs) {
+        long[] line = lines.get(itemID);
+        if (line != null && line[0] > 0) {
+          long share = discount * (line[0] * line[1]) / valueCents;
+          line[2] += share;
+          left -= share;
+          last = line;
+        }
+      }
+      if (last != null) {
+        last[2] += left;
+      }
+    }
+  }
+
+  /**
+   * Marks a stackable promotion to be evaluated again once the group
+   * discounts are up to date.
+   *
+   * @param index The index of the promotion.
+   */
+  private void markStale(int index) {
+    if (!stale[index]) {
+      stale[index] = true;
+      staleIndexes[staleCount++] = index;
+    }
+  }
+
+  /**
+   * Chooses the promotions of a group that give the biggest total discount
+   * without two of them sharing an item, and marks them as applied.
+   *
+   * @param group The indexes of the promotions in the group.
+   * @return The total discount of the chosen promotions, in cents.
+   */
+  private long solve(int[] group) {
+    List<Integer> candidates = new ArrayList<>();
+    for (int index : group) {
+      applied[index] = false;
+      if (promotionDiscounts[index] > 0) {
+        candidates.add(index);
+      }
+    }
+    candidates.sort((a, b) -> Long.compare(promotionDiscounts[b], promotionDiscounts[a]));
+    int count = candidates.size();
+    if (count > EXACT_LIMIT) {
+      return solveGreedily(candidates);
+    }
+
+    int[] conflicts = new int[count];
+    long[] discounts = new long[count];
+    long[] remaining = new long[count + 1];
+    for (int i = count - 1; i >= 0; i--) {
+      discounts[i] = promotionDiscounts[candidates.get(i)];
+      remaining[i] = remaining[i + 1] + discounts[i];
+      for (int j = 0; j < count; j++) {
+        if (i != j && engine.promotion(candidates.get(i)).overlaps(engine.promotion(candidates.get(j)))) {
+          conflicts[i] |= 1 << j;
+        }
+      }
+    }
+    long[] best = { 0, 0 };
+    search(0, 0, 0, conflicts, discounts, remaining, best);
+    for (int i = 0; i < count; i++) {
+      if ((best[1] & (1L << i)) != 0) {
+        applied[candidates.get(i)] = true;
+      }
+    }
+    return best[0];
+  }
+
+  /**
+   * Searches the combinations of candidates by branch and bound, skipping a
+   * branch once even all remaining candidates could not beat the best
+   * combination found.
+   *
+   * @param next      The next candidate to decide on.
+   * @param chosen    The candidates chosen so far, as a bit mask.
+   * @param discount  The discount of the chosen candidates.
+   * @param conflicts The candidates each candidate overlaps, as bit masks.
+   * @param discounts The discount of each candidate, biggest first.
+   * @param remaining The sum of the discounts from each candidate on.
+   * @param best      The best discount and its combination so far, updated in
+   *                  place.
+   */
+  private void search(int next, int chosen, long discount, int[] conflicts, long[] discounts, long[] remaining,
+      long[] best) {
+    if (discount > best[0]) {
+      best[0] = discount;
+      best[1] = chosen;
+    }
+    if (next == discounts.length || discount + remaining[next] <= best[0]) {
+      return;
+    }
+    if ((conflicts[next] & chosen) == 0) {
+      search(next + 1, chosen | 1 << next, discount + discounts[next], conflicts, discounts, remaining, best);
+    }
+    search(next + 1, chosen, discount, conflicts, discounts, remaining, best);
+  }
+
+  /**
+   * Chooses promotions of a large group biggest discount first, skipping
+   * those overlapping one already chosen.
+   *
+   * @param candidates The applicable promotions, biggest discount first.
+   * @return The total discount of the chosen promotions, in cents.
+   */
+  private long solveGreedily(List<Integer> candidates) {
+    List<Promotion> chosen = new ArrayList<>();
+    long total = 0;
+    for (int index : candidates) {
+      Promotion promotion = engine.promotion(index);
+      boolean free = true;
+      for (Promotion other : chosen) {
+        if (promotion.overlaps(other)) {
+          free = false;
+          break;
+        }
+      }
+      if (free) {
+        chosen.add(promotion);
+        applied[index] = true;
+        total += promotionDiscounts[index];
+      }
+    }
+    return total;
+  }
+}
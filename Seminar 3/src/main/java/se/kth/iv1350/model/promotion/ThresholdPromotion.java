@@ -0,0 +1,55 @@
+package se.kth.iv1350.model.promotion;
+
+/**
+ * A promotion that gives a percentage off a group of items once enough units
+ * of the group are bought, such as 20% off all cheeses when buying five or
+ * more.
+ */
+public class ThresholdPromotion extends Promotion {
+  private final int[] groupItemIDs;
+  private final int minimumQuantity;
+  private final int percentage;
+
+  /**
+   * Creates a new {@code ThresholdPromotion}.
+   *
+   * @param promotionID     The unique identifier of the promotion.
+   * @param itemIDs         The items of the group.
+   * @param minimumQuantity The number of units of the group that must be
+   *                        bought.
+   * @param percentage      The percentage off the group, between 0 and 100.
+   * @param stackable       Whether the promotion applies on top of other
+   *                        promotions.
+   * @throws IllegalArgumentException if the percentage is out of range or the
+   *                                  minimum quantity is not positive.
+   */
+  public ThresholdPromotion(int promotionID, int[] itemIDs, int minimumQuantity, int percentage,
+      boolean stackable) {
+    super(promotionID, itemIDs, stackable);
+    if (percentage < 0 || percentage > 100 || minimumQuantity <= 0) {
+      throw new IllegalArgumentException("Invalid threshold promotion.");
+    }
+    this.groupItemIDs = distinctItemIDs(itemIDs);
+    this.minimumQuantity = minimumQuantity;
+    this.percentage = percentage;
+  }
+
+  /**
+   * Gives the percentage off every unit of the group, once the group has
+   * enough units. A stackable threshold takes the percentage off what is left
+   * after the promotions it stacks on.
+   *
+   * @param basket The contents of the sale.
+   * @return The discount in cents.
+   */
+  @Override
+  public long discountCents(PromotionBasket basket) {
+    long units = 0;
+    long groupPriceCents = 0;
+    for (int itemID : groupItemIDs) {
+      units += basket.quantity(itemID);
+      groupPriceCents += basket.lineCents(itemID);
+    }
+    return units < minimumQuantity ? 0 : groupPriceCents * percentage / 100;
+  }
+}
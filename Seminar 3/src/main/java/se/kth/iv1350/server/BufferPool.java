@@ -0,0 +1,48 @@
+package se.kth.iv1350.server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A pool of direct buffers of one size, so that connections do not allocate
+ * and free direct memory each time a terminal connects.
+ */
+class BufferPool {
+  private final ConcurrentLinkedQueue<ByteBuffer> buffers;
+  private final int bufferSize;
+  private final int maxPooled;
+
+  /**
+   * Creates a new, empty {@code BufferPool}.
+   *
+   * @param bufferSize The size of each buffer.
+   * @param maxPooled  The largest number of idle buffers kept.
+   */
+  BufferPool(int bufferSize, int maxPooled) {
+    this.buffers = new ConcurrentLinkedQueue<>();
+    this.bufferSize = bufferSize;
+    this.maxPooled = maxPooled;
+  }
+
+  /**
+   * Takes a cleared buffer from the pool, allocating one if the pool is
+   * empty.
+   *
+   * @return The buffer.
+   */
+  ByteBuffer take() {
+    ByteBuffer buffer = buffers.poll();
+    return buffer != null ? buffer.clear() : ByteBuffer.allocateDirect(bufferSize);
+  }
+
+  /**
+   * Gives a buffer back to the pool.
+   *
+   * @param buffer The buffer, which must not be used afterwards.
+   */
+  void release(ByteBuffer buffer) {
+    if (buffers.size() < maxPooled) {
+      buffers.offer(buffer);
+    }
+  }
+}
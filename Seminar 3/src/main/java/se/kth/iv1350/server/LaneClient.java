@@ -0,0 +1,299 @@
+package se.kth.iv1350.server;
+
+import se.kth.iv1350.model.dto.ItemDTO;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A lane terminal's connection to a {@link LaneServer}.
+ * <p>
+ * The {@code send} methods only queue a request; {@link #receive()} sends the
+ * queued requests and reads the response to the oldest one. A terminal that
+ * knows what it will scan, such as a self-checkout emptying a basket, can
+ * queue many requests before reading any responses. The other methods send
+ * one request and wait for its response. Responses are only read by
+ * {@link #receive()}, so a terminal should not queue more than a few thousand
+ * requests at a time, or both ends may end up waiting for the other to read.
+ * <p>
+ * A client is used by one thread at a time.
+ */
+public class LaneClient implements AutoCloseable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final SocketChannel channel;
+  private final ByteBuffer out;
+  private ByteBuffer in;
+  private byte[] pending;
+  private int pendingHead;
+  private int pendingCount;
+
+  /**
+   * Connects to a lane server.
+   *
+   * @param address The address of the server.
+   * @throws IOException if the server could not be reached.
+   */
+  public LaneClient(InetSocketAddress address) throws IOException {
+    this.channel = SocketChannel.open(address);
+    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    this.out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    this.in = ByteBuffer.allocateDirect(BUFFER_SIZE).flip();
+    this.pending = new byte[256];
+  }
+
+  /**
+   * Queues a request to start a new sale.
+   *
+   * @throws IOException if earlier requests had to be sent and could not be.
+   */
+  public void sendStartSale() throws IOException {
+    queue(LaneProtocol.START_SALE, 1).put(LaneProtocol.START_SALE);
+  }
+
+  /**
+   * Queues a request to scan an item. A scan with no sale in progress starts
+   * one.
+   *
+   * @param itemID   The item to scan.
+   * @param quantity The number of units.
+   * @throws IOException if earlier requests had to be sent and could not be.
+   */
+  public void sendScan(int itemID, int quantity) throws IOException {
+    queue(LaneProtocol.SCAN, 1 + Integer.BYTES * 2).put(LaneProtocol.SCAN).putInt(itemID).putInt(quantity);
+  }
+
+  /**
+   * Queues a request to apply a customer's discounts.
+   *
+   * @param customerID The customer.
+   * @throws IOException if earlier requests had to be sent and could not be.
+   */
+  public void sendDiscount(int customerID) throws IOException {
+    queue(LaneProtocol.DISCOUNT, 1 + Integer.BYTES).put(LaneProtocol.DISCOUNT).putInt(customerID);
+  }
+
+  /**
+   * Queues a request to pay for and complete the sale.
+   *
+   * @param amountPaid The amount paid.
+   * @throws IOException if earlier requests had to be sent and could not be.
+   */
+  public void sendPay(double amountPaid) throws IOException {
+    queue(LaneProtocol.PAY, 1 + Double.BYTES).put(LaneProtocol.PAY).putDouble(amountPaid);
+  }
+
+  /**
+   * Queues a request for the receipt of the last completed sale.
+   *
+   * @throws IOException if earlier requests had to be sent and could not be.
+   */
+  public void sendReceipt() throws IOException {
+    queue(LaneProtocol.RECEIPT, 1).put(LaneProtocol.RECEIPT);
+  }
+
+  /**
+   * Returns the number of requests whose responses have not been read yet.
+   *
+   * @return The number of outstanding requests.
+   */
+  public int getPendingCount() {
+    return pendingCount;
+  }
+
+  /**
+   * Sends the queued requests and reads the response to the oldest one.
+   *
+   * @return The {@link LaneResponse}.
+   * @throws IllegalStateException if no request is outstanding.
+   * @throws IOException           if the server could not be reached or closed
+   *                               the connection.
+   */
+  public LaneResponse receive() throws IOException {
+    if (pendingCount == 0) {
+      throw new IllegalStateException("No request is waiting for a response.");
+    }
+    flush();
+    byte operation = pending[pendingHead];
+    pendingHead = (pendingHead + 1) % pending.length;
+    pendingCount--;
+    fill(1);
+    if (in.get() == LaneProtocol.ERROR) {
+      return new LaneResponse(false, readText(Short.BYTES), null, 0.0, 0.0, null);
+    }
+    return switch (operation) {
+      case LaneProtocol.SCAN -> {
+        fill(Integer.BYTES * 2 + Double.BYTES * 2);
+        int itemID = in.getInt();
+        double price = in.getDouble();
+        int vat = in.getInt();
+        double total = in.getDouble();
+        ItemDTO item = new ItemDTO(itemID, readText(Short.BYTES), price, vat);
+        yield new LaneResponse(true, null, item, total, 0.0, null);
+      }
+      case LaneProtocol.DISCOUNT -> {
+        fill(Double.BYTES);
+        yield new LaneResponse(true, null, null, in.getDouble(), 0.0, null);
+      }
+      case LaneProtocol.PAY -> {
+        fill(Double.BYTES);
+        yield new LaneResponse(true, null, null, 0.0, in.getDouble(), null);
+      }
+      case LaneProtocol.RECEIPT -> new LaneResponse(true, null, null, 0.0, 0.0, readText(Integer.BYTES));
+      default -> new LaneResponse(true, null, null, 0.0, 0.0, null);
+    };
+  }
+
+  /**
+   * Starts a new sale and waits for the response.
+   *
+   * @return The {@link LaneResponse}.
+   * @throws IOException if the server could not be reached.
+   */
+  public LaneResponse startSale() throws IOException {
+    sendStartSale();
+    return receive();
+  }
+
+  /**
+   * Scans an item and waits for the response.
+   *
+   * @param itemID   The item to scan.
+   * @param quantity The number of units.
+   * @return The {@link LaneResponse}, with the item and running total.
+   * @throws IOException if the server could not be reached.
+   */
+  public LaneResponse scan(int itemID, int quantity) throws IOException {
+    sendScan(itemID, quantity);
+    return receive();
+  }
+
+  /**
+   * Applies a customer's discounts and waits for the response.
+   *
+   * @param customerID The customer.
+   * @return The {@link LaneResponse}, with the discounted total.
+   * @throws IOException if the server could not be reached.
+   */
+  public LaneResponse discount(int customerID) throws IOException {
+    sendDiscount(customerID);
+    return receive();
+  }
+
+  /**
+   * Pays for the sale and waits for the response.
+   *
+   * @param amountPaid The amount paid.
+   * @return The {@link LaneResponse}, with the change.
+   * @throws IOException if the server could not be reached.
+   */
+  public LaneResponse pay(double amountPaid) throws IOException {
+    sendPay(amountPaid);
+    return receive();
+  }
+
+  /**
+   * Fetches the receipt of the last completed sale.
+   *
+   * @return The {@link LaneResponse}, with the receipt.
+   * @throws IOException if the server could not be reached.
+   */
+  public LaneResponse receipt() throws IOException {
+    sendReceipt();
+    return receive();
+  }
+
+  /**
+   * Closes the connection. Responses not read yet are lost.
+   *
+   * @throws IOException if the connection could not be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Records an outstanding request and makes room for it in the output
+   * buffer.
+   *
+   * @param operation The operation of the request.
+   * @param size      The size of the request.
+   * @return The output buffer to write the request to.
+   * @throws IOException if the buffer was full and could not be sent.
+   */
+  private ByteBuffer queue(byte operation, int size) throws IOException {
+    if (out.remaining() < size) {
+      flush();
+    }
+    if (pendingCount == pending.length) {
+      byte[] grown = new byte[pending.length * 2];
+      for (int i = 0; i < pendingCount; i++) {
+        grown[i] = pending[(pendingHead + i) % pending.length];
+      }
+      pending = grown;
+      pendingHead = 0;
+    }
+    pending[(pendingHead + pendingCount) % pending.length] = operation;
+    pendingCount++;
+    return out;
+  }
+
+  /**
+   * Sends the queued requests.
+   *
+   * @throws IOException if the server could not be written to.
+   */
+  private void flush() throws IOException {
+    out.flip();
+    while (out.hasRemaining()) {
+      channel.write(out);
+    }
+    out.clear();
+  }
+
+  /**
+   * Reads until at least the given number of bytes are buffered, growing the
+   * input buffer for large receipts.
+   *
+   * @param bytes The number of bytes needed.
+   * @throws IOException if the server closed the connection first.
+   */
+  private void fill(int bytes) throws IOException {
+    if (in.remaining() >= bytes) {
+      return;
+    }
+    if (bytes > in.capacity()) {
+      in = ByteBuffer.allocateDirect(bytes).put(in).flip();
+    }
+    in.compact();
+    while (in.position() < bytes) {
+      if (channel.read(in) < 0) {
+        throw new EOFException("The lane server closed the connection.");
+      }
+    }
+    in.flip();
+  }
+
+  /**
+   * Reads a length-prefixed UTF-8 text.
+   *
+   * @param lengthBytes The size of the length, {@link Short#BYTES} or
+   *                    {@link Integer#BYTES}.
+   * @return The text.
+   * @throws IOException if the server closed the connection first.
+   */
+  private String readText(int lengthBytes) throws IOException {
+    fill(lengthBytes);
+    int length = lengthBytes == Short.BYTES ? in.getShort() : in.getInt();
+    fill(length);
+    byte[] text = new byte[length];
+    in.get(text);
+    return new String(text, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,66 @@
+package se.kth.iv1350.server;
+
+/**
+ * The binary protocol between lane terminals and the {@link LaneServer}. All
+ * numbers are big endian and doubles are sent as their raw bits.
+ * <p>
+ * A request is an operation byte followed by its arguments:
+ * <pre>
+ * START_SALE
+ * SCAN      int itemID, int quantity
+ * DISCOUNT  int customerID
+ * PAY       double amountPaid
+ * RECEIPT
+ * </pre>
+ * A response is a status byte. After {@link #ERROR} follows a
+ * {@code short}-length UTF-8 message. After {@link #OK} follows:
+ * <pre>
+ * START_SALE nothing
+ * SCAN       int itemID, double price, int VAT, double runningTotal, short length, byte[length] description
+ * DISCOUNT   double runningTotal
+ * PAY        double change
+ * RECEIPT    int length, byte[length] receipt
+ * </pre>
+ * Responses come in the order of the requests, so a terminal may send many
+ * requests before reading the responses.
+ */
+final class LaneProtocol {
+  /** Starts a new sale. */
+  static final byte START_SALE = 1;
+  /** Scans an item. */
+  static final byte SCAN = 2;
+  /** Applies a customer's discounts. */
+  static final byte DISCOUNT = 3;
+  /** Pays for and completes the sale. */
+  static final byte PAY = 4;
+  /** Fetches the receipt of the last completed sale. */
+  static final byte RECEIPT = 5;
+
+  /** The request succeeded. */
+  static final byte OK = 0;
+  /** The request failed. */
+  static final byte ERROR = 1;
+
+  /**
+   * Prevents instantiation.
+   */
+  private LaneProtocol() {
+  }
+
+  /**
+   * Returns the number of argument bytes of a request.
+   *
+   * @param operation The operation byte.
+   * @return The number of bytes after the operation byte, or {@code -1} if
+   *         the operation is unknown.
+   */
+  static int argumentBytes(byte operation) {
+    return switch (operation) {
+      case START_SALE, RECEIPT -> 0;
+      case SCAN -> Integer.BYTES * 2;
+      case DISCOUNT -> Integer.BYTES;
+      case PAY -> Long.BYTES;
+      default -> -1;
+    };
+  }
+}
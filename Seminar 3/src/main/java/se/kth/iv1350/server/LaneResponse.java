@@ -0,0 +1,17 @@
+package se.kth.iv1350.server;
+
+import se.kth.iv1350.model.dto.ItemDTO;
+
+/**
+ * A response from the {@link LaneServer}, as read by a {@link LaneClient}.
+ *
+ * @param ok           Whether the request succeeded.
+ * @param message      What went wrong, if the request failed.
+ * @param item         The scanned item, for a scan.
+ * @param runningTotal The total of the sale, for a scan or discount.
+ * @param change       The change to give back, for a payment.
+ * @param receipt      The receipt, for a receipt request.
+ */
+public record LaneResponse(boolean ok, String message, ItemDTO item, double runningTotal, double change,
+    String receipt) {
+}
@@ -0,0 +1,350 @@
+package se.kth.iv1350.server;
+
+import se.kth.iv1350.controller.Controller;
+import se.kth.iv1350.integration.ReceiptRenderer;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A TCP server that lets lane terminals run sales over the network, using the
+ * compact binary protocol described in {@link LaneProtocol}.
+ * <p>
+ * Each connection is one lane and gets its own {@link Controller} and its own
+ * virtual thread, which blocks on the socket without holding a carrier
+ * thread. Terminals may pipeline requests: the server handles every complete
+ * request it has read before writing the responses back in one write, so a
+ * terminal that sends a hundred scans at once pays for one round trip instead
+ * of a hundred. Connections read and write through direct buffers taken from
+ * a pool, so the network side of a request allocates nothing; the
+ * {@link Controller} still allocates for the sale itself, such as the event
+ * log entry of each scan and the {@code SaleDTO}s it hands to the discount
+ * database and the external systems.
+ * <p>
+ * When a terminal disconnects, the sale it left open is abandoned, so the
+ * stock reserved for it is released at once.
+ */
+public class LaneServer implements AutoCloseable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final ServerSocketChannel serverChannel;
+  private final Supplier<Controller> lanes;
+  private final ReceiptRenderer renderer;
+  private final BufferPool buffers;
+  private final Set<SocketChannel> connections;
+  private final AtomicLong requests;
+  private final Thread acceptor;
+  private volatile boolean closed;
+
+  /**
+   * Creates a new {@code LaneServer} and starts accepting terminals.
+   *
+   * @param address  The address to listen on. Port {@code 0} picks a free
+   *                 port, see {@link #getPort()}.
+   * @param lanes    Creates the {@link Controller} of each new connection.
+   *                 Controllers must not be shared between connections.
+   * @param renderer Renders the receipts sent to terminals.
+   * @throws IOException if the server could not listen on the address.
+   */
+  public LaneServer(InetSocketAddress address, Supplier<Controller> lanes, ReceiptRenderer renderer)
+      throws IOException {
+    this.serverChannel = ServerSocketChannel.open().bind(address);
+    this.lanes = lanes;
+    this.renderer = renderer;
+    this.buffers = new BufferPool(BUFFER_SIZE, 256);
+    this.connections = ConcurrentHashMap.newKeySet();
+    this.requests = new AtomicLong();
+    this.acceptor = Thread.ofVirtual().name("lane-server-acceptor").start(this::acceptLoop);
+  }
+
+  /**
+   * Returns the port the server listens on.
+   *
+   * @return The local port.
+   */
+  public int getPort() {
+    return serverChannel.socket().getLocalPort();
+  }
+
+  /**
+   * Returns the number of requests handled so far, over all connections.
+   *
+   * @return The number of requests.
+   */
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  /**
+   * Returns the number of connected terminals.
+   *
+   * @return The number of open connections.
+   */
+  public int getConnectionCount() {
+    return connections.size();
+  }
+
+  /**
+   * Stops accepting terminals and closes every open connection.
+   *
+   * @throws IOException if the server socket could not be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    serverChannel.close();
+    for (SocketChannel channel : connections) {
+      closeQuietly(channel);
+    }
+    try {
+      acceptor.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Accepts terminals until the server is closed, serving each on a virtual
+   * thread of its own.
+   */
+  private void acceptLoop() {
+    while (!closed) {
+      try {
+        SocketChannel channel = serverChannel.accept();
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        connections.add(channel);
+        Thread.ofVirtual().name("lane-" + channel.getRemoteAddress()).start(() -> serve(channel));
+      } catch (ClosedChannelException e) {
+        return;
+      } catch (IOException e) {
+        if (!closed) {
+          System.err.println("Error: Could not accept lane terminal. " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Serves one terminal until it disconnects.
+   *
+   * @param channel The connection to the terminal.
+   */
+  private void serve(SocketChannel channel) {
+    ByteBuffer in = buffers.take();
+    ByteBuffer out = buffers.take();
+    Lane lane = null;
+    try {
+      lane = new Lane(lanes.get());
+      while (channel.read(in) >= 0) {
+        in.flip();
+        boolean protocolError = false;
+        while (!protocolError && in.hasRemaining()) {
+          int arguments = LaneProtocol.argumentBytes(in.get(in.position()));
+          if (arguments < 0) {
+            writeError(channel, out, "Unknown operation " + in.get(in.position()) + ".");
+            protocolError = true;
+          } else if (in.remaining() < 1 + arguments) {
+            break;
+          } else {
+            lane.handle(channel, in, out);
+            requests.incrementAndGet();
+          }
+        }
+        flush(channel, out);
+        if (protocolError) {
+          return;
+        }
+        in.compact();
+      }
+    } catch (IOException e) {
+      if (!closed) {
+        System.err.println("Error: Lost connection to lane terminal. " + e.getMessage());
+      }
+    } finally {
+      connections.remove(channel);
+      closeQuietly(channel);
+      buffers.release(in);
+      buffers.release(out);
+      if (lane != null) {
+        // A sale left open by the terminal would hold its stock until the reservations expire
+        lane.controller.abandonSale();
+      }
+    }
+  }
+
+  /**
+   * Writes everything in the output buffer to the terminal.
+   *
+   * @param channel The connection to the terminal.
+   * @param out     The output buffer, in write mode.
+   * @throws IOException if the terminal could not be written to.
+   */
+  private static void flush(SocketChannel channel, ByteBuffer out) throws IOException {
+    out.flip();
+    while (out.hasRemaining()) {
+      channel.write(out);
+    }
+    out.clear();
+  }
+
+  /**
+   * Makes room for a response, writing out the responses before it if needed.
+   *
+   * @param channel The connection to the terminal.
+   * @param out     The output buffer.
+   * @param bytes   The size of the response.
+   * @throws IOException if the terminal could not be written to.
+   */
+  private static void reserve(SocketChannel channel, ByteBuffer out, int bytes) throws IOException {
+    if (out.remaining() < bytes) {
+      flush(channel, out);
+    }
+  }
+
+  /**
+   * Writes an error response.
+   *
+   * @param channel The connection to the terminal.
+   * @param out     The output buffer.
+   * @param message What went wrong.
+   * @throws IOException if the terminal could not be written to.
+   */
+  private static void writeError(SocketChannel channel, ByteBuffer out, String message) throws IOException {
+    byte[] text = (message == null ? "Request failed." : message).getBytes(StandardCharsets.UTF_8);
+    int length = Math.min(text.length, 4096);
+    reserve(channel, out, 1 + Short.BYTES + length);
+    out.put(LaneProtocol.ERROR).putShort((short) length).put(text, 0, length);
+  }
+
+  /**
+   * Closes a connection, ignoring failures.
+   *
+   * @param channel The connection.
+   */
+  private static void closeQuietly(SocketChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      // The connection is gone either way
+    }
+  }
+
+  /**
+   * The state of one connected lane.
+   */
+  private final class Lane {
+    private final Controller controller;
+    private volatile SaleDTO lastCompletedSale;
+    private boolean saleInProgress;
+
+    /**
+     * Creates a new {@code Lane}.
+     *
+     * @param controller The {@link Controller} of the lane.
+     */
+    Lane(Controller controller) {
+      this.controller = controller;
+      controller.addSaleObserver(sale -> lastCompletedSale = sale);
+    }
+
+    /**
+     * Handles one complete request and writes its response. A request the
+     * controller rejects gets an error response; the connection stays open.
+     *
+     * @param channel The connection to the terminal.
+     * @param in      The input buffer, positioned at the request.
+     * @param out     The output buffer.
+     * @throws IOException if the terminal could not be written to.
+     */
+    void handle(SocketChannel channel, ByteBuffer in, ByteBuffer out) throws IOException {
+      byte operation = in.get();
+      try {
+        switch (operation) {
+          case LaneProtocol.START_SALE -> {
+            controller.startNewSale();
+            saleInProgress = true;
+            reserve(channel, out, 1);
+            out.put(LaneProtocol.OK);
+          }
+          case LaneProtocol.SCAN -> scan(channel, in.getInt(), in.getInt(), out);
+          case LaneProtocol.DISCOUNT -> {
+            double total = controller.signalDiscountRequest(in.getInt()).getTotalPrice();
+            reserve(channel, out, 1 + Double.BYTES);
+            out.put(LaneProtocol.OK).putDouble(total);
+          }
+          case LaneProtocol.PAY -> {
+            double change = controller.setAmountPaid(in.getDouble());
+            saleInProgress = false;
+            reserve(channel, out, 1 + Double.BYTES);
+            out.put(LaneProtocol.OK).putDouble(change);
+          }
+          case LaneProtocol.RECEIPT -> receipt(channel, out);
+          default -> throw new IllegalStateException("Unknown operation " + operation + ".");
+        }
+      } catch (RuntimeException e) {
+        writeError(channel, out, e.getMessage() == null ? e.toString() : e.getMessage());
+      }
+    }
+
+    /**
+     * Scans an item, starting a sale first if none is in progress.
+     *
+     * @param channel  The connection to the terminal.
+     * @param itemID   The item to scan.
+     * @param quantity The number of units.
+     * @param out      The output buffer.
+     * @throws IOException if the terminal could not be written to.
+     */
+    private void scan(SocketChannel channel, int itemID, int quantity, ByteBuffer out) throws IOException {
+      if (!saleInProgress) {
+        controller.startNewSale();
+        saleInProgress = true;
+      }
+      ItemDTO item = controller.scanItem(itemID, quantity);
+      double total = controller.endSale();
+      byte[] description = item.description().getBytes(StandardCharsets.UTF_8);
+      reserve(channel, out, 1 + Integer.BYTES * 2 + Double.BYTES * 2 + Short.BYTES + description.length);
+      out.put(LaneProtocol.OK).putInt(item.itemID()).putDouble(item.price()).putInt(item.VAT()).putDouble(total)
+          .putShort((short) description.length).put(description);
+    }
+
+    /**
+     * Sends the receipt of the last sale completed on this lane. A receipt
+     * larger than the output buffer is written straight to the terminal.
+     *
+     * @param channel The connection to the terminal.
+     * @param out     The output buffer.
+     * @throws IOException if the terminal could not be written to.
+     */
+    private void receipt(SocketChannel channel, ByteBuffer out) throws IOException {
+      SaleDTO sale = lastCompletedSale;
+      if (sale == null) {
+        throw new IllegalStateException("No sale has been completed on this lane.");
+      }
+      byte[] text = renderer.render(sale).getBytes(StandardCharsets.UTF_8);
+      int size = 1 + Integer.BYTES + text.length;
+      if (size > out.capacity()) {
+        flush(channel, out);
+        ByteBuffer large = ByteBuffer.allocate(size).put(LaneProtocol.OK).putInt(text.length).put(text).flip();
+        while (large.hasRemaining()) {
+          channel.write(large);
+        }
+        return;
+      }
+      reserve(channel, out, size);
+      out.put(LaneProtocol.OK).putInt(text.length).put(text);
+    }
+  }
+}
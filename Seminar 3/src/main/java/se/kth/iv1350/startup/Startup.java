@@ -1,9 +1,25 @@
 package se.kth.iv1350.startup;
 
+import se.kth.iv1350.analytics.ReplenishmentLog;
+import se.kth.iv1350.analytics.SalesColumnStore;
+import se.kth.iv1350.analytics.SellRateTracker;
 import se.kth.iv1350.integration.*;
 import se.kth.iv1350.controller.Controller;
+import se.kth.iv1350.metrics.MetricsFileReporter;
+import se.kth.iv1350.metrics.MetricsRegistry;
+import se.kth.iv1350.model.classes.SalePool;
+import se.kth.iv1350.model.promotion.BundlePromotion;
+import se.kth.iv1350.model.promotion.MultiBuyPromotion;
+import se.kth.iv1350.model.promotion.PromotionEngine;
 import se.kth.iv1350.view.View;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 /**
  * The Startup class contains the main method that starts the application.
  * It initializes all system handlers and the controller, and creates the view.
@@ -13,16 +29,235 @@ public class Startup {
    * The application's entry point. Initializes system handlers, the controller,
    * and the view.
    *
-   * @param args The command-line arguments (not used).
+   * @param args The command-line arguments. {@code --metrics <file>} writes the
+   *             operation metrics to the given file in Prometheus text format
+   *             every ten seconds and once more on shutdown,
+   *             and {@code --receipt-spool <file>} spools receipts to the given
+   *             file instead of printing them. {@code --snapshot <file>}
+   *             loads the inventory and discounts from the given catalog
+   *             snapshot, or writes one there if it does not exist yet.
+   *             {@code --receipt-archive <directory>} keeps the receipts of
+   *             completed sales in an archive in the given directory.
+   *             {@code --sale-index <file>} keeps the index of completed
+   *             sales and returns in the given journal file.
    */
   public static void main(String[] args) {
     // Startup flow
     System.out.println("Starting the application..." + "\n");
-    DiscountDBHandler discountDBHandler = new DiscountDBHandler();
-    InventorySys inventorySys = new InventorySys();
+    CatalogSnapshot snapshot = loadSnapshot(optionValue(args, "--snapshot"));
+    DiscountDBHandler discountDBHandler = snapshot.getDiscounts();
+    InventorySys inventorySys = snapshot.getInventory();
     AccountingSys accountingSys = new AccountingSys();
-    Printer printer = new Printer();
-    Controller controller = new Controller(discountDBHandler, inventorySys, accountingSys, printer);
+    MetricsRegistry metrics = new MetricsRegistry();
+    MetricsFileReporter metricsReporter = startMetricsReporter(optionValue(args, "--metrics"), metrics);
+    ReceiptSpooler spooler = openSpooler(optionValue(args, "--receipt-spool"), metrics);
+    Printer printer = new Printer(spooler);
+    Controller controller = new Controller(discountDBHandler, inventorySys, accountingSys, printer, metrics);
+    StockReservations reservations = new StockReservations(inventorySys, TimeUnit.MINUTES.toMillis(15));
+    reservations.registerMetrics(metrics);
+    reservations.start(1, TimeUnit.SECONDS);
+    controller.setStockReservations(reservations);
+    controller.setItemInterner(new ItemInterner());
+    controller.setSalePool(new SalePool(1));
+    CustomerProfileCache customerProfiles = new CustomerProfileCache(discountDBHandler, 10_000);
+    customerProfiles.registerMetrics(metrics);
+    controller.setCustomerProfileCache(customerProfiles);
+    CampaignScheduler campaigns = new CampaignScheduler(discountDBHandler);
+    campaigns.registerMetrics(metrics);
+    campaigns.addPublishListener(customerProfiles::clear);
+    campaigns.start();
+    controller.setPromotionEngine(new PromotionEngine(List.of(
+        new MultiBuyPromotion(1, 5, 3, 2), // bread, 3 for 2
+        new BundlePromotion(2, Map.of(4, 1, 5, 1), 33.0)))); // milk and bread for 33
+    SalesColumnStore salesStore = new SalesColumnStore();
+    controller.addSaleObserver(salesStore);
+    SellRateTracker sellRates = new SellRateTracker(inventorySys);
+    sellRates.addReplenishmentListener(new ReplenishmentLog());
+    controller.addSaleObserver(sellRates);
+    ReceiptArchive archive = openArchive(optionValue(args, "--receipt-archive"), metrics);
+    if (archive != null) {
+      controller.addSaleObserver(archive);
+    }
+    SaleIndex saleIndex = openSaleIndex(optionValue(args, "--sale-index"));
+    if (saleIndex != null) {
+      controller.addSaleObserver(saleIndex);
+    }
     View view = new View(controller);
+    reservations.close();
+    campaigns.close();
+
+    if (spooler != null) {
+      spooler.close();
+      // Receipts the spool file did not take are printed here instead
+      spooler.drainFailedReceipts().forEach(System.out::print);
+    }
+    closeArchive(archive);
+    closeSaleIndex(saleIndex);
+
+    if (metricsReporter != null) {
+      // Closing the reporter writes one final snapshot
+      metricsReporter.close();
+    }
+  }
+
+  /**
+   * Starts writing the operation metrics to the given file every ten seconds.
+   *
+   * @param metricsFile The file to write the metrics to, or {@code null}.
+   * @param metrics     The {@link MetricsRegistry} to report.
+   * @return The started {@link MetricsFileReporter}, or {@code null} if no
+   *         file is given.
+   */
+  private static MetricsFileReporter startMetricsReporter(String metricsFile, MetricsRegistry metrics) {
+    if (metricsFile == null) {
+      return null;
+    }
+    MetricsFileReporter reporter = new MetricsFileReporter(metrics, Path.of(metricsFile),
+        MetricsFileReporter.Format.PROMETHEUS);
+    reporter.start(10, TimeUnit.SECONDS);
+    return reporter;
+  }
+
+  /**
+   * Loads the inventory and discounts from a catalog snapshot. If the
+   * snapshot does not exist, the built-in inventory and discounts are used and
+   * saved to it, so the next start can use the snapshot.
+   *
+   * @param snapshotFile The snapshot file, or {@code null}.
+   * @return The loaded {@link CatalogSnapshot}, or one holding the built-in
+   *         inventory and discounts.
+   */
+  private static CatalogSnapshot loadSnapshot(String snapshotFile) {
+    if (snapshotFile != null && Files.exists(Path.of(snapshotFile))) {
+      try {
+        return CatalogSnapshot.read(Path.of(snapshotFile));
+      } catch (IOException | IllegalArgumentException e) {
+        System.err.println("Error: Could not load catalog snapshot, using built-in catalog. " + e.getMessage());
+      }
+    }
+    InventorySys inventorySys = new InventorySys();
+    DiscountDBHandler discountDBHandler = new DiscountDBHandler();
+    if (snapshotFile != null) {
+      try {
+        CatalogSnapshot.write(Path.of(snapshotFile), inventorySys, discountDBHandler);
+      } catch (IOException e) {
+        System.err.println("Error: Could not write catalog snapshot. " + e.getMessage());
+      }
+    }
+    return CatalogSnapshot.of(inventorySys, discountDBHandler);
+  }
+
+  /**
+   * Opens a receipt spool that writes to the given file.
+   *
+   * @param spoolFile The file to spool receipts to, or {@code null}.
+   * @param metrics   The {@link MetricsRegistry} to report the spool's queue
+   *                  depth to.
+   * @return The {@link ReceiptSpooler}, or {@code null} if no file is given or
+   *         it could not be opened.
+   */
+  private static ReceiptSpooler openSpooler(String spoolFile, MetricsRegistry metrics) {
+    if (spoolFile == null) {
+      return null;
+    }
+    try {
+      ReceiptSpooler spooler = ReceiptSpooler.toFile(Path.of(spoolFile));
+      spooler.registerMetrics(metrics);
+      return spooler;
+    } catch (IOException e) {
+      System.err.println("Error: Could not open receipt spool, printing to console. " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Opens the receipt archive in the given directory.
+   *
+   * @param archiveDirectory The directory of the archive, or {@code null}.
+   * @param metrics          The {@link MetricsRegistry} to report the
+   *                         archive's size to.
+   * @return The {@link ReceiptArchive}, or {@code null} if no directory is
+   *         given or it could not be opened.
+   */
+  private static ReceiptArchive openArchive(String archiveDirectory, MetricsRegistry metrics) {
+    if (archiveDirectory == null) {
+      return null;
+    }
+    try {
+      ReceiptArchive archive = ReceiptArchive.open(Path.of(archiveDirectory));
+      archive.registerMetrics(metrics);
+      return archive;
+    } catch (IOException e) {
+      System.err.println("Error: Could not open receipt archive, receipts are not kept. " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Closes the receipt archive, if one was opened.
+   *
+   * @param archive The {@link ReceiptArchive}, or {@code null}.
+   */
+  private static void closeArchive(ReceiptArchive archive) {
+    if (archive == null) {
+      return;
+    }
+    try {
+      archive.close();
+    } catch (IOException e) {
+      System.err.println("Error: Could not close receipt archive. " + e.getMessage());
+    }
+  }
+
+  /**
+   * Opens the index of completed sales kept in the given journal file.
+   *
+   * @param journalFile The journal file, or {@code null}.
+   * @return The {@link SaleIndex}, or {@code null} if no file is given or it
+   *         could not be opened.
+   */
+  private static SaleIndex openSaleIndex(String journalFile) {
+    if (journalFile == null) {
+      return null;
+    }
+    try {
+      return SaleIndex.open(Path.of(journalFile));
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println("Error: Could not open sale index, sales are not indexed. " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Closes the sale index, if one was opened.
+   *
+   * @param saleIndex The {@link SaleIndex}, or {@code null}.
+   */
+  private static void closeSaleIndex(SaleIndex saleIndex) {
+    if (saleIndex == null) {
+      return;
+    }
+    try {
+      saleIndex.close();
+    } catch (IOException e) {
+      System.err.println("Error: Could not close sale index. " + e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the value that follows the given option in the command-line
+   * arguments.
+   *
+   * @param args   The command-line arguments.
+   * @param option The option to look for, e.g. {@code --metrics}.
+   * @return The value of the option, or {@code null} if it is not given.
+   */
+  private static String optionValue(String[] args, String option) {
+    for (int i = 0; i < args.length - 1; i++) {
+      if (args[i].equals(option)) {
+        return args[i + 1];
+      }
+    }
+    return null;
   }
 }
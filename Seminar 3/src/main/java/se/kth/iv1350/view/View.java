@@ -33,7 +33,7 @@ public class View {
   private String constructItemInfo(ItemDTO item) {
     return "Item ID: " + item.itemID() + "\n" +
         "Item description: " + item.description() + '\n' +
-        "Item price: " + item.price() * (1 + (item.VAT() / 100)) + " SEK\n" +
+        "Item price: " + item.grossPrice() + " SEK\n" +
         "VAT: " + item.VAT() + "%";
   }
 
@@ -0,0 +1,35 @@
+package se.kth.iv1350.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link ReplenishmentLog} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Each alert is written as one line to the given stream.</li>
+ * </ul>
+ */
+class ReplenishmentLogTest {
+  @Test
+  void testAlertWrittenAsOneLine() {
+    Locale defaultLocale = Locale.getDefault();
+    Locale.setDefault(Locale.US);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ReplenishmentLog log = new ReplenishmentLog(new PrintStream(out, true, StandardCharsets.UTF_8));
+      log.replenishmentNeeded(new ReplenishmentEvent(7, 3, 12.5, 60_000L, 0L));
+
+      assertEquals("Replenishment needed for item 7: 3 left, selling 12.5 per hour." + System.lineSeparator(),
+          out.toString(StandardCharsets.UTF_8));
+    } finally {
+      Locale.setDefault(defaultLocale);
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package se.kth.iv1350.analytics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.util.Date;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link SalesColumnStore} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Net, VAT and quantity are stored in minor units per line.</li>
+ * <li>The sale discount is split over the lines without losing any öre.</li>
+ * <li>Reports group by item, hour, and item and hour, and respect the time
+ * range and item filter.</li>
+ * <li>Reports spanning many chunks match a sequential sum.</li>
+ * <li>Compressed chunks give the same results and use less memory.</li>
+ * </ul>
+ */
+class SalesColumnStoreTest {
+  private static final long HOUR = 3_600_000L;
+  private static final long DAY_START = 1_710_000_000_000L / HOUR * HOUR;
+
+  private SalesColumnStore store;
+  private ItemDTO milk;
+  private ItemDTO bread;
+
+  @BeforeEach
+  void setUp() {
+    store = new SalesColumnStore();
+    milk = new ItemDTO(1, "Milk", 10.0, 12);
+    bread = new ItemDTO(2, "Bread", 20.0, 6);
+  }
+
+  private SaleDTO sale(long timestamp, double discount, SaleItemDTO... lines) {
+    return new SaleDTO(List.of(lines), new Date(timestamp), discount, 0.0, null);
+  }
+
+  @Test
+  void testLineAmountsInMinorUnits() {
+    store.append(sale(DAY_START, 0.0, new SaleItemDTO(milk, 3)));
+    GroupedTotals.Totals totals = store.aggregate(DAY_START, DAY_START + HOUR, SalesColumnStore.GroupBy.ITEM).get(1);
+    assertEquals(3, totals.quantity());
+    assertEquals(3000, totals.netMinor());
+    assertEquals(360, totals.vatMinor());
+    assertEquals(3360, totals.revenueMinor());
+  }
+
+  @Test
+  void testDiscountIsSplitOverLinesExactly() {
+    store.append(sale(DAY_START, 10.01, new SaleItemDTO(milk, 1), new SaleItemDTO(bread, 1)));
+    GroupedTotals totals = store.aggregate(DAY_START, DAY_START + HOUR, SalesColumnStore.GroupBy.ITEM);
+    long milkDiscount = totals.get(1).discountMinor();
+    long breadDiscount = totals.get(2).discountMinor();
+    assertEquals(1001, milkDiscount + breadDiscount);
+    assertTrue(breadDiscount > milkDiscount, "The more expensive line should get the larger share");
+  }
+
+  @Test
+  void testRevenuePerItemPerHour() {
+    store.append(sale(DAY_START + 5, 0.0, new SaleItemDTO(milk, 1)));
+    store.append(sale(DAY_START + HOUR + 5, 0.0, new SaleItemDTO(milk, 2), new SaleItemDTO(bread, 1)));
+    store.append(sale(DAY_START + 2 * HOUR, 0.0, new SaleItemDTO(bread, 1)));
+
+    SalesColumnStore.GroupBy groupBy = SalesColumnStore.GroupBy.ITEM_AND_HOUR;
+    GroupedTotals totals = store.aggregate(DAY_START, DAY_START + 2 * HOUR, groupBy);
+    assertEquals(3, totals.size());
+    assertEquals(1, totals.get(groupBy.keyOf(1, DAY_START)).quantity());
+    assertEquals(2, totals.get(groupBy.keyOf(1, DAY_START + HOUR)).quantity());
+    assertEquals(1, totals.get(groupBy.keyOf(2, DAY_START + HOUR)).quantity());
+    assertEquals(0, totals.get(groupBy.keyOf(2, DAY_START + 2 * HOUR)).quantity(), "Outside the time range");
+  }
+
+  @Test
+  void testItemFilter() {
+    store.append(sale(DAY_START, 0.0, new SaleItemDTO(milk, 1), new SaleItemDTO(bread, 4)));
+    GroupedTotals totals = store.aggregate(DAY_START, DAY_START + HOUR, 2, SalesColumnStore.GroupBy.HOUR);
+    assertEquals(4, totals.get(SalesColumnStore.GroupBy.HOUR.keyOf(2, DAY_START)).quantity());
+  }
+
+  @Test
+  void testParallelScanOverManyChunks() {
+    int sales = ColumnChunk.CAPACITY * 3 + 17;
+    long expectedQuantity = 0;
+    for (int i = 0; i < sales; i++) {
+      int quantity = 1 + i % 5;
+      store.append(sale(DAY_START + i, 0.0, new SaleItemDTO(i % 2 == 0 ? milk : bread, quantity)));
+      expectedQuantity += quantity;
+    }
+    GroupedTotals totals = store.aggregate(DAY_START, DAY_START + sales, SalesColumnStore.GroupBy.HOUR);
+    assertEquals(sales, store.lineCount());
+    assertEquals(expectedQuantity, totals.get(SalesColumnStore.GroupBy.HOUR.keyOf(0, DAY_START)).quantity());
+  }
+
+  @Test
+  void testCompressedChunksGiveSameResults() {
+    int sales = ColumnChunk.CAPACITY * 2 + 100;
+    for (int i = 0; i < sales; i++) {
+      store.append(sale(DAY_START + i * 10L, 0.5, new SaleItemDTO(i % 3 == 0 ? milk : bread, 1 + i % 7)));
+    }
+    GroupedTotals before = store.aggregate(DAY_START, DAY_START + HOUR * 24, SalesColumnStore.GroupBy.ITEM);
+    long memoryBefore = store.memoryBytes();
+
+    assertEquals(2, store.compressOlderThan(DAY_START + HOUR * 24));
+    GroupedTotals after = store.aggregate(DAY_START, DAY_START + HOUR * 24, SalesColumnStore.GroupBy.ITEM);
+
+    assertEquals(before.get(1), after.get(1));
+    assertEquals(before.get(2), after.get(2));
+    assertTrue(store.memoryBytes() < memoryBefore / 2, "Compression should at least halve the memory use");
+  }
+
+  @Test
+  void testEmptyStore() {
+    GroupedTotals totals = store.aggregate(0, Long.MAX_VALUE, SalesColumnStore.GroupBy.ITEM);
+    assertEquals(0, totals.size());
+  }
+}
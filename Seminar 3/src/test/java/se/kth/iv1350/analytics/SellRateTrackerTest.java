@@ -0,0 +1,130 @@
+package se.kth.iv1350.analytics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link SellRateTracker} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Sell rates are measured over the sliding window and expire with it.</li>
+ * <li>The best selling items are reported in order and limited to top-K.</li>
+ * <li>A replenishment event is raised when the estimated stock-out is closer
+ * than the threshold, and only once per window.</li>
+<li>Items whose sales have left the window give way to new top sellers.</li>
+ * <li>Negative stock is reported as an immediate stock-out.</li>
+ * </ul>
+ */
+class SellRateTrackerTest {
+  private static final long HOUR = 3_600_000L;
+
+  private long now;
+  private Map<Integer, Integer> stock;
+  private List<ReplenishmentEvent> events;
+  private SellRateTracker tracker;
+
+  @BeforeEach
+  void setUp() {
+    now = 1_710_000_000_000L;
+    stock = new HashMap<>();
+    events = new ArrayList<>();
+    tracker = new SellRateTracker(itemID -> stock.getOrDefault(itemID, 1000), HOUR, 2 * HOUR, 2, () -> now);
+    tracker.addReplenishmentListener(events::add);
+  }
+
+  private void sell(int itemID, int quantity) {
+    ItemDTO item = new ItemDTO(itemID, "Item " + itemID, 10.0, 25);
+    tracker.completedSale(new SaleDTO(List.of(new SaleItemDTO(item, quantity)), new Date(now), 0.0, 0.0, null));
+  }
+
+  @Test
+  void testRateOverWindow() {
+    sell(1, 10);
+    now += HOUR / 2;
+    sell(1, 20);
+    assertEquals(30.0, tracker.unitsPerHour(1), 0.001);
+  }
+
+  @Test
+  void testSalesExpireWithWindow() {
+    sell(1, 10);
+    now += 2 * HOUR;
+    assertEquals(0.0, tracker.unitsPerHour(1), 0.001);
+    assertTrue(tracker.topSellers().isEmpty());
+  }
+
+  @Test
+  void testTopSellersOrderedAndBounded() {
+    sell(1, 5);
+    sell(2, 50);
+    sell(3, 20);
+    List<SellRateTracker.ItemRate> top = tracker.topSellers();
+    assertEquals(2, top.size());
+    assertEquals(2, top.get(0).itemID());
+    assertEquals(3, top.get(1).itemID());
+  }
+
+  @Test
+  void testNewTopSellerAfterWindowMoves() {
+    sell(1, 100);
+    sell(2, 80);
+    now += 5 * HOUR;
+    sell(3, 50);
+    List<SellRateTracker.ItemRate> top = tracker.topSellers();
+    assertEquals(1, top.size());
+    assertEquals(3, top.get(0).itemID());
+    assertEquals(50.0, top.get(0).unitsPerHour(), 0.001);
+
+    sell(4, 10);
+    top = tracker.topSellers();
+    assertEquals(2, top.size());
+    assertEquals(4, top.get(1).itemID());
+  }
+
+  @Test
+  void testReplenishmentEventRaisedOnce() {
+    stock.put(1, 100);
+    sell(1, 10);
+    assertTrue(events.isEmpty(), "Ten hours of stock left");
+    stock.put(1, 30);
+    sell(1, 30);
+    assertEquals(1, events.size());
+    ReplenishmentEvent event = events.get(0);
+    assertEquals(1, event.itemID());
+    assertEquals(30, event.stock());
+    assertEquals(HOUR * 30 / 40, event.millisUntilStockOut());
+
+    sell(1, 1);
+    assertEquals(1, events.size(), "Already reported during this window");
+    now += HOUR;
+    stock.put(1, 1);
+    sell(1, 1);
+    assertEquals(2, events.size());
+  }
+
+  @Test
+  void testNegativeStockIsImmediateStockOut() {
+    stock.put(1, -3);
+    sell(1, 1);
+    assertEquals(1, events.size());
+    assertEquals(0, events.get(0).millisUntilStockOut());
+    assertEquals(-3, events.get(0).stock());
+  }
+
+  @Test
+  void testInvalidTopK() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new SellRateTracker(itemID -> 0, HOUR, HOUR, 0, () -> now));
+  }
+}
@@ -0,0 +1,57 @@
+package se.kth.iv1350.benchmark;
+
+import se.kth.iv1350.integration.CatalogImporter;
+import se.kth.iv1350.integration.InventorySys;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Measures how long it takes to load a large catalog and stock file with the
+ * {@link CatalogImporter}.
+ * <p>
+ * This is not a unit test. Run it from the IDE or with
+ * {@code java -Xmx4g -cp target/classes:target/test-classes
+ * se.kth.iv1350.benchmark.CatalogImportBenchmark [rows]}.
+ */
+public class CatalogImportBenchmark {
+  /**
+   * Writes a catalog and a stock file and imports them a few times.
+   *
+   * @param args The number of rows to generate, 5 000 000 by default.
+   * @throws IOException if the files could not be written or read.
+   */
+  public static void main(String[] args) throws IOException {
+    int rows = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+    Path directory = Files.createTempDirectory("catalog-import");
+    Path catalog = directory.resolve("catalog.csv");
+    Path stock = directory.resolve("stock.csv");
+    Random random = new Random(42);
+    try (BufferedWriter catalogWriter = Files.newBufferedWriter(catalog);
+        BufferedWriter stockWriter = Files.newBufferedWriter(stock)) {
+      catalogWriter.write("itemID,description,price,VAT\n");
+      stockWriter.write("itemID,quantity\n");
+      for (int i = 0; i < rows; i++) {
+        int itemID = 1_000_000 + i;
+        catalogWriter.write(itemID + ",Item " + itemID + " " + random.nextInt(100) + ","
+            + random.nextInt(500) + "." + (10 + random.nextInt(90)) + "," + (i % 3 == 0 ? 12 : 25) + "\n");
+        stockWriter.write(itemID + "," + random.nextInt(1000) + "\n");
+      }
+    }
+    System.out.printf("Wrote %,d rows, %,d MB%n", rows, (Files.size(catalog) + Files.size(stock)) >> 20);
+
+    CatalogImporter importer = new CatalogImporter();
+    for (int run = 0; run < 3; run++) {
+      long start = System.nanoTime();
+      InventorySys inventory = importer.importInventory(catalog, stock);
+      System.out.printf("Run %d: %,d items in %d ms%n", run, inventory.getItems().size(),
+          (System.nanoTime() - start) / 1_000_000);
+    }
+    Files.delete(catalog);
+    Files.delete(stock);
+    Files.delete(directory);
+  }
+}
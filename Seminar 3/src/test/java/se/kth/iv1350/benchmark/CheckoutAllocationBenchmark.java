@@ -0,0 +1,122 @@
+package se.kth.iv1350.benchmark;
+
+import se.kth.iv1350.controller.Controller;
+import se.kth.iv1350.integration.AccountingSys;
+import se.kth.iv1350.integration.DiscountDBHandler;
+import se.kth.iv1350.integration.InventorySys;
+import se.kth.iv1350.integration.Printer;
+import se.kth.iv1350.model.classes.Receipt;
+import se.kth.iv1350.model.classes.SalePool;
+import se.kth.iv1350.model.dto.ItemDTO;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the bytes allocated on the heap per checkout by a
+ * {@link Controller}, with new sales for every checkout and with sales taken
+ * from a {@link SalePool}.
+ * <p>
+ * Each checkout starts a sale, scans eight lines of five items, requests
+ * discounts and pays. It is measured once with the receipt printed, to a
+ * discarded stream, and once with a printer that ignores receipts, which
+ * leaves only the allocations of the sale itself and the data handed to the
+ * external systems. The allocations are read from the thread allocation
+ * counter of the JVM. All four are warmed up before any is measured, so that
+ * the code is compiled the same way for each. Escape analysis removes some of
+ * the short-lived objects of a checkout, depending on how the code was
+ * inlined, so the totals move a little between runs; with
+ * {@code -XX:-DoEscapeAnalysis} every allocation is counted and the
+ * difference made by the pool is exact.
+ * <p>
+ * This is not a unit test. Run it from the IDE or with
+ * {@code java -cp target/classes:target/test-classes
+ * se.kth.iv1350.benchmark.CheckoutAllocationBenchmark [checkouts]}.
+ */
+public class CheckoutAllocationBenchmark {
+  private static final int[] SCANS = {1, 2, 3, 4, 5, 1, 2, 5};
+
+  /**
+   * Runs the measurements.
+   *
+   * @param args The number of measured checkouts in each run, 200 000 by
+   *             default.
+   */
+  public static void main(String[] args) {
+    int checkouts = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    PrintStream console = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    try {
+      List<Controller> controllers = new ArrayList<>();
+      for (boolean printReceipts : new boolean[] {true, false}) {
+        for (boolean pooled : new boolean[] {false, true}) {
+          controllers.add(controller(printReceipts, pooled));
+        }
+      }
+      for (int round = 0; round < 3; round++) {
+        for (Controller controller : controllers) {
+          run(controller, checkouts / 2);
+        }
+      }
+      for (int i = 0; i < controllers.size(); i++) {
+        long before = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        run(controllers.get(i), checkouts);
+        long nanos = System.nanoTime() - start;
+        long bytes = threads.getCurrentThreadAllocatedBytes() - before;
+        console.printf("%-16s %-9s: %,6d bytes per checkout, %,6.2f us per checkout%n",
+            i < 2 ? "With receipts" : "Without receipts", i % 2 == 1 ? "sale pool" : "new sales",
+            bytes / checkouts, nanos / 1000.0 / checkouts);
+      }
+    } finally {
+      System.setOut(console);
+    }
+  }
+
+  /**
+   * Creates a controller with an inventory that does not run out of stock.
+   *
+   * @param printReceipts {@code true} to render and print every receipt.
+   * @param pooled        {@code true} to take sales from a {@link SalePool}.
+   * @return The controller.
+   */
+  private static Controller controller(boolean printReceipts, boolean pooled) {
+    List<ItemDTO> items = new ArrayList<>(new InventorySys().getItems().stream()
+        .map(InventorySys.InventoryItem::getItem).toList());
+    int[] quantities = new int[items.size()];
+    Arrays.fill(quantities, Integer.MAX_VALUE);
+    Printer printer = printReceipts ? new Printer() : new Printer() {
+      @Override
+      public void printReceipt(Receipt receipt) {
+      }
+    };
+    Controller controller = new Controller(new DiscountDBHandler(), new InventorySys(items, quantities),
+        new AccountingSys(), printer);
+    if (pooled) {
+      controller.setSalePool(new SalePool(1));
+    }
+    return controller;
+  }
+
+  /**
+   * Runs checkouts.
+   *
+   * @param controller The controller.
+   * @param checkouts  The number of checkouts.
+   */
+  private static void run(Controller controller, int checkouts) {
+    for (int checkout = 0; checkout < checkouts; checkout++) {
+      controller.startNewSale();
+      for (int itemID : SCANS) {
+        controller.scanItem(itemID, 1);
+      }
+      controller.signalDiscountRequest(checkout % 4);
+      controller.setAmountPaid(1_000.0);
+    }
+  }
+}
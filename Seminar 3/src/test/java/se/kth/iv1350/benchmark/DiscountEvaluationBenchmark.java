@@ -0,0 +1,79 @@
+package se.kth.iv1350.benchmark;
+
+import se.kth.iv1350.integration.DiscountDBHandler;
+import se.kth.iv1350.model.dto.DiscountDTO;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares evaluating the item discounts of a sale on one thread with
+ * splitting it across the common fork-join pool, for sales of growing size,
+ * to find the number of lines where splitting starts to pay off.
+ * <p>
+ * This is not a unit test. Run it from the IDE or with
+ * {@code java -cp target/classes:target/test-classes
+ * se.kth.iv1350.benchmark.DiscountEvaluationBenchmark}.
+ */
+public class DiscountEvaluationBenchmark {
+  private static final int ITEMS = 100_000;
+
+  /**
+   * Times both modes for each sale size and prints the results.
+   *
+   * @param args Not used.
+   */
+  public static void main(String[] args) {
+    Random random = new Random(42);
+    List<DiscountDTO> discounts = new ArrayList<>();
+    for (int itemID = 0; itemID < ITEMS; itemID++) {
+      for (int rule = 0; rule < 1 + itemID % 3; rule++) {
+        discounts.add(new DiscountDTO(discounts.size(), itemID, -1, -1, 0, 1 + random.nextInt(30), true));
+      }
+    }
+    DiscountDBHandler handler = new DiscountDBHandler(discounts);
+    System.out.printf("%d processors%n%10s %14s %14s %8s%n", Runtime.getRuntime().availableProcessors(), "lines",
+        "sequential us", "parallel us", "speedup");
+    for (int lines = 1_000; lines <= 1_000_000; lines *= 2) {
+      List<SaleItemDTO> saleItems = new ArrayList<>(lines);
+      for (int line = 0; line < lines; line++) {
+        ItemDTO item = new ItemDTO(random.nextInt(ITEMS * 2), "Item", random.nextInt(100_000) / 100.0, 25);
+        saleItems.add(new SaleItemDTO(item, 1 + random.nextInt(10)));
+      }
+      SaleDTO sale = new SaleDTO(saleItems, null, 0.0, 0.0, null);
+      handler.setParallelThreshold(Integer.MAX_VALUE);
+      double sequentialResult = handler.getDiscounts(sale);
+      long sequential = time(handler, sale);
+      handler.setParallelThreshold(0);
+      double parallelResult = handler.getDiscounts(sale);
+      long parallel = time(handler, sale);
+      if (sequentialResult != parallelResult) {
+        throw new IllegalStateException("Results differ: " + sequentialResult + " and " + parallelResult);
+      }
+      System.out.printf("%10d %14d %14d %8.2f%n", lines, sequential / 1_000, parallel / 1_000,
+          (double) sequential / parallel);
+    }
+  }
+
+  /**
+   * Returns the best time of several evaluations of a sale.
+   *
+   * @param handler The {@link DiscountDBHandler} to evaluate with.
+   * @param sale    The sale to evaluate.
+   * @return The fastest evaluation, in nanoseconds.
+   */
+  private static long time(DiscountDBHandler handler, SaleDTO sale) {
+    long best = Long.MAX_VALUE;
+    int runs = Math.max(5, 2_000_000 / sale.saleItems().size());
+    for (int run = 0; run < runs; run++) {
+      long start = System.nanoTime();
+      handler.getDiscounts(sale);
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best;
+  }
+}
@@ -0,0 +1,115 @@
+package se.kth.iv1350.benchmark;
+
+import se.kth.iv1350.controller.Controller;
+import se.kth.iv1350.integration.AccountingSys;
+import se.kth.iv1350.integration.DiscountDBHandler;
+import se.kth.iv1350.integration.InventorySys;
+import se.kth.iv1350.integration.Printer;
+import se.kth.iv1350.integration.ReceiptTemplate;
+import se.kth.iv1350.server.LaneClient;
+import se.kth.iv1350.server.LaneResponse;
+import se.kth.iv1350.server.LaneServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how many scans per second a {@link LaneServer} handles over a
+ * loopback socket, with several terminals that each pipeline whole sales.
+ * <p>
+ * This is not a unit test. Run it from the IDE or with
+ * {@code java -cp target/classes:target/test-classes
+ * se.kth.iv1350.benchmark.LaneServerLoadTest [terminals] [seconds]}.
+ */
+public class LaneServerLoadTest {
+  private static final int SCANS_PER_SALE = 100;
+
+  /**
+   * Runs the terminals for a warm-up and then for the measured time, and
+   * prints the throughput.
+   *
+   * @param args The number of terminals, 4 by default, and the measured
+   *             time in seconds, 5 by default.
+   * @throws Exception if the server could not be started or a terminal
+   *                   failed.
+   */
+  public static void main(String[] args) throws Exception {
+    int terminals = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    // The inventory prints every lookup and the printer every receipt
+    PrintStream console = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    try (LaneServer server = new LaneServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+        () -> new Controller(new DiscountDBHandler(), new InventorySys(), new AccountingSys(), new Printer()),
+        ReceiptTemplate.defaultTemplate().compile())) {
+      InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+      run(address, terminals, 2);
+      long start = System.nanoTime();
+      long scans = run(address, terminals, seconds);
+      double elapsed = (System.nanoTime() - start) / 1e9;
+      System.setOut(console);
+      System.out.printf("%d terminals, %d scans per sale: %,.0f scans/s (%,d scans in %.1f s, %d cores)%n",
+          terminals, SCANS_PER_SALE, scans / elapsed, scans, elapsed, Runtime.getRuntime().availableProcessors());
+    }
+  }
+
+  /**
+   * Runs the terminals, each on a thread of its own, for the given time.
+   *
+   * @param address   The address of the server.
+   * @param terminals The number of terminals.
+   * @param seconds   How long to run.
+   * @return The number of scans made.
+   * @throws InterruptedException if interrupted while waiting for the
+   *                              terminals.
+   */
+  private static long run(InetSocketAddress address, int terminals, int seconds) throws InterruptedException {
+    long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+    AtomicLong scans = new AtomicLong();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < terminals; i++) {
+      threads.add(Thread.ofPlatform().start(() -> {
+        try (LaneClient client = new LaneClient(address)) {
+          while (System.nanoTime() < deadline) {
+            scans.addAndGet(sale(client));
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return scans.get();
+  }
+
+  /**
+   * Sends a whole sale at once and then reads all the responses.
+   *
+   * @param client The terminal.
+   * @return The number of scans in the sale.
+   * @throws IOException if the server could not be reached.
+   */
+  private static int sale(LaneClient client) throws IOException {
+    client.sendStartSale();
+    for (int i = 0; i < SCANS_PER_SALE; i++) {
+      client.sendScan(1 + i % 5, 1);
+    }
+    client.sendPay(10_000);
+    while (client.getPendingCount() > 0) {
+      LaneResponse response = client.receive();
+      if (!response.ok()) {
+        throw new IllegalStateException(response.message());
+      }
+    }
+    return SCANS_PER_SALE;
+  }
+}
@@ -0,0 +1,130 @@
+package se.kth.iv1350.benchmark;
+
+import se.kth.iv1350.integration.InventorySys;
+import se.kth.iv1350.integration.OffHeapInventory;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the garbage collection pauses of a register with a very large
+ * catalog kept on the heap, in an {@link InventorySys}, and kept off the heap,
+ * in an {@link OffHeapInventory}.
+ * <p>
+ * For each inventory, the benchmark scans random items into short sales,
+ * which fills the young generation with garbage, and forces a few full
+ * collections. It reports the young collections and their total time, and
+ * the median and worst full collection. The catalog is the only long-lived
+ * data, so the difference is the cost of the collector walking it.
+ * <p>
+ * This is not a unit test. Run it from the IDE or with
+ * {@code java -Xmx2g -cp target/classes:target/test-classes
+ * se.kth.iv1350.benchmark.OffHeapInventoryGcBenchmark [items] [sales]}.
+ */
+public class OffHeapInventoryGcBenchmark {
+  private static final int FULL_COLLECTIONS = 5;
+
+  /**
+   * Runs the comparison.
+   *
+   * @param args The number of catalog items, 3 000 000 by default, and of
+   *             sales scanned against each inventory, 2 000 000 by default.
+   */
+  public static void main(String[] args) {
+    int itemCount = args.length > 0 ? Integer.parseInt(args[0]) : 3_000_000;
+    int sales = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+    PrintStream console = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    try {
+      InventorySys onHeap = new InventorySys(catalog(itemCount), new int[itemCount]);
+      console.println(measure("On heap", onHeap, itemCount, sales));
+      onHeap = null;
+      System.gc();
+      try (OffHeapInventory offHeap = new OffHeapInventory(catalog(itemCount), new int[itemCount])) {
+        console.println(measure("Off heap", offHeap, itemCount, sales));
+        console.printf("Off-heap table: %,d MB%n", offHeap.getByteSize() >> 20);
+      }
+    } finally {
+      System.setOut(console);
+    }
+  }
+
+  /**
+   * Creates a catalog of items.
+   *
+   * @param itemCount The number of items.
+   * @return The items.
+   */
+  private static List<ItemDTO> catalog(int itemCount) {
+    List<ItemDTO> items = new ArrayList<>(itemCount);
+    for (int itemID = 0; itemID < itemCount; itemID++) {
+      items.add(new ItemDTO(itemID, "Item number " + itemID, 1 + itemID % 500, itemID % 3 == 0 ? 12 : 25));
+    }
+    return items;
+  }
+
+  /**
+   * Scans sales against an inventory and measures the collections meanwhile.
+   *
+   * @param name      The name of the inventory in the report.
+   * @param inventory The inventory.
+   * @param itemCount The number of items in the inventory.
+   * @param sales     The number of sales to scan.
+   * @return The report.
+   */
+  private static String measure(String name, InventorySys inventory, int itemCount, int sales) {
+    System.gc();
+    Random random = new Random(42);
+    long[] before = collections();
+    long start = System.nanoTime();
+    long checksum = 0;
+    for (int sale = 0; sale < sales; sale++) {
+      List<SaleItemDTO> lines = new ArrayList<>(4);
+      for (int line = 0; line < 4; line++) {
+        lines.add(new SaleItemDTO(inventory.getItem(random.nextInt(itemCount)), 1));
+      }
+      SaleDTO saleDTO = new SaleDTO(lines, new Date(), 0.0, 0.0, null);
+      checksum += saleDTO.saleItems().get(0).item().grossCents();
+    }
+    long scanMillis = (System.nanoTime() - start) / 1_000_000;
+    long[] after = collections();
+
+    long[] fullMillis = new long[FULL_COLLECTIONS];
+    for (int i = 0; i < FULL_COLLECTIONS; i++) {
+      long begin = System.nanoTime();
+      System.gc();
+      fullMillis[i] = (System.nanoTime() - begin) / 1_000_000;
+    }
+    Arrays.sort(fullMillis);
+    Runtime runtime = Runtime.getRuntime();
+    return String.format("%-8s: %,d sales in %,d ms, %d collections taking %,d ms, full collection median %,d ms"
+        + " max %,d ms, %,d MB heap in use (checksum %d)", name, sales, scanMillis, after[0] - before[0],
+        after[1] - before[1], fullMillis[FULL_COLLECTIONS / 2], fullMillis[FULL_COLLECTIONS - 1],
+        (runtime.totalMemory() - runtime.freeMemory()) >> 20, checksum);
+  }
+
+  /**
+   * Returns the number of collections so far and their total time.
+   *
+   * @return The count and the time in milliseconds.
+   */
+  private static long[] collections() {
+    long count = 0;
+    long millis = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, collector.getCollectionCount());
+      millis += Math.max(0, collector.getCollectionTime());
+    }
+    return new long[] {count, millis};
+  }
+}
@@ -0,0 +1,93 @@
+package se.kth.iv1350.benchmark;
+
+import se.kth.iv1350.controller.Controller;
+import se.kth.iv1350.integration.AccountingSys;
+import se.kth.iv1350.integration.DiscountDBHandler;
+import se.kth.iv1350.integration.InventorySys;
+import se.kth.iv1350.integration.Printer;
+import se.kth.iv1350.integration.SaleReplicator;
+import se.kth.iv1350.integration.SaleStandby;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+/**
+ * Measures how much replicating every change to a {@link SaleStandby} over a
+ * loopback socket adds to the latency of {@code Controller.scanItem}.
+ * <p>
+ * This is not a unit test. Run it from the IDE or with
+ * {@code java -cp target/classes:target/test-classes
+ * se.kth.iv1350.benchmark.ReplicationLatencyBenchmark [scans]}.
+ */
+public class ReplicationLatencyBenchmark {
+  private static final int SCANS_PER_SALE = 50;
+
+  /**
+   * Times scans without and with replication and prints the percentiles.
+   *
+   * @param args The number of timed scans, 200 000 by default.
+   * @throws IOException if the standby could not be started.
+   */
+  public static void main(String[] args) throws IOException {
+    int scans = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+    // The inventory prints every lookup, which would dwarf what is measured
+    PrintStream console = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    InventorySys inventory = new InventorySys();
+    Controller plain = new Controller(new DiscountDBHandler(), inventory, new AccountingSys(), new Printer());
+    long[] without = time(plain, scans);
+
+    try (SaleStandby standby = new SaleStandby(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        SaleReplicator replicator = SaleReplicator.connect(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), standby.getPort()))) {
+      Controller replicated = new Controller(new DiscountDBHandler(), inventory, new AccountingSys(), new Printer());
+      replicated.setSaleReplicator(replicator);
+      long[] with = time(replicated, scans);
+      System.setOut(console);
+      System.out.printf("%-20s %8s %8s %8s%n", "scanItem (us)", "p50", "p99", "p99.9");
+      print("without replication", without);
+      print("with replication", with);
+      System.out.printf("Standby received %,d frames%n", standby.getFramesReceived());
+    }
+  }
+
+  /**
+   * Times scans, starting a new sale every {@value #SCANS_PER_SALE} scans,
+   * after a warm-up of the same length.
+   *
+   * @param controller The {@link Controller} to scan with.
+   * @param scans      The number of timed scans.
+   * @return The latency of every timed scan in nanoseconds, sorted.
+   */
+  private static long[] time(Controller controller, int scans) {
+    long[] latencies = new long[scans];
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < scans; i++) {
+        if (i % SCANS_PER_SALE == 0) {
+          controller.startNewSale();
+        }
+        long start = System.nanoTime();
+        controller.scanItem(1 + i % 5, 1);
+        latencies[i] = System.nanoTime() - start;
+      }
+    }
+    controller.abandonSale();
+    Arrays.sort(latencies);
+    return latencies;
+  }
+
+  /**
+   * Prints the percentiles of sorted latencies in microseconds.
+   *
+   * @param label     The label of the line.
+   * @param latencies The sorted latencies in nanoseconds.
+   */
+  private static void print(String label, long[] latencies) {
+    System.out.printf("%-20s %8.1f %8.1f %8.1f%n", label, latencies[latencies.length / 2] / 1000.0,
+        latencies[(int) (latencies.length * 0.99)] / 1000.0, latencies[(int) (latencies.length * 0.999)] / 1000.0);
+  }
+}
@@ -0,0 +1,103 @@
+package se.kth.iv1350.benchmark;
+
+import se.kth.iv1350.integration.SaleIndex;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.PaymentDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how long it takes to find a sale in a {@link SaleIndex} holding a
+ * year of sales by its sale identifier, which is also the receipt number.
+ * <p>
+ * This is not a unit test. Run it from the IDE or with
+ * {@code java -cp target/classes:target/test-classes
+ * se.kth.iv1350.benchmark.SaleLookupBenchmark [sales] [lookups]}.
+ */
+public class SaleLookupBenchmark {
+  private static final int CATALOG_SIZE = 10_000;
+  private static final int MAX_LINES = 15;
+
+  /**
+   * Fills an index with random sales and times random lookups.
+   *
+   * @param args The number of sales, 2 000 000 by default, about a year of a
+   *             busy store, and of timed lookups, 1 000 000 by default.
+   */
+  public static void main(String[] args) {
+    int sales = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+    int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+    Random random = new Random(42);
+    ItemDTO[] catalog = new ItemDTO[CATALOG_SIZE];
+    for (int i = 0; i < CATALOG_SIZE; i++) {
+      catalog[i] = new ItemDTO(i, "Item " + i, 1 + random.nextInt(500), i % 3 == 0 ? 12 : 25);
+    }
+
+    SaleIndex index = new SaleIndex();
+    long firstID = System.currentTimeMillis() << 10;
+    long start = System.nanoTime();
+    for (int i = 0; i < sales; i++) {
+      index.add(randomSale(random, catalog, firstID + i));
+    }
+    long fillMillis = (System.nanoTime() - start) / 1_000_000;
+    Runtime runtime = Runtime.getRuntime();
+    System.gc();
+    System.out.printf("Indexed %,d sales in %,d ms, %,d MB used%n", sales, fillMillis,
+        (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+
+    long[] byID = new long[lookups];
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < lookups; i++) {
+        long saleID = firstID + random.nextInt(sales);
+        long begin = System.nanoTime();
+        SaleDTO sale = index.findBySaleID(saleID);
+        byID[i] = System.nanoTime() - begin;
+        if (sale.saleID() != saleID) {
+          throw new IllegalStateException("Found the wrong sale.");
+        }
+      }
+    }
+    Arrays.sort(byID);
+    System.out.printf("%-18s %8s %8s %8s %8s%n", "lookup (us)", "p50", "p99", "p99.9", "max");
+    print("by sale ID", byID);
+  }
+
+  /**
+   * Creates a paid sale of random items.
+   *
+   * @param random  The source of randomness.
+   * @param catalog The items to choose from.
+   * @param saleID  The identifier of the sale.
+   * @return The {@link SaleDTO}.
+   */
+  private static SaleDTO randomSale(Random random, ItemDTO[] catalog, long saleID) {
+    int lineCount = 1 + random.nextInt(MAX_LINES);
+    List<SaleItemDTO> lines = new ArrayList<>(lineCount);
+    double total = 0;
+    for (int i = 0; i < lineCount; i++) {
+      ItemDTO item = catalog[random.nextInt(catalog.length)];
+      int quantity = 1 + random.nextInt(3);
+      lines.add(new SaleItemDTO(item, quantity));
+      total += item.price() * quantity * (1 + item.VAT() / 100.0);
+    }
+    return new SaleDTO(lines, new Date(), 0.0, 0.0, new PaymentDTO(total, total), saleID);
+  }
+
+  /**
+   * Prints the percentiles of sorted latencies in microseconds.
+   *
+   * @param label     The label of the line.
+   * @param latencies The sorted latencies in nanoseconds.
+   */
+  private static void print(String label, long[] latencies) {
+    System.out.printf("%-18s %8.1f %8.1f %8.1f %8.1f%n", label, latencies[latencies.length / 2] / 1000.0,
+        latencies[(int) (latencies.length * 0.99)] / 1000.0, latencies[(int) (latencies.length * 0.999)] / 1000.0,
+        latencies[latencies.length - 1] / 1000.0);
+  }
+}
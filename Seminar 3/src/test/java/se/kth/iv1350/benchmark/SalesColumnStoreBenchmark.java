@@ -0,0 +1,67 @@
+package se.kth.iv1350.benchmark;
+
+import se.kth.iv1350.analytics.GroupedTotals;
+import se.kth.iv1350.analytics.SalesColumnStore;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how long a revenue per item per hour report takes over one day of
+ * sale lines in a {@link SalesColumnStore}.
+ * <p>
+ * This is not a unit test. Run it from the IDE or with
+ * {@code java -Xmx2g -cp target/classes:target/test-classes
+ * se.kth.iv1350.benchmark.SalesColumnStoreBenchmark [lines]}.
+ */
+public class SalesColumnStoreBenchmark {
+  private static final long DAY_START = 1_710_000_000_000L;
+  private static final long DAY = 86_400_000L;
+
+  /**
+   * Fills a store with a day of sale lines and runs the report a few times.
+   *
+   * @param args The number of lines to generate, 10 000 000 by default.
+   */
+  public static void main(String[] args) {
+    int lines = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+    SalesColumnStore store = new SalesColumnStore();
+    List<ItemDTO> catalog = new ArrayList<>();
+    for (int i = 0; i < 5_000; i++) {
+      catalog.add(new ItemDTO(i, "Item " + i, 1 + i % 200, i % 3 == 0 ? 12 : 25));
+    }
+
+    Random random = new Random(42);
+    long fillStart = System.nanoTime();
+    int linesPerSale = 5;
+    for (int i = 0; i < lines; i += linesPerSale) {
+      List<SaleItemDTO> saleItems = new ArrayList<>(linesPerSale);
+      for (int j = 0; j < linesPerSale; j++) {
+        saleItems.add(new SaleItemDTO(catalog.get(random.nextInt(catalog.size())), 1 + random.nextInt(4)));
+      }
+      long timestamp = DAY_START + (long) i * DAY / lines;
+      store.append(new SaleDTO(saleItems, new Date(timestamp), random.nextInt(10), 0.0, null));
+    }
+    System.out.printf("Loaded %,d lines in %d ms, %,d MB%n", store.lineCount(),
+        (System.nanoTime() - fillStart) / 1_000_000, store.memoryBytes() >> 20);
+
+    for (int run = 0; run < 5; run++) {
+      long start = System.nanoTime();
+      GroupedTotals totals = store.aggregate(DAY_START, DAY_START + DAY, SalesColumnStore.GroupBy.ITEM_AND_HOUR);
+      System.out.printf("Run %d: %,d groups in %d ms%n", run, totals.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    long compressStart = System.nanoTime();
+    int compressed = store.compressOlderThan(DAY_START + DAY);
+    System.out.printf("Compressed %d chunks in %d ms, %,d MB%n", compressed,
+        (System.nanoTime() - compressStart) / 1_000_000, store.memoryBytes() >> 20);
+    long start = System.nanoTime();
+    GroupedTotals totals = store.aggregate(DAY_START, DAY_START + DAY, SalesColumnStore.GroupBy.ITEM_AND_HOUR);
+    System.out.printf("Compressed run: %,d groups in %d ms%n", totals.size(), (System.nanoTime() - start) / 1_000_000);
+  }
+}
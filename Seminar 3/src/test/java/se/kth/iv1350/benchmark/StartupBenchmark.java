@@ -0,0 +1,96 @@
+package se.kth.iv1350.benchmark;
+
+import se.kth.iv1350.integration.CatalogImporter;
+import se.kth.iv1350.integration.CatalogSnapshot;
+import se.kth.iv1350.integration.DiscountDBHandler;
+import se.kth.iv1350.integration.InventorySys;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Compares how long a register takes to load its catalog on a cold start,
+ * parsing the CSV files, with loading a prebuilt {@link CatalogSnapshot}.
+ * <p>
+ * This is not a unit test. Run it from the IDE or with
+ * {@code java -Xmx4g -cp target/classes:target/test-classes
+ * se.kth.iv1350.benchmark.StartupBenchmark [items] [discounts]}. For the JVM
+ * part of the start-up time, build with {@code mvn -Pappcds package} and
+ * compare {@code java -jar target/test-1.0.jar} with
+ * {@code java -XX:SharedArchiveFile=target/app-cds.jsa -jar target/test-1.0.jar}.
+ */
+public class StartupBenchmark {
+  /**
+   * Writes the CSV files, then times a cold start and a snapshot start a few
+   * times each.
+   *
+   * @param args The number of items, 5 000 000 by default, and of discounts,
+   *             1 000 000 by default.
+   * @throws IOException if the files could not be written or read.
+   */
+  public static void main(String[] args) throws IOException {
+    int items = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+    int discounts = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+    Path directory = Files.createTempDirectory("startup-benchmark");
+    Path catalog = directory.resolve("catalog.csv");
+    Path stock = directory.resolve("stock.csv");
+    Path discountFile = directory.resolve("discounts.csv");
+    Path snapshotFile = directory.resolve("catalog.snap");
+    writeFiles(items, discounts, catalog, stock, discountFile);
+
+    CatalogImporter importer = new CatalogImporter();
+    for (int run = 0; run < 3; run++) {
+      long start = System.nanoTime();
+      InventorySys inventory = importer.importInventory(catalog, stock);
+      DiscountDBHandler discountDB = importer.importDiscounts(discountFile);
+      long coldMillis = (System.nanoTime() - start) / 1_000_000;
+      if (run == 0) {
+        CatalogSnapshot.write(snapshotFile, inventory, discountDB);
+      }
+
+      start = System.nanoTime();
+      CatalogSnapshot snapshot = CatalogSnapshot.read(snapshotFile);
+      long snapshotMillis = (System.nanoTime() - start) / 1_000_000;
+      System.out.printf("Run %d: cold start %d ms, snapshot start %d ms (%,d items, %,d discounts)%n", run,
+          coldMillis, snapshotMillis, snapshot.getInventory().getItems().size(),
+          snapshot.getDiscounts().getAllDiscounts().size());
+    }
+    System.out.printf("CSV %,d MB, snapshot %,d MB%n",
+        (Files.size(catalog) + Files.size(stock) + Files.size(discountFile)) >> 20, Files.size(snapshotFile) >> 20);
+
+    for (Path file : new Path[] { catalog, stock, discountFile, snapshotFile, directory }) {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Writes a catalog, stock and discount file of the given size.
+   *
+   * @param items        The number of items.
+   * @param discounts    The number of discounts.
+   * @param catalog      The catalog file.
+   * @param stock        The stock file.
+   * @param discountFile The discount file.
+   * @throws IOException if a file could not be written.
+   */
+  private static void writeFiles(int items, int discounts, Path catalog, Path stock, Path discountFile)
+      throws IOException {
+    Random random = new Random(42);
+    try (BufferedWriter catalogWriter = Files.newBufferedWriter(catalog);
+        BufferedWriter stockWriter = Files.newBufferedWriter(stock);
+        BufferedWriter discountWriter = Files.newBufferedWriter(discountFile)) {
+      for (int i = 0; i < items; i++) {
+        catalogWriter.write(i + ",Item " + i + "," + random.nextInt(500) + "." + (10 + random.nextInt(90)) + ","
+            + (i % 3 == 0 ? 12 : 25) + "\n");
+        stockWriter.write(i + "," + random.nextInt(1000) + "\n");
+      }
+      for (int i = 0; i < discounts; i++) {
+        discountWriter.write(i + "," + random.nextInt(items) + "," + random.nextInt(100_000) + ",-1,0,"
+            + (1 + random.nextInt(30)) + ",true\n");
+      }
+    }
+  }
+}
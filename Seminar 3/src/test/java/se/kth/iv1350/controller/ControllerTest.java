@@ -5,7 +5,11 @@ import org.junit.jupiter.api.Test;
 import se.kth.iv1350.integration.*;
 import se.kth.iv1350.model.classes.*;
 import se.kth.iv1350.model.dto.*;
+import se.kth.iv1350.model.promotion.MultiBuyPromotion;
+import se.kth.iv1350.model.promotion.PromotionEngine;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
@@ -137,4 +141,196 @@ class ControllerTest {
     verify(mockAccountingSys, atLeastOnce()).sendSaleInfo(any(SaleDTO.class));
     verify(mockInventorySys, atLeastOnce()).updateInventory(any(SaleDTO.class));
   }
-}
\ No newline at end of file
+
+  @Test
+  void testScanItemRecordsMetrics() {
+    controller.startNewSale();
+    when(mockInventorySys.getItem(1)).thenReturn(testItem);
+    controller.scanItem(1, 1);
+    assertThrows(IllegalArgumentException.class, () -> controller.scanItem(1, 0));
+
+    var snapshot = controller.getMetrics().snapshot();
+    assertEquals(1, snapshot.operation("controller_scan_item").successes());
+    assertEquals(1, snapshot.operation("controller_scan_item").failures());
+    assertEquals(2, snapshot.operation("inventory_get_item").calls());
+  }
+
+  @Test
+  void testCompleteSaleRecordsFailedIntegrationCall() {
+    controller.startNewSale();
+    when(mockInventorySys.getItem(1)).thenReturn(testItem);
+    controller.scanItem(1, 1);
+    doThrow(new IllegalStateException("Printer offline")).when(mockPrinter).printReceipt(any(Receipt.class));
+
+    assertThrows(IllegalStateException.class, () -> controller.completeSale());
+
+    var snapshot = controller.getMetrics().snapshot();
+    assertEquals(1, snapshot.operation("printer_print_receipt").failures());
+    assertEquals(1, snapshot.operation("controller_complete_sale").failures());
+    assertEquals(0, snapshot.operation("accounting_send_sale_info").calls());
+  }
+
+  @Test
+  void testRetriedPaymentCompletesSaleOnce() {
+    controller.startNewSale();
+    when(mockInventorySys.getItem(1)).thenReturn(testItem);
+    controller.scanItem(1, 1);
+    double change = controller.setAmountPaid(100);
+
+    assertEquals(change, controller.setAmountPaid(100));
+    assertFalse(controller.completeSale());
+    verify(mockPrinter, times(1)).printReceipt(any(Receipt.class));
+    verify(mockAccountingSys, times(1)).sendSaleInfo(any(SaleDTO.class));
+    verify(mockInventorySys, times(1)).updateInventory(any(SaleDTO.class));
+    assertEquals(2L, controller.getMetrics().snapshot().gauges().get("controller_duplicate_completions_total"));
+  }
+
+  @Test
+  void testFailedCompletionCanBeRetried() {
+    controller.startNewSale();
+    when(mockInventorySys.getItem(1)).thenReturn(testItem);
+    controller.scanItem(1, 1);
+    doThrow(new IllegalStateException("Accounting offline")).doNothing().when(mockAccountingSys)
+        .sendSaleInfo(any(SaleDTO.class));
+
+    assertThrows(IllegalStateException.class, () -> controller.completeSale());
+    assertTrue(controller.completeSale());
+    verify(mockInventorySys, times(1)).updateInventory(any(SaleDTO.class));
+  }
+
+  @Test
+  void testScanItemAppliesPromotions() {
+    controller.setPromotionEngine(new PromotionEngine(List.of(new MultiBuyPromotion(1, 1, 3, 2))));
+    controller.startNewSale();
+    when(mockInventorySys.getItem(1)).thenReturn(testItem);
+    controller.scanItem(1, 2);
+    assertEquals(22.4, controller.endSale());
+    controller.scanItem(1, 1);
+    assertEquals(22.4, controller.endSale());
+
+    controller.startNewSale();
+    controller.scanItem(1, 1);
+    assertEquals(11.2, controller.endSale());
+  }
+
+  @Test
+  void testRecoverSaleFromCheckpoint() {
+    controller.startNewSale();
+    when(mockInventorySys.getItem(1)).thenReturn(testItem);
+    controller.scanItem(1, 3);
+    byte[] checkpoint = controller.checkpointSale();
+
+    Controller standby = new Controller(mockDiscountDBHandler, mockInventorySys, mockAccountingSys, mockPrinter);
+    standby.recoverSale(checkpoint);
+    assertEquals(controller.endSale(), standby.endSale());
+    standby.scanItem(1, 1);
+    assertEquals(Math.round(4 * 10.0 * 1.12 * 100.0) / 100.0, standby.endSale());
+  }
+
+  @Test
+  void testScanItemReservesStock() {
+    StockReservations reservations = new StockReservations(new InventorySys(), 60_000L);
+    controller.setStockReservations(reservations);
+    controller.startNewSale();
+    when(mockInventorySys.getItem(1)).thenReturn(testItem);
+    controller.scanItem(1, 30);
+
+    assertThrows(IllegalStateException.class, () -> controller.scanItem(1, 5));
+    assertEquals(30, reservations.getReserved(1));
+  }
+
+  @Test
+  void testOpenSaleKeepsScannedPrice() {
+    InventorySys inventory = new InventorySys();
+    Controller lane = new Controller(mockDiscountDBHandler, inventory, mockAccountingSys, mockPrinter);
+    lane.startNewSale();
+    lane.scanItem(1, 1);
+
+    inventory.updatePrice(1, 20.0);
+    lane.scanItem(1, 1);
+    assertEquals(25.0, lane.endSale());
+
+    Controller nextLane = new Controller(mockDiscountDBHandler, inventory, mockAccountingSys, mockPrinter);
+    nextLane.startNewSale();
+    nextLane.scanItem(1, 1);
+    assertEquals(25.0, nextLane.endSale());
+  }
+
+  @Test
+  void testCompleteSaleCommitsReservations() {
+    InventorySys inventory = new InventorySys();
+    StockReservations reservations = new StockReservations(inventory, 60_000L);
+    Controller lane = new Controller(mockDiscountDBHandler, inventory, mockAccountingSys, mockPrinter);
+    lane.setStockReservations(reservations);
+    lane.startNewSale();
+    lane.scanItem(1, 4);
+    lane.completeSale();
+
+    assertEquals(0, reservations.getReserved(1));
+    assertEquals(30, reservations.getUnreserved(1));
+    assertEquals(30, inventory.getQuantity(1));
+  }
+
+  @Test
+  void testCompleteSaleRenewsExpiredReservations() {
+    long[] now = {1_000_000L};
+    InventorySys inventory = new InventorySys();
+    StockReservations reservations = new StockReservations(inventory, 60_000L, () -> now[0]);
+    Controller lane = new Controller(mockDiscountDBHandler, inventory, mockAccountingSys, mockPrinter);
+    lane.setStockReservations(reservations);
+    lane.startNewSale();
+    lane.scanItem(1, 30);
+    now[0] += 120_000L;
+    reservations.expireOverdue();
+    reservations.reserve(1, 10);
+
+    assertThrows(IllegalStateException.class, () -> lane.completeSale());
+    assertEquals(34, inventory.getQuantity(1));
+    verify(mockPrinter, never()).printReceipt(any());
+  }
+
+  @Test
+  void testAbandonSaleReleasesReservations() {
+    StockReservations reservations = new StockReservations(new InventorySys(), 60_000L);
+    controller.setStockReservations(reservations);
+    controller.startNewSale();
+    when(mockInventorySys.getItem(1)).thenReturn(testItem);
+    controller.scanItem(1, 4);
+    controller.abandonSale();
+
+    assertEquals(0, reservations.getReserved(1));
+    assertEquals(34, reservations.getUnreserved(1));
+    assertThrows(IllegalStateException.class, () -> controller.endSale());
+  }
+
+  @Test
+  void testPooledSalesKeepCompletedSaleDTOs() {
+    SalePool pool = new SalePool(1);
+    controller.setSalePool(pool);
+    List<SaleDTO> completed = new ArrayList<>();
+    controller.addSaleObserver(completed::add);
+    when(mockInventorySys.getItem(1)).thenReturn(testItem);
+    when(mockInventorySys.getItem(2)).thenReturn(new ItemDTO(2, "Bread", 20.0, 25));
+
+    controller.startNewSale();
+    controller.scanItem(1, 2);
+    Sale first = controller.signalDiscountRequest(1);
+    controller.setAmountPaid(50.0);
+    assertFalse(controller.completeSale());
+    assertEquals(22.4, controller.endSale());
+
+    controller.startNewSale();
+    controller.scanItem(2, 1);
+    assertSame(first, controller.signalDiscountRequest(1));
+    controller.setAmountPaid(25.0);
+
+    assertEquals(2, completed.size());
+    SaleDTO firstDTO = completed.get(0);
+    assertEquals(List.of(new SaleItemDTO(testItem, 2)), firstDTO.saleItems());
+    assertEquals(50.0, firstDTO.payment().amountPaid());
+    assertNotEquals(firstDTO.saleID(), completed.get(1).saleID());
+    assertEquals(1, pool.getReusedCount());
+    controller.abandonSale();
+    assertEquals(1, pool.getCreatedCount());
+  }
+}
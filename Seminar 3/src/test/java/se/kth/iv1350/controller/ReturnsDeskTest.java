@@ -0,0 +1,151 @@
+package se.kth.iv1350.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.kth.iv1350.integration.AccountingSys;
+import se.kth.iv1350.integration.InventorySys;
+import se.kth.iv1350.integration.SaleIndex;
+import se.kth.iv1350.integration.StockReservations;
+import se.kth.iv1350.model.classes.SalesRegister;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.PaymentDTO;
+import se.kth.iv1350.model.dto.RefundDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link ReturnsDesk} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Sales are found by identifier and by receipt number.</li>
+ * <li>Returns are remembered by a sale index kept in a journal, across
+ * restarts.</li>
+ * <li>Refunds take the discounts of the original sale back in proportion, and
+ * all refunds of a sale add up to what was paid.</li>
+ * <li>Returned units go back to the inventory and the stock
+ * reservations.</li>
+ * <li>Invalid returns, and returns the register cannot pay, change
+ * nothing.</li>
+ * <li>Refunds are sent to accounting in batches.</li>
+ * </ul>
+ */
+class ReturnsDeskTest {
+  private static final long SALE_ID = 42L;
+
+  @TempDir
+  Path directory;
+
+  private SaleIndex saleIndex;
+  private InventorySys inventory;
+  private AccountingSys accounting;
+  private SalesRegister register;
+  private ReturnsDesk desk;
+
+  @BeforeEach
+  void setUp() {
+    saleIndex = new SaleIndex();
+    inventory = new InventorySys();
+    accounting = mock(AccountingSys.class);
+    register = new SalesRegister();
+    register.updateRegister(1_000.0);
+    desk = new ReturnsDesk(saleIndex, inventory, accounting, register, 2);
+    // 3 apples at 12.50 and a milk at 21.20, with 10 % off the total of 58.70
+    saleIndex.add(sale());
+  }
+
+  private static SaleDTO sale() {
+    ItemDTO apple = new ItemDTO(1, "Apple", 10.0, 25);
+    ItemDTO milk = new ItemDTO(4, "Milk", 20.0, 6);
+    return new SaleDTO(List.of(new SaleItemDTO(apple, 3), new SaleItemDTO(milk, 1)), new Date(), 5.87, 8.7,
+        new PaymentDTO(52.83, 100.0), SALE_ID);
+  }
+
+  @Test
+  void testFindSale() {
+    assertEquals(SALE_ID, desk.findSale(SALE_ID).saleID());
+    assertEquals(SALE_ID, desk.findReceipt(SALE_ID).saleID());
+    assertThrows(IllegalArgumentException.class, () -> desk.findSale(7));
+    assertThrows(IllegalArgumentException.class, () -> desk.findReceipt(7));
+  }
+
+  @Test
+  void testReturnsSurviveRestart() throws IOException {
+    Path file = directory.resolve("sales.journal");
+    try (SaleIndex journaled = SaleIndex.open(file)) {
+      journaled.add(sale());
+      new ReturnsDesk(journaled, inventory, accounting, register).returnItem(SALE_ID, 1, 1);
+    }
+    try (SaleIndex reopened = SaleIndex.open(file)) {
+      ReturnsDesk restarted = new ReturnsDesk(reopened, inventory, accounting, register);
+      assertEquals(2, restarted.getReturnableQuantity(SALE_ID, 1));
+      assertEquals(22.5, restarted.returnItem(SALE_ID, 1, 2).amount(), 1e-9);
+      assertEquals(19.08, restarted.returnItem(SALE_ID, 4, 1).amount(), 1e-9);
+    }
+  }
+
+  @Test
+  void testRefundsKeepOriginalDiscounts() {
+    RefundDTO oneApple = desk.returnItem(SALE_ID, 1, 1);
+    assertEquals(11.25, oneApple.amount(), 1e-9);
+    assertEquals(2.25, oneApple.vat(), 1e-9);
+    assertEquals(22.5, desk.returnItem(SALE_ID, 1, 2).amount(), 1e-9);
+    assertEquals(19.08, desk.returnItem(SALE_ID, 4, 1).amount(), 1e-9);
+    assertEquals(1_000.0 - 52.83, register.getPresentAmount(), 1e-9);
+    assertEquals(0, desk.getReturnableQuantity(SALE_ID, 1));
+  }
+
+  @Test
+  void testReturnedUnitsAreRestocked() {
+    StockReservations reservations = new StockReservations(inventory, 60_000);
+    int apples = inventory.getQuantity(1);
+    int reservable = reservations.getUnreserved(1);
+    desk.returnItem(SALE_ID, 1, 2);
+    assertEquals(apples + 2, inventory.getQuantity(1));
+    assertEquals(reservable + 2, reservations.getUnreserved(1));
+    reservations.close();
+  }
+
+  @Test
+  void testInvalidReturnsChangeNothing() {
+    assertThrows(IllegalArgumentException.class, () -> desk.returnItem(SALE_ID, 1, 4));
+    assertThrows(IllegalArgumentException.class, () -> desk.returnItem(SALE_ID, 2, 1));
+    assertThrows(IllegalArgumentException.class, () -> desk.returnItem(SALE_ID, 1, 0));
+    assertThrows(IllegalArgumentException.class, () -> desk.returnItem(7, 1, 1));
+    desk.returnItem(SALE_ID, 1, 3);
+    assertThrows(IllegalArgumentException.class, () -> desk.returnItem(SALE_ID, 1, 1));
+    assertEquals(1_000.0 - 33.75, register.getPresentAmount(), 1e-9);
+  }
+
+  @Test
+  void testRegisterWithoutCashRefusesReturn() {
+    SalesRegister emptyRegister = new SalesRegister();
+    ReturnsDesk emptyDesk = new ReturnsDesk(saleIndex, inventory, accounting, emptyRegister);
+    int apples = inventory.getQuantity(1);
+    assertThrows(IllegalStateException.class, () -> emptyDesk.returnItem(SALE_ID, 1, 1));
+    assertEquals(3, emptyDesk.getReturnableQuantity(SALE_ID, 1));
+    assertEquals(apples, inventory.getQuantity(1));
+    assertEquals(0, emptyDesk.getPendingRefundCount());
+  }
+
+  @Test
+  void testRefundsArePostedInBatches() {
+    desk.returnItem(SALE_ID, 1, 1);
+    verify(accounting, never()).sendRefundInfo(anyList());
+    desk.returnItem(SALE_ID, 1, 1);
+    verify(accounting).sendRefundInfo(argThat(refunds -> refunds.size() == 2));
+    desk.returnItem(SALE_ID, 4, 1);
+    assertEquals(1, desk.getPendingRefundCount());
+    assertEquals(1, desk.postRefunds());
+    assertEquals(0, desk.postRefunds());
+    verify(accounting, times(2)).sendRefundInfo(anyList());
+  }
+}
@@ -0,0 +1,229 @@
+package se.kth.iv1350.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.kth.iv1350.integration.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link SaleLane} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Scans, discounts and payments give item, total and change updates in
+ * order.</li>
+ * <li>Totals the display has not asked for are coalesced into the latest
+ * one.</li>
+ * <li>No more events are requested than there is room for, so a slow display
+ * slows the publisher down.</li>
+ * <li>Failed events give an error update and the lane keeps running.</li>
+ * <li>A second display and non-positive requests are rejected.</li>
+ * <li>The lane works end to end on virtual threads.</li>
+ * </ul>
+ */
+class SaleLaneTest {
+  private Controller controller;
+
+  @BeforeEach
+  void setUp() {
+    controller = new Controller(mock(DiscountDBHandler.class), new InventorySys(), mock(AccountingSys.class),
+        mock(Printer.class));
+  }
+
+  /**
+   * A publisher side that records how many events the lane requested.
+   */
+  private static class CountingSubscription implements Flow.Subscription {
+    final AtomicLong requested = new AtomicLong();
+    volatile boolean cancelled;
+
+    @Override
+    public void request(long n) {
+      requested.addAndGet(n);
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+  }
+
+  /**
+   * A display that collects updates and asks for them only when told to.
+   */
+  private static class Display implements Flow.Subscriber<LaneUpdate> {
+    final List<LaneUpdate> updates = new CopyOnWriteArrayList<>();
+    final CountDownLatch done = new CountDownLatch(1);
+    volatile Flow.Subscription subscription;
+    volatile Throwable error;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(LaneUpdate update) {
+      updates.add(update);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+      done.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      done.countDown();
+    }
+  }
+
+  @Test
+  void testUpdatesInOrder() {
+    SaleLane lane = new SaleLane(controller);
+    CountingSubscription scanner = new CountingSubscription();
+    Display display = new Display();
+    lane.onSubscribe(scanner);
+    lane.subscribe(display);
+    display.subscription.request(Long.MAX_VALUE);
+
+    lane.onNext(LaneEvent.startSale());
+    lane.onNext(LaneEvent.scan(1, 2));
+    lane.onNext(LaneEvent.payment(100));
+    lane.onComplete();
+
+    List<LaneUpdate> updates = display.updates;
+    assertEquals(List.of(LaneUpdate.Type.TOTAL, LaneUpdate.Type.ITEM, LaneUpdate.Type.TOTAL,
+        LaneUpdate.Type.CHANGE), updates.stream().map(LaneUpdate::type).toList());
+    assertEquals("Apple", updates.get(1).item().description());
+    assertEquals(2, updates.get(1).quantity());
+    assertEquals(25.0, updates.get(2).runningTotal());
+    assertEquals(75.0, updates.get(3).change());
+    assertEquals(0, display.done.getCount());
+    assertNull(display.error);
+  }
+
+  @Test
+  void testTotalsAreCoalesced() {
+    SaleLane lane = new SaleLane(controller);
+    lane.onSubscribe(new CountingSubscription());
+    Display display = new Display();
+    lane.subscribe(display);
+
+    lane.onNext(LaneEvent.startSale());
+    for (int i = 0; i < 50; i++) {
+      lane.onNext(LaneEvent.discount(7));
+    }
+    display.subscription.request(10);
+
+    assertEquals(1, display.updates.size());
+    assertEquals(LaneUpdate.Type.TOTAL, display.updates.get(0).type());
+    assertEquals(50, lane.getCoalescedTotalCount());
+  }
+
+  @Test
+  void testSlowDisplayHoldsBackPublisher() {
+    SaleLane lane = new SaleLane(controller, 4);
+    CountingSubscription scanner = new CountingSubscription();
+    lane.onSubscribe(scanner);
+    Display display = new Display();
+    lane.subscribe(display);
+    assertEquals(4, scanner.requested.get());
+
+    for (int i = 0; i < 4; i++) {
+      lane.onNext(LaneEvent.scan(4, 1));
+    }
+    assertEquals(4, scanner.requested.get());
+
+    display.subscription.request(3);
+    assertEquals(7, scanner.requested.get());
+    assertEquals(3, display.updates.size());
+    display.subscription.request(2);
+    assertEquals(LaneUpdate.Type.ITEM, display.updates.get(3).type());
+    assertEquals(LaneUpdate.Type.TOTAL, display.updates.get(4).type());
+    assertEquals(80.0 * 1.06, display.updates.get(4).runningTotal(), 1e-9);
+  }
+
+  @Test
+  void testFailedEventGivesErrorUpdate() {
+    SaleLane lane = new SaleLane(controller);
+    lane.onSubscribe(new CountingSubscription());
+    Display display = new Display();
+    lane.subscribe(display);
+    display.subscription.request(Long.MAX_VALUE);
+
+    lane.onNext(LaneEvent.scan(99, 1));
+    lane.onNext(LaneEvent.scan(3, 1));
+
+    assertEquals(LaneUpdate.Type.ERROR, display.updates.get(0).type());
+    assertEquals("Item not found in inventory.", display.updates.get(0).message());
+    assertEquals(LaneUpdate.Type.ITEM, display.updates.get(1).type());
+  }
+
+  @Test
+  void testSecondDisplayAndBadRequestAreRejected() {
+    SaleLane lane = new SaleLane(controller);
+    CountingSubscription scanner = new CountingSubscription();
+    lane.onSubscribe(scanner);
+    Display first = new Display();
+    Display second = new Display();
+    lane.subscribe(first);
+    lane.subscribe(second);
+    assertInstanceOf(IllegalStateException.class, second.error);
+
+    first.subscription.request(0);
+    assertInstanceOf(IllegalArgumentException.class, first.error);
+    assertTrue(scanner.cancelled);
+  }
+
+  @Test
+  void testVirtualThreads() throws InterruptedException {
+    SaleLane lane = new SaleLane(controller, 8);
+    Display display = new Display() {
+      @Override
+      public void onSubscribe(Flow.Subscription subscription) {
+        super.onSubscribe(subscription);
+        subscription.request(1);
+      }
+
+      @Override
+      public void onNext(LaneUpdate update) {
+        super.onNext(update);
+        Thread.onSpinWait();
+        subscription.request(1);
+      }
+    };
+    lane.subscribe(display);
+    int scans = 2_000;
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      // Closed by hand below, since closing it ends the stream of scans
+      SubmissionPublisher<LaneEvent> scanner = new SubmissionPublisher<>(executor, 16);
+      scanner.subscribe(lane);
+      scanner.submit(LaneEvent.startSale());
+      for (int i = 0; i < scans; i++) {
+        scanner.submit(LaneEvent.scan(1 + i % 5, 1));
+      }
+      scanner.submit(LaneEvent.payment(1_000_000));
+      scanner.close();
+      assertTrue(display.done.await(30, TimeUnit.SECONDS));
+    }
+
+    assertNull(display.error);
+    assertEquals(scans, display.updates.stream().filter(update -> update.type() == LaneUpdate.Type.ITEM).count());
+    LaneUpdate last = display.updates.get(display.updates.size() - 1);
+    assertEquals(LaneUpdate.Type.CHANGE, last.type());
+    assertTrue(last.runningTotal() > 0);
+  }
+}
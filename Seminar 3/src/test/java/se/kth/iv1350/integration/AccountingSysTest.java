@@ -1,7 +1,10 @@
 package se.kth.iv1350.integration;
 
 import org.junit.jupiter.api.Test;
+import se.kth.iv1350.model.dto.RefundDTO;
 import se.kth.iv1350.model.dto.SaleDTO;
+
+import java.util.List;
 import static org.mockito.Mockito.*;
 
 /**
@@ -24,4 +27,10 @@ class AccountingSysTest {
     // are thrown
     accountingSys.sendSaleInfo(mockSaleDTO);
   }
-}
\ No newline at end of file
+
+  @Test
+  void sendRefundInfo_shouldPrintMessage() {
+    AccountingSys accountingSys = new AccountingSys();
+    accountingSys.sendRefundInfo(List.of(new RefundDTO(1L, 1, 1, 12.5, 2.5)));
+  }
+}
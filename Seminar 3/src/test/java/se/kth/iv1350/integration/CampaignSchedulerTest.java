@@ -0,0 +1,156 @@
+package se.kth.iv1350.integration;
+
+import org.junit.jupiter.api.Test;
+import se.kth.iv1350.metrics.MetricsRegistry;
+import se.kth.iv1350.model.dto.DiscountDTO;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link CampaignScheduler} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Without a scheduler, only activated discounts that are valid at all
+ * times apply.</li>
+ * <li>A discount that is not activated is never published.</li>
+ * <li>A time-boxed discount applies from its start, inclusive, until its end,
+ * exclusive.</li>
+ * <li>All boundaries that passed are published as one index, and nothing is
+ * published when no boundary passed.</li>
+ * <li>Listeners are called after each publish, and the gauges report the
+ * active discounts.</li>
+ * <li>The background thread activates a discount when its start comes.</li>
+ * <li>A window that ends before it starts is rejected.</li>
+ * </ul>
+ */
+class CampaignSchedulerTest {
+  private static final long START = 1_000_000L;
+
+  @Test
+  void testOnlyPermanentDiscountsApplyWithoutScheduler() {
+    DiscountDBHandler discountDB = new DiscountDBHandler(List.of(
+        new DiscountDTO(1, -1, 1, -1, 0, 10, true),
+        new DiscountDTO(2, -1, 1, -1, 0, 20, true),
+        new DiscountDTO(3, -1, 1, -1, 0, 30, true, 0L, Long.MAX_VALUE),
+        new DiscountDTO(4, -1, 1, -1, 0, 40, false)));
+
+    assertEquals(28.0, discountDB.getDiscounts(1));
+    assertEquals(2, discountDB.getActiveDiscounts().size());
+  }
+
+  @Test
+  void testDeactivatedDiscountIsNeverPublished() {
+    AtomicLong clock = new AtomicLong(START);
+    DiscountDBHandler discountDB = new DiscountDBHandler(List.of(
+        new DiscountDTO(1, -1, 1, -1, 0, 10, true),
+        new DiscountDTO(2, -1, 1, -1, 0, 20, false),
+        new DiscountDTO(3, -1, 1, -1, 0, 30, false, START + 10, START + 20)));
+    CampaignScheduler scheduler = new CampaignScheduler(discountDB, clock::get);
+
+    assertTrue(scheduler.advance());
+    assertEquals(List.of(discountDB.getAllDiscounts().get(0)), discountDB.getActiveDiscounts());
+    assertEquals(Long.MAX_VALUE, scheduler.getNextBoundary());
+    clock.set(START + 15);
+    assertFalse(scheduler.advance());
+    assertEquals(10.0, discountDB.getDiscounts(1));
+  }
+
+  @Test
+  void testTimeBoxedDiscountAppliesWithinWindow() {
+    AtomicLong clock = new AtomicLong(START);
+    DiscountDBHandler discountDB = new DiscountDBHandler(List.of(
+        new DiscountDTO(1, -1, 1, -1, 0, 10, true),
+        new DiscountDTO(2, -1, -1, 100, 0, 25, true, START + 100, START + 200)));
+    CampaignScheduler scheduler = new CampaignScheduler(discountDB, clock::get);
+
+    assertTrue(scheduler.advance());
+    assertEquals(0.0, discountDB.getDiscounts(150.0));
+    assertEquals(10.0, discountDB.getDiscounts(1));
+    assertEquals(START + 100, scheduler.getNextBoundary());
+
+    clock.set(START + 100);
+    assertTrue(scheduler.advance());
+    assertEquals(25.0, discountDB.getDiscounts(150.0));
+    assertEquals(START + 200, scheduler.getNextBoundary());
+
+    clock.set(START + 199);
+    assertFalse(scheduler.advance());
+    assertEquals(25.0, discountDB.getDiscounts(150.0));
+
+    clock.set(START + 200);
+    assertTrue(scheduler.advance());
+    assertEquals(0.0, discountDB.getDiscounts(150.0));
+    assertEquals(10.0, discountDB.getDiscounts(1));
+    assertEquals(Long.MAX_VALUE, scheduler.getNextBoundary());
+  }
+
+  @Test
+  void testPassedBoundariesArePublishedOnce() {
+    AtomicLong clock = new AtomicLong(START);
+    DiscountDBHandler discountDB = new DiscountDBHandler(List.of(
+        new DiscountDTO(1, -1, 1, -1, 0, 10, true, START + 10, START + 20),
+        new DiscountDTO(2, -1, 1, -1, 0, 20, true, START + 15, START + 50),
+        new DiscountDTO(3, -1, 1, -1, 0, 30, true, START + 30, START + 40)));
+    CampaignScheduler scheduler = new CampaignScheduler(discountDB, clock::get);
+    scheduler.advance();
+
+    clock.set(START + 35);
+    assertTrue(scheduler.advance());
+    assertEquals(2, scheduler.getPublishedCount());
+    assertEquals(List.of(discountDB.getAllDiscounts().get(1), discountDB.getAllDiscounts().get(2)),
+        discountDB.getActiveDiscounts());
+    assertEquals(44.0, discountDB.getDiscounts(1));
+
+    assertFalse(scheduler.advance());
+    assertEquals(2, scheduler.getPublishedCount());
+  }
+
+  @Test
+  void testListenersAndGauges() {
+    AtomicLong clock = new AtomicLong(START);
+    DiscountDBHandler discountDB = new DiscountDBHandler(List.of(
+        new DiscountDTO(1, 1, -1, -1, 0, 10, true),
+        new DiscountDTO(2, 2, -1, -1, 0, 10, true, START + 10, Long.MAX_VALUE)));
+    CampaignScheduler scheduler = new CampaignScheduler(discountDB, clock::get);
+    MetricsRegistry metrics = new MetricsRegistry();
+    scheduler.registerMetrics(metrics);
+    AtomicInteger published = new AtomicInteger();
+    scheduler.addPublishListener(published::incrementAndGet);
+
+    scheduler.advance();
+    clock.set(START + 10);
+    scheduler.advance();
+
+    assertEquals(2, published.get());
+    Map<String, Long> gauges = metrics.snapshot().gauges();
+    assertEquals(2L, gauges.get("campaign_discounts_active"));
+    assertEquals(2L, gauges.get("campaign_indexes_published_total"));
+  }
+
+  @Test
+  void testBackgroundThreadActivatesDiscount() throws InterruptedException {
+    long now = System.currentTimeMillis();
+    DiscountDBHandler discountDB = new DiscountDBHandler(List.of(
+        new DiscountDTO(1, -1, 7, -1, 0, 15, true, now + 50, Long.MAX_VALUE)));
+    try (CampaignScheduler scheduler = new CampaignScheduler(discountDB)) {
+      scheduler.start();
+      long deadline = System.nanoTime() + 5_000_000_000L;
+      while (discountDB.getDiscounts(7) == 0.0 && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      assertEquals(15.0, discountDB.getDiscounts(7));
+      assertTrue(System.currentTimeMillis() >= now + 50);
+    }
+  }
+
+  @Test
+  void testWindowEndingBeforeStartThrows() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new DiscountDTO(1, 1, -1, -1, 0, 10, true, START, START));
+  }
+}
@@ -0,0 +1,133 @@
+package se.kth.iv1350.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.kth.iv1350.model.dto.DiscountDTO;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link CatalogImporter} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Catalog, stock and discount files are parsed in file order, with or
+ * without a header and with Windows line endings.</li>
+ * <li>Files split into many chunks give the same result as one chunk.</li>
+ * <li>Decimals are parsed exactly like {@link Double#parseDouble(String)}.</li>
+ * <li>An imported inventory and discount database answer lookups.</li>
+ * <li>Malformed rows and stock for unknown items are rejected.</li>
+ * </ul>
+ */
+class CatalogImporterTest {
+  @TempDir
+  Path directory;
+
+  private CatalogImporter importer;
+
+  @BeforeEach
+  void setUp() {
+    importer = new CatalogImporter(16);
+  }
+
+  private Path write(String name, String content) throws IOException {
+    return Files.writeString(directory.resolve(name), content);
+  }
+
+  private Path largeCatalog(int rows) throws IOException {
+    StringBuilder content = new StringBuilder("itemID,description,price,VAT\n");
+    for (int i = 0; i < rows; i++) {
+      content.append(i * 3).append(",Item ").append(i).append(',')
+          .append(i % 1000).append('.').append(i % 100 < 10 ? "0" : "").append(i % 100)
+          .append(',').append(i % 3 == 0 ? 12 : 25).append('\n');
+    }
+    return write("large.csv", content.toString());
+  }
+
+  @Test
+  void testReadItems() throws IOException {
+    Path file = write("catalog.csv", "itemID,description,price,VAT\r\n1,Äpple,10.50,25\r\n2,Bread,15,12\r\n");
+    List<ItemDTO> items = importer.readItems(file);
+    assertEquals(List.of(new ItemDTO(1, "Äpple", 10.50, 25), new ItemDTO(2, "Bread", 15.0, 12)), items);
+  }
+
+  @Test
+  void testReadItemsWithoutHeaderOrTrailingNewline() throws IOException {
+    Path file = write("catalog.csv", "7,Milk,0.99,6");
+    assertEquals(List.of(new ItemDTO(7, "Milk", 0.99, 6)), importer.readItems(file));
+  }
+
+  @Test
+  void testManyChunksKeepFileOrder() throws IOException {
+    int rows = 20_000;
+    Path file = largeCatalog(rows);
+    List<ItemDTO> chunked = importer.readItems(file);
+    List<ItemDTO> single = new CatalogImporter(1).readItems(file);
+    assertEquals(rows, chunked.size());
+    assertEquals(single, chunked);
+    for (int i = 0; i < rows; i += 997) {
+      ItemDTO item = chunked.get(i);
+      assertEquals(i * 3, item.itemID());
+      String price = (i % 1000) + "." + (i % 100 < 10 ? "0" : "") + (i % 100);
+      assertEquals(Double.parseDouble(price), item.price());
+    }
+  }
+
+  @Test
+  void testImportInventory() throws IOException {
+    Path catalog = largeCatalog(5_000);
+    Path stock = write("stock.csv", "itemID,quantity\n3,40\n0,7\n14997,-2\n");
+    InventorySys inventory = importer.importInventory(catalog, stock);
+    assertEquals(5_000, inventory.getItems().size());
+    assertEquals("Item 1", inventory.getItem(3).description());
+    assertEquals(40, inventory.getQuantity(3));
+    assertEquals(7, inventory.getQuantity(0));
+    assertEquals(-2, inventory.getQuantity(14997));
+    assertEquals(0, inventory.getQuantity(6));
+    assertNull(inventory.getItem(4));
+  }
+
+  @Test
+  void testImportDiscounts() throws IOException {
+    Path file = write("discounts.csv", """
+        discountID,itemID,customerID,totalPrice,fixedDiscount,percentageDiscount,activated
+        1,1,-1,-1,0,10,true
+        5,-1,1,-1,0.0,10,1
+        7,-1,-1,100,0.0,10,false
+        """);
+    List<DiscountDTO> discounts = importer.readDiscounts(file);
+    assertEquals(new DiscountDTO(7, -1, -1, 100, 0.0, 10, false), discounts.get(2));
+
+    DiscountDBHandler handler = importer.importDiscounts(file);
+    ItemDTO apple = new ItemDTO(1, "Apple", 10.0, 25);
+    SaleDTO sale = new SaleDTO(List.of(new SaleItemDTO(apple, 2)), new Date(), 0.0, 0.0, null);
+    assertEquals(2.5, handler.getDiscounts(sale));
+    assertEquals(10.0, handler.getDiscounts(1));
+    assertEquals(0.0, handler.getDiscounts(150.0), "The total price discount is not activated");
+    assertEquals(0.0, handler.getDiscounts(99.0));
+  }
+
+  @Test
+  void testMalformedRowThrows() throws IOException {
+    assertThrows(IllegalArgumentException.class, () -> importer.readItems(write("a.csv", "1,Milk,1x,6\n")));
+    assertThrows(IllegalArgumentException.class, () -> importer.readItems(write("b.csv", "1,Milk,1.0\n")));
+    assertThrows(IllegalArgumentException.class, () -> importer.readItems(write("c.csv", "1,Milk,1.0,6,9\n")));
+    assertThrows(IllegalArgumentException.class, () -> importer.readStock(write("d.csv", "1,99999999999\n")));
+  }
+
+  @Test
+  void testStockForUnknownItemThrows() throws IOException {
+    Path catalog = write("catalog.csv", "1,Milk,10,6\n");
+    Path stock = write("stock.csv", "2,5\n");
+    assertThrows(IllegalArgumentException.class, () -> importer.importInventory(catalog, stock));
+  }
+}
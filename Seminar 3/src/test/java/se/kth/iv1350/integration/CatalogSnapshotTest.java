@@ -0,0 +1,86 @@
+package se.kth.iv1350.integration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.kth.iv1350.model.dto.DiscountDTO;
+import se.kth.iv1350.model.dto.ItemDTO;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link CatalogSnapshot} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Items, stock levels and discounts, including their validity windows,
+ * survive a write and read unchanged.</li>
+ * <li>Descriptions outside ASCII are kept.</li>
+ * <li>Files that are not snapshots, or are truncated, are rejected.</li>
+ * </ul>
+ */
+class CatalogSnapshotTest {
+  @TempDir
+  Path directory;
+
+  @Test
+  void testDefaultCatalogRoundTrip() throws IOException {
+    Path file = directory.resolve("catalog.snap");
+    InventorySys inventory = new InventorySys();
+    DiscountDBHandler discounts = new DiscountDBHandler();
+    CatalogSnapshot.write(file, inventory, discounts);
+
+    CatalogSnapshot snapshot = CatalogSnapshot.read(file);
+    assertEquals(5, snapshot.getInventory().getItems().size());
+    for (InventorySys.InventoryItem item : inventory.getItems()) {
+      int itemID = item.getItem().itemID();
+      assertEquals(item.getItem(), snapshot.getInventory().getItem(itemID));
+      assertEquals(item.getQuantity(), snapshot.getInventory().getQuantity(itemID));
+    }
+    assertEquals(discounts.getAllDiscounts(), snapshot.getDiscounts().getAllDiscounts());
+    assertEquals(discounts.getDiscounts(1), snapshot.getDiscounts().getDiscounts(1));
+    assertFalse(Files.exists(directory.resolve("catalog.snap.tmp")));
+  }
+
+  @Test
+  void testLargeCatalogRoundTrip() throws IOException {
+    List<ItemDTO> items = new ArrayList<>();
+    int[] quantities = new int[10_000];
+    for (int i = 0; i < quantities.length; i++) {
+      items.add(new ItemDTO(i * 7, "Smörgås nr " + i, i * 0.01, i % 101));
+      quantities[i] = i - 100;
+    }
+    List<DiscountDTO> discountList = List.of(new DiscountDTO(1, 7, -1, 12.5, 3.25, 0, false),
+        new DiscountDTO(2, 14, -1, -1, 0, 15, true, 1_700_000_000_000L, 1_700_086_400_000L));
+    Path file = directory.resolve("large.snap");
+    CatalogSnapshot.write(file, new InventorySys(items, quantities), new DiscountDBHandler(discountList));
+
+    CatalogSnapshot snapshot = CatalogSnapshot.read(file);
+    List<InventorySys.InventoryItem> loaded = snapshot.getInventory().getItems();
+    for (int i = 0; i < quantities.length; i++) {
+      assertEquals(items.get(i), loaded.get(i).getItem());
+      assertEquals(quantities[i], loaded.get(i).getQuantity());
+    }
+    assertEquals(discountList, snapshot.getDiscounts().getAllDiscounts());
+  }
+
+  @Test
+  void testNotASnapshotThrows() throws IOException {
+    Path file = Files.writeString(directory.resolve("catalog.csv"), "1,Milk,10,6\n1,Milk,10,6\n1,Milk,10,6\n");
+    assertThrows(IllegalArgumentException.class, () -> CatalogSnapshot.read(file));
+  }
+
+  @Test
+  void testTruncatedSnapshotThrows() throws IOException {
+    Path file = directory.resolve("catalog.snap");
+    CatalogSnapshot.write(file, new InventorySys(), new DiscountDBHandler());
+    byte[] bytes = Files.readAllBytes(file);
+    Path truncated = Files.write(directory.resolve("truncated.snap"), Arrays.copyOf(bytes, bytes.length - 1));
+    assertThrows(IllegalArgumentException.class, () -> CatalogSnapshot.read(truncated));
+  }
+}
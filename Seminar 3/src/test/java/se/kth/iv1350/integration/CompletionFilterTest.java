@@ -0,0 +1,76 @@
+package se.kth.iv1350.integration;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link CompletionFilter} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>A sale is completed once and every later completion is dropped.</li>
+ * <li>Sales moved out of the exact set are still recognised by the Bloom
+ * filter, and new sales are never dropped because of it.</li>
+ * <li>A sale whose completion failed can be completed again.</li>
+ * <li>Sales without an identifier are never dropped.</li>
+ * </ul>
+ */
+class CompletionFilterTest {
+  @Test
+  void testDuplicateIsDropped() {
+    CompletionFilter filter = new CompletionFilter();
+    assertTrue(filter.tryComplete(42));
+    assertFalse(filter.tryComplete(42));
+    assertFalse(filter.tryComplete(42));
+    assertTrue(filter.isCompleted(42));
+    assertFalse(filter.isCompleted(43));
+    assertEquals(2, filter.getDuplicateCount());
+  }
+
+  @Test
+  void testOlderSalesAreRememberedByBloomFilter() {
+    CompletionFilter filter = new CompletionFilter(16, 10_000);
+    for (long saleID = 1; saleID <= 5_000; saleID++) {
+      assertTrue(filter.tryComplete(saleID), "new sale " + saleID + " was dropped");
+    }
+    for (long saleID = 1; saleID <= 5_000; saleID++) {
+      assertFalse(filter.tryComplete(saleID), "retried sale " + saleID + " was completed");
+    }
+    assertEquals(5_000, filter.getDuplicateCount());
+  }
+
+  @Test
+  void testOldestGenerationIsEventuallyForgotten() {
+    CompletionFilter filter = new CompletionFilter(4, 8);
+    for (long saleID = 1; saleID <= 100; saleID++) {
+      assertTrue(filter.tryComplete(saleID));
+    }
+    assertFalse(filter.tryComplete(100));
+    assertFalse(filter.tryComplete(90));
+    int remembered = 0;
+    for (long saleID = 1; saleID <= 50; saleID++) {
+      remembered += filter.isCompleted(saleID) ? 1 : 0;
+    }
+    assertTrue(remembered < 50);
+  }
+
+  @Test
+  void testFailedCompletionCanBeRetried() {
+    CompletionFilter filter = new CompletionFilter(4, 8);
+    for (long saleID = 1; saleID <= 10; saleID++) {
+      assertTrue(filter.tryComplete(saleID));
+    }
+    filter.completionFailed(9);
+    assertTrue(filter.tryComplete(9));
+    assertFalse(filter.tryComplete(9));
+    assertFalse(filter.tryComplete(10));
+  }
+
+  @Test
+  void testSaleWithoutIdentifierIsNeverDropped() {
+    CompletionFilter filter = new CompletionFilter();
+    assertTrue(filter.tryComplete(0));
+    assertTrue(filter.tryComplete(0));
+    assertEquals(0, filter.getDuplicateCount());
+  }
+}
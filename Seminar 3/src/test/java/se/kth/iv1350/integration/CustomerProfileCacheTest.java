@@ -0,0 +1,130 @@
+package se.kth.iv1350.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.kth.iv1350.metrics.MetricsRegistry;
+import se.kth.iv1350.model.dto.CustomerProfileDTO;
+import se.kth.iv1350.model.dto.DiscountDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link CustomerProfileCache} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>A profile holds the customer's discounts and the same compound
+ * percentage as the discount database.</li>
+ * <li>A cached profile is answered without the discount database.</li>
+ * <li>The least recently used profile is evicted when the cache is full.</li>
+ * <li>Invalidated profiles are loaded again.</li>
+ * <li>A profile loaded while the cache is cleared is loaded again instead of
+ * being cached.</li>
+ * <li>Hits, misses and the hit ratio are reported as gauges.</li>
+ * </ul>
+ */
+class CustomerProfileCacheTest {
+  private DiscountDBHandler discountDB;
+
+  @BeforeEach
+  void setUp() {
+    List<DiscountDTO> discounts = new ArrayList<>();
+    for (int customerID = 1; customerID <= 5; customerID++) {
+      discounts.add(new DiscountDTO(customerID, -1, customerID, -1, 0, 10, true));
+      discounts.add(new DiscountDTO(100 + customerID, -1, customerID, -1, 0, 5 * customerID, true));
+    }
+    discountDB = spy(new DiscountDBHandler(discounts));
+  }
+
+  @Test
+  void testProfileMatchesDiscountDatabase() {
+    CustomerProfileCache cache = new CustomerProfileCache(discountDB, 10);
+    for (int customerID = 0; customerID <= 6; customerID++) {
+      assertEquals(discountDB.getDiscounts(customerID), cache.getDiscounts(customerID));
+    }
+    CustomerProfileDTO profile = cache.get(3);
+    assertEquals(3, profile.customerID());
+    assertEquals(2, profile.discounts().size());
+    assertEquals(24.0, profile.percentageDiscount());
+    assertTrue(cache.get(42).discounts().isEmpty());
+  }
+
+  @Test
+  void testCachedProfileSkipsDatabase() {
+    CustomerProfileCache cache = new CustomerProfileCache(discountDB, 10);
+    CustomerProfileDTO first = cache.get(1);
+    for (int i = 0; i < 100; i++) {
+      assertSame(first, cache.get(1));
+    }
+    verify(discountDB, times(1)).getCustomerProfile(1);
+    assertEquals(100.0 / 101, cache.getHitRatio(), 1e-12);
+  }
+
+  @Test
+  void testLeastRecentlyUsedIsEvicted() {
+    CustomerProfileCache cache = new CustomerProfileCache(discountDB, 2);
+    cache.get(1);
+    cache.get(2);
+    cache.get(1);
+    cache.get(3);
+    assertEquals(2, cache.size());
+    cache.get(1);
+    verify(discountDB, times(1)).getCustomerProfile(1);
+    cache.get(2);
+    verify(discountDB, times(2)).getCustomerProfile(2);
+  }
+
+  @Test
+  void testInvalidateReloads() {
+    CustomerProfileCache cache = new CustomerProfileCache(discountDB, 10);
+    cache.get(1);
+    cache.invalidate(1);
+    cache.get(1);
+    verify(discountDB, times(2)).getCustomerProfile(1);
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void testProfileLoadedDuringClearIsNotCached() {
+    CustomerProfileCache cache = new CustomerProfileCache(discountDB, 10);
+    CustomerProfileDTO stale = new CustomerProfileDTO(1, List.of(), 50.0);
+    doAnswer(invocation -> {
+      cache.clear(); // a campaign ended while the profile was loading
+      return stale;
+    }).doCallRealMethod().when(discountDB).getCustomerProfile(1);
+
+    CustomerProfileDTO profile = cache.get(1);
+    assertNotSame(stale, profile);
+    assertEquals(discountDB.getDiscounts(1), profile.percentageDiscount());
+    assertSame(profile, cache.get(1));
+    verify(discountDB, times(2)).getCustomerProfile(1);
+  }
+
+  @Test
+  void testMetrics() {
+    CustomerProfileCache cache = new CustomerProfileCache(discountDB, 1);
+    MetricsRegistry metrics = new MetricsRegistry();
+    cache.registerMetrics(metrics);
+    cache.get(1);
+    cache.get(1);
+    cache.get(1);
+    cache.get(2);
+
+    Map<String, Long> gauges = metrics.snapshot().gauges();
+    assertEquals(2L, gauges.get("customer_profile_cache_hits_total"));
+    assertEquals(2L, gauges.get("customer_profile_cache_misses_total"));
+    assertEquals(1L, gauges.get("customer_profile_cache_evictions_total"));
+    assertEquals(1L, gauges.get("customer_profile_cache_size"));
+    assertEquals(500L, gauges.get("customer_profile_cache_hit_ratio_permille"));
+  }
+
+  @Test
+  void testNonPositiveCapacityThrows() {
+    assertThrows(IllegalArgumentException.class, () -> new CustomerProfileCache(discountDB, 0));
+  }
+}
@@ -30,6 +30,14 @@ import static org.junit.jupiter.api.Assertions.*;
  * <li>{@code testGetDiscountsForTotalCostBelowThresholds}: Ensures that no
  * discount is applied when the total cost does not meet any discount
  * thresholds.</li>
+ * <li>{@code testDeactivatedDiscountsDoNotApply}: Ensures that discounts
+ * that are not activated are not applied to items, customers or total
+ * costs.</li>
+ * <li>{@code testParallelEvaluationMatchesSequential}: Ensures that a large
+ * sale split across threads gives exactly the same discount as on one
+ * thread.</li>
+ * <li>{@code testNegativeParallelThresholdThrows}: Ensures that a negative
+ * threshold is rejected.</li>
  * </ul>
  */
 class DiscountDBHandlerTest {
@@ -97,4 +105,51 @@ class DiscountDBHandlerTest {
 
     assertEquals(0.0, discount, 0.01);
   }
-}
\ No newline at end of file
+
+  @Test
+  void testParallelEvaluationMatchesSequential() {
+    List<DiscountDTO> discounts = new ArrayList<>();
+    for (int itemID = 0; itemID < 1_000; itemID++) {
+      discounts.add(new DiscountDTO(itemID, itemID, -1, -1, 0, 1 + itemID % 37, true));
+      if (itemID % 3 == 0) {
+        discounts.add(new DiscountDTO(10_000 + itemID, itemID, -1, -1, 0, 3, true));
+      }
+    }
+    DiscountDBHandler handler = new DiscountDBHandler(discounts);
+    List<SaleItemDTO> saleItems = new ArrayList<>();
+    for (int line = 0; line < 50_000; line++) {
+      ItemDTO item = new ItemDTO(line % 1_200, "Item " + line, 0.01 + (line % 9973) * 0.37, line % 2 == 0 ? 25 : 12);
+      saleItems.add(new SaleItemDTO(item, 1 + line % 7));
+    }
+    SaleDTO sale = new SaleDTO(saleItems, null, 0.0, 0.0, null);
+
+    handler.setParallelThreshold(Integer.MAX_VALUE);
+    double sequential = handler.getDiscounts(sale);
+    handler.setParallelThreshold(0);
+    double parallel = handler.getDiscounts(sale);
+
+    assertEquals(sequential, parallel);
+    assertTrue(sequential > 0);
+  }
+
+  @Test
+  void testDeactivatedDiscountsDoNotApply() {
+    DiscountDBHandler handler = new DiscountDBHandler(List.of(
+        new DiscountDTO(1, 1, -1, -1, 0, 10, false),
+        new DiscountDTO(2, -1, 1, -1, 0, 10, false),
+        new DiscountDTO(3, -1, -1, 100, 0, 10, false),
+        new DiscountDTO(4, -1, -1, 50, 0, 10, true)));
+    SaleDTO sale = new SaleDTO(List.of(new SaleItemDTO(new ItemDTO(1, "TestItem", 100.0, 25), 2)),
+        null, 0.0, 0.0, null);
+
+    assertEquals(0.0, handler.getDiscounts(sale));
+    assertEquals(0.0, handler.getDiscounts(1));
+    assertEquals(10.0, handler.getDiscounts(150.0));
+    assertEquals(1, handler.getActiveDiscounts().size());
+  }
+
+  @Test
+  void testNegativeParallelThresholdThrows() {
+    assertThrows(IllegalArgumentException.class, () -> discountDBHandler.setParallelThreshold(-1));
+  }
+}
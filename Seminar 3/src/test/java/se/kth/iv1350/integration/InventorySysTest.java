@@ -3,9 +3,13 @@ package se.kth.iv1350.integration;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.PriceChangeDTO;
 import se.kth.iv1350.model.dto.SaleDTO;
 import se.kth.iv1350.model.dto.SaleItemDTO;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -20,6 +24,12 @@ import static org.junit.jupiter.api.Assertions.*;
  * <li>Updating the inventory after a sale, ensuring item quantities decrease
  * accordingly.</li>
  * <li>Updating the inventory for multiple items sold in a single sale.</li>
+ * <li>Restocking returned units, and rejecting unknown items.</li>
+ * <li>The item list cannot be changed from outside.</li>
+ * <li>A price change publishes a new version of the item and leaves the old
+ * version unchanged.</li>
+ * <li>A bulk price update checks every item first, and readers only ever see
+ * whole versions of an item while it runs.</li>
  * </ul>
  * <p>
  * Each test is isolated and uses a fresh instance of {@code InventorySys}.
@@ -85,4 +95,89 @@ class InventorySysTest {
     assertEquals(appleQty - 2, inventorySys.getItems().get(0).getQuantity());
     assertEquals(bananaQty - 3, inventorySys.getItems().get(1).getQuantity());
   }
-}
\ No newline at end of file
+
+  @Test
+  void testRestock_QuantityIncreases() {
+    int initialQuantity = inventorySys.getQuantity(4);
+    assertEquals(initialQuantity + 3, inventorySys.restock(4, 3));
+    assertEquals(initialQuantity + 3, inventorySys.getQuantity(4));
+  }
+
+  @Test
+  void testRestock_InvalidReturnThrows() {
+    assertThrows(IllegalArgumentException.class, () -> inventorySys.restock(999, 1));
+    assertThrows(IllegalArgumentException.class, () -> inventorySys.restock(4, 0));
+  }
+
+  @Test
+  void testGetItems_IsUnmodifiable() {
+    List<InventorySys.InventoryItem> items = inventorySys.getItems();
+    assertThrows(UnsupportedOperationException.class, () -> items.remove(0));
+    assertThrows(UnsupportedOperationException.class, () -> items.clear());
+  }
+
+  @Test
+  void testUpdatePrice_PublishesNewVersion() {
+    ItemDTO before = inventorySys.getItem(4);
+
+    ItemDTO after = inventorySys.updatePrice(4, 24.0);
+
+    assertNotSame(before, after);
+    assertEquals(20.0, before.price());
+    assertEquals(24.0, after.price());
+    assertEquals(2544, after.grossCents());
+    assertEquals(before.description(), after.description());
+    assertSame(after, inventorySys.getItem(4));
+    assertEquals(1, inventorySys.getCatalogVersion());
+    assertSame(after, inventorySys.updatePrice(4, 24.0));
+    assertEquals(1, inventorySys.getCatalogVersion());
+    assertThrows(IllegalArgumentException.class, () -> inventorySys.updatePrice(999, 1.0));
+    assertThrows(IllegalArgumentException.class, () -> inventorySys.updatePrice(4, -1.0));
+  }
+
+  @Test
+  void testUpdatePrices_UnknownItemChangesNothing() {
+    List<PriceChangeDTO> changes = List.of(new PriceChangeDTO(1, 11.0), new PriceChangeDTO(999, 1.0));
+
+    assertThrows(IllegalArgumentException.class, () -> inventorySys.updatePrices(changes));
+    assertEquals(10.0, inventorySys.getItem(1).price());
+    assertEquals(0, inventorySys.getCatalogVersion());
+  }
+
+  @Test
+  void testUpdatePrices_ReadersSeeWholeVersions() throws InterruptedException {
+    int count = 100_000;
+    List<ItemDTO> items = new ArrayList<>(count);
+    List<PriceChangeDTO> changes = new ArrayList<>(count);
+    for (int itemID = 0; itemID < count; itemID++) {
+      items.add(new ItemDTO(itemID, "Item " + itemID, 10.0, 25));
+      changes.add(new PriceChangeDTO(itemID, 20.0));
+    }
+    InventorySys large = new InventorySys(items, new int[count]);
+    List<InventorySys.InventoryItem> inventoryItems = large.getItems();
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicReference<ItemDTO> torn = new AtomicReference<>();
+    Thread reader = new Thread(() -> {
+      while (!done.get()) {
+        for (int i = 0; i < count; i += 97) {
+          ItemDTO item = inventoryItems.get(i).getItem();
+          boolean whole = item.price() == 10.0 && item.grossCents() == 1250
+              || item.price() == 20.0 && item.grossCents() == 2500;
+          if (!whole) {
+            torn.set(item);
+          }
+        }
+      }
+    });
+    reader.start();
+
+    assertEquals(count, large.updatePrices(changes));
+    done.set(true);
+    reader.join();
+
+    assertNull(torn.get());
+    assertEquals(count, large.getCatalogVersion());
+    assertEquals(0, large.updatePrices(changes));
+    assertEquals(2500, inventoryItems.get(count - 1).getItem().grossCents());
+  }
+}
@@ -0,0 +1,74 @@
+package se.kth.iv1350.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link ItemInterner} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Equal items and equal descriptions are shared.</li>
+ * <li>An item with changed information replaces the canonical one.</li>
+ * <li>Interned sale lines use much less heap than lines with their own item
+ * copies, measured with JOL.</li>
+ * </ul>
+ */
+class ItemInternerTest {
+  private ItemInterner interner;
+
+  @BeforeEach
+  void setUp() {
+    interner = new ItemInterner();
+  }
+
+  @Test
+  void testEqualItemsShareOneInstance() {
+    ItemDTO first = interner.intern(new ItemDTO(1, new String("Milk"), 10.0, 12));
+    ItemDTO second = interner.intern(new ItemDTO(1, new String("Milk"), 10.0, 12));
+    assertSame(first, second);
+    assertSame(first, interner.get(1));
+  }
+
+  @Test
+  void testDescriptionsArePooled() {
+    ItemDTO milk = interner.intern(new ItemDTO(1, new String("Milk"), 10.0, 12));
+    ItemDTO otherMilk = interner.intern(new ItemDTO(2, new String("Milk"), 12.0, 12));
+    assertSame(milk.description(), otherMilk.description());
+    assertEquals(2, interner.size());
+    assertEquals(1, interner.descriptionCount());
+  }
+
+  @Test
+  void testChangedItemReplacesCanonical() {
+    ItemDTO old = interner.intern(new ItemDTO(1, "Milk", 10.0, 12));
+    ItemDTO updated = interner.intern(new ItemDTO(1, "Milk", 11.0, 12));
+    assertNotSame(old, updated);
+    assertEquals(11.0, interner.get(1).price());
+    assertSame(old.description(), updated.description());
+  }
+
+  @Test
+  void testInternedLinesUseLessHeap() {
+    int lines = 10_000;
+    List<SaleItemDTO> copied = new ArrayList<>(lines);
+    List<SaleItemDTO> interned = new ArrayList<>(lines);
+    for (int i = 0; i < lines; i++) {
+      int itemID = i % 50;
+      copied.add(new SaleItemDTO(new ItemDTO(itemID, "Item number " + itemID, 10.0, 25), 1));
+      ItemDTO item = interner.intern(new ItemDTO(itemID, "Item number " + itemID, 10.0, 25));
+      interned.add(new SaleItemDTO(item, 1));
+    }
+
+    long copiedBytes = GraphLayout.parseInstance(copied).totalSize();
+    long internedBytes = GraphLayout.parseInstance(interned).totalSize();
+    assertTrue(internedBytes * 3 < copiedBytes, "Interning should cut the heap per line to less than a third");
+  }
+}
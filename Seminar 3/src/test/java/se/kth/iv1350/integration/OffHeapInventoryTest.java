@@ -0,0 +1,124 @@
+package se.kth.iv1350.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.PriceChangeDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link OffHeapInventory} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Items are found by ID whatever order they are given in, with their
+ * description, VAT and price intact.</li>
+ * <li>Sales, returns and price changes update the table like they update an
+ * {@link InventorySys}.</li>
+ * <li>Stock reservations on top of the table never exceed the stock.</li>
+ * <li>Concurrent updates from many registers are not lost.</li>
+ * <li>Duplicate items are rejected, and the memory cannot be used after it is
+ * freed.</li>
+ * </ul>
+ */
+class OffHeapInventoryTest {
+  private OffHeapInventory inventory;
+
+  @BeforeEach
+  void setUp() {
+    List<ItemDTO> items = List.of(new ItemDTO(30, "Smörgås", 15.0, 12), new ItemDTO(10, "Apple", 10.0, 25),
+        new ItemDTO(20, "Milk", 20.5, 6));
+    inventory = new OffHeapInventory(items, new int[] {5, 34, 88});
+  }
+
+  @AfterEach
+  void tearDown() {
+    inventory.close();
+  }
+
+  @Test
+  void testItemsAreFoundByID() {
+    assertEquals(new ItemDTO(30, "Smörgås", 15.0, 12), inventory.getItem(30));
+    assertEquals(new ItemDTO(20, "Milk", 20.5, 6), inventory.getItem(20));
+    assertNull(inventory.getItem(25));
+    assertEquals(34, inventory.getQuantity(10));
+    assertEquals(0, inventory.getQuantity(99));
+    List<InventorySys.InventoryItem> items = inventory.getItems();
+    assertEquals(3, items.size());
+    assertEquals(10, items.get(0).getItem().itemID());
+    assertEquals(5, items.get(2).getQuantity());
+    assertEquals(3, inventory.size());
+  }
+
+  @Test
+  void testSalesReturnsAndPriceChanges() {
+    ItemDTO milk = inventory.getItem(20);
+    inventory.updateInventory(new SaleDTO(List.of(new SaleItemDTO(milk, 8),
+        new SaleItemDTO(new ItemDTO(99, "Gone", 1.0, 25), 1)), new Date(), 0.0, 0.0, null));
+    assertEquals(80, inventory.getQuantity(20));
+    assertEquals(83, inventory.restock(20, 3));
+    assertThrows(IllegalArgumentException.class, () -> inventory.restock(99, 1));
+
+    ItemDTO repriced = inventory.updatePrice(20, 22.0);
+    assertEquals(22.0, repriced.price());
+    assertEquals(2332, inventory.getItem(20).grossCents());
+    assertEquals(20.5, milk.price());
+    assertEquals(1, inventory.getCatalogVersion());
+    assertEquals(1, inventory.updatePrices(List.of(new PriceChangeDTO(10, 12.0), new PriceChangeDTO(20, 22.0))));
+    assertEquals(2, inventory.getCatalogVersion());
+  }
+
+  @Test
+  void testStockReservationsStayWithinStock() {
+    StockReservations reservations = new StockReservations(inventory, 60_000);
+    StockReservations.Reservation four = reservations.reserve(30, 4);
+    assertThrows(IllegalStateException.class, () -> reservations.reserve(30, 2));
+    reservations.reserve(30, 1);
+    reservations.release(four);
+    assertEquals(1, reservations.getReserved(30));
+    assertEquals(4, reservations.getUnreserved(30));
+    reservations.close();
+  }
+
+  @Test
+  void testConcurrentUpdatesAreNotLost() throws Exception {
+    int registers = 8;
+    int updates = 10_000;
+    ExecutorService executor = Executors.newFixedThreadPool(registers);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int register = 0; register < registers; register++) {
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < updates; i++) {
+          inventory.restock(10, 2);
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    assertEquals(34 + registers * updates * 2, inventory.getQuantity(10));
+  }
+
+  @Test
+  void testDuplicateItemAndUseAfterCloseThrow() {
+    ItemDTO item = new ItemDTO(1, "Milk", 10.0, 12);
+    assertThrows(IllegalArgumentException.class, () -> new OffHeapInventory(List.of(item, item), new int[2]));
+
+    OffHeapInventory closed = new OffHeapInventory(List.of(item), new int[] {1});
+    assertTrue(closed.getByteSize() > 0);
+    closed.close();
+    assertThrows(IllegalStateException.class, () -> closed.getQuantity(1));
+  }
+}
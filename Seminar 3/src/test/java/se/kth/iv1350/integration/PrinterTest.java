@@ -93,6 +93,19 @@ class PrinterTest {
     assertTrue(output.contains("End receipt"), "Should contain receipt end delimiter");
   }
 
+  @Test
+  void testPrintReceipt_WithSpooler_WritesToChannel() {
+    when(mockReceipt.getSale()).thenReturn(null);
+    ByteArrayOutputStream spoolContent = new ByteArrayOutputStream();
+    ReceiptSpooler spooler = new ReceiptSpooler(java.nio.channels.Channels.newChannel(spoolContent));
+
+    new Printer(spooler).printReceipt(mockReceipt);
+    spooler.close();
+
+    assertTrue(spoolContent.toString().contains("No sale information available."));
+    assertFalse(outContent.toString().contains("Printing receipt..."), "Should not print to System.out");
+  }
+
   @AfterEach
   void tearDown() {
     System.setOut(originalOut);
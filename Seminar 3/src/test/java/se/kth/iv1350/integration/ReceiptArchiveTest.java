@@ -0,0 +1,149 @@
+package se.kth.iv1350.integration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.kth.iv1350.controller.Controller;
+import se.kth.iv1350.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link ReceiptArchive} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>An archived receipt is returned as a read-only view of the mapped
+ * segment.</li>
+ * <li>Full segments roll over, old ones are compressed, and every receipt
+ * can still be fetched after reopening the archive.</li>
+ * <li>Receipts archived out of order are found, also after reopening the
+ * archive.</li>
+ * <li>Receipts can be found by the time they were archived.</li>
+ * <li>The receipts of completed sales are archived when the archive observes
+ * a controller.</li>
+ * <li>Receipts that do not fit in a segment are rejected.</li>
+ * </ul>
+ */
+class ReceiptArchiveTest {
+  @TempDir
+  Path directory;
+
+  private static byte[] receipt(long saleID) {
+    return ("Receipt of sale " + saleID + "\n" + "-".repeat((int) (saleID % 50))).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private ReceiptArchive open() throws IOException {
+    return ReceiptArchive.open(directory, 1024, 1, ReceiptTemplate.defaultTemplate().compile());
+  }
+
+  @Test
+  void testArchivedReceiptIsMappedView() throws IOException {
+    try (ReceiptArchive archive = open()) {
+      archive.append(7, 1_000, receipt(7));
+      archive.append(8, 1_001, new byte[0]);
+
+      ByteBuffer found = archive.get(7);
+      assertTrue(found.isDirect());
+      assertTrue(found.isReadOnly());
+      assertEquals(ByteBuffer.wrap(receipt(7)), found);
+      assertEquals("", archive.getText(8));
+      assertNull(archive.get(9));
+    }
+  }
+
+  @Test
+  void testSegmentsRollOverAndOldOnesAreCompressed() throws IOException {
+    try (ReceiptArchive archive = open()) {
+      for (long saleID = 1; saleID <= 200; saleID++) {
+        archive.append(saleID, saleID, receipt(saleID));
+      }
+      assertTrue(archive.getSegmentCount() > 3);
+      assertEquals(new String(receipt(3), StandardCharsets.UTF_8), archive.getText(3));
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      assertTrue(files.anyMatch(file -> file.toString().endsWith(".seg.gz")));
+    }
+
+    try (ReceiptArchive reopened = open()) {
+      for (long saleID = 1; saleID <= 200; saleID++) {
+        assertEquals(new String(receipt(saleID), StandardCharsets.UTF_8), reopened.getText(saleID));
+      }
+      int segments = reopened.getSegmentCount();
+      reopened.append(201, 201, receipt(201));
+      assertEquals(segments, reopened.getSegmentCount());
+      assertEquals(new String(receipt(201), StandardCharsets.UTF_8), reopened.getText(201));
+    }
+  }
+
+  @Test
+  void testOutOfOrderReceiptIsFound() throws IOException {
+    try (ReceiptArchive archive = open()) {
+      archive.append(10, 1, receipt(10));
+      archive.append(20, 2, receipt(20));
+      archive.append(15, 3, receipt(15));
+      archive.append(30, 4, receipt(30));
+      archive.append(12, 5, receipt(12));
+      assertEquals(new String(receipt(15), StandardCharsets.UTF_8), archive.getText(15));
+      assertEquals(new String(receipt(30), StandardCharsets.UTF_8), archive.getText(30));
+      assertNull(archive.get(16));
+    }
+    try (ReceiptArchive reopened = open()) {
+      for (long saleID : new long[] { 10, 12, 15, 20, 30 }) {
+        assertEquals(new String(receipt(saleID), StandardCharsets.UTF_8), reopened.getText(saleID));
+      }
+      assertNull(reopened.get(25));
+    }
+  }
+
+  @Test
+  void testSaleIDsBetween() throws IOException {
+    try (ReceiptArchive archive = open()) {
+      for (long saleID = 1; saleID <= 100; saleID++) {
+        archive.append(saleID, 1_000 + saleID * 10, receipt(saleID));
+      }
+      assertArrayEquals(new long[] { 40, 41, 42 }, archive.saleIDsBetween(1_400, 1_425));
+      assertEquals(100, archive.saleIDsBetween(0, Long.MAX_VALUE).length);
+      assertEquals(0, archive.saleIDsBetween(5_000, 6_000).length);
+    }
+  }
+
+  @Test
+  void testCompletedSalesAreArchived() throws IOException {
+    try (ReceiptArchive archive = ReceiptArchive.open(directory)) {
+      MetricsRegistry metrics = new MetricsRegistry();
+      archive.registerMetrics(metrics);
+      Controller controller = new Controller(mock(DiscountDBHandler.class), new InventorySys(),
+          mock(AccountingSys.class), mock(Printer.class));
+      controller.addSaleObserver(archive);
+      controller.startNewSale();
+      controller.scanItem(4, 1);
+      controller.setAmountPaid(50);
+
+      long[] archived = archive.saleIDsBetween(0, Long.MAX_VALUE);
+      assertEquals(1, archived.length);
+      assertTrue(archive.getText(archived[0]).contains("Milk"));
+      assertEquals(1L, metrics.snapshot().gauges().get("receipt_archive_receipts_total"));
+    }
+  }
+
+  @Test
+  void testReceiptLargerThanSegmentThrows() throws IOException {
+    try (ReceiptArchive archive = open()) {
+      assertThrows(IllegalArgumentException.class, () -> archive.append(1, 1, new byte[1024]));
+    }
+  }
+
+  @Test
+  void testClosedArchiveThrows() throws IOException {
+    ReceiptArchive archive = open();
+    archive.close();
+    assertThrows(IllegalStateException.class, () -> archive.append(1, 1, receipt(1)));
+  }
+}
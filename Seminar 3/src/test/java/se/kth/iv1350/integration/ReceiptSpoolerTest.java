@@ -0,0 +1,202 @@
+package se.kth.iv1350.integration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.kth.iv1350.metrics.MetricsRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link ReceiptSpooler} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Every submitted receipt ends up in a file target, in order, once the
+ * spool is closed.</li>
+ * <li>Receipts larger than all direct buffers together are written
+ * completely.</li>
+ * <li>A pipe can be used as a stand-in for a local printer.</li>
+ * <li>The spool rejects receipts after it has been closed, and every receipt
+ * accepted while it closes is written.</li>
+ * <li>A failed write is retried, and receipts that still cannot be written
+ * are kept as failed instead of being counted as written.</li>
+ * <li>Queue depth and throughput are reported as gauges.</li>
+ * </ul>
+ */
+class ReceiptSpoolerTest {
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testCloseDrainsAllReceiptsToFile() throws Exception {
+    Path file = tempDir.resolve("receipts.txt");
+    ReceiptSpooler spooler = ReceiptSpooler.toFile(file);
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 1_000; i++) {
+      String receipt = "Receipt " + i + " - Mjölk\n";
+      spooler.submit(receipt);
+      expected.append(receipt);
+    }
+    spooler.close();
+
+    assertEquals(expected.toString(), Files.readString(file, StandardCharsets.UTF_8));
+    assertEquals(1_000, spooler.getReceiptsWritten());
+    assertEquals(0, spooler.getQueueDepth());
+    assertEquals(0, spooler.getWriteErrors());
+  }
+
+  @Test
+  void testLargeReceiptIsWrittenCompletely() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ReceiptSpooler spooler = new ReceiptSpooler(Channels.newChannel(out), 4);
+    String receipt = "x".repeat(200_000);
+    spooler.submit(receipt);
+    spooler.close();
+
+    assertEquals(receipt, out.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void testPipeTarget() throws Exception {
+    Pipe pipe = Pipe.open();
+    ReceiptSpooler spooler = new ReceiptSpooler(pipe.sink());
+    spooler.submit("Begin receipt\n");
+
+    ByteBuffer read = ByteBuffer.allocate(64);
+    while (read.position() < "Begin receipt\n".length()) {
+      pipe.source().read(read);
+    }
+    spooler.close();
+    read.flip();
+    assertEquals("Begin receipt\n", StandardCharsets.UTF_8.decode(read).toString());
+  }
+
+  @Test
+  void testSubmitAfterCloseThrows() throws Exception {
+    ReceiptSpooler spooler = new ReceiptSpooler(Channels.newChannel(new ByteArrayOutputStream()));
+    spooler.close();
+    assertThrows(IllegalStateException.class, () -> spooler.submit("late receipt"));
+  }
+
+  @Test
+  void testRegisterMetricsReportsGauges() throws Exception {
+    MetricsRegistry metrics = new MetricsRegistry();
+    ReceiptSpooler spooler = new ReceiptSpooler(Channels.newChannel(new ByteArrayOutputStream()));
+    spooler.registerMetrics(metrics);
+    spooler.submit("receipt");
+    spooler.close();
+
+    var gauges = metrics.snapshot().gauges();
+    assertEquals(0L, gauges.get("receipt_spool_queue_depth"));
+    assertEquals(1L, gauges.get("receipt_spool_receipts_written_total"));
+    assertTrue(gauges.get("receipt_spool_queue_depth_peak") >= 0);
+  }
+
+  @Test
+  void testReceiptsSubmittedWhileClosingAreWritten() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ReceiptSpooler spooler = new ReceiptSpooler(Channels.newChannel(out), 2);
+    AtomicInteger accepted = new AtomicInteger();
+    List<Thread> cashiers = new ArrayList<>();
+    for (int cashier = 0; cashier < 4; cashier++) {
+      Thread thread = new Thread(() -> {
+        try {
+          while (true) {
+            spooler.submit("r\n");
+            accepted.incrementAndGet();
+          }
+        } catch (IllegalStateException e) {
+          // The spool closed
+        }
+      });
+      thread.start();
+      cashiers.add(thread);
+    }
+    Thread.sleep(50);
+    spooler.close();
+    for (Thread thread : cashiers) {
+      thread.join(5_000);
+      assertFalse(thread.isAlive());
+    }
+
+    assertEquals(accepted.get(), spooler.getReceiptsWritten());
+    assertEquals(accepted.get() * 2, out.size());
+  }
+
+  @Test
+  void testFailedWriteIsRetried() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ReceiptSpooler spooler = new ReceiptSpooler(new FailingChannel(Channels.newChannel(out), 2));
+    spooler.submit("receipt\n");
+    spooler.close();
+
+    assertEquals("receipt\n", out.toString(StandardCharsets.UTF_8));
+    assertEquals(1, spooler.getReceiptsWritten());
+    assertEquals(2, spooler.getWriteErrors());
+    assertEquals(0, spooler.getReceiptsFailed());
+  }
+
+  @Test
+  void testReceiptsThatCannotBeWrittenAreKept() throws Exception {
+    ReceiptSpooler spooler = new ReceiptSpooler(
+        new FailingChannel(Channels.newChannel(new ByteArrayOutputStream()), Integer.MAX_VALUE));
+    spooler.submit("first\n");
+    spooler.submit("second\n");
+    spooler.close();
+
+    assertEquals(0, spooler.getReceiptsWritten());
+    assertEquals(2, spooler.getReceiptsFailed());
+    assertEquals(List.of("first\n", "second\n"), spooler.drainFailedReceipts());
+    assertTrue(spooler.drainFailedReceipts().isEmpty());
+  }
+
+  /**
+   * A channel whose first writes fail.
+   */
+  private static class FailingChannel implements WritableByteChannel {
+    private final WritableByteChannel target;
+    private int failuresLeft;
+
+    /**
+     * Creates a new {@code FailingChannel}.
+     *
+     * @param target   The channel written to once the failures are over.
+     * @param failures The number of writes that fail.
+     */
+    FailingChannel(WritableByteChannel target, int failures) {
+      this.target = target;
+      this.failuresLeft = failures;
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+      if (failuresLeft > 0) {
+        failuresLeft--;
+        throw new IOException("Printer offline.");
+      }
+      return target.write(source);
+    }
+
+    @Override
+    public boolean isOpen() {
+      return target.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      target.close();
+    }
+  }
+}
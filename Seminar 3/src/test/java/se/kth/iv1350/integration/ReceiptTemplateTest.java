@@ -0,0 +1,102 @@
+package se.kth.iv1350.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.PaymentDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link ReceiptTemplate} and {@link ReceiptRenderer}
+ * classes.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>The default template renders exactly the standard receipt layout.</li>
+ * <li>The receipt number of a sale with an identifier is printed.</li>
+ * <li>Header, footer and language settings end up in the receipt.</li>
+ * <li>Column widths are applied, and long values are not cut.</li>
+ * <li>Amounts are rounded half up like {@code %.2f}.</li>
+ * <li>Invalid column widths are rejected.</li>
+ * </ul>
+ */
+class ReceiptTemplateTest {
+  private SaleDTO sale;
+
+  @BeforeEach
+  void setUp() {
+    ItemDTO milk = new ItemDTO(1, "Milk", 10.0, 12);
+    ItemDTO bread = new ItemDTO(2, "Sourdough bread", 20.0, 6);
+    Date datetime = Date.from(LocalDateTime.of(2024, 3, 9, 8, 5, 7).atZone(ZoneId.systemDefault()).toInstant());
+    sale = new SaleDTO(List.of(new SaleItemDTO(milk, 2), new SaleItemDTO(bread, 1)), datetime, 4.36, 3.6,
+        new PaymentDTO(39.24, 50.0));
+  }
+
+  @Test
+  void testDefaultTemplateRendersStandardLayout() {
+    String expected = "\n------------------ Begin receipt ------------------\n"
+        + "Time of Sale: 2024-03-09 08:05:07\n\n"
+        + "Milk         2 x 11.20       22.40 SEK (incl. VAT)\n"
+        + "Sourdough bread    1 x 21.20       21.20 SEK (incl. VAT)\n"
+        + "\n"
+        + "Discount:                   - 4.36 SEK\n"
+        + "Total VAT:                    3.60 SEK\n\n"
+        + "Total(incl. VAT):            39.24 SEK\n"
+        + "Cash:                        50.00 SEK\n"
+        + "Change:                      10.76 SEK\n"
+        + "------------------ End receipt  ------------------\n";
+    assertEquals(expected, ReceiptTemplate.defaultTemplate().compile().render(sale));
+  }
+
+  @Test
+  void testReceiptNumberIsPrinted() {
+    SaleDTO identified = new SaleDTO(sale.saleItems(), sale.datetime(), sale.discount(), sale.totalVAT(),
+        sale.payment(), 1234L);
+    String receipt = ReceiptTemplate.defaultTemplate().compile().render(identified);
+    assertTrue(receipt.contains(" Begin receipt ------------------\nReceipt number: 1234\nTime of Sale: "));
+  }
+
+  @Test
+  void testStoreTemplateWithHeaderFooterAndLanguage() {
+    ReceiptRenderer renderer = ReceiptTemplate.builder()
+        .header("ICA Kista")
+        .footer("Välkommen åter!")
+        .language(ReceiptTemplate.Language.SWEDISH)
+        .build()
+        .compile();
+    String receipt = renderer.render(sale);
+    assertTrue(receipt.contains(" Kvitto start"));
+    assertTrue(receipt.contains("\nICA Kista\nKöptid: 2024-03-09 08:05:07"));
+    assertTrue(receipt.contains("22.40 kr (inkl. moms)"));
+    assertTrue(receipt.contains("Välkommen åter!\n------------------ Kvitto slut"));
+  }
+
+  @Test
+  void testCustomColumnWidths() {
+    ReceiptRenderer renderer = ReceiptTemplate.builder().columns(20, 3, 8, 10).build().compile();
+    String receipt = renderer.render(sale);
+    assertTrue(receipt.contains("Milk                  2 x    11.20         22.40 SEK"));
+  }
+
+  @Test
+  void testAmountsRoundHalfUp() {
+    StringBuilder out = new StringBuilder();
+    FieldWriter.appendAmount(out, 1.005, 5);
+    FieldWriter.appendAmount(out, 0.125, 5);
+    FieldWriter.appendAmount(out, -2.5, 6);
+    assertEquals(String.format(Locale.ROOT, "%5.2f%5.2f%6.2f", 1.005, 0.125, -2.5), out.toString());
+  }
+
+  @Test
+  void testInvalidColumnWidthThrows() {
+    assertThrows(IllegalArgumentException.class, () -> ReceiptTemplate.builder().columns(0, 5, 5, 8));
+  }
+}
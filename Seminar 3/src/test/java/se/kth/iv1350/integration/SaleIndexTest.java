@@ -0,0 +1,130 @@
+package se.kth.iv1350.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.PaymentDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link SaleIndex} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>An indexed sale is found unchanged by its identifier.</li>
+ * <li>Items repeated over many sales are stored once.</li>
+ * <li>Every sale of a large index can be found.</li>
+ * <li>Sales without an identifier are counted but not found.</li>
+ * <li>Sales and returns kept in a journal are read back when it is opened
+ * again, and a record cut short is dropped.</li>
+ * </ul>
+ */
+class SaleIndexTest {
+  private static final ItemDTO APPLE = new ItemDTO(1, "Apple", 10.0, 25);
+  private static final ItemDTO MILK = new ItemDTO(4, "Milk", 20.0, 6);
+
+  @TempDir
+  Path directory;
+
+  private SaleIndex index;
+
+  @BeforeEach
+  void setUp() {
+    index = new SaleIndex();
+  }
+
+  private static SaleDTO sale(long saleID, int apples) {
+    double total = apples * 12.5 + 21.2;
+    return new SaleDTO(List.of(new SaleItemDTO(APPLE, apples), new SaleItemDTO(MILK, 1)),
+        new Date(1_700_000_000_000L + saleID), 0.0, apples * 2.5 + 1.2, new PaymentDTO(total, 100.0), saleID);
+  }
+
+  @Test
+  void testFindIndexedSale() {
+    SaleDTO sale = sale(42, 3);
+    index.add(sale);
+    assertEquals(sale, index.findBySaleID(42));
+    assertNull(index.findBySaleID(43));
+  }
+
+  @Test
+  void testJournalKeepsSalesAndReturns() throws IOException {
+    Path file = directory.resolve("sales.journal");
+    try (SaleIndex journaled = SaleIndex.open(file)) {
+      journaled.completedSale(sale(10, 1));
+      journaled.completedSale(sale(20, 2));
+      journaled.recordReturn(20, 1, 1, 1250);
+    }
+    try (SaleIndex reopened = SaleIndex.open(file)) {
+      assertEquals(2, reopened.size());
+      assertEquals(sale(20, 2), reopened.findBySaleID(20));
+      assertEquals(1, reopened.getReturnedQuantity(20, 1));
+      assertEquals(1, reopened.getReturnedQuantity(20));
+      assertEquals(1250, reopened.getRefundedCents(20));
+      assertEquals(0, reopened.getReturnedQuantity(10));
+      reopened.add(sale(30, 3));
+    }
+    try (SaleIndex reopened = SaleIndex.open(file)) {
+      assertEquals(3, reopened.size());
+      assertEquals(sale(30, 3), reopened.findBySaleID(30));
+      assertEquals(0, reopened.getJournalErrors());
+    }
+  }
+
+  @Test
+  void testRecordCutShortIsDropped() throws IOException {
+    Path file = directory.resolve("sales.journal");
+    try (SaleIndex journaled = SaleIndex.open(file)) {
+      journaled.add(sale(10, 1));
+    }
+    Files.write(file, new byte[] { 0, 0, 0, 100, 1, 0 }, StandardOpenOption.APPEND);
+    try (SaleIndex reopened = SaleIndex.open(file)) {
+      assertEquals(1, reopened.size());
+      reopened.add(sale(20, 2));
+    }
+    try (SaleIndex reopened = SaleIndex.open(file)) {
+      assertEquals(2, reopened.size());
+      assertEquals(sale(20, 2), reopened.findBySaleID(20));
+    }
+  }
+
+  @Test
+  void testRepeatedItemsAreStoredOnce() {
+    for (long saleID = 1; saleID <= 1_000; saleID++) {
+      index.add(sale(saleID, 1 + (int) (saleID % 4)));
+    }
+    assertEquals(2, index.getDistinctItemCount());
+    assertEquals(1_000, index.size());
+  }
+
+  @Test
+  void testLargeIndexFindsEverySale() {
+    long firstID = System.currentTimeMillis() << 10;
+    for (int i = 0; i < 100_000; i++) {
+      index.add(sale(firstID + i * 7L, 1 + i % 3));
+    }
+    for (int i = 0; i < 100_000; i++) {
+      SaleDTO found = index.findBySaleID(firstID + i * 7L);
+      assertEquals(firstID + i * 7L, found.saleID());
+      assertEquals(1 + i % 3, found.saleItems().get(0).quantity());
+    }
+    assertNull(index.findBySaleID(firstID + 1));
+  }
+
+  @Test
+  void testSaleWithoutIdentifier() {
+    index.add(sale(0, 2));
+    assertEquals(1, index.size());
+    assertNull(index.findBySaleID(0));
+  }
+}
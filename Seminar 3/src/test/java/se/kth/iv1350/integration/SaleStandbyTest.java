@@ -0,0 +1,160 @@
+package se.kth.iv1350.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.kth.iv1350.controller.Controller;
+import se.kth.iv1350.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link SaleReplicator} and {@link SaleStandby} classes,
+ * over a loopback socket.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Every change to an open sale reaches the standby, and the standby can
+ * continue the sale with the same total.</li>
+ * <li>Completed and abandoned sales are dropped by the standby.</li>
+ * <li>Sales of several lanes are kept apart.</li>
+ * <li>A lane keeps working when the standby goes away.</li>
+ * <li>A lane sending a bogus frame length is dropped, and other lanes are
+ * still served.</li>
+ * </ul>
+ */
+class SaleStandbyTest {
+  private SaleStandby standby;
+  private InetSocketAddress address;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    standby = new SaleStandby(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    address = new InetSocketAddress(InetAddress.getLoopbackAddress(), standby.getPort());
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    standby.close();
+  }
+
+  private Controller lane(SaleReplicator replicator) {
+    Controller controller = new Controller(mock(DiscountDBHandler.class), new InventorySys(), mock(AccountingSys.class),
+        mock(Printer.class));
+    controller.setSaleReplicator(replicator);
+    return controller;
+  }
+
+  private void awaitFrames(long frames) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (standby.getFramesReceived() < frames && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(frames, standby.getFramesReceived());
+  }
+
+  @Test
+  void testStandbyTakesOverOpenSale() throws IOException, InterruptedException {
+    try (SaleReplicator replicator = SaleReplicator.connect(address)) {
+      Controller primary = lane(replicator);
+      primary.startNewSale();
+      primary.scanItem(1, 2);
+      primary.scanItem(4, 1);
+      primary.scanItem(1, 1);
+      awaitFrames(4);
+
+      Map<Long, byte[]> checkpoints = standby.takeOver();
+      assertEquals(1, checkpoints.size());
+      Controller backup = lane(null);
+      backup.recoverSale(checkpoints.values().iterator().next());
+      assertEquals(58.7, backup.endSale());
+      assertEquals(primary.endSale(), backup.endSale());
+      assertEquals(100 - 58.7, backup.setAmountPaid(100), 1e-9);
+    }
+  }
+
+  @Test
+  void testClosedSalesAreDropped() throws IOException, InterruptedException {
+    try (SaleReplicator replicator = SaleReplicator.connect(address)) {
+      Controller primary = lane(replicator);
+      primary.startNewSale();
+      primary.scanItem(2, 1);
+      primary.setAmountPaid(100);
+      primary.startNewSale();
+      primary.scanItem(3, 1);
+      primary.abandonSale();
+      primary.startNewSale();
+      // start, scan, payment, closed; start, scan, closed; start
+      awaitFrames(8);
+      assertEquals(1, standby.getOpenSaleIDs().size());
+    }
+  }
+
+  @Test
+  void testLanesAreKeptApart() throws IOException, InterruptedException {
+    try (SaleReplicator first = SaleReplicator.connect(address);
+        SaleReplicator second = SaleReplicator.connect(address)) {
+      Controller laneOne = lane(first);
+      Controller laneTwo = lane(second);
+      laneOne.startNewSale();
+      laneTwo.startNewSale();
+      laneOne.scanItem(1, 1);
+      laneTwo.scanItem(5, 3);
+      awaitFrames(4);
+
+      Map<Long, byte[]> checkpoints = standby.takeOver();
+      assertEquals(2, checkpoints.size());
+      double[] totals = checkpoints.values().stream().mapToDouble(checkpoint -> {
+        Controller backup = lane(null);
+        backup.recoverSale(checkpoint);
+        return backup.endSale();
+      }).sorted().toArray();
+      assertArrayEquals(new double[] { laneOne.endSale(), laneTwo.endSale() }, totals);
+    }
+  }
+
+  @Test
+  void testBogusFrameLengthDropsLane() throws IOException, InterruptedException {
+    try (SocketChannel bogus = SocketChannel.open(address)) {
+      ByteBuffer frame = ByteBuffer.allocate(64).putInt(Integer.MAX_VALUE).put(new byte[60]).flip();
+      while (frame.hasRemaining()) {
+        bogus.write(frame);
+      }
+      bogus.socket().setSoTimeout(5_000);
+      assertEquals(-1, bogus.socket().getInputStream().read());
+    }
+    try (SaleReplicator replicator = SaleReplicator.connect(address)) {
+      lane(replicator).startNewSale();
+      awaitFrames(1);
+    }
+  }
+
+  @Test
+  void testLaneKeepsWorkingWithoutStandby() throws IOException, InterruptedException {
+    MetricsRegistry metrics = new MetricsRegistry();
+    try (SaleReplicator replicator = SaleReplicator.connect(address)) {
+      replicator.registerMetrics(metrics);
+      Controller primary = lane(replicator);
+      primary.startNewSale();
+      awaitFrames(1);
+      standby.close();
+
+      long deadline = System.currentTimeMillis() + 5_000;
+      while (replicator.isConnected() && System.currentTimeMillis() < deadline) {
+        primary.scanItem(1, 1);
+        Thread.sleep(1);
+      }
+      assertFalse(replicator.isConnected());
+      primary.scanItem(1, 1);
+      assertTrue(primary.endSale() > 0);
+      assertEquals(1L, metrics.snapshot().gauges().get("sale_replication_failures_total"));
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package se.kth.iv1350.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link ShardedInventory} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Every store has its own stock levels for the shared catalog.</li>
+ * <li>Totals over all stores are summed correctly, for one item and for
+ * all.</li>
+ * <li>The inventory of a single store works as an {@link InventorySys}.</li>
+ * <li>Concurrent updates from many stores are not lost.</li>
+ * <li>Unknown stores and items are rejected.</li>
+ * <li>A price changed through one store is seen by every store.</li>
+ * </ul>
+ */
+class ShardedInventoryTest {
+  private ItemCatalog catalog;
+  private ShardedInventory inventory;
+
+  @BeforeEach
+  void setUp() {
+    List<ItemDTO> items = new ArrayList<>();
+    for (int itemID = 100; itemID > 0; itemID -= 10) {
+      items.add(new ItemDTO(itemID, "Item " + itemID, itemID, 25));
+    }
+    catalog = new ItemCatalog(items);
+    inventory = new ShardedInventory(catalog, 3);
+    inventory.addStore(1);
+    inventory.addStore(2);
+  }
+
+  @Test
+  void testCatalogIsSortedByItemID() {
+    assertEquals(10, catalog.size());
+    assertEquals(10, catalog.itemAt(0).itemID());
+    assertEquals("Item 50", catalog.get(50).description());
+    assertNull(catalog.get(55));
+  }
+
+  @Test
+  void testDuplicateItemIDThrows() {
+    ItemDTO item = new ItemDTO(1, "Milk", 10.0, 12);
+    assertThrows(IllegalArgumentException.class, () -> new ItemCatalog(List.of(item, item)));
+  }
+
+  @Test
+  void testStoresHaveSeparateStock() {
+    inventory.setQuantity(1, 50, 7);
+    inventory.setQuantity(2, 50, 3);
+    assertEquals(7, inventory.getQuantity(1, 50));
+    assertEquals(3, inventory.getQuantity(2, 50));
+    assertEquals(10, inventory.totalQuantity(50));
+  }
+
+  @Test
+  void testTotalQuantities() {
+    inventory.setQuantity(1, 10, 1);
+    inventory.setQuantity(2, 10, 2);
+    inventory.setQuantity(2, 100, 5);
+    Map<Integer, Long> totals = inventory.totalQuantities();
+    assertEquals(10, totals.size());
+    assertEquals(3L, totals.get(10));
+    assertEquals(5L, totals.get(100));
+    assertEquals(0L, totals.get(50));
+  }
+
+  @Test
+  void testPriceChangeIsSharedByAllStores() {
+    InventorySys first = inventory.forStore(1);
+    InventorySys second = inventory.forStore(2);
+    ItemDTO before = second.getItem(40);
+
+    ItemDTO after = first.updatePrice(40, 45.0);
+
+    assertEquals(40.0, before.price());
+    assertSame(after, second.getItem(40));
+    assertSame(after, catalog.itemAt(catalog.indexOf(40)));
+    assertEquals(1, second.getCatalogVersion());
+    assertThrows(IllegalArgumentException.class, () -> first.updatePrice(41, 1.0));
+  }
+
+  @Test
+  void testStoreInventoryView() {
+    inventory.setQuantity(2, 30, 8);
+    InventorySys store = inventory.forStore(2);
+    ItemDTO item = store.getItem(30);
+    assertEquals(30, item.itemID());
+    assertNull(store.getItem(31));
+
+    store.updateInventory(new SaleDTO(List.of(new SaleItemDTO(item, 3)), new Date(), 0.0, 0.0, null));
+    assertEquals(5, store.getQuantity(30));
+    assertEquals(0, inventory.getQuantity(1, 30));
+    assertEquals(10, store.getItems().size());
+  }
+
+  @Test
+  void testConcurrentUpdatesAreNotLost() throws Exception {
+    int stores = 16;
+    int updates = 10_000;
+    for (int storeID = 1; storeID <= stores; storeID++) {
+      inventory.addStore(storeID);
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> results = new ArrayList<>();
+    for (int storeID = 1; storeID <= stores; storeID++) {
+      int store = storeID;
+      results.add(executor.submit(() -> {
+        for (int i = 0; i < updates; i++) {
+          inventory.addQuantity(store, 10 + (i % 10) * 10, 1);
+        }
+      }));
+    }
+    for (Future<?> result : results) {
+      result.get();
+    }
+    executor.shutdown();
+    assertEquals((long) stores * updates / 10, inventory.totalQuantity(70));
+  }
+
+  @Test
+  void testUnknownStoreOrItemThrows() {
+    assertThrows(IllegalArgumentException.class, () -> inventory.getQuantity(3, 10));
+    assertThrows(IllegalArgumentException.class, () -> inventory.getQuantity(1, 11));
+    assertThrows(IllegalArgumentException.class, () -> inventory.forStore(3));
+  }
+}
@@ -0,0 +1,202 @@
+package se.kth.iv1350.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.kth.iv1350.metrics.MetricsRegistry;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import se.kth.iv1350.model.dto.SaleItemDTO;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link StockReservations} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Reserving holds stock and fails when not enough units are left.</li>
+ * <li>Releasing gives the stock back, and committing a sold reservation
+ * drops its hold.</li>
+ * <li>Reservations that are not completed in time expire and release their
+ * stock; a late commit is refused, and renewing reserves the units again only
+ * if they are still free.</li>
+ * <li>Concurrent registers can never reserve more units than are in
+ * stock.</li>
+ * <li>Stock changed in the inventory in any other way, such as a return, is
+ * seen at once.</li>
+ * </ul>
+ */
+class StockReservationsTest {
+  private static final long HOLD = 60_000L;
+  private static final int APPLE = 1;
+  private static final int APPLES_IN_STOCK = 34;
+
+  private long now;
+  private InventorySys inventory;
+  private StockReservations reservations;
+
+  @BeforeEach
+  void setUp() {
+    now = 1_710_000_000_000L;
+    inventory = new InventorySys();
+    reservations = new StockReservations(inventory, HOLD, () -> now);
+  }
+
+  /**
+   * Removes sold apples from the inventory, as completing a sale does.
+   *
+   * @param quantity The number of apples sold.
+   */
+  private void sellApples(int quantity) {
+    inventory.updateInventory(new SaleDTO(List.of(new SaleItemDTO(new ItemDTO(APPLE, "Apple", 10.0, 25), quantity)),
+        new Date(), 0.0, 0.0, null));
+  }
+
+  @Test
+  void testReserveHoldsStock() {
+    StockReservations.Reservation reservation = reservations.reserve(APPLE, 4);
+    assertTrue(reservation.isPending());
+    assertEquals(4, reservations.getReserved(APPLE));
+    assertEquals(APPLES_IN_STOCK - 4, reservations.getUnreserved(APPLE));
+  }
+
+  @Test
+  void testReserveMoreThanInStockThrows() {
+    reservations.reserve(APPLE, APPLES_IN_STOCK - 1);
+    assertThrows(IllegalStateException.class, () -> reservations.reserve(APPLE, 2));
+    assertEquals(1, reservations.getUnreserved(APPLE));
+  }
+
+  @Test
+  void testReserveUnknownItemThrows() {
+    assertThrows(IllegalStateException.class, () -> reservations.reserve(999, 1));
+  }
+
+  @Test
+  void testReleaseReturnsStock() {
+    StockReservations.Reservation reservation = reservations.reserve(APPLE, 4);
+    reservations.release(reservation);
+    reservations.release(reservation);
+    assertFalse(reservation.isPending());
+    assertEquals(0, reservations.getReserved(APPLE));
+    assertEquals(APPLES_IN_STOCK, reservations.getUnreserved(APPLE));
+  }
+
+  @Test
+  void testCommitDropsHoldOfSoldUnits() {
+    StockReservations.Reservation reservation = reservations.reserve(APPLE, 4);
+    sellApples(4);
+    assertEquals(APPLES_IN_STOCK - 8, reservations.getUnreserved(APPLE));
+    assertTrue(reservations.commit(reservation));
+    reservations.release(reservation);
+    assertEquals(0, reservations.getReserved(APPLE));
+    assertEquals(APPLES_IN_STOCK - 4, reservations.getUnreserved(APPLE));
+  }
+
+  @Test
+  void testAbandonedReservationExpires() {
+    StockReservations.Reservation reservation = reservations.reserve(APPLE, APPLES_IN_STOCK);
+    now += HOLD - 1;
+    reservations.expireOverdue();
+    assertTrue(reservation.isPending());
+
+    now += 2_000;
+    reservations.expireOverdue();
+    assertFalse(reservation.isPending());
+    assertEquals(1, reservations.getExpiredCount());
+    assertEquals(APPLES_IN_STOCK, reservations.getUnreserved(APPLE));
+  }
+
+  @Test
+  void testExpiryAfterLongIdleTime() {
+    StockReservations.Reservation reservation = reservations.reserve(APPLE, 1);
+    now += HOLD * 100;
+    reservations.expireOverdue();
+    assertFalse(reservation.isPending());
+  }
+
+  @Test
+  void testCommitAfterExpiryIsRefused() {
+    StockReservations.Reservation reservation = reservations.reserve(APPLE, 4);
+    now += HOLD + 2_000;
+    reservations.expireOverdue();
+    assertFalse(reservations.commit(reservation));
+    assertEquals(1, reservations.getLateCommitCount());
+    assertEquals(0, reservations.getReserved(APPLE));
+    assertEquals(APPLES_IN_STOCK, reservations.getUnreserved(APPLE));
+    MetricsRegistry metrics = new MetricsRegistry();
+    reservations.registerMetrics(metrics);
+    assertEquals(1L, metrics.snapshot().gauges().get("stock_reservations_late_commits_total"));
+  }
+
+  @Test
+  void testRenewReservesExpiredUnitsIfStillFree() {
+    StockReservations.Reservation pending = reservations.reserve(APPLE, 4);
+    assertSame(pending, reservations.renew(pending));
+
+    now += HOLD + 2_000;
+    reservations.expireOverdue();
+    StockReservations.Reservation renewed = reservations.renew(pending);
+    assertTrue(renewed.isPending());
+    assertEquals(4, reservations.getReserved(APPLE));
+
+    now += HOLD + 2_000;
+    reservations.expireOverdue();
+    reservations.reserve(APPLE, APPLES_IN_STOCK - 2);
+    assertThrows(IllegalStateException.class, () -> reservations.renew(renewed));
+  }
+
+  @Test
+  void testConcurrentRegistersCannotOversell() throws Exception {
+    int registers = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(registers);
+    CountDownLatch startSignal = new CountDownLatch(1);
+    List<Future<Integer>> results = new ArrayList<>();
+    for (int i = 0; i < registers; i++) {
+      Callable<Integer> register = () -> {
+        startSignal.await();
+        int reserved = 0;
+        for (int attempt = 0; attempt < APPLES_IN_STOCK; attempt++) {
+          try {
+            StockReservations.Reservation reservation = reservations.reserve(APPLE, 1);
+            sellApples(1);
+            reservations.commit(reservation);
+            reserved++;
+          } catch (IllegalStateException e) {
+            // Sold out
+          }
+        }
+        return reserved;
+      };
+      results.add(executor.submit(register));
+    }
+    startSignal.countDown();
+    int total = 0;
+    for (Future<Integer> result : results) {
+      total += result.get();
+    }
+    executor.shutdown();
+    assertEquals(APPLES_IN_STOCK, total);
+    assertEquals(0, reservations.getUnreserved(APPLE));
+  }
+
+  @Test
+  void testInventoryChangesAreSeen() {
+    StockReservations.Reservation reservation = reservations.reserve(APPLE, APPLES_IN_STOCK);
+    sellApples(APPLES_IN_STOCK);
+    reservations.commit(reservation);
+    assertEquals(0, reservations.getUnreserved(APPLE));
+    inventory.restock(APPLE, 2);
+    assertEquals(2, reservations.getUnreserved(APPLE));
+    reservations.reserve(APPLE, 2);
+    assertThrows(IllegalStateException.class, () -> reservations.reserve(APPLE, 1));
+  }
+}
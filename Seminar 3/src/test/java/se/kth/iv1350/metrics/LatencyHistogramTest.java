@@ -0,0 +1,76 @@
+package se.kth.iv1350.metrics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link LatencyHistogram} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Bucket indexes and upper bounds are consistent with each other.</li>
+ * <li>Percentiles stay within the promised relative error.</li>
+ * <li>Count, sum and max are tracked exactly.</li>
+ * <li>Out-of-range values are clamped instead of failing.</li>
+ * </ul>
+ */
+class LatencyHistogramTest {
+  private LatencyHistogram histogram;
+
+  @BeforeEach
+  void setUp() {
+    histogram = new LatencyHistogram();
+  }
+
+  @Test
+  void testBucketUpperBoundContainsValue() {
+    long[] values = { 0, 1, 31, 32, 63, 64, 1000, 123_456, 9_876_543_210L };
+    for (long value : values) {
+      int index = LatencyHistogram.bucketIndex(value);
+      assertTrue(LatencyHistogram.bucketUpperBound(index) >= value, "Upper bound too small for " + value);
+      if (index > 0) {
+        assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < value, "Value in wrong bucket: " + value);
+      }
+    }
+  }
+
+  @Test
+  void testPercentilesWithinRelativeError() {
+    for (int i = 1; i <= 10_000; i++) {
+      histogram.record(i * 1_000L);
+    }
+    LatencyHistogram.HistogramSnapshot snapshot = histogram.snapshot();
+    assertEquals(5_000_000, snapshot.valueAtPercentile(50), 5_000_000 * 0.04);
+    assertEquals(9_900_000, snapshot.valueAtPercentile(99), 9_900_000 * 0.04);
+    assertEquals(10_000_000, snapshot.valueAtPercentile(100));
+  }
+
+  @Test
+  void testCountSumAndMax() {
+    histogram.record(10);
+    histogram.record(20);
+    histogram.record(30);
+    LatencyHistogram.HistogramSnapshot snapshot = histogram.snapshot();
+    assertEquals(3, snapshot.count());
+    assertEquals(60, snapshot.sum());
+    assertEquals(30, snapshot.max());
+    assertEquals(20.0, snapshot.mean());
+  }
+
+  @Test
+  void testOutOfRangeValuesAreClamped() {
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+    LatencyHistogram.HistogramSnapshot snapshot = histogram.snapshot();
+    assertEquals(2, snapshot.count());
+    assertEquals(0, snapshot.valueAtPercentile(50));
+  }
+
+  @Test
+  void testEmptyHistogram() {
+    LatencyHistogram.HistogramSnapshot snapshot = histogram.snapshot();
+    assertEquals(0, snapshot.valueAtPercentile(99));
+    assertEquals(0.0, snapshot.mean());
+  }
+}
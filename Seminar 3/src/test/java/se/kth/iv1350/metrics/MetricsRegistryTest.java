@@ -0,0 +1,80 @@
+package se.kth.iv1350.metrics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link MetricsRegistry} class and the output formats of
+ * {@link MetricsSnapshot}.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>The same {@link OperationMetrics} is returned for the same name.</li>
+ * <li>Successes and failures show up in the snapshot.</li>
+ * <li>The Prometheus output contains the expected series.</li>
+ * <li>{@link MetricsFileReporter} writes a snapshot to file.</li>
+ * </ul>
+ */
+class MetricsRegistryTest {
+  private MetricsRegistry registry;
+
+  @TempDir
+  Path tempDir;
+
+  @BeforeEach
+  void setUp() {
+    registry = new MetricsRegistry();
+  }
+
+  @Test
+  void testOperationIsCreatedOnce() {
+    assertSame(registry.operation("scan_item"), registry.operation("scan_item"));
+  }
+
+  @Test
+  void testSnapshotContainsRecordedCalls() {
+    OperationMetrics scan = registry.operation("scan_item");
+    scan.recordSuccess(1_000);
+    scan.recordSuccess(2_000);
+    scan.recordFailure(3_000);
+
+    OperationMetrics.OperationSnapshot snapshot = registry.snapshot().operation("scan_item");
+    assertNotNull(snapshot);
+    assertEquals(2, snapshot.successes());
+    assertEquals(1, snapshot.failures());
+    assertEquals(3, snapshot.calls());
+    assertEquals(3, snapshot.latency().count());
+  }
+
+  @Test
+  void testPrometheusFormat() {
+    registry.operation("scan_item").recordFailure(1_000);
+    String text = registry.snapshot().toPrometheus();
+    assertTrue(text.contains("# TYPE pos_operation_latency_seconds summary"));
+    assertTrue(text.contains("pos_operation_latency_seconds_count{operation=\"scan_item\"} 1"));
+    assertTrue(text.contains("pos_operation_failures_total{operation=\"scan_item\"} 1"));
+  }
+
+  @Test
+  void testTextFormat() {
+    registry.operation("complete_sale").recordSuccess(1_000);
+    String text = registry.snapshot().toText();
+    assertTrue(text.contains("complete_sale"));
+    assertTrue(text.contains("p99(us)"));
+  }
+
+  @Test
+  void testFileReporterWritesSnapshot() throws Exception {
+    registry.operation("scan_item").recordSuccess(1_000);
+    Path target = tempDir.resolve("metrics.prom");
+    MetricsFileReporter reporter = new MetricsFileReporter(registry, target, MetricsFileReporter.Format.PROMETHEUS);
+    reporter.report();
+    reporter.close();
+    assertTrue(Files.readString(target).contains("operation=\"scan_item\""));
+  }
+}
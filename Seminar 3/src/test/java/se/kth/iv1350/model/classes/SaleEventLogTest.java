@@ -0,0 +1,137 @@
+package se.kth.iv1350.model.classes;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.kth.iv1350.model.dto.ItemDTO;
+
+import java.util.Arrays;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link SaleEventLog} class and replaying a {@link Sale}.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Every change to a sale is recorded as an event, with each item defined
+ * once.</li>
+ * <li>Replaying the log gives a sale with the same state and an identical
+ * log.</li>
+ * <li>A standby log that receives only the new bytes stays identical to the
+ * original.</li>
+ * <li>Incomplete or unknown events, and units of items that were never
+ * defined, are rejected.</li>
+<li>Items count as defined only after an append that defines them succeeds,
+and no longer once the log is cleared.</li>
+ * </ul>
+ */
+class SaleEventLogTest {
+  private Sale sale;
+  private ItemDTO milk;
+  private ItemDTO bread;
+
+  @BeforeEach
+  void setUp() {
+    sale = new Sale();
+    milk = new ItemDTO(1, "Mjölk", 12.9, 12);
+    bread = new ItemDTO(2, "Bread", 25.0, 12);
+  }
+
+  @Test
+  void testChangesAreRecorded() {
+    sale.addItem(milk, 2);
+    sale.addItem(milk, 1);
+    sale.addItem(bread, 1);
+    sale.addPercentageDiscount(10);
+
+    // Start, milk defined, two milk additions, bread defined, bread added and
+    // the discount. "Mjölk" takes six bytes in UTF-8.
+    SaleEventLog log = sale.getEventLog();
+    assertEquals(7, log.getEventCount());
+    int itemDefinition = 1 + 4 + 8 + 4 + 2;
+    assertEquals(9 + (itemDefinition + 6) + 9 + 9 + (itemDefinition + 5) + 9 + 9, log.size());
+  }
+
+  @Test
+  void testReplayRebuildsSale() {
+    sale.addItem(milk, 2);
+    sale.addItem(bread, 1);
+    sale.addFixedDiscount(3.5);
+    sale.addPercentageDiscount(10);
+    sale.setPromotionDiscount(1.25);
+    sale.addItem(milk, 4);
+    sale.getAmountChange(200);
+
+    Sale replayed = Sale.replay(SaleEventLog.fromBytes(sale.getEventLog().toByteArray()));
+    assertEquals(sale.getSaleID(), replayed.getSaleID());
+    assertEquals(sale.getTotalPrice(), replayed.getTotalPrice());
+    assertEquals(sale.getTotalVAT(), replayed.getTotalVAT());
+    assertEquals(sale.getDiscounts(), replayed.getDiscounts());
+    assertEquals(sale.getPayment(), replayed.getPayment());
+    assertEquals(sale.getDateTime(), replayed.getDateTime());
+    assertEquals(6, replayed.getSaleItems().get(0).getQuantity());
+    assertEquals("Mjölk", replayed.getSaleItems().get(0).getItem().description());
+    assertArrayEquals(sale.getEventLog().toByteArray(), replayed.getEventLog().toByteArray());
+  }
+
+  @Test
+  void testStandbyFollowsWithDeltas() {
+    SaleEventLog standby = new SaleEventLog();
+    int shipped = 0;
+    sale.addItem(milk, 1);
+    standby.append(sale.getEventLog().copyFrom(shipped));
+    shipped = sale.getEventLog().size();
+    sale.addItem(bread, 2);
+    sale.addPercentageDiscount(5);
+    byte[] delta = sale.getEventLog().copyFrom(shipped);
+    assertEquals((19 + 5) + 9 + 9, delta.length);
+    standby.append(delta);
+
+    assertArrayEquals(sale.getEventLog().toByteArray(), standby.toByteArray());
+    assertEquals(sale.getTotalPrice(), Sale.replay(standby).getTotalPrice());
+  }
+
+  @Test
+  void testIncompleteEventsAreRejected() {
+    sale.addItem(milk, 1);
+    byte[] bytes = sale.getEventLog().toByteArray();
+    SaleEventLog log = new SaleEventLog();
+    assertThrows(IllegalArgumentException.class, () -> log.append(Arrays.copyOf(bytes, bytes.length - 1)));
+    assertEquals(0, log.size());
+    assertThrows(IllegalArgumentException.class, () -> log.append(new byte[] { 99 }));
+    assertThrows(IllegalArgumentException.class, () -> Sale.replay(new SaleEventLog()));
+  }
+
+  @Test
+  void testUndefinedItemIsRejected() {
+    sale.addItem(milk, 1);
+    byte[] bytes = sale.getEventLog().toByteArray();
+    int eventLength = 1 + Long.BYTES;
+    byte[] withoutDefinition = new byte[eventLength * 2];
+    System.arraycopy(bytes, 0, withoutDefinition, 0, eventLength);
+    System.arraycopy(bytes, bytes.length - eventLength, withoutDefinition, eventLength, eventLength);
+
+    assertThrows(IllegalArgumentException.class, () -> SaleEventLog.fromBytes(withoutDefinition));
+    SaleEventLog standby = SaleEventLog.fromBytes(Arrays.copyOf(bytes, eventLength));
+    byte[] addedOnly = Arrays.copyOfRange(bytes, bytes.length - eventLength, bytes.length);
+    assertThrows(IllegalArgumentException.class, () -> standby.append(addedOnly));
+    assertEquals(1, standby.getEventCount());
+  }
+
+  @Test
+  void testDefinitionsKeptOnlyFromAppendedEvents() {
+    sale.addItem(milk, 1);
+    byte[] bytes = sale.getEventLog().toByteArray();
+    int eventLength = 1 + Long.BYTES;
+    byte[] addedOnly = Arrays.copyOfRange(bytes, bytes.length - eventLength, bytes.length);
+
+    SaleEventLog standby = SaleEventLog.fromBytes(Arrays.copyOf(bytes, eventLength));
+    byte[] definedThenCut = Arrays.copyOfRange(bytes, eventLength, bytes.length - 1);
+    assertThrows(IllegalArgumentException.class, () -> standby.append(definedThenCut));
+    assertThrows(IllegalArgumentException.class, () -> standby.append(addedOnly));
+
+    standby.append(Arrays.copyOfRange(bytes, eventLength, bytes.length));
+    standby.append(addedOnly);
+    standby.clear();
+    assertThrows(IllegalArgumentException.class, () -> standby.append(addedOnly));
+  }
+}
@@ -0,0 +1,108 @@
+package se.kth.iv1350.model.classes;
+
+import org.junit.jupiter.api.Test;
+import se.kth.iv1350.model.dto.ItemDTO;
+import se.kth.iv1350.model.dto.SaleDTO;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link SalePool} class.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>A released sale is taken again empty, with a new identifier and a log
+ * that starts the new sale only.</li>
+ * <li>A reused sale reuses its lines and computes the same totals as a new
+ * sale.</li>
+ * <li>A {@link SaleDTO} made from a sale is not changed when the sale is
+ * reused.</li>
+ * <li>The pool keeps at most the given number of idle sales.</li>
+ * </ul>
+ */
+class SalePoolTest {
+  private final ItemDTO milk = new ItemDTO(1, "Milk", 10.0, 12);
+  private final ItemDTO bread = new ItemDTO(2, "Bread", 20.0, 25);
+
+  @Test
+  void testReleasedSaleIsTakenEmpty() {
+    SalePool pool = new SalePool(1);
+    Sale sale = pool.take();
+    long firstID = sale.getSaleID();
+    sale.addItem(milk, 2);
+    sale.addFixedDiscount(1.0);
+    sale.getAmountChange(50.0);
+    pool.release(sale);
+
+    Sale reused = pool.take();
+    assertSame(sale, reused);
+    assertTrue(reused.getSaleID() > firstID);
+    assertTrue(reused.getSaleItems().isEmpty());
+    assertEquals(0.0, reused.getTotalPrice());
+    assertEquals(0.0, reused.getTotalVAT());
+    assertNull(reused.getPayment());
+    assertNull(reused.getDateTime());
+    assertEquals(1, reused.getEventLog().getEventCount());
+    assertEquals(reused.getSaleID(), Sale.replay(reused.getEventLog()).getSaleID());
+    assertEquals(1, pool.getCreatedCount());
+    assertEquals(1, pool.getReusedCount());
+  }
+
+  @Test
+  void testReusedSaleMatchesNewSale() {
+    SalePool pool = new SalePool(1);
+    Sale sale = pool.take();
+    sale.addItem(milk, 1);
+    sale.addItem(bread, 1);
+    SaleItem line = sale.getSaleItems().get(0);
+    pool.release(sale);
+
+    Sale reused = pool.take();
+    reused.addItem(bread, 3);
+    reused.addPercentageDiscount(10);
+    Sale fresh = new Sale();
+    fresh.addItem(bread, 3);
+    fresh.addPercentageDiscount(10);
+
+    assertSame(line, reused.getSaleItems().get(0));
+    assertEquals(bread, reused.getSaleItems().get(0).getItem());
+    assertEquals(3, reused.getSaleItems().get(0).getQuantity());
+    assertEquals(fresh.getTotalPrice(), reused.getTotalPrice());
+    assertEquals(fresh.getTotalVAT(), reused.getTotalVAT());
+    assertEquals(fresh.getEventLog().getEventCount(), reused.getEventLog().getEventCount());
+  }
+
+  @Test
+  void testSaleDTOSurvivesReuse() {
+    SalePool pool = new SalePool(1);
+    Sale sale = pool.take();
+    sale.addItem(milk, 2);
+    sale.getAmountChange(30.0);
+    SaleDTO completed = new SaleDTO(sale);
+    pool.release(sale);
+
+    Sale next = pool.take();
+    next.addItem(bread, 5);
+    next.getAmountChange(200.0);
+
+    assertEquals(1, completed.saleItems().size());
+    assertEquals(milk, completed.saleItems().get(0).item());
+    assertEquals(2, completed.saleItems().get(0).quantity());
+    assertEquals(30.0, completed.payment().amountPaid());
+    assertNotEquals(next.getSaleID(), completed.saleID());
+    assertNotSame(next.getDateTime(), completed.datetime());
+  }
+
+  @Test
+  void testPoolKeepsAtMostMaxPooled() {
+    SalePool pool = new SalePool(1);
+    Sale first = pool.take();
+    Sale second = pool.take();
+    pool.release(first);
+    pool.release(second);
+
+    assertSame(first, pool.take());
+    assertNotSame(second, pool.take());
+    assertEquals(3, pool.getCreatedCount());
+    assertThrows(IllegalArgumentException.class, () -> new SalePool(-1));
+  }
+}
@@ -20,6 +20,9 @@ import static org.junit.jupiter.api.Assertions.*;
  * <li>Discounts exceeding the total price</li>
  * <li>Negative totals after discounts (should be floored at zero)</li>
  * <li>No items in the sale</li>
+ * <li>Every sale getting its own, increasing identifier</li>
+ * <li>Totals and VAT summed from the minor units of each item, which are
+ * computed once and checked against the price</li>
  * </ul>
  * <p>
  * The tests use {@link ItemDTO} and {@link DiscountDTO} to simulate sale items
@@ -105,4 +108,31 @@ class SaleTest {
   void testGetTotalPrice_NoItems() {
     assertEquals(0.0, sale.getTotalPrice());
   }
-}
\ No newline at end of file
+
+  @Test
+  void testSaleIdentifiersIncrease() {
+    Sale next = new Sale();
+    assertTrue(sale.getSaleID() > 0);
+    assertTrue(next.getSaleID() > sale.getSaleID());
+  }
+
+  @Test
+  void testTotalsUseItemMinorUnits() {
+    ItemDTO candy = new ItemDTO(3, "Candy", 0.99, 12);
+    assertEquals(99, candy.netCents());
+    assertEquals(12, candy.vatCents());
+    assertEquals(111, candy.grossCents());
+    assertEquals(1.11, candy.grossPrice());
+    sale.addItem(candy, 3);
+    sale.addItem(item1, 1);
+    assertEquals(3.33 + 11.2, sale.getTotalPrice(), 1e-9);
+    assertEquals(0.36 + 1.2, sale.getTotalVAT(), 1e-9);
+  }
+
+  @Test
+  void testInconsistentMinorUnitsThrow() {
+    assertThrows(IllegalArgumentException.class, () -> new ItemDTO(3, "Candy", 0.99, 12, 99, 12, 110));
+    assertThrows(IllegalArgumentException.class, () -> new ItemDTO(3, "Candy", 0.99, 12, 100, 12, 112));
+    assertEquals(new ItemDTO(3, "Candy", 0.99, 12), new ItemDTO(3, "Candy", 0.99, 12, 99, 12, 111));
+  }
+}
@@ -0,0 +1,150 @@
+package se.kth.iv1350.model.promotion;
+
+import org.junit.jupiter.api.Test;
+import se.kth.iv1350.model.dto.ItemDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link PromotionEngine} and {@link PromotionEvaluator}
+ * classes.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>Multi-buys, bundles and thresholds give the expected discounts.</li>
+ * <li>Of overlapping promotions, the combination with the lowest price is
+ * applied, while stackable promotions always apply, to the price left after
+ * the other promotions.</li>
+ * <li>The discount never exceeds the value of the sale.</li>
+ * <li>A change to one item only re-evaluates the promotions depending on
+ * it.</li>
+ * <li>Duplicate promotion identifiers are rejected.</li>
+ * </ul>
+ */
+class PromotionEngineTest {
+  private final ItemDTO milk = new ItemDTO(1, "Milk", 10.0, 0);
+  private final ItemDTO bread = new ItemDTO(2, "Bread", 20.0, 0);
+  private final ItemDTO cheese = new ItemDTO(3, "Cheese", 50.0, 0);
+
+  @Test
+  void testMultiBuy() {
+    PromotionEvaluator evaluator = new PromotionEngine(List.of(new MultiBuyPromotion(1, 1, 3, 2))).newEvaluator();
+    assertEquals(0, evaluator.add(milk, 2));
+    assertEquals(1000, evaluator.add(milk, 1));
+    assertEquals(1000, evaluator.add(milk, 2));
+    assertEquals(2000, evaluator.add(milk, 1));
+    assertEquals(20.0, evaluator.getDiscount());
+  }
+
+  @Test
+  void testBundleAndThreshold() {
+    PromotionEngine engine = new PromotionEngine(List.of(
+        new BundlePromotion(1, Map.of(1, 2, 2, 1), 35.0),
+        new ThresholdPromotion(2, new int[] { 3 }, 2, 10, false)));
+    PromotionEvaluator evaluator = engine.newEvaluator();
+    evaluator.add(milk, 4);
+    assertEquals(0, evaluator.getDiscountCents());
+    evaluator.add(bread, 1);
+    assertEquals(500, evaluator.getDiscountCents());
+    evaluator.add(bread, 1);
+    assertEquals(1000, evaluator.getDiscountCents());
+    evaluator.add(cheese, 2);
+    assertEquals(2000, evaluator.getDiscountCents());
+  }
+
+  @Test
+  void testBestCombinationOfOverlappingPromotions() {
+    PromotionEngine engine = new PromotionEngine(List.of(
+        new MultiBuyPromotion(1, 1, 3, 2),
+        new BundlePromotion(2, Map.of(1, 1, 2, 1), 20.0),
+        new MultiBuyPromotion(3, 2, 2, 1)));
+    PromotionEvaluator evaluator = engine.newEvaluator();
+    evaluator.add(milk, 3);
+    evaluator.add(bread, 2);
+    // Two bundles (2 * 10 off) beat either multi-buy alone, but both
+    // multi-buys together (10 + 20 off) beat the bundles.
+    assertEquals(3000, evaluator.getDiscountCents());
+    assertEquals(List.of(1, 3), evaluator.getAppliedPromotions().stream().map(Promotion::getPromotionID).toList());
+
+    evaluator.setQuantity(milk, 1);
+    evaluator.setQuantity(bread, 1);
+    assertEquals(1000, evaluator.getDiscountCents());
+    assertEquals(List.of(2), evaluator.getAppliedPromotions().stream().map(Promotion::getPromotionID).toList());
+  }
+
+  @Test
+  void testStackablePromotionAppliesOnTop() {
+    PromotionEngine engine = new PromotionEngine(List.of(
+        new MultiBuyPromotion(1, 1, 2, 1),
+        new ThresholdPromotion(2, new int[] { 1, 2 }, 1, 10, true)));
+    PromotionEvaluator evaluator = engine.newEvaluator();
+    evaluator.add(milk, 2);
+    // 10% off the 10 left to pay after the multi-buy.
+    assertEquals(1000 + 100, evaluator.getDiscountCents());
+    assertEquals(2, evaluator.getAppliedPromotions().size());
+  }
+
+  @Test
+  void testStackablePromotionFollowsGroupDiscountOfOtherItem() {
+    PromotionEngine engine = new PromotionEngine(List.of(
+        new BundlePromotion(1, Map.of(1, 1, 2, 1), 20.0),
+        new ThresholdPromotion(2, new int[] { 1 }, 1, 10, true)));
+    PromotionEvaluator evaluator = engine.newEvaluator();
+    assertEquals(100, evaluator.add(milk, 1));
+    // The bundle takes 10 off milk and bread, a third of it off milk, which
+    // leaves 6.67 of the milk for the threshold.
+    assertEquals(1000 + 66, evaluator.add(bread, 1));
+    assertEquals(100, evaluator.setQuantity(bread, 0));
+  }
+
+  @Test
+  void testDiscountNeverExceedsValueOfSale() {
+    PromotionEngine engine = new PromotionEngine(List.of(
+        new ThresholdPromotion(1, new int[] { 1 }, 1, 60, true),
+        new ThresholdPromotion(2, new int[] { 1 }, 1, 60, true)));
+    PromotionEvaluator evaluator = engine.newEvaluator();
+    assertEquals(1000, evaluator.add(milk, 1));
+    assertEquals(2000, evaluator.add(milk, 1));
+  }
+
+  @Test
+  void testOnlyPromotionsOfChangedItemAreEvaluated() {
+    List<Promotion> promotions = new ArrayList<>();
+    for (int itemID = 0; itemID < 10_000; itemID++) {
+      promotions.add(new MultiBuyPromotion(itemID, itemID, 2, 1));
+    }
+    promotions.add(new BundlePromotion(-1, Map.of(1, 1, 2, 1), 1.0));
+    PromotionEvaluator evaluator = new PromotionEngine(promotions).newEvaluator();
+    evaluator.add(milk, 2);
+    assertEquals(2, evaluator.getEvaluationCount());
+    evaluator.add(cheese, 2);
+    assertEquals(3, evaluator.getEvaluationCount());
+    assertEquals(1000 + 5000, evaluator.getDiscountCents());
+  }
+
+  @Test
+  void testLargeGroupIsSolvedGreedily() {
+    List<Promotion> promotions = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      promotions.add(new BundlePromotion(i, Map.of(i, 1, i + 1, 1), 1.0));
+    }
+    PromotionEvaluator evaluator = new PromotionEngine(promotions).newEvaluator();
+    for (int itemID = 0; itemID <= 30; itemID++) {
+      evaluator.add(new ItemDTO(itemID, "Item " + itemID, 1.0 + itemID, 0), 1);
+    }
+    List<Promotion> applied = evaluator.getAppliedPromotions();
+    for (int i = 1; i < applied.size(); i++) {
+      assertFalse(applied.get(i - 1).overlaps(applied.get(i)));
+    }
+    assertTrue(evaluator.getDiscountCents() > 0);
+  }
+
+  @Test
+  void testDuplicatePromotionIDThrows() {
+    assertThrows(IllegalArgumentException.class, () -> new PromotionEngine(List.of(
+        new MultiBuyPromotion(1, 1, 2, 1), new MultiBuyPromotion(1, 2, 2, 1))));
+  }
+}
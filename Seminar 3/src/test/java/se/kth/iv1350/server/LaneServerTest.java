@@ -0,0 +1,151 @@
+package se.kth.iv1350.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.kth.iv1350.controller.Controller;
+import se.kth.iv1350.integration.AccountingSys;
+import se.kth.iv1350.integration.DiscountDBHandler;
+import se.kth.iv1350.integration.InventorySys;
+import se.kth.iv1350.integration.Printer;
+import se.kth.iv1350.integration.ReceiptTemplate;
+import se.kth.iv1350.integration.StockReservations;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link LaneServer} and {@link LaneClient} classes, over
+ * a loopback socket.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ * <li>A whole sale can be pipelined and the responses come back in
+ * order.</li>
+ * <li>A rejected request gets an error response and the lane keeps
+ * working.</li>
+ * <li>Each connection is a lane of its own.</li>
+ * <li>An unknown operation closes the connection.</li>
+ * <li>A sale left open by a terminal that disconnects is abandoned and its
+ * stock released.</li>
+ * </ul>
+ */
+class LaneServerTest {
+  private LaneServer server;
+  private InetSocketAddress address;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new LaneServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+        () -> new Controller(mock(DiscountDBHandler.class), new InventorySys(), mock(AccountingSys.class),
+            mock(Printer.class)),
+        ReceiptTemplate.defaultTemplate().compile());
+    address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    server.close();
+  }
+
+  @Test
+  void testPipelinedSale() throws IOException {
+    try (LaneClient client = new LaneClient(address)) {
+      client.sendStartSale();
+      client.sendScan(1, 2);
+      client.sendScan(4, 1);
+      client.sendScan(1, 1);
+      client.sendPay(100);
+      client.sendReceipt();
+      assertEquals(6, client.getPendingCount());
+
+      assertTrue(client.receive().ok());
+      LaneResponse apples = client.receive();
+      assertEquals("Apple", apples.item().description());
+      assertEquals(25.0, apples.runningTotal(), 1e-9);
+      LaneResponse milk = client.receive();
+      assertEquals(4, milk.item().itemID());
+      assertEquals(6, milk.item().VAT());
+      assertEquals(46.2, milk.runningTotal(), 1e-9);
+      assertEquals(58.7, client.receive().runningTotal(), 1e-9);
+      assertEquals(100 - 58.7, client.receive().change(), 1e-9);
+      LaneResponse receipt = client.receive();
+      assertTrue(receipt.ok());
+      assertTrue(receipt.receipt().contains("Milk"));
+      assertEquals(0, client.getPendingCount());
+    }
+    assertEquals(6, server.getRequestCount());
+  }
+
+  @Test
+  void testRejectedRequestKeepsLaneWorking() throws IOException {
+    try (LaneClient client = new LaneClient(address)) {
+      LaneResponse noReceipt = client.receipt();
+      assertFalse(noReceipt.ok());
+      assertNotNull(noReceipt.message());
+
+      client.startSale();
+      LaneResponse unknownItem = client.scan(99, 1);
+      assertFalse(unknownItem.ok());
+      LaneResponse zeroQuantity = client.scan(1, 0);
+      assertEquals("Quantity must be greater than zero.", zeroQuantity.message());
+      assertEquals(12.5, client.scan(1, 1).runningTotal(), 1e-9);
+      assertEquals(12.5, client.discount(7).runningTotal(), 1e-9);
+    }
+  }
+
+  @Test
+  void testEachConnectionIsALane() throws IOException {
+    try (LaneClient first = new LaneClient(address); LaneClient second = new LaneClient(address)) {
+      first.scan(1, 1);
+      assertEquals(42.4, second.scan(4, 2).runningTotal(), 1e-9);
+      assertEquals(25.0, first.scan(1, 1).runningTotal(), 1e-9);
+      assertEquals(42.4, second.discount(1).runningTotal(), 1e-9);
+    }
+    assertEquals(4, server.getRequestCount());
+  }
+
+  @Test
+  void testUnknownOperationClosesConnection() throws IOException {
+    try (SocketChannel channel = SocketChannel.open(address)) {
+      channel.write(ByteBuffer.wrap(new byte[] { 42 }));
+      ByteBuffer response = ByteBuffer.allocate(256);
+      while (channel.read(response) >= 0) {
+        // Read until the server closes the connection
+      }
+      response.flip();
+      assertEquals(LaneProtocol.ERROR, response.get());
+      byte[] message = new byte[response.getShort()];
+      response.get(message);
+      assertEquals("Unknown operation 42.", new String(message));
+    }
+  }
+
+  @Test
+  void testDisconnectReleasesReservations() throws Exception {
+    StockReservations reservations = new StockReservations(new InventorySys(), 60_000L);
+    try (LaneServer reserving = new LaneServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), () -> {
+      Controller controller = new Controller(mock(DiscountDBHandler.class), new InventorySys(),
+          mock(AccountingSys.class), mock(Printer.class));
+      controller.setStockReservations(reservations);
+      return controller;
+    }, ReceiptTemplate.defaultTemplate().compile())) {
+      try (LaneClient client = new LaneClient(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+          reserving.getPort()))) {
+        client.startSale();
+        client.scan(1, 3);
+        assertEquals(3, reservations.getReserved(1));
+      }
+      long deadline = System.nanoTime() + 5_000_000_000L;
+      while (reservations.getReserved(1) != 0 && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      assertEquals(0, reservations.getReserved(1));
+    }
+  }
+}